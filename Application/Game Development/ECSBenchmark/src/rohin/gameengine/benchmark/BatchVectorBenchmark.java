@@ -0,0 +1,97 @@
+package rohin.gameengine.benchmark;
+
+import rohin.gameengine.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// BatchVectorBenchmark
+//
+// Measures a position update, p = p + v·dt, for every body, either with the GMath batch functions over structure of arrays columns, or with
+// Vector2D objects, for comparison.
+//
+// - One operation advances every body by one time step.
+// - The bodies are held in plain arrays, rather than in an engine, so that only the vector math is measured.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class BatchVectorBenchmark extends Benchmark
+{
+    // Constants.
+
+    public static final double M_TIME_STEP = 0.01;     // Simulation time step, measured in s.
+
+    // Fields.
+
+    private Boolean    batch;           // True to use the GMath batch functions, or false to use Vector2D objects.
+    private double[]   xs;              // Position columns.
+    private double[]   ys;
+    private double[]   vxs;             // Velocity columns.
+    private double[]   vys;
+    private Vector2D[] positions;       // Position objects.
+    private Vector2D[] velocities;      // Velocity objects.
+    private Vector2D   displacement;    // Scratch vector.
+
+    // Constructors.
+
+    public BatchVectorBenchmark ( Boolean batch )
+    {
+        super ( batch ? "GMath.addScaled" : "Vector2D.addInPlace", false );
+
+        this.batch = batch;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: setUp, tearDown, run
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void setUp ( int entityCount )
+    {
+        this.entityCount  = entityCount;
+        this.xs           = new double [ entityCount ];
+        this.ys           = new double [ entityCount ];
+        this.vxs          = new double [ entityCount ];
+        this.vys          = new double [ entityCount ];
+        this.positions    = new Vector2D [ entityCount ];
+        this.velocities   = new Vector2D [ entityCount ];
+        this.displacement = new Vector2D ();
+
+        for ( int i = 0; i < entityCount; i++ )
+        {
+            this.vxs [ i ] = 0.001 * ( i % 7 );
+            this.vys [ i ] = 0.001 * ( i % 5 );
+
+            this.positions  [ i ] = new Vector2D ();
+            this.velocities [ i ] = new Vector2D ( this.vxs [ i ], this.vys [ i ] );
+        }
+    }
+
+    @Override
+    public void tearDown ()
+    {
+        super.tearDown ();
+
+        this.xs         = null;
+        this.ys         = null;
+        this.vxs        = null;
+        this.vys        = null;
+        this.positions  = null;
+        this.velocities = null;
+    }
+
+    @Override
+    public long run ()
+    {
+        if ( this.batch )
+        {
+            GMath.addScaled ( this.xs, this.ys, this.vxs, this.vys, M_TIME_STEP, this.entityCount );
+
+            return ( long ) this.xs [ this.entityCount - 1 ];
+        }
+
+        for ( int i = 0; i < this.entityCount; i++ )
+        {
+            this.positions [ i ].addInPlace ( this.velocities [ i ].scaleInto ( M_TIME_STEP, this.displacement ) );
+        }
+
+        return ( long ) this.positions [ this.entityCount - 1 ].getX ();
+    }
+}
@@ -0,0 +1,122 @@
+package rohin.gameengine.benchmark;
+
+import rohin.gameengine.*;
+import rohin.gameengine.Application.Constants;
+import rohin.gameengine.Component.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// Benchmark
+//
+// Base class for ECS micro benchmarks. Run by BenchmarkRunner.
+//
+// - setUp is called once per trial, with the number of entities the trial should operate on.
+// - run performs one benchmark operation. It is called repeatedly, first to warm up the JIT compiler, and then while being timed.
+// - run must return a value derived from the work it did. The runner consumes the value, so that the JIT compiler cannot eliminate the work.
+// - tearDown is called once per trial, after timing has completed.
+// - getOperationSize returns the number of entities processed by one operation. The runner divides the time per operation by it, to report the
+//   time per entity. Override it for operations that do not touch every entity.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public abstract class Benchmark
+{
+    // @formatter:off
+
+    // Fields.
+
+    protected String          name;                  // Benchmark name, as shown in the results table.
+    protected Boolean         archetypeStorage;      // Run the benchmark with archetype storage enabled.
+    protected Boolean         sparseSetStorage;      // Run the benchmark with sparse set storage enabled.
+    protected int             entityCount;           // Number of entities the current trial operates on.
+    protected BenchmarkEngine engine;                // Headless engine for the current trial.
+
+    // Accessors and mutators.
+
+    public String getName          () { return this.name + ( this.archetypeStorage ? " [archetype]" : "" ) + ( this.sparseSetStorage ? " [sparse set]" : "" ); }
+    public int    getEntityCount   () { return this.entityCount;                                                                                      }
+    public int    getOperationSize () { return this.entityCount;                                                                                      }
+
+    // Abstract methods.
+
+    public abstract long run ();     // Perform one benchmark operation.
+
+    // Constructors.
+
+    public Benchmark ( String name, Boolean archetypeStorage )
+    {
+        this ( name, archetypeStorage, false );
+    }
+
+    public Benchmark ( String name, Boolean archetypeStorage, Boolean sparseSetStorage )
+    {
+        this.name             = name;
+        this.archetypeStorage = archetypeStorage;
+        this.sparseSetStorage = sparseSetStorage;
+        this.entityCount      = 0;
+        this.engine           = null;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // setUp
+    //
+    // Description:
+    //
+    // - Create a headless engine, and populate it with entities. Child classes may override this method, to add systems or queries.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void setUp ( int entityCount )
+    {
+        this.entityCount = entityCount;
+        this.engine      = new BenchmarkEngine ();
+
+        this.engine.setArchetypeStorageEnabled ( this.archetypeStorage );
+        this.engine.setSparseSetStorageEnabled ( this.sparseSetStorage );
+
+        for ( int i = 0; i < entityCount; i++ )
+        {
+            this.engine.addEntity ( i, createEntity ( i ) );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // tearDown
+    //
+    // Release the engine, so that it can be garbage collected before the next trial.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void tearDown ()
+    {
+        this.engine = null;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // createEntity
+    //
+    // Description:
+    //
+    // - Create a moving ball, similar to the entities of the game implementation.
+    // - Every entity has a transform and physics component. Every second entity also has a 2D projection, so that component presence tests
+    //   are split evenly between hits and misses.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    protected ECSEntity createEntity ( int id )
+    {
+        ECSEntity        entity  = new ECSEntity ( id );
+        ComponentPhysics physics = new ComponentPhysics ();
+
+        physics.velocity.setVector ( 0.001 * ( id % 7 ), 0.001 * ( id % 5 ) );
+
+        entity.addComponent ( Constants.COMPONENT_TRANSFORM, new ComponentTransform () );
+        entity.addComponent ( Constants.COMPONENT_PHYSICS,   physics );
+
+        if ( ( id & 1 ) == 0 )
+        {
+            entity.addComponent ( Constants.COMPONENT_PROJECTION_2D, new ComponentProjection2D () );
+        }
+
+        return entity;
+    }
+}
@@ -0,0 +1,33 @@
+package rohin.gameengine.benchmark;
+
+import rohin.gameengine.ECSEngine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// BenchmarkEngine
+//
+// Headless game engine, used by the benchmarks.
+//
+// - There is no display, so swapBuffer does nothing.
+// - Logging and frame rate regulation are disabled, so that game loop benchmarks measure engine overhead only.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class BenchmarkEngine extends ECSEngine
+{
+    // Constructors.
+
+    public BenchmarkEngine ()
+    {
+        setloggingEnabled   ( false );
+        setFPSTargetEnabled ( false );
+        setLoopDelayFixed   ( 0 );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: swapBuffer
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected void swapBuffer ()
+    {
+    }
+}
@@ -0,0 +1,326 @@
+package rohin.gameengine.benchmark;
+
+import java.lang.management.*;
+import java.util.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// BenchmarkRunner
+//
+// Command line benchmark harness for the ECS core.
+//
+// - Each benchmark is run once for every entity count. Each run (trial) consists of a number of warm up iterations, followed by a number of
+//   measurement iterations.
+// - During an iteration, the benchmark operation is called repeatedly for a fixed amount of time. The iteration score is the average time per
+//   operation. The trial score is the mean of the measurement iteration scores, and the error is their standard deviation.
+// - The results table also reports the time per entity, i.e. the score divided by the benchmark's operation size.
+// - The B/op column reports the number of bytes allocated per operation, by the benchmark thread, during the measurement iterations. It is NaN on
+//   JVMs that do not support thread allocation monitoring.
+//
+// Usage:
+//
+//     BenchmarkRunner [ -wi <warm up iterations> ] [ -i <measurement iterations> ] [ -r <iteration time in ms> ] [ -n <entity counts> ] [ filter ]
+//
+//     e.g. BenchmarkRunner -n 1000,10000 Physics
+//
+// - Entity counts are separated by commas.
+// - Only benchmarks whose name contains the filter are run. The filter is not case sensitive.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class BenchmarkRunner
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int   M_DEFAULT_WARMUP_ITERATIONS      = 3;                         // Number of warm up iterations per trial.
+    public static final int   M_DEFAULT_MEASUREMENT_ITERATIONS = 5;                         // Number of measurement iterations per trial.
+    public static final int   M_DEFAULT_ITERATION_TIME         = 1000;                      // Duration of each iteration, measured in ms.
+    public static final int[] M_DEFAULT_ENTITY_COUNTS          = { 1000, 10000, 100000 };   // Entity counts to run each benchmark with.
+    public static final long  M_NANOSECONDS_PER_MILLISECOND    = 1000000L;
+
+    // Constants - Results table format.
+
+    private static final String M_FORMAT_HEADER = "%-40s %9s %4s %14s %12s  %-5s %12s %10s\n";
+    private static final String M_FORMAT_ROW    = "%-40s %9d %4d %14.1f %12.1f  %-5s %12.2f %10.1f\n";
+
+    // Fields.
+
+    private int               warmupIterations;         // Number of warm up iterations per trial.
+    private int               measurementIterations;    // Number of measurement iterations per trial.
+    private int               iterationTime;            // Duration of each iteration, measured in ms.
+    private int[]             entityCounts;             // Entity counts to run each benchmark with.
+    private String            filter;                   // Only benchmarks whose name contains the filter are run.
+    private List <Benchmark>  benchmarks;               // Registered benchmarks.
+    private long              operations;               // Number of operations performed by the most recent iteration.
+
+    // Thread allocation monitor, or null if the JVM does not support allocation monitoring.
+
+    private com.sun.management.ThreadMXBean allocationMonitor;
+
+    // Consumes the value returned by each benchmark operation, so that the JIT compiler cannot eliminate the work. Similar to a JMH black hole.
+
+    public static volatile long sink = 0;
+
+    // Constructors.
+
+    public BenchmarkRunner ()
+    {
+        this.warmupIterations      = M_DEFAULT_WARMUP_ITERATIONS;
+        this.measurementIterations = M_DEFAULT_MEASUREMENT_ITERATIONS;
+        this.iterationTime         = M_DEFAULT_ITERATION_TIME;
+        this.entityCounts          = M_DEFAULT_ENTITY_COUNTS;
+        this.filter                = "";
+        this.benchmarks            = new ArrayList <Benchmark> ();
+        this.operations            = 0;
+        this.allocationMonitor     = null;
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean ();
+
+        if ( threadBean instanceof com.sun.management.ThreadMXBean )
+        {
+            this.allocationMonitor = ( com.sun.management.ThreadMXBean ) threadBean;
+            this.allocationMonitor.setThreadAllocatedMemoryEnabled ( true );
+        }
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // main
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static void main ( String[] args )
+    {
+        BenchmarkRunner runner = new BenchmarkRunner ();
+
+        if ( runner.parseArguments ( args ) )
+        {
+            runner.addDefaultBenchmarks ();
+            runner.run ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // addDefaultBenchmarks
+    //
+    // Register the standard ECS core benchmarks. Benchmarks that depend on component storage are registered once for each storage mode.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void addDefaultBenchmarks ()
+    {
+        this.benchmarks.add ( new HasComponentsBenchmark () );
+        this.benchmarks.add ( new GetComponentBenchmark  () );
+        this.benchmarks.add ( new EntityLookupBenchmark  ( false ) );
+        this.benchmarks.add ( new EntityLookupBenchmark  ( true  ) );
+        this.benchmarks.add ( new BatchVectorBenchmark   ( false ) );
+        this.benchmarks.add ( new BatchVectorBenchmark   ( true  ) );
+        this.benchmarks.add ( new BroadPhaseBenchmark    ( BroadPhaseBenchmark.M_BRUTE_FORCE ) );
+        this.benchmarks.add ( new BroadPhaseBenchmark    ( BroadPhaseBenchmark.M_GRID        ) );
+        this.benchmarks.add ( new BroadPhaseBenchmark    ( BroadPhaseBenchmark.M_TREE        ) );
+
+        for ( Boolean archetypeStorage : new Boolean[] { false, true } )
+        {
+            this.benchmarks.add ( new EntityChurnBenchmark    ( archetypeStorage ) );
+            this.benchmarks.add ( new ComponentChurnBenchmark ( archetypeStorage ) );
+            this.benchmarks.add ( new PhysicsUpdateBenchmark  ( archetypeStorage ) );
+            this.benchmarks.add ( new EngineRunBenchmark      ( archetypeStorage ) );
+        }
+
+        this.benchmarks.add ( new EntityChurnBenchmark    ( false, true ) );
+        this.benchmarks.add ( new ComponentChurnBenchmark ( false, true ) );
+        this.benchmarks.add ( new PhysicsUpdateBenchmark  ( false, true ) );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // addBenchmark
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void addBenchmark ( Benchmark benchmark )
+    {
+        this.benchmarks.add ( benchmark );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // run
+    //
+    // Run every registered benchmark that matches the filter, at every entity count, and print the results table to the console.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void run ()
+    {
+        System.out.printf ( M_FORMAT_HEADER, "Benchmark", "Entities", "Cnt", "Score", "Error", "Units", "ns/entity", "B/op" );
+
+        for ( Benchmark benchmark : this.benchmarks )
+        {
+            if ( !benchmark.getName ().toLowerCase ().contains ( this.filter ) )
+            {
+                continue;
+            }
+
+            for ( int entityCount : this.entityCounts )
+            {
+                runTrial ( benchmark, entityCount );
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // runTrial
+    //
+    // Description:
+    //
+    // - Set up the benchmark, warm it up, measure it, and print one row of the results table.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void runTrial ( Benchmark benchmark, int entityCount )
+    {
+        double[] scores     = new double [ this.measurementIterations ];
+        double   mean       = 0.0;
+        double   error      = 0.0;
+        long     operations = 0;
+        long     allocated  = 0;
+
+        benchmark.setUp ( entityCount );
+
+        System.gc ();
+
+        for ( int i = 0; i < this.warmupIterations; i++ )
+        {
+            iterate ( benchmark );
+        }
+
+        allocated = allocatedBytes ();
+
+        for ( int i = 0; i < this.measurementIterations; i++ )
+        {
+            scores [ i ] = iterate ( benchmark );
+            mean        += scores [ i ];
+            operations  += this.operations;
+        }
+
+        allocated = allocatedBytes () - allocated;
+
+        mean /= this.measurementIterations;
+
+        for ( double score : scores )
+        {
+            error += ( score - mean ) * ( score - mean );
+        }
+
+        error = ( this.measurementIterations > 1 ) ? Math.sqrt ( error / ( this.measurementIterations - 1 ) ) : 0.0;
+
+        System.out.printf
+        (
+            M_FORMAT_ROW,
+            benchmark.getName (),
+            entityCount,
+            this.measurementIterations,
+            mean,
+            error,
+            "ns/op",
+            mean / Math.max ( 1, benchmark.getOperationSize () ),
+            ( this.allocationMonitor != null ) ? ( double ) allocated / operations : Double.NaN
+        );
+
+        benchmark.tearDown ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // iterate
+    //
+    // Call the benchmark operation repeatedly, for one iteration time, and return the average time per operation, measured in ns.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private double iterate ( Benchmark benchmark )
+    {
+        long operations = 0;
+        long start      = System.nanoTime ();
+        long deadline   = start + this.iterationTime * M_NANOSECONDS_PER_MILLISECOND;
+        long now        = 0;
+        long result     = 0;
+
+        do
+        {
+            result += benchmark.run ();
+            now     = System.nanoTime ();
+
+            ++operations;
+        }
+        while ( now - deadline < 0 );
+
+        sink += result;
+
+        this.operations = operations;
+
+        return ( double ) ( now - start ) / operations;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // allocatedBytes
+    //
+    // Total number of bytes allocated by the current thread so far, or zero if allocation monitoring is not supported.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private long allocatedBytes ()
+    {
+        if ( this.allocationMonitor == null )
+        {
+            return 0;
+        }
+
+        return this.allocationMonitor.getThreadAllocatedBytes ( Thread.currentThread ().getId () );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // parseArguments
+    //
+    // Description:
+    //
+    // - Parse the command line options. See the class description for usage.
+    //
+    // Return Value:
+    //
+    // - true if the arguments are valid, or false if they are not, in which case the usage has been printed.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean parseArguments ( String[] args )
+    {
+        try
+        {
+            for ( int i = 0; i < args.length; i++ )
+            {
+                String option = args [ i ];
+
+                if      ( option.equals ( "-wi" ) ) this.warmupIterations      = Integer.parseInt ( args [ ++i ] );
+                else if ( option.equals ( "-i"  ) ) this.measurementIterations = Math.max ( 1, Integer.parseInt ( args [ ++i ] ) );
+                else if ( option.equals ( "-r"  ) ) this.iterationTime         = Integer.parseInt ( args [ ++i ] );
+                else if ( option.equals ( "-n"  ) ) this.entityCounts          = parseCounts ( args [ ++i ] );
+                else if ( option.startsWith ( "-" ) ) throw new IllegalArgumentException ( option );
+                else                                  this.filter                = option.toLowerCase ();
+            }
+
+            return true;
+        }
+        catch ( Exception e )
+        {
+            System.out.println ( "Usage: BenchmarkRunner [ -wi <warm up iterations> ] [ -i <measurement iterations> ] [ -r <iteration time in ms> ] [ -n <entity counts> ] [ filter ]" );
+
+            return false;
+        }
+    }
+
+    private int[] parseCounts ( String text )
+    {
+        String[] items  = text.split ( "," );
+        int[]    counts = new int [ items.length ];
+
+        for ( int i = 0; i < items.length; i++ )
+        {
+            counts [ i ] = Integer.parseInt ( items [ i ].trim () );
+        }
+
+        return counts;
+    }
+}
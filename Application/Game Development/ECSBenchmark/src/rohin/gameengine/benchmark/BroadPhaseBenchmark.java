@@ -0,0 +1,244 @@
+package rohin.gameengine.benchmark;
+
+import java.util.Random;
+
+import rohin.gameengine.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// BroadPhaseBenchmark
+//
+// Measures a collision detection broad phase over a scene of small moving particles and large static walls, with either brute force, a
+// SpatialHashGrid, or a DynamicAABBTree.
+//
+// - The shapes are spread over a square, whose area grows with the shape count, so that the density stays the same. Most shapes are point
+//   particles, i.e. zero size boxes. One shape in M_WALL_INTERVAL is a thin wall, a quarter of the square long.
+// - One operation moves every particle by its velocity, bouncing off the sides of the square, and finds every pair of overlapping boxes. The
+//   grid is rebuilt from scratch each operation. The tree moves its proxies, and is only updated for particles that leave their fat boxes.
+// - Tree pairs are tested against the exact boxes, since the tree pairs fat boxes. Every method returns the same number of overlapping pairs.
+// - The shapes are held in plain arrays, rather than in an engine, so that only the broad phase is measured.
+//
+// Usage:
+//
+//     BenchmarkRunner -n 1000,10000,50000 BroadPhase
+//
+// - Brute force is O(n²), and takes seconds per operation at 50000 shapes.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class BroadPhaseBenchmark extends Benchmark
+{
+    // Constants.
+
+    public static final int    M_BRUTE_FORCE   = 0;         // Test every pair of boxes.
+    public static final int    M_GRID          = 1;         // SpatialHashGrid, with its automatic cell size.
+    public static final int    M_TREE          = 2;         // DynamicAABBTree.
+
+    public static final double M_SPACING       = 0.01;      // Mean distance between shapes.
+    public static final double M_SPEED         = 0.001;     // Maximum particle speed, per axis, per operation.
+    public static final double M_WALL_WIDTH    = 0.004;     // Thickness of a wall.
+    public static final double M_TREE_MARGIN   = 0.002;     // Fat box margin of the tree.
+    public static final int    M_WALL_INTERVAL = 100;       // One shape in M_WALL_INTERVAL is a wall.
+    public static final long   M_SEED          = 1;         // Scene random seed.
+
+    // Fields.
+
+    private int             method;     // M_BRUTE_FORCE, M_GRID or M_TREE.
+    private double          side;       // Side length of the square.
+    private double[]        minX;       // Box of each shape.
+    private double[]        minY;
+    private double[]        maxX;
+    private double[]        maxY;
+    private double[]        vx;         // Velocity of each shape. Zero for walls.
+    private double[]        vy;
+    private int[]           proxies;    // Tree proxy of each shape.
+    private SpatialHashGrid grid;
+    private DynamicAABBTree tree;
+
+    // Constructors.
+
+    public BroadPhaseBenchmark ( int method )
+    {
+        super ( "BroadPhase " + ( method == M_TREE ? "DynamicAABBTree" : ( method == M_GRID ? "SpatialHashGrid" : "brute force" ) ), false );
+
+        this.method = method;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: setUp, tearDown, run
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void setUp ( int entityCount )
+    {
+        Random random = new Random ( M_SEED );
+
+        this.entityCount = entityCount;
+        this.side        = Math.sqrt ( entityCount ) * M_SPACING;
+        this.minX        = new double [ entityCount ];
+        this.minY        = new double [ entityCount ];
+        this.maxX        = new double [ entityCount ];
+        this.maxY        = new double [ entityCount ];
+        this.vx          = new double [ entityCount ];
+        this.vy          = new double [ entityCount ];
+        this.proxies     = new int    [ entityCount ];
+        this.grid        = new SpatialHashGrid ();
+        this.tree        = new DynamicAABBTree ( M_TREE_MARGIN );
+
+        for ( int i = 0; i < entityCount; i++ )
+        {
+            double x = random.nextDouble () * this.side;
+            double y = random.nextDouble () * this.side;
+
+            if ( i % M_WALL_INTERVAL == 0 )
+            {
+                // Wall, horizontal or vertical.
+
+                double length = 0.25 * this.side;
+                double w      = ( ( i / M_WALL_INTERVAL ) % 2 == 0 ) ? length : M_WALL_WIDTH;
+                double h      = ( w == length )                      ? M_WALL_WIDTH : length;
+
+                setBox ( i, x, y, x + w, y + h );
+            }
+            else
+            {
+                // Particle.
+
+                this.vx [ i ] = ( 2.0 * random.nextDouble () - 1.0 ) * M_SPEED;
+                this.vy [ i ] = ( 2.0 * random.nextDouble () - 1.0 ) * M_SPEED;
+
+                setBox ( i, x, y, x, y );
+            }
+
+            this.proxies [ i ] = this.tree.insert ( this.minX [ i ], this.minY [ i ], this.maxX [ i ], this.maxY [ i ], i );
+        }
+
+        this.tree.rebuild ();
+    }
+
+    @Override
+    public void tearDown ()
+    {
+        super.tearDown ();
+
+        this.minX    = null;
+        this.minY    = null;
+        this.maxX    = null;
+        this.maxY    = null;
+        this.vx      = null;
+        this.vy      = null;
+        this.proxies = null;
+        this.grid    = null;
+        this.tree    = null;
+    }
+
+    @Override
+    public long run ()
+    {
+        moveParticles ();
+
+        if ( this.method == M_TREE )
+        {
+            return findTreePairs ();
+        }
+
+        if ( this.method == M_GRID )
+        {
+            return findGridPairs ();
+        }
+
+        return findPairs ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // moveParticles
+    //
+    // Move every particle by its velocity, reversing its velocity at the sides of the square.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void moveParticles ()
+    {
+        for ( int i = 0; i < this.entityCount; i++ )
+        {
+            double x = this.minX [ i ] + this.vx [ i ];
+            double y = this.minY [ i ] + this.vy [ i ];
+
+            if ( ( x < 0.0 ) || ( x > this.side ) ) this.vx [ i ] = -this.vx [ i ];
+            if ( ( y < 0.0 ) || ( y > this.side ) ) this.vy [ i ] = -this.vy [ i ];
+
+            this.minX [ i ] += this.vx [ i ];
+            this.minY [ i ] += this.vy [ i ];
+            this.maxX [ i ] += this.vx [ i ];
+            this.maxY [ i ] += this.vy [ i ];
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // findPairs, findGridPairs, findTreePairs
+    //
+    // Return the number of pairs of overlapping boxes, found by each method.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private long findPairs ()
+    {
+        long count = 0;
+
+        for ( int a = 0; a < this.entityCount; a++ )
+        {
+            for ( int b = a + 1; b < this.entityCount; b++ )
+            {
+                if ( overlap ( a, b ) ) count++;
+            }
+        }
+
+        return count;
+    }
+
+    private long findGridPairs ()
+    {
+        this.grid.clear ();
+
+        for ( int i = 0; i < this.entityCount; i++ )
+        {
+            this.grid.add ( this.minX [ i ], this.minY [ i ], this.maxX [ i ], this.maxY [ i ] );
+        }
+
+        return this.grid.findPairs ();
+    }
+
+    private long findTreePairs ()
+    {
+        DynamicAABBTree tree  = this.tree;
+        long            count = 0;
+
+        for ( int i = 0; i < this.entityCount; i++ )
+        {
+            tree.move ( this.proxies [ i ], this.minX [ i ], this.minY [ i ], this.maxX [ i ], this.maxY [ i ] );
+        }
+
+        int pairs = tree.findPairs ();
+
+        for ( int i = 0; i < pairs; i++ )
+        {
+            if ( overlap ( tree.getData ( tree.getPairA ( i ) ), tree.getData ( tree.getPairB ( i ) ) ) ) count++;
+        }
+
+        return count;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Box helpers.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void setBox ( int i, double minX, double minY, double maxX, double maxY )
+    {
+        this.minX [ i ] = minX;
+        this.minY [ i ] = minY;
+        this.maxX [ i ] = maxX;
+        this.maxY [ i ] = maxY;
+    }
+
+    private boolean overlap ( int a, int b )
+    {
+        return ( this.minX [ a ] <= this.maxX [ b ] ) && ( this.minX [ b ] <= this.maxX [ a ] )
+            && ( this.minY [ a ] <= this.maxY [ b ] ) && ( this.minY [ b ] <= this.maxY [ a ] );
+    }
+}
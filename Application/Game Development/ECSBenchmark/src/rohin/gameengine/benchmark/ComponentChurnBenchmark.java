@@ -0,0 +1,96 @@
+package rohin.gameengine.benchmark;
+
+import rohin.gameengine.*;
+import rohin.gameengine.Application.Constants;
+import rohin.gameengine.System.SystemPhysicsEngine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ComponentChurnBenchmark
+//
+// Measures ECSEntity.removeComponent and ECSEntity.addComponent, on entities that stay registered with the engine.
+//
+// - One operation removes the physics component from a batch of existing entities, and then adds it back again. Every call moves the entity
+//   between archetypes if archetype storage is enabled, or touches only the physics pool if sparse set storage is enabled.
+// - The physics system is registered, so that the engine maintains a live query, as it would in a game.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ComponentChurnBenchmark extends Benchmark
+{
+    // Constants.
+
+    public static final int M_BATCH_SIZE = 1000;     // Maximum number of entities whose physics component is removed and added per operation.
+
+    // Fields.
+
+    private ECSEntity[]    batch;      // Entities whose physics component is removed and added.
+    private ECSComponent[] bodies;     // Physics component of each batch entity.
+
+    // Constructors.
+
+    public ComponentChurnBenchmark ( Boolean archetypeStorage )
+    {
+        super ( "Component churn", archetypeStorage );
+    }
+
+    public ComponentChurnBenchmark ( Boolean archetypeStorage, Boolean sparseSetStorage )
+    {
+        super ( "Component churn", archetypeStorage, sparseSetStorage );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: setUp, tearDown, run, getOperationSize
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void setUp ( int entityCount )
+    {
+        super.setUp ( entityCount );
+
+        this.engine.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, new SystemPhysicsEngine ( this.engine ) );
+
+        // Spread the batch evenly over the world.
+
+        int batchSize = Math.min ( entityCount, M_BATCH_SIZE );
+        int stride    = entityCount / Math.max ( 1, batchSize );
+
+        this.batch  = new ECSEntity    [ batchSize ];
+        this.bodies = new ECSComponent [ batchSize ];
+
+        for ( int i = 0; i < batchSize; i++ )
+        {
+            this.batch  [ i ] = this.engine.getEntity ( i * stride );
+            this.bodies [ i ] = this.batch [ i ].getComponent ( Constants.COMPONENT_PHYSICS );
+        }
+    }
+
+    @Override
+    public void tearDown ()
+    {
+        super.tearDown ();
+
+        this.batch  = null;
+        this.bodies = null;
+    }
+
+    @Override
+    public long run ()
+    {
+        for ( ECSEntity entity : this.batch )
+        {
+            entity.removeComponent ( Constants.COMPONENT_PHYSICS );
+        }
+
+        for ( int i = 0; i < this.batch.length; i++ )
+        {
+            this.batch [ i ].addComponent ( Constants.COMPONENT_PHYSICS, this.bodies [ i ] );
+        }
+
+        return this.engine.getSystems ().get ( Constants.SYSTEM_PHYSICS_ENGINE ).getQuery ().size ();
+    }
+
+    @Override
+    public int getOperationSize ()
+    {
+        return this.batch.length;
+    }
+}
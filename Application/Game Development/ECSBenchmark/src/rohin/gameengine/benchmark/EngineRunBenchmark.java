@@ -0,0 +1,89 @@
+package rohin.gameengine.benchmark;
+
+import rohin.gameengine.*;
+import rohin.gameengine.Application.Constants;
+import rohin.gameengine.System.SystemPhysicsEngine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// EngineRunBenchmark
+//
+// Measures ECSEngine.run game loop iterations.
+//
+// - One operation runs the game loop for a fixed number of frames, with the physics system registered, and frame rate regulation disabled.
+// - The loop is stopped by a frame counting system. The loop exits at the end of the frame in which the limit is reached.
+// - The time per entity column reports the time per entity, per frame.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class EngineRunBenchmark extends Benchmark
+{
+    // Constants.
+
+    public static final int M_FRAMES_PER_OPERATION = 100;       // Number of game loop iterations per operation.
+
+    // Fields.
+
+    private FrameLimiter limiter;       // Stops the game loop after a fixed number of frames.
+
+    // Constructors.
+
+    public EngineRunBenchmark ( Boolean archetypeStorage )
+    {
+        super ( "ECSEngine.run", archetypeStorage );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: setUp, run, getOperationSize
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void setUp ( int entityCount )
+    {
+        super.setUp ( entityCount );
+
+        this.limiter = new FrameLimiter ( this.engine );
+
+        this.engine.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, new SystemPhysicsEngine ( this.engine ) );
+        this.engine.addSystem ( Integer.MAX_VALUE,               this.limiter );
+    }
+
+    @Override
+    public long run ()
+    {
+        this.limiter.frames = 0;
+
+        this.engine.run ();
+
+        return this.limiter.frames;
+    }
+
+    @Override
+    public int getOperationSize ()
+    {
+        return this.entityCount * M_FRAMES_PER_OPERATION;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // FrameLimiter
+    //
+    // System that stops the game loop, once it has been updated M_FRAMES_PER_OPERATION times.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static class FrameLimiter extends ECSSystem
+    {
+        private int frames;
+
+        FrameLimiter ( ECSEngine owner )
+        {
+            super ( Integer.MAX_VALUE, "FRAME_LIMITER", owner );
+        }
+
+        @Override
+        public void update ( long t )
+        {
+            if ( ++this.frames >= M_FRAMES_PER_OPERATION )
+            {
+                ( ( ECSEngine ) this.owner ).setLoopRunning ( false );
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package rohin.gameengine.benchmark;
+
+import rohin.gameengine.*;
+import rohin.gameengine.Application.Constants;
+import rohin.gameengine.Component.*;
+import rohin.gameengine.System.SystemPhysicsEngine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// EntityChurnBenchmark
+//
+// Measures ECSEngine.addEntity, ECSEntity.addComponent and ECSEngine.removeEntity.
+//
+// - One operation adds a batch of new entities to a populated world, adds a transform and physics component to each of them, and then removes
+//   them again. Components are added after the entity has been added to the engine, so that every addComponent call updates the engine's
+//   queries, and moves the entity between archetypes if archetype storage is enabled.
+// - The physics system is registered, so that the engine maintains a live query, as it would in a game.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class EntityChurnBenchmark extends Benchmark
+{
+    // Constants.
+
+    public static final int M_BATCH_SIZE = 1000;     // Maximum number of entities added and removed per operation.
+
+    // Fields.
+
+    private int batchSize;      // Number of entities added and removed per operation.
+
+    // Constructors.
+
+    public EntityChurnBenchmark ( Boolean archetypeStorage )
+    {
+        super ( "Entity churn", archetypeStorage );
+    }
+
+    public EntityChurnBenchmark ( Boolean archetypeStorage, Boolean sparseSetStorage )
+    {
+        super ( "Entity churn", archetypeStorage, sparseSetStorage );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: setUp, run, getOperationSize
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void setUp ( int entityCount )
+    {
+        super.setUp ( entityCount );
+
+        this.batchSize = Math.min ( entityCount, M_BATCH_SIZE );
+
+        this.engine.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, new SystemPhysicsEngine ( this.engine ) );
+    }
+
+    @Override
+    public long run ()
+    {
+        int first = this.entityCount;
+        int last  = first + this.batchSize;
+
+        for ( int key = first; key < last; key++ )
+        {
+            ECSEntity entity = new ECSEntity ( key );
+
+            this.engine.addEntity ( key, entity );
+
+            entity.addComponent ( Constants.COMPONENT_TRANSFORM, new ComponentTransform () );
+            entity.addComponent ( Constants.COMPONENT_PHYSICS,   new ComponentPhysics () );
+        }
+
+        for ( int key = first; key < last; key++ )
+        {
+            this.engine.removeEntity ( key );
+        }
+
+        return this.engine.getEntities ().size ();
+    }
+
+    @Override
+    public int getOperationSize ()
+    {
+        return this.batchSize;
+    }
+}
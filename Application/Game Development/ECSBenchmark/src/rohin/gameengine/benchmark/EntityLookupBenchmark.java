@@ -0,0 +1,101 @@
+package rohin.gameengine.benchmark;
+
+import java.util.*;
+
+import rohin.gameengine.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// EntityLookupBenchmark
+//
+// Measures entity lookup by ID, through the engine's IntHashMap entity registry, or through a HashMap <Integer, ECSEntity> holding the same
+// entities, for comparison.
+//
+// - One operation looks up every entity once, in a shuffled order, so that the benchmark does not measure sequential access.
+// - HashMap lookups box every key above 127, so the HashMap variant also reports the cost of the boxing allocation in the B/op column.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class EntityLookupBenchmark extends Benchmark
+{
+    // Constants.
+
+    public static final long M_SHUFFLE_SEED = 1;       // Seed for the lookup order, so that every trial looks up keys in the same order.
+
+    // Fields.
+
+    private Boolean                      primitive;    // True to look up entities in the engine's IntHashMap, or false to use a HashMap.
+    private int[]                        keys;         // Entity IDs, in lookup order.
+    private IntHashMap <ECSEntity>       intMap;       // The engine's entity registry.
+    private HashMap <Integer, ECSEntity> boxedMap;     // Copy of the entity registry, keyed by boxed IDs.
+
+    // Constructors.
+
+    public EntityLookupBenchmark ( Boolean primitive )
+    {
+        super ( primitive ? "IntHashMap.get" : "HashMap.get", false );
+
+        this.primitive = primitive;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: setUp, tearDown, run
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void setUp ( int entityCount )
+    {
+        super.setUp ( entityCount );
+
+        List <Integer> order = new ArrayList <Integer> ( entityCount );
+
+        for ( int i = 0; i < entityCount; i++ )
+        {
+            order.add ( i );
+        }
+
+        Collections.shuffle ( order, new Random ( M_SHUFFLE_SEED ) );
+
+        this.keys     = new int [ entityCount ];
+        this.intMap   = this.engine.getEntities ();
+        this.boxedMap = new HashMap <Integer, ECSEntity> ();
+
+        for ( int i = 0; i < entityCount; i++ )
+        {
+            this.keys [ i ] = order.get ( i );
+
+            this.boxedMap.put ( i, this.intMap.get ( i ) );
+        }
+    }
+
+    @Override
+    public void tearDown ()
+    {
+        super.tearDown ();
+
+        this.keys     = null;
+        this.intMap   = null;
+        this.boxedMap = null;
+    }
+
+    @Override
+    public long run ()
+    {
+        long found = 0;
+
+        if ( this.primitive )
+        {
+            for ( int key : this.keys )
+            {
+                if ( this.intMap.get ( key ) != null ) ++found;
+            }
+        }
+        else
+        {
+            for ( int key : this.keys )
+            {
+                if ( this.boxedMap.get ( key ) != null ) ++found;
+            }
+        }
+
+        return found;
+    }
+}
@@ -0,0 +1,50 @@
+package rohin.gameengine.benchmark;
+
+import rohin.gameengine.*;
+import rohin.gameengine.Application.Constants;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// GetComponentBenchmark
+//
+// Measures ECSEntity.getComponent. One operation looks up the transform and physics component of every entity in the world.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class GetComponentBenchmark extends Benchmark
+{
+    // Fields.
+
+    private ECSEntity[] entities;       // Entities to look up, in a flat array, so that the benchmark does not measure map iteration.
+
+    // Constructors.
+
+    public GetComponentBenchmark ()
+    {
+        super ( "ECSEntity.getComponent", false );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: setUp, run
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void setUp ( int entityCount )
+    {
+        super.setUp ( entityCount );
+
+        this.entities = this.engine.getEntities ().values ().toArray ( new ECSEntity [ entityCount ] );
+    }
+
+    @Override
+    public long run ()
+    {
+        long found = 0;
+
+        for ( ECSEntity entity : this.entities )
+        {
+            if ( entity.getComponent ( Constants.COMPONENT_TRANSFORM ) != null ) ++found;
+            if ( entity.getComponent ( Constants.COMPONENT_PHYSICS   ) != null ) ++found;
+        }
+
+        return found;
+    }
+}
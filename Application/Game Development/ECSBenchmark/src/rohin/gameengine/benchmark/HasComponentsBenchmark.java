@@ -0,0 +1,54 @@
+package rohin.gameengine.benchmark;
+
+import rohin.gameengine.*;
+import rohin.gameengine.Component.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// HasComponentsBenchmark
+//
+// Measures ECSEntity.hasComponents. One operation tests every entity in the world for a transform and 2D projection. Half of the entities match.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class HasComponentsBenchmark extends Benchmark
+{
+    // Fields.
+
+    private ECSEntity[]  entities;      // Entities to test, in a flat array, so that the benchmark does not measure map iteration.
+    private ECSSignature required;      // Component types to test for.
+
+    // Constructors.
+
+    public HasComponentsBenchmark ()
+    {
+        super ( "ECSEntity.hasComponents", false );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: setUp, run
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void setUp ( int entityCount )
+    {
+        super.setUp ( entityCount );
+
+        this.entities = this.engine.getEntities ().values ().toArray ( new ECSEntity [ entityCount ] );
+        this.required = ECSSignature.of ( ComponentTransform.class, ComponentProjection2D.class );
+    }
+
+    @Override
+    public long run ()
+    {
+        long matches = 0;
+
+        for ( ECSEntity entity : this.entities )
+        {
+            if ( entity.hasComponents ( this.required ) )
+            {
+                ++matches;
+            }
+        }
+
+        return matches;
+    }
+}
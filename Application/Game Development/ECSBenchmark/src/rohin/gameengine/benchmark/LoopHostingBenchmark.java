@@ -0,0 +1,178 @@
+package rohin.gameengine.benchmark;
+
+import java.lang.management.*;
+import rohin.gameengine.*;
+import rohin.gameengine.Application.Constants;
+import rohin.gameengine.Component.*;
+import rohin.gameengine.System.SystemPhysicsEngine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// LoopHostingBenchmark
+//
+// Compares hosting many paced ECSEngine game loops on platform threads, and on virtual threads. See ECSLoopHost.
+//
+// - Each trial starts a number of engines, each running its own game loop at a low FPS target, with a small physics world. The loops are allowed to
+//   settle for a warm up period, and are then measured for a fixed period.
+// - The results table reports the achieved tick rate per engine, the mean frame period jitter, the carrier utilisation, and the number of live
+//   platform threads in the JVM while the loops were running.
+// - The virtual thread trial is skipped on JVMs without virtual threads.
+// - This is not a BenchmarkRunner benchmark, since the loops are timed by their own pacers, rather than by repeated operations.
+//
+// Usage:
+//
+//     LoopHostingBenchmark [ <engines> [ <tick rate> [ <seconds> [ <entities> ] ] ] ]
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class LoopHostingBenchmark
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int    M_DEFAULT_ENGINES   = 1000;      // Number of engines to host.
+    public static final double M_DEFAULT_TICK_RATE = 20.0;      // FPS target of each engine.
+    public static final int    M_DEFAULT_SECONDS   = 5;         // Duration of the measurement period, measured in s.
+    public static final int    M_DEFAULT_ENTITIES  = 10;        // Number of entities per engine.
+    public static final long   M_WARMUP_TIME       = 2000;      // Duration of the warm up period, measured in ms.
+
+    // Constants - Results table format.
+
+    private static final String M_FORMAT_HEADER = "%-10s %8s %10s %12s %12s %10s %10s\n";
+    private static final String M_FORMAT_ROW    = "%-10s %8d %10.1f %12.2f %12.3f %9.1f%% %10d\n";
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // main
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static void main ( String[] args ) throws InterruptedException
+    {
+        int    engines  = ( args.length > 0 ) ? Integer.parseInt   ( args [ 0 ] ) : M_DEFAULT_ENGINES;
+        double tickRate = ( args.length > 1 ) ? Double.parseDouble ( args [ 1 ] ) : M_DEFAULT_TICK_RATE;
+        int    seconds  = ( args.length > 2 ) ? Integer.parseInt   ( args [ 2 ] ) : M_DEFAULT_SECONDS;
+        int    entities = ( args.length > 3 ) ? Integer.parseInt   ( args [ 3 ] ) : M_DEFAULT_ENTITIES;
+
+        System.out.printf ( "%d engines, %.1f ticks/s, %d entities per engine, %d s\n", engines, tickRate, entities, seconds );
+        System.out.printf ( M_FORMAT_HEADER, "Threads", "Engines", "Ticks/s", "Jitter (ms)", "Busy (ms)", "Carrier", "Platform" );
+
+        runTrial ( false, engines, tickRate, seconds, entities );
+
+        if ( ECSLoopHost.isVirtualThreadSupported () )
+        {
+            runTrial ( true, engines, tickRate, seconds, entities );
+        }
+        else
+        {
+            System.out.println ( "Virtual threads are not supported by this JVM." );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // runTrial
+    //
+    // Description:
+    //
+    // - Start the engines on a loop host, measure them, stop them, and print one row of the results table.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static void runTrial ( Boolean virtual, int engineCount, double tickRate, int seconds, int entities ) throws InterruptedException
+    {
+        ThreadMXBean threadBean  = ManagementFactory.getThreadMXBean ();
+        ECSLoopHost  host        = new ECSLoopHost ( virtual );
+        ECSEngine[]  engines     = new ECSEngine [ engineCount ];
+        long[]       startTicks  = new long [ engineCount ];
+        long         busy        = 0;
+        long         platform    = 0;
+        long         elapsed     = 0;
+        double       utilisation = 0.0;
+        double       jitter      = 0.0;
+        long         ticks       = 0;
+
+        for ( int i = 0; i < engineCount; i++ )
+        {
+            engines [ i ] = createEngine ( tickRate, entities );
+
+            host.start ( engines [ i ] );
+        }
+
+        Thread.sleep ( M_WARMUP_TIME );
+
+        // Measure.
+
+        for ( int i = 0; i < engineCount; i++ )
+        {
+            startTicks [ i ] = engines [ i ].getTick ();
+        }
+
+        busy    = host.getBusyTime ();
+        elapsed = System.nanoTime ();
+
+        host.resetStatistics ();
+
+        Thread.sleep ( seconds * 1000L );
+
+        utilisation = host.getCarrierUtilisation ();
+        busy        = host.getBusyTime () - busy;
+        platform    = threadBean.getThreadCount ();
+
+        for ( int i = 0; i < engineCount; i++ )
+        {
+            ticks += engines [ i ].getTick () - startTicks [ i ];
+        }
+
+        elapsed = System.nanoTime () - elapsed;
+
+        host.stopAll ();
+
+        for ( ECSEngine engine : engines )
+        {
+            jitter += engine.getFramePacer ().getFrameTimeJitter ();
+        }
+
+        System.out.printf
+        (
+            M_FORMAT_ROW,
+            virtual ? "virtual" : "platform",
+            engineCount,
+            ticks / ( elapsed / 1.0e9 ) / engineCount,
+            jitter / engineCount / 1.0e6,
+            busy / 1.0e6 / Math.max ( 1, ticks ),
+            utilisation * 100.0,
+            platform
+        );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // createEngine
+    //
+    // Create an engine paced to the tick rate, with the physics system, and a few moving balls.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static ECSEngine createEngine ( double tickRate, int entities )
+    {
+        BenchmarkEngine engine = new BenchmarkEngine ();
+
+        engine.setFPSTargetEnabled ( true );
+        engine.setFPSTarget        ( tickRate );
+        engine.setFixedStepEnabled ( false );
+
+        engine.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, new SystemPhysicsEngine ( engine ) );
+
+        for ( int id = 0; id < entities; id++ )
+        {
+            ECSEntity        entity  = new ECSEntity ( id );
+            ComponentPhysics physics = new ComponentPhysics ();
+
+            physics.velocity.setVector ( 0.001 * ( id % 7 ), 0.001 * ( id % 5 ) );
+
+            entity.addComponent ( Constants.COMPONENT_TRANSFORM, new ComponentTransform () );
+            entity.addComponent ( Constants.COMPONENT_PHYSICS,   physics );
+
+            engine.addEntity ( id, entity );
+        }
+
+        return engine;
+    }
+}
@@ -0,0 +1,63 @@
+package rohin.gameengine.benchmark;
+
+import rohin.gameengine.Application.Constants;
+import rohin.gameengine.System.SystemPhysicsEngine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// PhysicsUpdateBenchmark
+//
+// Measures a full SystemPhysicsEngine update. One operation advances the physics simulation of every entity in the world by one time step.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class PhysicsUpdateBenchmark extends Benchmark
+{
+    // Constants.
+
+    public static final long M_TIME_STEP = 10;     // Simulation time step, measured in ms.
+
+    // Fields.
+
+    private SystemPhysicsEngine physics;    // System under test.
+
+    // Constructors.
+
+    public PhysicsUpdateBenchmark ( Boolean archetypeStorage )
+    {
+        super ( "SystemPhysicsEngine.update", archetypeStorage );
+    }
+
+    public PhysicsUpdateBenchmark ( Boolean archetypeStorage, Boolean sparseSetStorage )
+    {
+        super ( "SystemPhysicsEngine.update", archetypeStorage, sparseSetStorage );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: setUp, run
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void setUp ( int entityCount )
+    {
+        super.setUp ( entityCount );
+
+        this.physics = new SystemPhysicsEngine ( this.engine );
+
+        this.engine.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, this.physics );
+    }
+
+    @Override
+    public long run ()
+    {
+        this.physics.update ( M_TIME_STEP );
+
+        return this.physics.getQuery ().size ();
+    }
+
+    @Override
+    public void tearDown ()
+    {
+        this.engine.getScheduler ().shutdown ();
+
+        super.tearDown ();
+    }
+}
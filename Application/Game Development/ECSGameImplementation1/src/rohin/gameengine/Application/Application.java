@@ -4,13 +4,18 @@ package rohin.gameengine.Application;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferStrategy;
-import java.util.*;
+import java.io.File;
+import java.io.IOException;
 
 import rohin.gameengine.ApplicationSettings;
 import rohin.gameengine.ConsoleLogger;
+import rohin.gameengine.ECSCommandRecorder;
 import rohin.gameengine.ECSEngine;
 import rohin.gameengine.ECSEntity;
+import rohin.gameengine.ECSSnapshot;
+import rohin.gameengine.ECSSystem;
 import rohin.gameengine.GraphicsWindow;
+import rohin.gameengine.IntHashMap;
 import rohin.gameengine.StringTable;
 import rohin.gameengine.TextFormat;
 import rohin.gameengine.Vector2D;
@@ -29,7 +34,9 @@ import rohin.gameengine.GameEngine.GameEngineLevel2;
 import rohin.gameengine.GameEngine.GameEngineLevel3;
 import rohin.gameengine.GameEngine.GameEngineMenuSystem;
 import rohin.gameengine.GameEngine.GameEngineTest;
+import rohin.gameengine.System.SystemCollider;
 import rohin.gameengine.System.SystemExample;
+import rohin.gameengine.System.SystemPhysicsBatch;
 import rohin.gameengine.System.SystemPhysicsEngine;
 import rohin.gameengine.System.SystemRenderer;
 
@@ -107,9 +114,18 @@ public class Application
     
     // Application properties file: Game engine.
     
-    private String                  gameEngineResourcePath;         // Disk location, where game assets are loaded from.
-    private Boolean                 gameEngineDebugOverlayVisible;  // Debugging information overlay switch.
-    private Boolean                 gameEngineLoggingEnabled;       // Game engine specific logging switch.
+    private String                  gameEngineResourcePath;             // Disk location, where game assets are loaded from.
+    private Boolean                 gameEngineDebugOverlayVisible;      // Debugging information overlay switch.
+    private Boolean                 gameEngineLoggingEnabled;           // Game engine specific logging switch.
+    private Boolean                 gameEngineArchetypeStorageEnabled;  // Archetype component storage switch.
+    private Boolean                 gameEngineSparseSetStorageEnabled;  // Sparse set component storage switch.
+    private Boolean                 gameEngineParallelSchedulerEnabled; // Parallel system scheduler switch.
+    private int                     gameEngineParallelSchedulerThreads; // Number of parallel scheduler worker threads. Zero selects the number of available processors.
+    private int                     gameEngineParallelChunkSizeMin;     // Minimum number of entities per task, for systems that update their entities in parallel.
+    private Boolean                 gameEnginePhysicsBatchEnabled;      // Experimental batch physics integrator switch. See SystemPhysicsBatch.
+    private Boolean                 gameEngineProfilerEnabled;          // Frame and system timing profiler switch.
+    private int                     gameEngineProfilerReportPeriod;     // Time between profiler reports, measured in ms. Zero disables reporting.
+    private String                  gameEngineRecorderFile;             // Command record file. Empty disables command recording.
     
     // Application properties file: Game loop.
 
@@ -117,6 +133,9 @@ public class Application
     private int                     gameLoopDelayMin;               // Minimum loop iteration delay.
     private double                  gameLoopFPSTarget;              // Target Frames Per Second.
     private Boolean                 gameLoopFPSTargetEnabled;       // Choose whether to use acceleration fixed loop delay, or acceleration target FPS.
+    private Boolean                 gameLoopTimeStepFixedEnabled;   // Advance the simulation in fixed time steps, and interpolate rendering between them.
+    private int                     gameLoopTimeStepFixed;          // Fixed simulation time step, measured in ms.
+    private int                     gameLoopTimeStepStepsMax;       // Maximum number of simulation steps per frame.
     
     // String table
     
@@ -266,9 +285,18 @@ public class Application
         
         // Load game engine settings.
         
-        this.gameEngineResourcePath        = this.settings.getString  ( Constants.GAME_ENGINE_RESOURCE_PATH );
-        this.gameEngineDebugOverlayVisible = this.settings.getBoolean ( Constants.GAME_ENGINE_DEBUG_OVERLAY_VISIBLE );
-        this.gameEngineLoggingEnabled      = this.settings.getBoolean ( Constants.GAME_ENGINE_LOGGING_ENABLED );
+        this.gameEngineResourcePath             = this.settings.getString  ( Constants.GAME_ENGINE_RESOURCE_PATH );
+        this.gameEngineDebugOverlayVisible      = this.settings.getBoolean ( Constants.GAME_ENGINE_DEBUG_OVERLAY_VISIBLE );
+        this.gameEngineLoggingEnabled           = this.settings.getBoolean ( Constants.GAME_ENGINE_LOGGING_ENABLED );
+        this.gameEngineArchetypeStorageEnabled  = this.settings.getBoolean ( Constants.GAME_ENGINE_STORAGE_ARCHETYPE_ENABLED );
+        this.gameEngineSparseSetStorageEnabled  = this.settings.getBoolean ( Constants.GAME_ENGINE_STORAGE_SPARSE_SET_ENABLED );
+        this.gameEngineParallelSchedulerEnabled = this.settings.getBoolean ( Constants.GAME_ENGINE_SCHEDULER_PARALLEL_ENABLED );
+        this.gameEngineParallelSchedulerThreads = this.settings.getInteger ( Constants.GAME_ENGINE_SCHEDULER_PARALLEL_THREADS );
+        this.gameEngineParallelChunkSizeMin     = this.settings.getInteger ( Constants.GAME_ENGINE_SCHEDULER_PARALLEL_CHUNK_SIZE );
+        this.gameEnginePhysicsBatchEnabled      = this.settings.getBoolean ( Constants.GAME_ENGINE_PHYSICS_BATCH_ENABLED );
+        this.gameEngineProfilerEnabled          = this.settings.getBoolean ( Constants.GAME_ENGINE_PROFILER_ENABLED );
+        this.gameEngineProfilerReportPeriod     = this.settings.getInteger ( Constants.GAME_ENGINE_PROFILER_REPORT_PERIOD );
+        this.gameEngineRecorderFile             = this.settings.getString  ( Constants.GAME_ENGINE_RECORDER_FILE );
         
         // Load game loop settings.
         
@@ -277,6 +305,10 @@ public class Application
         this.gameLoopDelayFixed       =          this.settings.getInteger ( Constants.GAME_LOOP_DELAY_FIXED );
         this.gameLoopDelayMin         =          this.settings.getInteger ( Constants.GAME_LOOP_DELAY_MIN );
         
+        this.gameLoopTimeStepFixedEnabled = this.settings.getBoolean ( Constants.GAME_LOOP_TIME_STEP_FIXED_ENABLED );
+        this.gameLoopTimeStepFixed        = this.settings.getInteger ( Constants.GAME_LOOP_TIME_STEP_FIXED );
+        this.gameLoopTimeStepStepsMax     = this.settings.getInteger ( Constants.GAME_LOOP_TIME_STEP_STEPS_MAX );
+        
         // Initialize Application.
                         
         this.applicationState = ApplicationState.EXIT;
@@ -429,12 +461,31 @@ public class Application
         this.gameTest.setResourcePath   ( this.gameEngineResourcePath );
         this.gameTest.setloggingEnabled ( this.gameEngineLoggingEnabled );
         
+        // Initialize component storage.
+        
+        this.gameTest.setArchetypeStorageEnabled ( this.gameEngineArchetypeStorageEnabled );
+        this.gameTest.setSparseSetStorageEnabled ( this.gameEngineSparseSetStorageEnabled );
+        
+        // Initialize system scheduling.
+        
+        this.gameTest.setParallelSchedulerEnabled    ( this.gameEngineParallelSchedulerEnabled );
+        this.gameTest.getScheduler ().setParallelism ( this.gameEngineParallelSchedulerThreads );
+        
+        // Initialize profiling.
+        
+        this.gameTest.getProfiler ().setEnabled      ( this.gameEngineProfilerEnabled );
+        this.gameTest.getProfiler ().setReportPeriod ( this.gameEngineProfilerReportPeriod );
+        
         // Initialize game loop.
         
         this.gameTest.setFPSTargetEnabled ( this.gameLoopFPSTargetEnabled );
         this.gameTest.setFPSTarget        ( this.gameLoopFPSTarget );
         this.gameTest.setLoopDelayFixed   ( this.gameLoopDelayFixed );
         this.gameTest.setLoopDelayMin     ( this.gameLoopDelayMin );
+        
+        this.gameTest.setFixedStepEnabled ( this.gameLoopTimeStepFixedEnabled );
+        this.gameTest.setFixedStep        ( this.gameLoopTimeStepFixed );
+        this.gameTest.setFixedStepMax     ( this.gameLoopTimeStepStepsMax );
                
         // Console logger.
                   
@@ -451,11 +502,27 @@ public class Application
     {  
         // Add systems to game engine. Game engine level ≡ GameEngineTest.
         
-        GameEngineTest gameTest = this.gameTest;
+        GameEngineTest gameTest      = this.gameTest;
+        ECSSystem      physicsEngine = null;
+        
+        // Physics integrator. Either the experimental batch integrator, or the per entity integrator, which runs in parallel.
+        
+        if ( this.gameEnginePhysicsBatchEnabled )
+        {
+            physicsEngine = new SystemPhysicsBatch ( gameTest );
+        }
+        else
+        {
+            SystemPhysicsEngine parallelPhysicsEngine = new SystemPhysicsEngine ( gameTest );
+            
+            parallelPhysicsEngine.setMinimumChunkSize ( this.gameEngineParallelChunkSizeMin );
+            
+            physicsEngine = parallelPhysicsEngine;
+        }
         
         gameTest.addSystem ( Constants.SYSTEM_EXAMPLE,        new SystemExample       ( gameTest ) );
-        gameTest.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, new SystemPhysicsEngine ( gameTest ) );
-        gameTest.addSystem ( Constants.SYSTEM_COLLIDER,       new SystemExample       ( gameTest ) );
+        gameTest.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, physicsEngine                        );
+        gameTest.addSystem ( Constants.SYSTEM_COLLIDER,       new SystemCollider      ( gameTest ) );
         gameTest.addSystem ( Constants.SYSTEM_RENDERER,       new SystemRenderer      ( gameTest ) );
             
         // Console logger.
@@ -516,7 +583,7 @@ public class Application
             // Local working variables.
             
             ECSEngine                    gameEngine = null;
-            HashMap <Integer, ECSEntity> entities   = null;
+            IntHashMap <ECSEntity>       entities   = null;
             ComponentTransform           transform  = null;            
             ComponentPhysics             physics    = null;
             ComponentGeometry            geometry   = null;
@@ -606,7 +673,7 @@ public class Application
             // Local working variables.
             
             ECSEngine                    gameEngine = null;
-            HashMap <Integer, ECSEntity> entities   = null;
+            IntHashMap <ECSEntity>       entities   = null;
             ComponentTransform           transform  = null;            
             ComponentPhysics             physics    = null;
             ComponentGeometry            geometry   = null;
@@ -744,7 +811,7 @@ public class Application
 
             case GAME_TEST:
                 logger.log (  "State = GAME_TEST" );
-                this.gameTest.run ();
+                runGameTest ();
                 this.applicationState = ApplicationState.SHUT_DOWN;
                 break;
             }
@@ -758,6 +825,101 @@ public class Application
     
     
 
+    // ---------------------------------------------------------------------------------------------------------------------------------------------------------
+    // RunGameTest
+    //
+    // Run the test level game loop.
+    //
+    // If a command record file is configured, then the world is saved to a snapshot file next to it, and every command executed by the game loop
+    // is recorded to it, so that the session can be replayed headless with MainReplay. A previous recording is replaced.
+    //
+    // The recorder is closed when the game loop ends, whether normally or by an exception, and by a shutdown hook when the application exits from
+    // within the game loop, e.g. when the window is closed. So sessions that end in an exception, or an exit, keep all of their records.
+    //
+    // ---------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private void runGameTest ()
+    {
+        ECSCommandRecorder recorder = null;
+        Thread             hook     = null;
+        
+        try
+        {
+            if ( !this.gameEngineRecorderFile.isEmpty () )
+            {
+                File recordFile = new File ( this.gameEngineRecorderFile );
+                
+                recordFile.delete ();
+                
+                ECSSnapshot.save ( this.gameTest, new File ( this.gameEngineRecorderFile + Constants.RECORDER_SNAPSHOT_FILE_EXTENSION ) );
+                
+                recorder = new ECSCommandRecorder ( this.gameTest, recordFile );
+                hook     = createRecorderShutdownHook ( recorder );
+                
+                Runtime.getRuntime ().addShutdownHook ( hook );
+                
+                recorder.start ();
+            }
+            
+            this.gameTest.run ();
+        }
+        catch ( IOException e )
+        {
+            TextFormat.printFormattedException ( e, false );
+        }
+        finally
+        {
+            if ( recorder != null )
+            {
+                removeShutdownHook ( hook );
+                closeRecorder      ( recorder );
+            }
+        }
+    }
+    
+    // ---------------------------------------------------------------------------------------------------------------------------------------------------------
+    // createRecorderShutdownHook, removeShutdownHook, closeRecorder
+    //
+    // Close a command recorder when the JVM exits, and close it when the game loop ends.
+    //
+    // ---------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private static Thread createRecorderShutdownHook ( final ECSCommandRecorder recorder )
+    {
+        return new Thread ( "ECSCommandRecorder shutdown hook" )
+        {
+            @Override
+            public void run ()
+            {
+                closeRecorder ( recorder );
+            }
+        };
+    }
+    
+    private static void removeShutdownHook ( Thread hook )
+    {
+        try
+        {
+            Runtime.getRuntime ().removeShutdownHook ( hook );
+        }
+        catch ( IllegalStateException e )
+        {
+            // The JVM is already shutting down, and the hook closes the recorder.
+        }
+    }
+    
+    private static void closeRecorder ( ECSCommandRecorder recorder )
+    {
+        try
+        {
+            recorder.close ();
+        }
+        catch ( IOException e )
+        {
+            TextFormat.printFormattedException ( e, false );
+        }
+    }
+
     // ---------------------------------------------------------------------------------------------------------------------------------------------------------
     // CompileApplicationWindowTitle
     //
@@ -9,6 +9,10 @@ public class Constants
     public static final String FILE_STRING_TABLE_KLINGON = "string_table_klingon.xml";
     public static final String FILE_STRING_TABLE_SNOOP   = "string_table_snoop.xml";
     
+    // Command recording.
+    
+    public static final String RECORDER_SNAPSHOT_FILE_EXTENSION = ".snapshot";    // Appended to the command record file name, to name the world snapshot taken when recording starts.
+    
     // Application properties File: Application settings.
     
     public static final String FILE_APPLICATION_SETTINGS              = "game_engine_1.0.properties"; 
@@ -42,16 +46,28 @@ public class Constants
             
     // Application properties file: Game Engine.
     
-    public static final String GAME_ENGINE_RESOURCE_PATH         = "GameEngine.Resource.Path";
-    public static final String GAME_ENGINE_DEBUG_OVERLAY_VISIBLE = "GameEngine.DebugOverlay.Visible";
-    public static final String GAME_ENGINE_LOGGING_ENABLED       = "GameEngine.Logging.Enabled";
+    public static final String GAME_ENGINE_RESOURCE_PATH                 = "GameEngine.Resource.Path";
+    public static final String GAME_ENGINE_DEBUG_OVERLAY_VISIBLE         = "GameEngine.DebugOverlay.Visible";
+    public static final String GAME_ENGINE_LOGGING_ENABLED               = "GameEngine.Logging.Enabled";
+    public static final String GAME_ENGINE_STORAGE_ARCHETYPE_ENABLED     = "GameEngine.Storage.Archetype.Enabled";
+    public static final String GAME_ENGINE_STORAGE_SPARSE_SET_ENABLED    = "GameEngine.Storage.SparseSet.Enabled";
+    public static final String GAME_ENGINE_SCHEDULER_PARALLEL_ENABLED    = "GameEngine.Scheduler.Parallel.Enabled";
+    public static final String GAME_ENGINE_SCHEDULER_PARALLEL_THREADS    = "GameEngine.Scheduler.Parallel.Threads";
+    public static final String GAME_ENGINE_SCHEDULER_PARALLEL_CHUNK_SIZE = "GameEngine.Scheduler.Parallel.ChunkSize.Min";
+    public static final String GAME_ENGINE_PHYSICS_BATCH_ENABLED         = "GameEngine.Physics.Batch.Enabled";
+    public static final String GAME_ENGINE_PROFILER_ENABLED              = "GameEngine.Profiler.Enabled";
+    public static final String GAME_ENGINE_PROFILER_REPORT_PERIOD        = "GameEngine.Profiler.ReportPeriod";
+    public static final String GAME_ENGINE_RECORDER_FILE                 = "GameEngine.Recorder.File";
     
     // Application properties File: Game Loop.
                                                                
-    public static final String GAME_LOOP_FPS_TARGET_ENABLED = "GameLoop.FrameRate.Target.Enabled";
-    public static final String GAME_LOOP_FPS_TARGET         = "GameLoop.FrameRate.Target";
-    public static final String GAME_LOOP_DELAY_FIXED        = "GameLoop.Delay.Fixed";
-    public static final String GAME_LOOP_DELAY_MIN          = "GameLoop.Delay.Min";
+    public static final String GAME_LOOP_FPS_TARGET_ENABLED      = "GameLoop.FrameRate.Target.Enabled";
+    public static final String GAME_LOOP_FPS_TARGET              = "GameLoop.FrameRate.Target";
+    public static final String GAME_LOOP_DELAY_FIXED             = "GameLoop.Delay.Fixed";
+    public static final String GAME_LOOP_DELAY_MIN               = "GameLoop.Delay.Min";
+    public static final String GAME_LOOP_TIME_STEP_FIXED_ENABLED = "GameLoop.TimeStep.Fixed.Enabled";
+    public static final String GAME_LOOP_TIME_STEP_FIXED         = "GameLoop.TimeStep.Fixed";
+    public static final String GAME_LOOP_TIME_STEP_STEPS_MAX     = "GameLoop.TimeStep.StepsMax";
     
     // World to screen projection parameters.
     
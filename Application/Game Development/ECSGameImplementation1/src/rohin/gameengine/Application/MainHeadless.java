@@ -0,0 +1,146 @@
+package rohin.gameengine.Application;
+
+import rohin.gameengine.*;
+import rohin.gameengine.Component.*;
+import rohin.gameengine.System.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// MainHeadless
+//
+// Runs the game simulation without a display, e.g. on a server.
+//
+// - The simulation systems are registered with an ECSHeadlessEngine, and the engine is populated with moving balls, which SystemCollider tests for
+//   collisions. No render systems are created, so AWT is never initialized.
+// - The simulation is run for a fixed number of ticks, as fast as possible, and the tick rate is printed to the console.
+// - With more than one room, each room is a separate engine, and all rooms are ticked concurrently by an ECSEngineHost, as they would be on a
+//   server hosting several matches.
+// - The physics integrator is SystemPhysicsEngine, or the experimental SystemPhysicsBatch if the physics argument is "batch".
+//
+// Usage:
+//
+//     MainHeadless [ <ticks> [ <entities> [ <rooms> [ <physics> ] ] ] ]
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class MainHeadless
+{
+    // Constants.
+
+    public static final int    M_DEFAULT_TICKS    = 10000;     // Number of ticks to run.
+    public static final int    M_DEFAULT_ENTITIES = 1000;      // Number of balls to simulate, per room.
+    public static final int    M_DEFAULT_ROOMS    = 1;         // Number of engines to simulate.
+    public static final int    M_ENTITY_ID_BASE   = 1000;      // First entity ID, above the IDs reserved by Constants.
+    public static final double M_BALL_RADIUS      = 0.005;     // Radius of the balls' collision geometry.
+    public static final String M_PHYSICS_BATCH    = "batch";   // Physics argument that selects the batch physics integrator.
+
+    public static void main ( String [] args )
+    {
+        try
+        {
+            int     ticks    = ( args.length > 0 ) ? Integer.parseInt ( args [ 0 ] ) : M_DEFAULT_TICKS;
+            int     entities = ( args.length > 1 ) ? Integer.parseInt ( args [ 1 ] ) : M_DEFAULT_ENTITIES;
+            int     rooms    = ( args.length > 2 ) ? Integer.parseInt ( args [ 2 ] ) : M_DEFAULT_ROOMS;
+            Boolean batch    = ( args.length > 3 ) && args [ 3 ].equalsIgnoreCase ( M_PHYSICS_BATCH );
+
+            if ( rooms <= 1 )
+            {
+                ECSHeadlessEngine engine = createRoom ( entities, batch );
+
+                // Run the simulation.
+
+                long start = System.nanoTime ();
+
+                engine.runTicks ( ticks );
+
+                double seconds = ( System.nanoTime () - start ) / 1.0e9;
+
+                engine.shutdown ();
+
+                System.out.printf ( "%d ticks, %d entities, %.3f s, %.1f ticks/s\n", ticks, entities, seconds, ticks / seconds );
+            }
+            else
+            {
+                ECSEngineHost host = new ECSEngineHost ();
+
+                for ( int i = 0; i < rooms; i++ )
+                {
+                    host.add ( createRoom ( entities, batch ) );
+                }
+
+                // Run all rooms concurrently.
+
+                long start = System.nanoTime ();
+
+                host.runTicks ( ticks );
+
+                double seconds = ( System.nanoTime () - start ) / 1.0e9;
+
+                host.shutdown ();
+
+                System.out.printf ( "%d ticks, %d rooms, %d entities per room, %.3f s, %.1f room ticks/s\n", ticks, rooms, entities, seconds, rooms * ticks / seconds );
+            }
+        }
+        catch ( Exception e )
+        {
+            TextFormat.printFormattedException ( e, true );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // createRoom
+    //
+    // Create an engine with the simulation systems, populated with moving balls.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static ECSHeadlessEngine createRoom ( int entities, Boolean batch )
+    {
+        ECSHeadlessEngine engine = new ECSHeadlessEngine ();
+
+        engine.setFixedStep ( ECSEngine.M_GAME_LOOP_DEFAULT_FIXED_STEP );
+
+        if ( batch )
+        {
+            engine.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, new SystemPhysicsBatch  ( engine ) );
+        }
+        else
+        {
+            engine.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, new SystemPhysicsEngine ( engine ) );
+        }
+        
+        engine.addSystem ( Constants.SYSTEM_COLLIDER,       new SystemCollider      ( engine ) );
+
+        for ( int i = 0; i < entities; i++ )
+        {
+            int id = M_ENTITY_ID_BASE + i;
+
+            engine.addEntity ( id, createBall ( engine, id ) );
+        }
+
+        return engine;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // createBall
+    //
+    // Create a ball with a transform, physics and geometry component, moving in a direction derived from its ID.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static ECSEntity createBall ( ECSEngine engine, int id )
+    {
+        ECSEntity          entity    = new ECSEntity ( id );
+        ComponentTransform transform = new ComponentTransform ();
+        ComponentPhysics   physics   = new ComponentPhysics ();
+        ComponentGeometry  geometry  = new ComponentGeometry ();
+
+        entity.setOwner ( engine );
+
+        transform.translation.setVector ( ( id % 100 ) * 0.01, ( id % 37 ) * 0.01 );
+        physics.velocity.setVector ( 0.0001 * ( id % 7 - 3 ), 0.0001 * ( id % 5 - 2 ) );
+        geometry.shapes.add ( new ComponentShapeCircle ( M_BALL_RADIUS ) );
+
+        entity.addComponent ( Constants.COMPONENT_TRANSFORM, transform );
+        entity.addComponent ( Constants.COMPONENT_PHYSICS,   physics   );
+        entity.addComponent ( Constants.COMPONENT_GEOMETRY,  geometry  );
+
+        return entity;
+    }
+}
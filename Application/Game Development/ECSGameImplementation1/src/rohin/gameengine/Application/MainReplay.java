@@ -0,0 +1,68 @@
+package rohin.gameengine.Application;
+
+import java.io.File;
+
+import rohin.gameengine.*;
+import rohin.gameengine.System.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// MainReplay
+//
+// Replays a recorded game session without a display, as fast as possible. Used to reproduce desyncs, and to run regression simulations.
+//
+// - The world is restored from the snapshot taken when recording started, and the recorded commands are fed back into an ECSHeadlessEngine on the
+//   ticks they were originally executed on. See ECSCommandRecorder and ECSCommandReplay.
+// - Sessions are recorded by setting GameEngine.Recorder.File in the application properties file. Replays only reproduce sessions that were run
+//   with the fixed time step game loop, with the same fixed time step.
+// - The tick rate, and a hash of the final world state, are printed to the console. Replays of the same session print the same hash.
+//
+// Usage:
+//
+//     MainReplay <record file> [ <fixed time step> [ <snapshot file> ] ]
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class MainReplay
+{
+    public static void main ( String [] args )
+    {
+        try
+        {
+            if ( args.length < 1 )
+            {
+                System.out.println ( "Usage: MainReplay <record file> [ <fixed time step> [ <snapshot file> ] ]" );
+                return;
+            }
+
+            File              recordFile   = new File ( args [ 0 ] );
+            int               fixedStep    = ( args.length > 1 ) ? Integer.parseInt ( args [ 1 ] ) : ECSEngine.M_GAME_LOOP_DEFAULT_FIXED_STEP;
+            File              snapshotFile = new File ( ( args.length > 2 ) ? args [ 2 ] : args [ 0 ] + Constants.RECORDER_SNAPSHOT_FILE_EXTENSION );
+            ECSHeadlessEngine engine       = new ECSHeadlessEngine ();
+
+            engine.setFixedStep ( fixedStep );
+
+            engine.addSystem ( Constants.SYSTEM_PHYSICS_ENGINE, new SystemPhysicsEngine ( engine ) );
+
+            ECSSnapshot.load ( engine, snapshotFile );
+
+            // Replay the recorded commands.
+
+            ECSCommandReplay replay  = new ECSCommandReplay ( recordFile );
+            long             start   = System.nanoTime ();
+            long             ticks   = replay.replay ( engine );
+            double           seconds = ( System.nanoTime () - start ) / 1.0e9;
+
+            engine.shutdown ();
+
+            // Hash the final world state, so that replays can be compared.
+
+            ECSSnapshotBuffer snapshot = ECSSnapshot.capture ( engine );
+            int               hash     = snapshot.getByteBuffer ().hashCode ();
+
+            System.out.printf ( "%d commands, %d ticks, %.3f s, %.1f ticks/s, world hash %08x\n", replay.getPostedCount (), ticks, seconds, ticks / seconds, hash );
+        }
+        catch ( Exception e )
+        {
+            TextFormat.printFormattedException ( e, true );
+        }
+    }
+}
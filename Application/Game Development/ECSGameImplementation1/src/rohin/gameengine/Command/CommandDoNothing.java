@@ -1,11 +1,23 @@
 package rohin.gameengine.Command;
 
-import rohin.gameengine.ICommand;
+import rohin.gameengine.ECSEngine;
+import rohin.gameengine.ECSSnapshotBuffer;
+import rohin.gameengine.IRecordableCommand;
 
-public class CommandDoNothing implements ICommand
+public class CommandDoNothing implements IRecordableCommand
 {
     @ Override
     public void execute ()
     {
     }
+    
+    @ Override
+    public void writeRecord ( ECSSnapshotBuffer buffer )
+    {
+    }
+    
+    @ Override
+    public void readRecord ( ECSEngine engine, ECSSnapshotBuffer buffer )
+    {
+    }
 }
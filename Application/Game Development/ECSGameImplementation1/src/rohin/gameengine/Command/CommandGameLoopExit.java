@@ -1,12 +1,18 @@
 package rohin.gameengine.Command;
 
 import rohin.gameengine.ECSEngine;
-import rohin.gameengine.ICommand;
+import rohin.gameengine.ECSSnapshotBuffer;
+import rohin.gameengine.IRecordableCommand;
 
-public class CommandGameLoopExit implements ICommand
+public class CommandGameLoopExit implements IRecordableCommand
 {
     private ECSEngine gameEngine;
     
+    public CommandGameLoopExit ()
+    {
+        this ( null );
+    }
+    
     public CommandGameLoopExit ( ECSEngine gameEngine )
     {
         this.gameEngine = gameEngine;
@@ -17,4 +23,15 @@ public class CommandGameLoopExit implements ICommand
     {
         this.gameEngine.setLoopRunning ( false );
     }
+    
+    @ Override
+    public void writeRecord ( ECSSnapshotBuffer buffer )
+    {
+    }
+    
+    @ Override
+    public void readRecord ( ECSEngine engine, ECSSnapshotBuffer buffer )
+    {
+        this.gameEngine = engine;
+    }
 }
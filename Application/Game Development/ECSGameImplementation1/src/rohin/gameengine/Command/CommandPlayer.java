@@ -0,0 +1,37 @@
+package rohin.gameengine.Command;
+
+import rohin.gameengine.ECSEngine;
+import rohin.gameengine.ECSSnapshotBuffer;
+import rohin.gameengine.IRecordableCommand;
+
+// Base class of commands that act on a player entity. The player is recorded by entity key, so that the command can be replayed.
+
+public abstract class CommandPlayer implements IRecordableCommand
+{
+    protected ECSEngine gameEngine;
+    protected int       playerID;
+    
+    public CommandPlayer ()
+    {
+        this ( null, 0 );
+    }
+    
+    public CommandPlayer ( ECSEngine gameEngine, int playerID )
+    {
+        this.gameEngine = gameEngine;
+        this.playerID   = playerID;
+    }
+    
+    @ Override
+    public void writeRecord ( ECSSnapshotBuffer buffer )
+    {
+        buffer.writeInt ( this.playerID );
+    }
+    
+    @ Override
+    public void readRecord ( ECSEngine engine, ECSSnapshotBuffer buffer )
+    {
+        this.gameEngine = engine;
+        this.playerID   = buffer.readInt ();
+    }
+}
@@ -2,19 +2,18 @@ package rohin.gameengine.Command;
 
 import rohin.gameengine.ECSEngine;
 import rohin.gameengine.ECSEntity;
-import rohin.gameengine.ICommand;
 import rohin.gameengine.Application.Constants;
 import rohin.gameengine.Component.ComponentPhysics;
 
-public class CommandPlayerBreak implements ICommand
+public class CommandPlayerBreak extends CommandPlayer
 {
-    private ECSEngine gameEngine;
-    private int       playerID;
+    public CommandPlayerBreak ()
+    {
+    }
     
     public CommandPlayerBreak ( ECSEngine gameEngine, int playerID )
     {
-        this.gameEngine = gameEngine;
-        this.playerID   = playerID;
+        super ( gameEngine, playerID );
     }
     
     @ Override
@@ -34,5 +33,9 @@ public class CommandPlayerBreak implements ICommand
         physics.accelerateDown  = false;
         physics.accelerateLeft  = false;
         physics.accelerateRight = false;
+        
+        // Notify change tracking systems.
+        
+        this.gameEngine.markChanged ( physics );
     }
 }
@@ -2,19 +2,18 @@ package rohin.gameengine.Command;
 
 import rohin.gameengine.ECSEngine;
 import rohin.gameengine.ECSEntity;
-import rohin.gameengine.ICommand;
 import rohin.gameengine.Application.Constants;
 import rohin.gameengine.Component.ComponentPhysics;
 
-public class CommandPlayerBreakDown implements ICommand
+public class CommandPlayerBreakDown extends CommandPlayer
 {
-    private ECSEngine gameEngine;
-    private int       playerID;
+    public CommandPlayerBreakDown ()
+    {
+    }
     
     public CommandPlayerBreakDown ( ECSEngine gameEngine, int playerID )
     {
-        this.gameEngine = gameEngine;
-        this.playerID   = playerID;
+        super ( gameEngine, playerID );
     }
     
     @ Override
@@ -32,5 +31,8 @@ public class CommandPlayerBreakDown implements ICommand
                  
         physics.accelerateDown = false;
         
+        // Notify change tracking systems.
+        
+        this.gameEngine.markChanged ( physics );
     }
 }
@@ -2,19 +2,18 @@ package rohin.gameengine.Command;
 
 import rohin.gameengine.ECSEngine;
 import rohin.gameengine.ECSEntity;
-import rohin.gameengine.ICommand;
 import rohin.gameengine.Application.Constants;
 import rohin.gameengine.Component.ComponentPhysics;
 
-public class CommandPlayerBreakRight implements ICommand
+public class CommandPlayerBreakRight extends CommandPlayer
 {
-    private ECSEngine gameEngine;
-    private int       playerID;
+    public CommandPlayerBreakRight ()
+    {
+    }
     
     public CommandPlayerBreakRight ( ECSEngine gameEngine, int playerID )
     {
-        this.gameEngine = gameEngine;
-        this.playerID   = playerID;
+        super ( gameEngine, playerID );
     }
     
     @ Override
@@ -31,5 +30,9 @@ public class CommandPlayerBreakRight implements ICommand
         // Perform operations on component/s.        
                 
         physics.accelerateRight = false;
+        
+        // Notify change tracking systems.
+        
+        this.gameEngine.markChanged ( physics );
     }
 }
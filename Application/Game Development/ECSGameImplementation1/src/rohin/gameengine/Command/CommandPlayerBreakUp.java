@@ -2,19 +2,18 @@ package rohin.gameengine.Command;
 
 import rohin.gameengine.ECSEngine;
 import rohin.gameengine.ECSEntity;
-import rohin.gameengine.ICommand;
 import rohin.gameengine.Application.Constants;
 import rohin.gameengine.Component.ComponentPhysics;
 
-public class CommandPlayerBreakUp implements ICommand
+public class CommandPlayerBreakUp extends CommandPlayer
 {
-    private ECSEngine gameEngine;
-    private int       playerID;
+    public CommandPlayerBreakUp ()
+    {
+    }
     
     public CommandPlayerBreakUp ( ECSEngine gameEngine, int playerID )
     {
-        this.gameEngine = gameEngine;
-        this.playerID   = playerID;
+        super ( gameEngine, playerID );
     }
     
     @ Override
@@ -31,5 +30,9 @@ public class CommandPlayerBreakUp implements ICommand
         // Perform operations on component/s.        
         
         physics.accelerateUp = false;
+        
+        // Notify change tracking systems.
+        
+        this.gameEngine.markChanged ( physics );
     }
 }
@@ -1,17 +1,16 @@
 package rohin.gameengine.Command;
 
 import rohin.gameengine.ECSEngine;
-import rohin.gameengine.ICommand;
 
-public class CommandPlayerFire implements ICommand
+public class CommandPlayerFire extends CommandPlayer
 {
-    private ECSEngine gameEngine;
-    private int       playerID;
+    public CommandPlayerFire ()
+    {
+    }
     
     public CommandPlayerFire ( ECSEngine gameEngine, int playerID )
     {
-        this.gameEngine = gameEngine;
-        this.playerID   = playerID;
+        super ( gameEngine, playerID );
     }
     
     @ Override
@@ -2,19 +2,18 @@ package rohin.gameengine.Command;
 
 import rohin.gameengine.ECSEngine;
 import rohin.gameengine.ECSEntity;
-import rohin.gameengine.ICommand;
 import rohin.gameengine.Application.Constants;
 import rohin.gameengine.Component.ComponentPhysics;
 
-public class CommandPlayerMoveDown implements ICommand
+public class CommandPlayerMoveDown extends CommandPlayer
 {
-    private ECSEngine gameEngine;
-    private int       playerID;
+    public CommandPlayerMoveDown ()
+    {
+    }
     
     public CommandPlayerMoveDown ( ECSEngine gameEngine, int playerID )
     {
-        this.gameEngine = gameEngine;
-        this.playerID   = playerID;
+        super ( gameEngine, playerID );
     }
     
     @ Override
@@ -30,6 +29,10 @@ public class CommandPlayerMoveDown implements ICommand
         
         // Perform operations on component/s.        
         
-        physics.accelerateDown = true;      
+        physics.accelerateDown = true;
+        
+        // Notify change tracking systems.
+        
+        this.gameEngine.markChanged ( physics );
     }
 }
@@ -2,19 +2,18 @@ package rohin.gameengine.Command;
 
 import rohin.gameengine.ECSEngine;
 import rohin.gameengine.ECSEntity;
-import rohin.gameengine.ICommand;
 import rohin.gameengine.Application.Constants;
 import rohin.gameengine.Component.ComponentPhysics;
 
-public class CommandPlayerMoveRight implements ICommand
+public class CommandPlayerMoveRight extends CommandPlayer
 {
-    private ECSEngine gameEngine;
-    private int       playerID;
+    public CommandPlayerMoveRight ()
+    {
+    }
     
     public CommandPlayerMoveRight ( ECSEngine gameEngine, int playerID )
     {
-        this.gameEngine = gameEngine;
-        this.playerID   = playerID;
+        super ( gameEngine, playerID );
     }
     
     @ Override
@@ -35,7 +34,11 @@ public class CommandPlayerMoveRight implements ICommand
         
         // Perform operations on component/s.        
         
-        physics.accelerateRight = true; 
+        physics.accelerateRight = true;
+        
+        // Notify change tracking systems.
+        
+        this.gameEngine.markChanged ( physics );
     }
 
 }
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import rohin.gameengine.ECSComponent;
+import rohin.gameengine.ECSSnapshotBuffer;
 
 public class ComponentGeometry extends ECSComponent
 {
@@ -16,4 +17,95 @@ public class ComponentGeometry extends ECSComponent
         this.shapes = new ArrayList <ComponentShape> ();
         this.color  = Color.GREEN;
     }
+    
+    // Reset to the state of a new ComponentGeometry, reusing the existing shape list. Called when the component is released to a pool.
+    
+    @Override
+    public void reset ()
+    {
+        this.shapes.clear ();
+        
+        this.color = Color.GREEN;
+    }
+    
+    // Snapshot serialization. Each shape is written as its class name and schema version, followed by its own payload. Existing shapes are
+    // overwritten in place when their class matches (readString returns the current name itself), so restoring an unchanged geometry does not
+    // allocate. See ECSComponent.writeSnapshot.
+    
+    @Override
+    public int getSnapshotVersion ()
+    {
+        return 1;
+    }
+    
+    @Override
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        buffer.writeInt ( this.color.getRGB () );
+        buffer.writeInt ( this.shapes.size () );
+        
+        for ( ComponentShape shape : this.shapes )
+        {
+            buffer.writeString ( shape.getClass ().getName () );
+            buffer.writeInt    ( shape.getSnapshotVersion () );
+            
+            shape.writeSnapshot ( buffer );
+        }
+    }
+    
+    @Override
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+        int argb = buffer.readInt ();
+        
+        if ( this.color.getRGB () != argb )
+        {
+            this.color = new Color ( argb, true );
+        }
+        
+        int shapeCount = buffer.readInt ();
+        
+        for ( int i = 0; i < shapeCount; i++ )
+        {
+            ComponentShape shape        = ( i < this.shapes.size () ) ? this.shapes.get ( i ) : null;
+            String         currentName  = ( shape == null ) ? null : shape.getClass ().getName ();
+            String         className    = buffer.readString ( currentName );
+            int            shapeVersion = buffer.readInt ();
+            
+            if ( className != currentName )
+            {
+                shape = newShape ( className );
+                
+                if ( i < this.shapes.size () )
+                {
+                    this.shapes.set ( i, shape );
+                }
+                else
+                {
+                    this.shapes.add ( shape );
+                }
+            }
+            
+            shape.readSnapshot ( buffer, shapeVersion );
+        }
+        
+        while ( this.shapes.size () > shapeCount )
+        {
+            this.shapes.remove ( this.shapes.size () - 1 );
+        }
+    }
+    
+    // Instantiate a shape by class name, when restoring a snapshot.
+    
+    private static ComponentShape newShape ( String className )
+    {
+        try
+        {
+            return ( ComponentShape ) Class.forName ( className ).getConstructor ().newInstance ();
+        }
+        catch ( ReflectiveOperationException | ClassCastException e )
+        {
+            throw new IllegalStateException ( "Unable to create a shape of class " + className + ".", e );
+        }
+    }
 }
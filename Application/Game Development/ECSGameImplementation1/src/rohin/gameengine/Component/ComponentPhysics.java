@@ -1,6 +1,7 @@
 package rohin.gameengine.Component;
 
 import rohin.gameengine.ECSComponent;
+import rohin.gameengine.ECSSnapshotBuffer;
 import rohin.gameengine.Vector2D;
 
 public class ComponentPhysics extends ECSComponent
@@ -64,4 +65,63 @@ public class ComponentPhysics extends ECSComponent
         this.accelerateLeft  = accelerator;
         this.accelerateRight = accelerator;
     }
+    
+    // Reset to the state of a new ComponentPhysics, reusing the existing vectors. Called when the component is released to a pool.
+    
+    @Override
+    public void reset ()
+    {
+        this.mass = 0.0;
+        
+        this.velocity.setVector     ( 0.0, 0.0 );
+        this.acceleration.setVector ( 0.0, 0.0 );
+        this.force.setVector        ( 0.0, 0.0 );
+        
+        this.vMin = 0.0;
+        this.vMax = 1.5;
+        
+        this.accelerateUp    = false;
+        this.accelerateDown  = false;
+        this.accelerateLeft  = false;
+        this.accelerateRight = false;
+    }
+    
+    // Snapshot serialization. See ECSComponent.writeSnapshot.
+    
+    @Override
+    public int getSnapshotVersion ()
+    {
+        return 1;
+    }
+    
+    @Override
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        buffer.writeVector  ( this.velocity );
+        buffer.writeVector  ( this.acceleration );
+        buffer.writeVector  ( this.force );
+        buffer.writeDouble  ( this.mass );
+        buffer.writeDouble  ( this.vMin );
+        buffer.writeDouble  ( this.vMax );
+        buffer.writeBoolean ( this.accelerateUp );
+        buffer.writeBoolean ( this.accelerateDown );
+        buffer.writeBoolean ( this.accelerateLeft );
+        buffer.writeBoolean ( this.accelerateRight );
+    }
+    
+    @Override
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+        buffer.readVector ( this.velocity );
+        buffer.readVector ( this.acceleration );
+        buffer.readVector ( this.force );
+        
+        this.mass            = buffer.readDouble ();
+        this.vMin            = buffer.readDouble ();
+        this.vMax            = buffer.readDouble ();
+        this.accelerateUp    = buffer.readBoolean ();
+        this.accelerateDown  = buffer.readBoolean ();
+        this.accelerateLeft  = buffer.readBoolean ();
+        this.accelerateRight = buffer.readBoolean ();
+    }
 }
@@ -1,6 +1,7 @@
 package rohin.gameengine.Component;
 
 import rohin.gameengine.ECSComponent;
+import rohin.gameengine.ECSSnapshotBuffer;
 
 public class ComponentProjection2D extends ECSComponent
 {
@@ -48,6 +49,14 @@ public class ComponentProjection2D extends ECSComponent
     public double[] aspect;
     public double   layer;
     
+    // Derived values. Cached by SystemRenderer, and recalculated whenever the view port or aspect differ from the values they were derived from.
+    // The source values start as NaN, which never compares equal, so that new projections are always calculated.
+    
+    public double[] screenSize;
+    public double   aspectRatio;
+    public double[] derivedViewPort;
+    public double[] derivedAspect;
+    
     public ComponentProjection2D ()
     {
         initialize
@@ -74,7 +83,60 @@ public class ComponentProjection2D extends ECSComponent
         this.viewPort = viewPort;
         this.aspect   = aspect;
         this.layer    = layer;                        
+        
+        this.screenSize      = new double[] { 0.0, 0.0 };
+        this.aspectRatio     = 1.0;
+        this.derivedViewPort = new double[] { Double.NaN, Double.NaN, Double.NaN, Double.NaN };
+        this.derivedAspect   = new double[] { Double.NaN, Double.NaN };
     }
+    
+    // Reset to the state of a new ComponentProjection2D, reusing the existing arrays. Called when the component is released to a pool.
+    
+    @Override
+    public void reset ()
+    {
+        setValues ( this.window,   -1.0, -1.0, 1.0, 1.0 );
+        setValues ( this.origin,    0.0,  0.0 );
+        setValues ( this.scale,     1.0, -1.0 );
+        setValues ( this.viewPort,  0.0,  0.0, M_DEFAULT_SCREEN_WIDTH, M_DEFAULT_SCREEN_HEIGHT );
+        setValues ( this.aspect,    1.0,  1.0 );
+        
+        this.layer = 0.0;
+    }
+    
+    // Snapshot serialization. The derived values are not included, since the renderer recalculates them whenever the restored view port or aspect differ
+    // from the values they were derived from. See ECSComponent.writeSnapshot.
+    
+    @Override
+    public int getSnapshotVersion ()
+    {
+        return 1;
+    }
+    
+    @Override
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        buffer.writeDoubles ( this.window );
+        buffer.writeDoubles ( this.origin );
+        buffer.writeDoubles ( this.scale );
+        buffer.writeDoubles ( this.viewPort );
+        buffer.writeDoubles ( this.aspect );
+        buffer.writeDouble  ( this.layer );
+    }
+    
+    @Override
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+        this.window   = buffer.readDoubles ( this.window );
+        this.origin   = buffer.readDoubles ( this.origin );
+        this.scale    = buffer.readDoubles ( this.scale );
+        this.viewPort = buffer.readDoubles ( this.viewPort );
+        this.aspect   = buffer.readDoubles ( this.aspect );
+        this.layer    = buffer.readDouble ();
+    }
+    
+    private static void setValues ( double[] target, double a, double b )                     { target [ 0 ] = a; target [ 1 ] = b;                                       }
+    private static void setValues ( double[] target, double a, double b, double c, double d ) { target [ 0 ] = a; target [ 1 ] = b; target [ 2 ] = c; target [ 3 ] = d; }
 }
 
 
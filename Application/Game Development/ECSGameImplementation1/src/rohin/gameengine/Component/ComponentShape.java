@@ -1,6 +1,7 @@
 package rohin.gameengine.Component;
 
 import rohin.gameengine.ECSComponent;
+import rohin.gameengine.ECSSnapshotBuffer;
 
 public class ComponentShape extends ECSComponent
 {   
@@ -32,4 +33,24 @@ public class ComponentShape extends ECSComponent
             this.transform = transform;
         }
     }
+    
+    // Snapshot serialization. Shapes are serialized by their ComponentGeometry. Subclasses extend the layout with their own fields.
+    
+    @Override
+    public int getSnapshotVersion ()
+    {
+        return 1;
+    }
+    
+    @Override
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        this.transform.writeSnapshot ( buffer );
+    }
+    
+    @Override
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+        this.transform.readSnapshot ( buffer, this.transform.getSnapshotVersion () );
+    }
 }
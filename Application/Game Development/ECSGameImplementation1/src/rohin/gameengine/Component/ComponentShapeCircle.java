@@ -1,5 +1,7 @@
 package rohin.gameengine.Component;
 
+import rohin.gameengine.ECSSnapshotBuffer;
+
 public class ComponentShapeCircle extends ComponentShape
 {
     private final double DEFAULT_RADIUS = 0.1;
@@ -13,4 +15,22 @@ public class ComponentShapeCircle extends ComponentShape
     {   
         this.r = r;
     }
+    
+    // Snapshot serialization. See ComponentShape.writeSnapshot.
+    
+    @Override
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        super.writeSnapshot ( buffer );
+        
+        buffer.writeDouble ( this.r );
+    }
+    
+    @Override
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+        super.readSnapshot ( buffer, version );
+        
+        this.r = buffer.readDouble ();
+    }
 }
@@ -1,5 +1,7 @@
 package rohin.gameengine.Component;
 
+import rohin.gameengine.ECSSnapshotBuffer;
+
 public class ComponentShapeLine extends ComponentShape
 {    
     public double[] v0;     // Vertex 0.
@@ -14,4 +16,24 @@ public class ComponentShapeLine extends ComponentShape
         this.v0 = new double[] { x0, y0 };
         this.v1 = new double[] { x1, y1 };
     }
+    
+    // Snapshot serialization. See ComponentShape.writeSnapshot.
+    
+    @Override
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        super.writeSnapshot ( buffer );
+        
+        buffer.writeDoubles ( this.v0 );
+        buffer.writeDoubles ( this.v1 );
+    }
+    
+    @Override
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+        super.readSnapshot ( buffer, version );
+        
+        this.v0 = buffer.readDoubles ( this.v0 );
+        this.v1 = buffer.readDoubles ( this.v1 );
+    }
 }
@@ -1,5 +1,7 @@
 package rohin.gameengine.Component;
 
+import rohin.gameengine.ECSSnapshotBuffer;
+
 public class ComponentShapePoint extends ComponentShape
 {   
     public double[] v;
@@ -12,4 +14,22 @@ public class ComponentShapePoint extends ComponentShape
     {
         this.v = new double[] { x, y };        
     }
+    
+    // Snapshot serialization. See ComponentShape.writeSnapshot.
+    
+    @Override
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        super.writeSnapshot ( buffer );
+        
+        buffer.writeDoubles ( this.v );
+    }
+    
+    @Override
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+        super.readSnapshot ( buffer, version );
+        
+        this.v = buffer.readDoubles ( this.v );
+    }
 }
@@ -1,5 +1,7 @@
 package rohin.gameengine.Component;
 
+import rohin.gameengine.ECSSnapshotBuffer;
+
 public class ComponentShapeTriangle extends ComponentShape
 {   
     public double[] v0;     // Vertex 0.
@@ -27,4 +29,26 @@ public class ComponentShapeTriangle extends ComponentShape
         this.v1 = new double[] { x1, y1 };
         this.v2 = new double[] { x2, y2 };
     }
+    
+    // Snapshot serialization. See ComponentShape.writeSnapshot.
+    
+    @Override
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        super.writeSnapshot ( buffer );
+        
+        buffer.writeDoubles ( this.v0 );
+        buffer.writeDoubles ( this.v1 );
+        buffer.writeDoubles ( this.v2 );
+    }
+    
+    @Override
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+        super.readSnapshot ( buffer, version );
+        
+        this.v0 = buffer.readDoubles ( this.v0 );
+        this.v1 = buffer.readDoubles ( this.v1 );
+        this.v2 = buffer.readDoubles ( this.v2 );
+    }
 }
@@ -1,8 +1,10 @@
 package rohin.gameengine.Component;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 
 import rohin.gameengine.ECSComponent;
+import rohin.gameengine.ECSSnapshotBuffer;
 import rohin.gameengine.Vector2D;
 
 public class ComponentTransform extends ECSComponent
@@ -20,6 +22,7 @@ public class ComponentTransform extends ECSComponent
     public Vector2D              scale;                     // Scaling vector     (size).
     public double[]              rotation;                  // Rotation vector    (orientation). rotation = ( Pitch, Yaw, Roll ).
     public Vector2D              translation;               // Translation vector (position).
+    public Vector2D              previousTranslation;       // Translation at the previous simulation step. Used to interpolate the rendered position.
     public LinkedList <Vector2D> translationHistory;        // History of where this component has been.
     public int                   translationHistoryDepth;   // Number of translations to stor in the translation history.
     
@@ -52,12 +55,101 @@ public class ComponentTransform extends ECSComponent
         this.rotation    = new double[] { rotation [ PITCH ], rotation [ YAW ], rotation [ ROLL ] };
         this.translation = new Vector2D ( translation );
         
+        // Initialize previous translation.
+        
+        this.previousTranslation = new Vector2D ( translation );
+        
         // Initialize translation history.
         
         this.translationHistory      = new LinkedList <Vector2D> ();
         this.translationHistoryDepth = DEFAULT_TRANSLATION_HISTORY_DEPTH; 
     }
     
+    // Reset to the state of a new ComponentTransform, reusing the existing vectors and history list. Called when the component is released to a pool.
+    
+    @Override
+    public void reset ()
+    {
+        this.origin.setVector              ( 0.0, 0.0 );
+        this.scale.setVector               ( 0.0, 0.0 );
+        this.translation.setVector         ( 0.0, 0.0 );
+        this.previousTranslation.setVector ( 0.0, 0.0 );
+        
+        this.rotation [ PITCH ] = 0.0;
+        this.rotation [ YAW   ] = 0.0;
+        this.rotation [ ROLL  ] = 0.0;
+        
+        this.translationHistory.clear ();
+        this.translationHistoryDepth = DEFAULT_TRANSLATION_HISTORY_DEPTH;
+    }
+    
+    // Snapshot serialization. The translation history is included, so that restored entities keep their trails. See ECSComponent.writeSnapshot.
+    
+    @Override
+    public int getSnapshotVersion ()
+    {
+        return 1;
+    }
+    
+    @Override
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        buffer.writeVector  ( this.origin );
+        buffer.writeVector  ( this.scale );
+        buffer.writeDoubles ( this.rotation );
+        buffer.writeVector  ( this.translation );
+        buffer.writeVector  ( this.previousTranslation );
+        buffer.writeInt     ( this.translationHistoryDepth );
+        buffer.writeInt     ( this.translationHistory.size () );
+        
+        for ( Vector2D v : this.translationHistory )
+        {
+            buffer.writeVector ( v );
+        }
+    }
+    
+    @Override
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+        buffer.readVector ( this.origin );
+        buffer.readVector ( this.scale );
+        
+        this.rotation = buffer.readDoubles ( this.rotation );
+        
+        buffer.readVector ( this.translation );
+        buffer.readVector ( this.previousTranslation );
+        
+        this.translationHistoryDepth = buffer.readInt ();
+        
+        int historySize = buffer.readInt ();
+        
+        // Overwrite the existing history vectors, so that a restore only allocates when the stored history is longer than the current one.
+        
+        Iterator <Vector2D> history     = this.translationHistory.iterator ();
+        int                 reusedCount = Math.min ( historySize, this.translationHistory.size () );
+        
+        for ( int i = 0; i < reusedCount; i++ )
+        {
+            buffer.readVector ( history.next () );
+        }
+        
+        for ( int i = reusedCount; i < historySize; i++ )
+        {
+            Vector2D v = new Vector2D ();
+            
+            buffer.readVector ( v );
+            
+            this.translationHistory.addLast ( v );
+        }
+        
+        // Trim the surplus.
+        
+        while ( this.translationHistory.size () > historySize )
+        {
+            this.translationHistory.removeLast ();
+        }
+    }
+    
     // Add a translation record to the translation history.
     
     public void saveTranslation ( Vector2D v )
@@ -1,72 +1,174 @@
 package rohin.gameengine.System;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
 import rohin.gameengine.*;
-import rohin.gameengine.Application.*;
+import rohin.gameengine.Application.Constants;
 import rohin.gameengine.Component.*;
-import rohin.gameengine.GameEngine.GameEngineTest;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// SystemCollider
+//
+// Collision detection. Finds the entities whose geometry overlaps, and records a contact for each overlapping pair of shapes.
+//
+// - Broad phase: The bounding boxes of the shapes are added to a broad phase, which reports the pairs of bounding boxes that overlap. Only those
+//   candidate pairs reach the narrow phase, instead of every pair of shapes. See setBroadPhase.
+//
+//   - M_BROAD_PHASE_GRID: A SpatialHashGrid, rebuilt every update. The fastest choice, while the shapes are of similar size.
+//   - M_BROAD_PHASE_TREE: A DynamicAABBTree, kept between updates. Each shape component keeps its proxy for as long as it is collected. Shapes
+//     that are added are inserted, shapes that are removed are removed, and all other shapes are moved, whatever their order in the query. Its
+//     speed does not depend on a cell size, so it suits scenes where many long walls would make the grid's cells too large for the small shapes
+//     around them. The tree may also be queried by other systems, for areas and rays. See getTree.
+//
+// - Narrow phase: Each candidate pair is tested exactly, circle against circle, circle against box, or box against box. Points are tested as
+//   circles of zero radius. Pairs of shapes of the same entity are skipped.
+// - Contacts: Each pair of shapes that overlaps is recorded as a contact, with the two entities, the contact normal, which points from entity A to
+//   entity B, and the penetration depth. The contacts are valid until the next update. Collision response is left to the systems that read them.
+// - A shape is placed at the translation of its entity, plus the translation of the shape's own transform. Entity rotation and scale are ignored.
+//   Shapes other than circles, boxes and points are not collided.
+// - The system does not allocate, once its arrays are large enough for the number of shapes and contacts, except to add new shapes to the tree.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
 
 public class SystemCollider extends ECSSystem
 {
     // @formatter:off
-    
-    // Constants - Array Indices.
-            
-    static final int        X = 0;              // 2D vector index for vector element, X ordinate. 
-    static final int        Y = 1;              // 2D vector index for vector element, Y ordinate.
-    static final int        Z = 2;              // 2D vector index for vector element, Z ordinate.
-    
-    // Components used by this system.
-    
-    ComponentTransform      transform;          // Mathematical transformation. Translation, rotation, scale, etc.
-    ComponentGeometry       geometry;           // Geometric structure.
-    ComponentPhysics        physics;            // Physics. Mass, velocity, acceleration, etc.
-    
-    // Application and game engine objects.
-    
-    private Application     application;        // Parent application.
-    private GameEngineTest  engine;             // Parent game engine.
-    
+
+    // Constants - Shape kinds.
+
+    static final int        M_CIRCLE           = 0;
+    static final int        M_BOX              = 1;
+
+    static final int        M_INITIAL_CAPACITY = 256;           // Number of shapes and contacts the arrays are first sized for.
+    static final double     M_TREE_MARGIN      = 0.002;         // Fat box margin of the tree broad phase. About the distance a ball moves in a few updates.
+
+    // Constants - Broad phases.
+
+    public static final int M_BROAD_PHASE_GRID = 0;
+    public static final int M_BROAD_PHASE_TREE = 1;
+
+    // Fields - Broad phase.
+
+    private int              broadPhase;        // Broad phase in use. M_BROAD_PHASE_GRID or M_BROAD_PHASE_TREE.
+    private int              candidateCount;    // Number of candidate pairs found by the last update.
+    private SpatialHashGrid  grid;              // Grid broad phase. Box i of the grid is shape i.
+    private DynamicAABBTree  tree;              // Tree broad phase. The user data of each proxy is its shape index, as of the last update.
+    private Boolean          treeValid;         // True if the tree holds a proxy for each shape, as collected by the previous update.
+
+    private IdentityHashMap <ComponentShape, Integer> treeProxies;  // Tree proxy of each shape component in the tree.
+
+    private int              extraProxyCount;   // Number of extra proxies.
+    private int[]            extraProxy;        // Proxies of shape components collected more than once, e.g. shared by entities. Kept for one update.
+
+    // Fields - Shapes.
+
+    private int              shapeCount;        // Number of shapes.
+    private ECSEntity[]      shapeEntity;       // Entity of each shape.
+    private ComponentShape[] shapeComponent;    // Shape component of each shape.
+    private int[]            shapeKind;         // Kind of each shape, M_CIRCLE or M_BOX.
+    private double[]         shapeMinX;         // Bounding box of each shape. For boxes, the box itself.
+    private double[]         shapeMinY;
+    private double[]         shapeMaxX;
+    private double[]         shapeMaxY;
+    private double[]         shapeX;            // Center of each circle.
+    private double[]         shapeY;
+    private double[]         shapeR;            // Radius of each circle.
+
+    // Fields - Contacts.
+
+    private int              contactCount;      // Number of contacts found by the last update.
+    private ECSEntity[]      contactA;          // Entities of each contact.
+    private ECSEntity[]      contactB;
+    private double[]         contactNormalX;    // Unit normal of each contact, from entity A to entity B.
+    private double[]         contactNormalY;
+    private double[]         contactDepth;      // Penetration depth of each contact.
+
     // Fields - Application administration.
-    
-    private Boolean         loggingEnabled;     // true = enable logging. false = disable logging.
-    private ConsoleLogger   logger;             // Console logging object.    
-    
-    // @formatter:off
-    
+
+    private Boolean          loggingEnabled;    // true = enable logging. false = disable logging.
+    private ConsoleLogger    logger;            // Console logging object.
+
+    // Accessors and mutators.
+
+    public int             getBroadPhase     ()              { return this.broadPhase;                  }
+    public SpatialHashGrid getGrid           ()              { return this.grid;                        }
+    public DynamicAABBTree getTree           ()              { return this.tree;                        }
+    public int             getShapeCount     ()              { return this.shapeCount;                  }
+    public int             getCandidateCount ()              { return this.candidateCount;              }
+    public int             getContactCount   ()              { return this.contactCount;                }
+    public ECSEntity       getContactEntityA ( int contact ) { return this.contactA       [ contact ]; }
+    public ECSEntity       getContactEntityB ( int contact ) { return this.contactB       [ contact ]; }
+    public double          getContactNormalX ( int contact ) { return this.contactNormalX [ contact ]; }
+    public double          getContactNormalY ( int contact ) { return this.contactNormalY [ contact ]; }
+    public double          getContactDepth   ( int contact ) { return this.contactDepth   [ contact ]; }
+
+    // @formatter:on
+
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // Constructor/s
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
-    
+
     public SystemCollider ( ECSEngine owner )
     {
         // Initialize ECS object parameters.
-        
+
         this.id          = Constants.SYSTEM_COLLIDER;
-        this.name        = "SYSTEM_COLLIDER";        
+        this.name        = "SYSTEM_COLLIDER";
         this.owner       = owner;
-        
-        // Initialize components.
-        
-        this.transform  = new ComponentTransform ();                
-        this.physics    = new ComponentPhysics ();
-                
-        // Initialize application and game engine parameters.
-        
-        this.application = (Application) owner.getOwner ();        
-        this.engine      = (GameEngineTest) this.owner;
-        
+
+        // Declare the components used by this system.
+
+        requireComponents ( ComponentTransform.class, ComponentGeometry.class );
+        readsComponents   ( ComponentTransform.class, ComponentGeometry.class );
+
+        // Initialize the broad phase, shapes and contacts.
+
+        this.broadPhase      = M_BROAD_PHASE_GRID;
+        this.candidateCount  = 0;
+        this.grid            = new SpatialHashGrid ();
+        this.tree            = new DynamicAABBTree ( M_TREE_MARGIN );
+        this.treeValid       = false;
+        this.treeProxies     = new IdentityHashMap <ComponentShape, Integer> ();
+        this.extraProxyCount = 0;
+        this.extraProxy      = new int [ M_INITIAL_CAPACITY ];
+        this.shapeCount      = 0;
+        this.contactCount    = 0;
+
+        growShapes   ( M_INITIAL_CAPACITY );
+        growContacts ( M_INITIAL_CAPACITY );
+
         // Initialize system management parameters.
-        
+
         this.loggingEnabled = false;
-        this.logger         = new ConsoleLogger ( this, this.loggingEnabled );        
+        this.logger         = new ConsoleLogger ( this, this.loggingEnabled );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // setBroadPhase
+    //
+    // Select the broad phase, M_BROAD_PHASE_GRID or M_BROAD_PHASE_TREE. Both find the same contacts, though not necessarily in the same order.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void setBroadPhase ( int broadPhase )
+    {
+        if ( ( broadPhase != M_BROAD_PHASE_GRID ) && ( broadPhase != M_BROAD_PHASE_TREE ) )
+        {
+            throw new IllegalArgumentException ( "Unknown broad phase " + broadPhase + "." );
+        }
+
+        this.broadPhase = broadPhase;
+
+        releaseTree ();
     }
-    
+
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // Description:
     // - Override implementation of ECSSystem.Update.
     //
     // Arguments:
-    // 
+    //
     // - t
     //   Game loop tick time. i.e Current game loop lap time.
     //
@@ -74,138 +176,499 @@ public class SystemCollider extends ECSSystem
     //
     // - N/A
     //
-    // Preconditions:
-    //
-    // - The game engine object must have already been initialized to the game engine we would like to reference.
-    //   This will usually be done via the constructor, when an instance of SystemRenderer is created.
-    //
     // Postconditions:
     //
-    // - All renderable and enabled entities have been rendered to the current graphics context (screen).
+    // - The contacts of the previous update have been replaced with a contact for each overlapping pair of shapes. See getContactCount.
     //
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
-    
+
     @Override
     public void update ( long t )
     {
         try
-        {   
-            // Iterate through all entities, filtering by those that contain the specific set of components, that this system is intended to work with.
-            
-            for ( ECSEntity entity : engine.getEntities ().values () )
-            {   
-                if ( entity.hasComponents ( transform, physics ) )
-                {   
-                    // Perform physics simulation.
-                    
-                    updatePhysics ( entity, t );
-                    
-                    // Console logger.
-                    
-                    logger.log ();
-                }
-            } 
-            
-            // Swap the double buffers.
-                    
-            engine.swapBuffer ();
+        {
+            collectShapes ();
+
+            // Broad phase, followed by the narrow phase for each candidate pair.
+
+            int previousCount = this.contactCount;
+
+            this.contactCount = 0;
+
+            if ( this.broadPhase == M_BROAD_PHASE_TREE )
+            {
+                collideTree ();
+            }
+            else
+            {
+                collideGrid ();
+            }
+
+            // Release references to the entities of contacts that have ended.
+
+            Arrays.fill ( this.contactA, this.contactCount, Math.max ( this.contactCount, previousCount ), null );
+            Arrays.fill ( this.contactB, this.contactCount, Math.max ( this.contactCount, previousCount ), null );
+
+            // Console logger.
+
+            logger.log ();
         }
         catch ( Exception e )
-        {   
+        {
             TextFormat.printFormattedException ( e, true );
         }
     }
-    
+
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
-    // renderGeometry 
+    // collectShapes
     //
     // Description:
     //
-    // - Render entity geometry.
+    // - Place the circle, box and point shapes of every entity in the query in world coordinates.
     //
-    // Arguments:
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void collectShapes ()
+    {
+        int count         = this.query.size ();
+        int previousCount = this.shapeCount;
+
+        this.shapeCount = 0;
+
+        for ( int i = 0; i < count; i++ )
+        {
+            ECSEntity             entity    = this.query.get ( i );
+            ComponentTransform    transform = ( ComponentTransform ) entity.getComponent ( Constants.COMPONENT_TRANSFORM );
+            ComponentGeometry     geometry  = ( ComponentGeometry )  entity.getComponent ( Constants.COMPONENT_GEOMETRY );
+            List <ComponentShape> shapes    = geometry.shapes;
+            double                tx        = transform.translation.getX ();
+            double                ty        = transform.translation.getY ();
+
+            for ( int j = 0; j < shapes.size (); j++ )
+            {
+                ComponentShape shape = shapes.get ( j );
+                double         x     = tx + shape.transform.translation.getX ();
+                double         y     = ty + shape.transform.translation.getY ();
+
+                if ( shape instanceof ComponentShapeCircle )
+                {
+                    double r = ( ( ComponentShapeCircle ) shape ).r;
+
+                    addShape ( entity, shape, M_CIRCLE, x - r, y - r, x + r, y + r, x, y, r );
+                }
+                else if ( shape instanceof ComponentShapePoint )
+                {
+                    ComponentShapePoint point = ( ComponentShapePoint ) shape;
+
+                    x += point.v [ 0 ];
+                    y += point.v [ 1 ];
+
+                    addShape ( entity, shape, M_CIRCLE, x, y, x, y, x, y, 0.0 );
+                }
+                else if ( shape instanceof ComponentShapeBox )
+                {
+                    ComponentShapeBox box = ( ComponentShapeBox ) shape;
+
+                    double x0 = x + Math.min ( box.v0 [ 0 ], box.v1 [ 0 ] );
+                    double y0 = y + Math.min ( box.v0 [ 1 ], box.v1 [ 1 ] );
+                    double x1 = x + Math.max ( box.v0 [ 0 ], box.v1 [ 0 ] );
+                    double y1 = y + Math.max ( box.v0 [ 1 ], box.v1 [ 1 ] );
+
+                    addShape ( entity, shape, M_BOX, x0, y0, x1, y1, 0.5 * ( x0 + x1 ), 0.5 * ( y0 + y1 ), 0.0 );
+                }
+            }
+        }
+
+        // Release references to the entities and components of shapes that have been removed.
+
+        if ( this.shapeCount != previousCount )
+        {
+            Arrays.fill ( this.shapeEntity,    this.shapeCount, Math.max ( this.shapeCount, previousCount ), null );
+            Arrays.fill ( this.shapeComponent, this.shapeCount, Math.max ( this.shapeCount, previousCount ), null );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // addShape
     //
-    // - entity
-    //   The ECS entity that we would like to render.
+    // Add a shape to the shape arrays.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void addShape ( ECSEntity entity, ComponentShape component, int kind, double minX, double minY, double maxX, double maxY, double x, double y, double r )
+    {
+        if ( this.shapeCount == this.shapeKind.length )
+        {
+            growShapes ( this.shapeCount * 2 );
+        }
+
+        int shape = this.shapeCount++;
+
+        this.shapeEntity    [ shape ] = entity;
+        this.shapeComponent [ shape ] = component;
+        this.shapeKind      [ shape ] = kind;
+        this.shapeMinX      [ shape ] = minX;
+        this.shapeMinY      [ shape ] = minY;
+        this.shapeMaxX      [ shape ] = maxX;
+        this.shapeMaxY      [ shape ] = maxY;
+        this.shapeX         [ shape ] = x;
+        this.shapeY         [ shape ] = y;
+        this.shapeR         [ shape ] = r;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // collideGrid
     //
-    // Return Value:
+    // Grid broad phase. Rebuild the grid from the shapes, and test each pair of shapes whose bounding boxes overlap.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void collideGrid ()
+    {
+        this.grid.clear ();
+
+        for ( int shape = 0; shape < this.shapeCount; shape++ )
+        {
+            this.grid.add ( this.shapeMinX [ shape ], this.shapeMinY [ shape ], this.shapeMaxX [ shape ], this.shapeMaxY [ shape ] );
+        }
+
+        this.candidateCount = this.grid.findPairs ();
+
+        if ( this.treeValid )
+        {
+            releaseTree ();
+        }
+
+        for ( int i = 0; i < this.candidateCount; i++ )
+        {
+            collide ( this.grid.getPairA ( i ), this.grid.getPairB ( i ) );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // collideTree
     //
-    // - N/A
+    // Description:
     //
-    // Preconditions:
+    // - Tree broad phase. Update the tree's proxies from the shapes, and test each pair of shapes whose fat bounding boxes overlap.
+    // - A shape component without a proxy is inserted. A shape component with a proxy has its proxy moved, and its shape index updated. The proxies
+    //   of shape components that are no longer collected are removed.
+    // - The tree is only rebuilt when it is filled from empty, e.g. on the first update, or after the grid broad phase was in use.
     //
-    // - Component objects must already be initialized.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void collideTree ()
+    {
+        DynamicAABBTree tree    = this.tree;
+        int             claimed = 0;
+
+        // Remove the extra proxies of the previous update.
+
+        for ( int i = 0; i < this.extraProxyCount; i++ )
+        {
+            tree.remove ( this.extraProxy [ i ] );
+        }
+
+        this.extraProxyCount = 0;
+
+        // Insert or move the proxy of each shape.
+
+        for ( int shape = 0; shape < this.shapeCount; shape++ )
+        {
+            ComponentShape component = this.shapeComponent [ shape ];
+            Integer        proxy     = this.treeProxies.get ( component );
+
+            if ( proxy == null )
+            {
+                this.treeProxies.put ( component, tree.insert ( this.shapeMinX [ shape ], this.shapeMinY [ shape ], this.shapeMaxX [ shape ], this.shapeMaxY [ shape ], shape ) );
+
+                ++claimed;
+            }
+            else
+            {
+                int previous = tree.getData ( proxy );
+
+                if ( ( previous < shape ) && ( this.shapeComponent [ previous ] == component ) )
+                {
+                    // The proxy has already been claimed by this update, at a lower shape index. Give this copy of the shape an extra proxy.
+
+                    addExtraProxy ( tree.insert ( this.shapeMinX [ shape ], this.shapeMinY [ shape ], this.shapeMaxX [ shape ], this.shapeMaxY [ shape ], shape ) );
+                }
+                else
+                {
+                    tree.move    ( proxy, this.shapeMinX [ shape ], this.shapeMinY [ shape ], this.shapeMaxX [ shape ], this.shapeMaxY [ shape ] );
+                    tree.setData ( proxy, shape );
+
+                    ++claimed;
+                }
+            }
+        }
+
+        // Remove the proxies of shape components that were not claimed, i.e. whose shapes have been removed.
+
+        if ( this.treeProxies.size () > claimed )
+        {
+            removeUnclaimedProxies ();
+        }
+
+        if ( !this.treeValid )
+        {
+            tree.rebuild ();
+
+            this.treeValid = true;
+        }
+
+        this.candidateCount = tree.findPairs ();
+
+        for ( int i = 0; i < this.candidateCount; i++ )
+        {
+            collide ( tree.getData ( tree.getPairA ( i ) ), tree.getData ( tree.getPairB ( i ) ) );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // releaseTree
     //
-    // Postconditions:
+    // Empty the tree, and release the shape components it refers to. The tree is filled and rebuilt again by the next update of the tree broad phase.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void releaseTree ()
+    {
+        this.tree.clear ();
+        this.treeProxies.clear ();
+
+        this.extraProxyCount = 0;
+        this.treeValid       = false;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // removeUnclaimedProxies
     //
-    // - The selected renderable objects have been rendered on the current graphics context (screen).
-    //
-    // --------------------------------------------------------------------------------------------------------------------------------------------------------
-    
-    private void updatePhysics ( ECSEntity entity, long t )
-    {
-        // Constants.
-        
-        final double SCREEN_HEIGHT        = 600.0;
-        final double FRICTION_COEFFICIENT = 0.0001 / SCREEN_HEIGHT;
-        final double ACCELERATION         =  0.001 / SCREEN_HEIGHT;
-        
-        // Initialize working variables.
-        
-        double ax = 0.0;
-        double ay = 0.0;
-        
-        // Retrieve the entity's components.
-        
-        this.transform = ( ComponentTransform ) entity.getComponent ( Constants.COMPONENT_TRANSFORM );
-        this.physics   = ( ComponentPhysics )   entity.getComponent ( Constants.COMPONENT_PHYSICS );
-        
-        // Initialize calculation variables.
-        
-        Vector2D a = new Vector2D ( this.physics.acceleration );
-        Vector2D v = new Vector2D ();    
-        Vector2D d = new Vector2D ();
-        double   p = FRICTION_COEFFICIENT;
-        
-        // Apply accelerator.
-        
-        if ( this.physics.accelerateUp    ) { ay += ACCELERATION; }
-        if ( this.physics.accelerateDown  ) { ay -= ACCELERATION; }
-        if ( this.physics.accelerateRight ) { ax += ACCELERATION; }
-        if ( this.physics.accelerateLeft  ) { ax -= ACCELERATION; }
-        
-        a.setVector ( ax, ay );
-        
-        // Apply Newtonian mechanics.
-        
-        v = a.scale ( t );      // acceleration: a = v/t  ↔  v = a·t (Newtonian acceleration). 
-        d = v.scale ( t );      // velocity:     v = d/t  ↔  d = v·t (Newtonian velocity).
-        
-        // Apply friction coefficient.
-        
-        if ( ax > 0.0 ) { if ( ax - p > 0.0 ) ax -= p; else ax = 0.0; }
-        if ( ay > 0.0 ) { if ( ay - p > 0.0 ) ay -= p; else ay = 0.0; }
-        if ( ax < 0.0 ) { if ( ax + p < 0.0 ) ax += p; else ax = 0.0; }
-        if ( ay < 0.0 ) { if ( ay + p < 0.0 ) ay += p; else ay = 0.0; }
-        
-        a.setVector ( ax, ay );
-        
-        // Update physics.
-        
-        this.physics.acceleration.setVector ( a );
-        this.physics.velocity.setVector     ( v );
-        
-        // Update translation.
-        
-        this.transform.translation = this.transform.translation.add ( d );
+    // Remove the proxies of shape components that were not collected by this update. A proxy was claimed if its shape index, as set by this update,
+    // refers back to its own shape component.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void removeUnclaimedProxies ()
+    {
+        Iterator <ComponentShape> components = this.treeProxies.keySet ().iterator ();
+
+        while ( components.hasNext () )
+        {
+            ComponentShape component = components.next ();
+            int            proxy     = this.treeProxies.get ( component );
+            int            shape     = this.tree.getData ( proxy );
+
+            if ( ( shape >= this.shapeCount ) || ( this.shapeComponent [ shape ] != component ) )
+            {
+                this.tree.remove ( proxy );
+
+                components.remove ();
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // addExtraProxy
+    //
+    // Add an extra proxy, to be removed by the next update.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void addExtraProxy ( int proxy )
+    {
+        if ( this.extraProxyCount == this.extraProxy.length )
+        {
+            this.extraProxy = Arrays.copyOf ( this.extraProxy, this.extraProxyCount * 2 );
+        }
+
+        this.extraProxy [ this.extraProxyCount++ ] = proxy;
     }
-}
 
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // collide
+    //
+    // Description:
+    //
+    // - Narrow phase. Test a candidate pair of shapes exactly, and record a contact if they overlap.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
 
+    private void collide ( int a, int b )
+    {
+        if ( this.shapeEntity [ a ] == this.shapeEntity [ b ] )
+        {
+            return;
+        }
 
+        int kindA = this.shapeKind [ a ];
+        int kindB = this.shapeKind [ b ];
 
+        if      ( ( kindA == M_CIRCLE ) && ( kindB == M_CIRCLE ) ) collideCircles   ( a, b );
+        else if ( ( kindA == M_CIRCLE ) && ( kindB == M_BOX    ) ) collideCircleBox ( a, b, false );
+        else if ( ( kindA == M_BOX    ) && ( kindB == M_CIRCLE ) ) collideCircleBox ( b, a, true  );
+        else                                                       collideBoxes     ( a, b );
+    }
 
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // collideCircles
+    //
+    // Circles overlap if the distance between their centers is less than the sum of their radii.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
 
+    private void collideCircles ( int a, int b )
+    {
+        double dx = this.shapeX [ b ] - this.shapeX [ a ];
+        double dy = this.shapeY [ b ] - this.shapeY [ a ];
+        double r  = this.shapeR [ a ] + this.shapeR [ b ];
+        double d2 = dx * dx + dy * dy;
 
+        if ( d2 < r * r )
+        {
+            double d = Math.sqrt ( d2 );
 
+            // Concentric circles have no defined normal. Separate them along the X axis.
 
+            if ( d > 0.0 ) addContact ( a, b, dx / d, dy / d, r - d );
+            else           addContact ( a, b, 1.0,    0.0,    r     );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // collideCircleBox
+    //
+    // Description:
+    //
+    // - A circle overlaps a box if the point of the box closest to the circle's center is within the circle's radius.
+    // - If the circle's center is inside the box, the normal is taken from the box side nearest to the center.
+    //
+    // Arguments:
+    //
+    // - circle, box
+    //   The shapes to test.
+    //
+    // - swapped
+    //   True if the box is shape A of the contact, and the circle is shape B.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void collideCircleBox ( int circle, int box, Boolean swapped )
+    {
+        double cx = this.shapeX    [ circle ];
+        double cy = this.shapeY    [ circle ];
+        double r  = this.shapeR    [ circle ];
+        double x0 = this.shapeMinX [ box ];
+        double y0 = this.shapeMinY [ box ];
+        double x1 = this.shapeMaxX [ box ];
+        double y1 = this.shapeMaxY [ box ];
+        double qx = Math.min ( Math.max ( cx, x0 ), x1 );
+        double qy = Math.min ( Math.max ( cy, y0 ), y1 );
+        double dx = qx - cx;
+        double dy = qy - cy;
+        double d2 = dx * dx + dy * dy;
+        double nx = 0.0;
+        double ny = 0.0;
+        double depth;
+
+        if ( d2 > 0.0 )
+        {
+            if ( d2 >= r * r )
+            {
+                return;
+            }
+
+            double d = Math.sqrt ( d2 );
+
+            nx    = dx / d;
+            ny    = dy / d;
+            depth = r - d;
+        }
+        else
+        {
+            // The center is inside the box. The circle leaves the box through the nearest side, so the box lies on the opposite side.
+
+            double left   = cx - x0;
+            double right  = x1 - cx;
+            double bottom = cy - y0;
+            double top    = y1 - cy;
+            double m      = Math.min ( Math.min ( left, right ), Math.min ( bottom, top ) );
+
+            if      ( m == left   ) nx =  1.0;
+            else if ( m == right  ) nx = -1.0;
+            else if ( m == bottom ) ny =  1.0;
+            else                    ny = -1.0;
+
+            depth = m + r;
+        }
+
+        if ( swapped ) addContact ( box,    circle, -nx, -ny, depth );
+        else           addContact ( circle, box,     nx,  ny, depth );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // collideBoxes
+    //
+    // Boxes overlap if they overlap on both axes. The normal is along the axis of least overlap.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void collideBoxes ( int a, int b )
+    {
+        double ox = Math.min ( this.shapeMaxX [ a ], this.shapeMaxX [ b ] ) - Math.max ( this.shapeMinX [ a ], this.shapeMinX [ b ] );
+        double oy = Math.min ( this.shapeMaxY [ a ], this.shapeMaxY [ b ] ) - Math.max ( this.shapeMinY [ a ], this.shapeMinY [ b ] );
+
+        if ( ( ox <= 0.0 ) || ( oy <= 0.0 ) )
+        {
+            return;
+        }
+
+        if ( ox < oy ) addContact ( a, b, ( this.shapeX [ b ] >= this.shapeX [ a ] ) ? 1.0 : -1.0, 0.0, ox );
+        else           addContact ( a, b, 0.0, ( this.shapeY [ b ] >= this.shapeY [ a ] ) ? 1.0 : -1.0, oy );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // addContact
+    //
+    // Record a contact between the entities of shapes a and b.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void addContact ( int a, int b, double nx, double ny, double depth )
+    {
+        if ( this.contactCount == this.contactA.length )
+        {
+            growContacts ( this.contactCount * 2 );
+        }
+
+        int contact = this.contactCount++;
+
+        this.contactA       [ contact ] = this.shapeEntity [ a ];
+        this.contactB       [ contact ] = this.shapeEntity [ b ];
+        this.contactNormalX [ contact ] = nx;
+        this.contactNormalY [ contact ] = ny;
+        this.contactDepth   [ contact ] = depth;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // growShapes, growContacts
+    //
+    // Grow the shape and contact arrays to the specified capacity.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void growShapes ( int capacity )
+    {
+        this.shapeEntity    = ( this.shapeEntity    == null ) ? new ECSEntity      [ capacity ] : Arrays.copyOf ( this.shapeEntity,    capacity );
+        this.shapeComponent = ( this.shapeComponent == null ) ? new ComponentShape [ capacity ] : Arrays.copyOf ( this.shapeComponent, capacity );
+        this.shapeKind      = ( this.shapeKind      == null ) ? new int            [ capacity ] : Arrays.copyOf ( this.shapeKind,      capacity );
+        this.shapeMinX      = ( this.shapeMinX      == null ) ? new double         [ capacity ] : Arrays.copyOf ( this.shapeMinX,      capacity );
+        this.shapeMinY      = ( this.shapeMinY      == null ) ? new double         [ capacity ] : Arrays.copyOf ( this.shapeMinY,      capacity );
+        this.shapeMaxX      = ( this.shapeMaxX      == null ) ? new double         [ capacity ] : Arrays.copyOf ( this.shapeMaxX,      capacity );
+        this.shapeMaxY      = ( this.shapeMaxY      == null ) ? new double         [ capacity ] : Arrays.copyOf ( this.shapeMaxY,      capacity );
+        this.shapeX         = ( this.shapeX         == null ) ? new double         [ capacity ] : Arrays.copyOf ( this.shapeX,         capacity );
+        this.shapeY         = ( this.shapeY         == null ) ? new double         [ capacity ] : Arrays.copyOf ( this.shapeY,         capacity );
+        this.shapeR         = ( this.shapeR         == null ) ? new double         [ capacity ] : Arrays.copyOf ( this.shapeR,         capacity );
+    }
+
+    private void growContacts ( int capacity )
+    {
+        this.contactA       = ( this.contactA       == null ) ? new ECSEntity [ capacity ] : Arrays.copyOf ( this.contactA,       capacity );
+        this.contactB       = ( this.contactB       == null ) ? new ECSEntity [ capacity ] : Arrays.copyOf ( this.contactB,       capacity );
+        this.contactNormalX = ( this.contactNormalX == null ) ? new double    [ capacity ] : Arrays.copyOf ( this.contactNormalX, capacity );
+        this.contactNormalY = ( this.contactNormalY == null ) ? new double    [ capacity ] : Arrays.copyOf ( this.contactNormalY, capacity );
+        this.contactDepth   = ( this.contactDepth   == null ) ? new double    [ capacity ] : Arrays.copyOf ( this.contactDepth,   capacity );
+    }
+}
@@ -31,6 +31,11 @@ public class SystemExample extends ECSSystem
         
         this.loggingEnabled = false;
         this.logger         = new ConsoleLogger ( this, this.loggingEnabled );
+        
+        // Declare the set of components this system requires to work with. The engine maintains a live query of matching entities for us.
+        
+        requireComponents ( ComponentTransform.class, ComponentProjection2D.class );
+        readsComponents   ( ComponentTransform.class, ComponentProjection2D.class );
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -40,27 +45,23 @@ public class SystemExample extends ECSSystem
     @Override
     public void update ( long t )
     {   
-        ECSEngine             engine     = (ECSEngine) this.owner;
-        ComponentTransform    transform  = new ComponentTransform ();
-        ComponentProjection2D projection = new ComponentProjection2D ();
+        // Iterate through the entities that contain the specific set of components, that this system requires to work with.
         
-        // Iterate through all entities, filtering by those that contain the specific set of components, that this system requires to work with.
+        int count = this.query.size ();
         
-        for ( ECSEntity entity : engine.getEntities ().values () )
+        for ( int i = 0; i < count; i++ )
         {   
-            if ( entity.hasComponents ( transform, projection ) )
-            {
-                transform  = ( ComponentTransform )    entity.getComponent ( Constants.COMPONENT_TRANSFORM );
-                projection = ( ComponentProjection2D ) entity.getComponent ( Constants.COMPONENT_PROJECTION_2D );
-                
-                // Start working with the entities components.
-                
-                // ...
-                
-                // Console logger.
-                
-                logger.log ();
-            }
+            ECSEntity             entity     = this.query.get ( i );
+            ComponentTransform    transform  = ( ComponentTransform )    entity.getComponent ( Constants.COMPONENT_TRANSFORM );
+            ComponentProjection2D projection = ( ComponentProjection2D ) entity.getComponent ( Constants.COMPONENT_PROJECTION_2D );
+            
+            // Start working with the entities components.
+            
+            // ...
+            
+            // Console logger.
+            
+            logger.log ();
         }        
     }
 }
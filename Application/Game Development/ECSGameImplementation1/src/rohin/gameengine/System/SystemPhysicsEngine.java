@@ -3,9 +3,8 @@ package rohin.gameengine.System;
 import rohin.gameengine.*;
 import rohin.gameengine.Application.*;
 import rohin.gameengine.Component.*;
-import rohin.gameengine.GameEngine.GameEngineTest;
 
-public class SystemPhysicsEngine extends ECSSystem
+public class SystemPhysicsEngine extends ECSParallelSystem
 {
     // @formatter:off
     
@@ -15,15 +14,24 @@ public class SystemPhysicsEngine extends ECSSystem
     static final int        Y = 1;              // 2D vector index for vector element, Y ordinate.
     static final int        Z = 2;              // 2D vector index for vector element, Z ordinate.
     
-    // Components used by this system.
+    // Constants - Physics. Shared with SystemPhysicsBatch, so that both systems produce identical results.
     
-    ComponentTransform      transform;          // Mathematical transformation. Translation, rotation, scale, etc.     
-    ComponentPhysics        physics;            // Physics. Mass, velocity, acceleration, etc.
+    static final double     SCREEN_HEIGHT        = 600.0;
+    static final double     FRICTION_COEFFICIENT = 0.0001 / SCREEN_HEIGHT;
+    static final double     FRICTION_AMPLIFIER   = 4.0;     // Used to speed up lateral deceleration, which improves the sense of control response experienced by the user.
+    static final double     ACCELERATION         =  0.001 / SCREEN_HEIGHT;
     
-    // Application and game engine objects.
+    // Constants - Acceleration directions. Never modified.
     
-    private Application     application;        // Parent application.
-    private GameEngineTest  engine;             // Parent game engine.
+    private static final Vector2D M_UP    = new Vector2D (  0.0,  1.0 );
+    private static final Vector2D M_DOWN  = new Vector2D (  0.0, -1.0 );
+    private static final Vector2D M_RIGHT = new Vector2D (  1.0,  0.0 );
+    private static final Vector2D M_LEFT  = new Vector2D ( -1.0,  0.0 );
+    
+    // Component type indices. Resolved once, and used to look up archetype columns.
+    
+    private final int       transformType;      // Type index of ComponentTransform.
+    private final int       physicsType;        // Type index of ComponentPhysics.
     
     // Fields - Application administration.
     
@@ -44,16 +52,14 @@ public class SystemPhysicsEngine extends ECSSystem
         this.name        = "SYSTEM_PHYSICS_ENGINE";        
         this.owner       = owner;
         
-        // Initialize components.
-        
-        this.transform  = new ComponentTransform ();                
-        this.physics    = new ComponentPhysics ();
-                
-        // Initialize application and game engine parameters.
+        // Declare the components used by this system.
         
-        this.application = (Application) owner.getOwner ();        
-        this.engine      = (GameEngineTest) this.owner;
+        requireComponents ( ComponentTransform.class, ComponentPhysics.class );
+        writesComponents  ( ComponentTransform.class, ComponentPhysics.class );
         
+        this.transformType = ECSComponentType.getIndex ( ComponentTransform.class );
+        this.physicsType   = ECSComponentType.getIndex ( ComponentPhysics.class );
+                
         // Initialize system management parameters.
         
         this.loggingEnabled = false;
@@ -62,10 +68,13 @@ public class SystemPhysicsEngine extends ECSSystem
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // Description:
-    // - Override implementation of ECSSystem.Update.
+    // - Override implementation of ECSParallelSystem.updateEntity. Called concurrently, for disjoint sets of entities.
     //
     // Arguments:
     // 
+    // - entity
+    //   The entity to update. Guaranteed to contain a transform and physics component.
+    //
     // - t
     //   Game loop tick time. i.e Current game loop lap time.
     //
@@ -73,59 +82,117 @@ public class SystemPhysicsEngine extends ECSSystem
     //
     // - N/A
     //
-    // Preconditions:
+    // Postconditions:
     //
-    // - The game engine object must have already been initialized to the game engine we would like to reference.
-    //   This will usually be done via the constructor, when an instance of SystemRenderer is created.
+    // - The entity's physics simulation has been advanced by one time slice.
     //
-    // Postconditions:
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @Override
+    protected void updateEntity ( ECSEntity entity, long t )
+    {
+        updatePhysics
+        (
+            ( ComponentTransform ) entity.getComponent ( Constants.COMPONENT_TRANSFORM ),
+            ( ComponentPhysics )   entity.getComponent ( Constants.COMPONENT_PHYSICS ),
+            Vector2DScratch.get (),
+            t
+        );
+        
+        // Console logger.
+        
+        logger.log ();
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Description:
+    // - Override implementation of ECSParallelSystem.updateChunk. Used when archetype storage is enabled.
+    // - Components are read column wise, so that each chunk is processed linearly.
     //
-    // - All renderable and enabled entities have been rendered to the current graphics context (screen).
+    // Arguments:
+    // 
+    // - chunk
+    //   Archetype chunk, containing a transform and physics column.
+    //
+    // - t
+    //   Game loop tick time. i.e Current game loop lap time.
     //
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     
     @Override
-    public void update ( long t )
+    protected void updateChunk ( ECSArchetypeChunk chunk, long t )
     {
-        try
-        {   
-            // Iterate through all entities, filtering by those that contain the specific set of components, that this system is intended to work with.
-            
-            for ( ECSEntity entity : engine.getEntities ().values () )
-            {   
-                if ( entity.hasComponents ( transform, physics ) )
-                {   
-                    // Update physics simulation.
-                    
-                    updatePhysics ( entity, t );
-                    
-                    // Console logger.
-                    
-                    logger.log ();
-                }
-            } 
-            
-            // Swap the double buffers.
-                    
-            engine.swapBuffer ();
+        ECSArchetype    archetype  = chunk.getArchetype ();
+        ECSComponent[]  transforms = chunk.getColumn ( archetype.getColumnIndex ( this.transformType ) );
+        ECSComponent[]  bodies     = chunk.getColumn ( archetype.getColumnIndex ( this.physicsType   ) );
+        int             count      = chunk.getCount ();
+        Vector2DScratch scratch    = Vector2DScratch.get ();
+        
+        for ( int row = 0; row < count; row++ )
+        {
+            updatePhysics ( ( ComponentTransform ) transforms [ row ], ( ComponentPhysics ) bodies [ row ], scratch, t );
         }
-        catch ( Exception e )
-        {   
-            TextFormat.printFormattedException ( e, true );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Description:
+    // - Override implementation of ECSParallelSystem.updateSparseSet. Used when sparse set storage is enabled.
+    // - Components are looked up through the transform and physics pools, rather than through each entity's component map.
+    //
+    // Arguments:
+    // 
+    // - set
+    //   Smallest of the transform and physics pools.
+    //
+    // - from, to
+    //   Range of pool positions to update.
+    //
+    // - t
+    //   Game loop tick time. i.e Current game loop lap time.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @Override
+    protected void updateSparseSet ( ECSSparseSet set, int from, int to, long t )
+    {
+        ECSSparseSetStorage storage    = ( ( ECSEngine ) this.owner ).getSparseSetStorage ();
+        ECSSparseSet        transforms = storage.getSet ( this.transformType );
+        ECSSparseSet        bodies     = storage.getSet ( this.physicsType   );
+        Vector2DScratch     scratch    = Vector2DScratch.get ();
+        
+        for ( int position = from; position < to; position++ )
+        {
+            ECSEntity entity    = set.getEntity ( position );
+            int       transform = transforms.indexOf ( entity );
+            int       physics   = bodies.indexOf     ( entity );
+            
+            if ( ( transform != ECSSparseSet.M_ABSENT ) && ( physics != ECSSparseSet.M_ABSENT ) )
+            {
+                updatePhysics ( ( ComponentTransform ) transforms.getComponent ( transform ), ( ComponentPhysics ) bodies.getComponent ( physics ), scratch, t );
+            }
         }
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
-    // renderGeometry 
+    // updatePhysics 
     //
     // Description:
     //
-    // - Render entity geometry.
+    // - Update the physics simulation of a single entity.
     //
     // Arguments:
     //
-    // - entity
-    //   The ECS entity that we would like to render.
+    // - transform
+    //   The entity's transform component.
+    //
+    // - physics
+    //   The entity's physics component.
+    //
+    // - scratch
+    //   The calling thread's scratch vectors. See Vector2DScratch.
+    //
+    // - t
+    //   Game loop tick time.
     //
     // Return Value:
     //
@@ -137,74 +204,62 @@ public class SystemPhysicsEngine extends ECSSystem
     //
     // Postconditions:
     //
-    // - The selected renderable objects have been rendered on the current graphics context (screen).
+    // - The entity's acceleration, velocity and translation have been advanced by one time slice.
+    // - The transform and physics components have been marked as changed.
+    // - No objects have been allocated. Intermediate vectors are borrowed from the scratch stack, and released before returning.
     //
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     
-    private void updatePhysics ( ECSEntity entity, long t )
+    private void updatePhysics ( ComponentTransform transform, ComponentPhysics physics, Vector2DScratch scratch, long t )
     {
-        // Constants.
-        
-        final double SCREEN_HEIGHT        = 600.0;
-        final double FRICTION_COEFFICIENT = 0.0001 / SCREEN_HEIGHT;
-        final double ACCELERATION         =  0.001 / SCREEN_HEIGHT;
-        
         // Initialize working variables.
         
         double ax = 0.0;
         double ay = 0.0;
         
-        // Retrieve the entity's components.
-        
-        this.transform = ( ComponentTransform ) entity.getComponent ( Constants.COMPONENT_TRANSFORM );
-        this.physics   = ( ComponentPhysics )   entity.getComponent ( Constants.COMPONENT_PHYSICS );
-        
         // Initialize working variables.
         
-        Vector2D a      = new Vector2D ( this.physics.acceleration );
-        Vector2D v      = new Vector2D ();        
-        Vector2D d      = new Vector2D ();
-        Vector2D u      = new Vector2D ();
-        Vector2D dUp    = new Vector2D ( 0.0,  1.0 );
-        Vector2D dDown  = new Vector2D ( 0.0, -1.0 );
-        Vector2D dRight = new Vector2D (  1.0, 0.0 );
-        Vector2D dLeft  = new Vector2D ( -1.0, 0.0 );
+        int      mark   = scratch.mark ();
+        Vector2D a      = scratch.take ( physics.acceleration );
+        Vector2D v      = scratch.take ();
+        Vector2D d      = scratch.take ();
+        Vector2D s      = scratch.take ();      // Scaled acceleration direction.
         double   p      = FRICTION_COEFFICIENT;
-        double   vMax   = this.physics.vMax;
+        double   vMax   = physics.vMax;
         
         // Calculate velocity.
         
-        v.setVector ( a.scale ( t ) );          // Acceleration: a = v/t  ↔  v = a·t (Newtonian acceleration).
+        a.scaleInto ( t, v );                   // Acceleration: a = v/t  ↔  v = a·t (Newtonian acceleration).
                 
         // Apply accelerator.
         
         if ( v.magnitude() < vMax / t )
         {   
-            if ( this.physics.accelerateUp    ) { a.setVector ( a.add ( dUp.scale    ( ACCELERATION ) ) ); }
-            if ( this.physics.accelerateDown  ) { a.setVector ( a.add ( dDown.scale  ( ACCELERATION ) ) ); }
-            if ( this.physics.accelerateRight ) { a.setVector ( a.add ( dRight.scale ( ACCELERATION ) ) ); }
-            if ( this.physics.accelerateLeft  ) { a.setVector ( a.add ( dLeft.scale  ( ACCELERATION ) ) ); }                     
+            if ( physics.accelerateUp    ) { a.addInPlace ( M_UP.scaleInto    ( ACCELERATION, s ) ); }
+            if ( physics.accelerateDown  ) { a.addInPlace ( M_DOWN.scaleInto  ( ACCELERATION, s ) ); }
+            if ( physics.accelerateRight ) { a.addInPlace ( M_RIGHT.scaleInto ( ACCELERATION, s ) ); }
+            if ( physics.accelerateLeft  ) { a.addInPlace ( M_LEFT.scaleInto  ( ACCELERATION, s ) ); }                     
         }        
         else
         {   
-            if ( this.physics.accelerateUp    ) { a.setVector ( a.subtract ( dUp.scale    ( ACCELERATION ) ) ); }
-            if ( this.physics.accelerateDown  ) { a.setVector ( a.subtract ( dDown.scale  ( ACCELERATION ) ) ); }
-            if ( this.physics.accelerateRight ) { a.setVector ( a.subtract ( dRight.scale ( ACCELERATION ) ) ); }
-            if ( this.physics.accelerateLeft  ) { a.setVector ( a.subtract ( dLeft.scale  ( ACCELERATION ) ) ); }
+            if ( physics.accelerateUp    ) { a.subtractInPlace ( M_UP.scaleInto    ( ACCELERATION, s ) ); }
+            if ( physics.accelerateDown  ) { a.subtractInPlace ( M_DOWN.scaleInto  ( ACCELERATION, s ) ); }
+            if ( physics.accelerateRight ) { a.subtractInPlace ( M_RIGHT.scaleInto ( ACCELERATION, s ) ); }
+            if ( physics.accelerateLeft  ) { a.subtractInPlace ( M_LEFT.scaleInto  ( ACCELERATION, s ) ); }
         }
         
         // Calculate displacement. ( Distance to move in this time slice ).
         
-        d.setVector ( v.scale ( t ) );          // Velocity: v = d/t  ↔  d = v·t (Newtonian velocity).
+        v.scaleInto ( t, d );                   // Velocity: v = d/t  ↔  d = v·t (Newtonian velocity).
                 
         // Apply friction coefficient.
         
-        double a2 = 4.0;    // Friction amplifier. Used to speed up lateral deceleration, which improves the sense of control response experienced by the user.
+        double a2 = FRICTION_AMPLIFIER;     // Friction amplifier.
         
         ax = a.getX ();
         ay = a.getY ();
         
-        if ( this.physics.accelerateUp || this.physics.accelerateDown )
+        if ( physics.accelerateUp || physics.accelerateDown )
         {
             // If the user is currently accelerating up or down, then use the friction amplifier to speed up deceleration along the horizontal axis.
             
@@ -213,7 +268,7 @@ public class SystemPhysicsEngine extends ECSSystem
             if ( ay < 0 ) ay += p;
             if ( ay > 0 ) ay -= p;
         }
-        else if ( this.physics.accelerateLeft || this.physics.accelerateRight )
+        else if ( physics.accelerateLeft || physics.accelerateRight )
         {
             // If the user is currently accelerating left or right, then use the friction amplifier to speed up deceleration along the vertical axis.
             
@@ -236,12 +291,20 @@ public class SystemPhysicsEngine extends ECSSystem
         
         // Update physics.
         
-        this.physics.acceleration.setVector ( a );
-        this.physics.velocity.setVector     ( v );
+        physics.acceleration.setVector ( a );
+        physics.velocity.setVector     ( v );
+        
+        // Update translation. Keep the previous translation, so that the renderer can interpolate between simulation steps.
+        
+        transform.previousTranslation.setVector ( transform.translation );
+        transform.translation.addInPlace        ( d );
+        
+        // Notify change tracking systems.
         
-        // Update translation.
+        markChanged ( transform );
+        markChanged ( physics );
         
-        this.transform.translation.setVector ( this.transform.translation.add ( d ) );
+        scratch.release ( mark );
     }
 }
 
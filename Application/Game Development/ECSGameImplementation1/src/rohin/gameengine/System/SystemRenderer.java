@@ -93,6 +93,7 @@ public class SystemRenderer extends ECSSystem
     private double[]            screenSize;                     // Screen size. Usually this will be set equal to the component's view port size.
     private int                 frameCounterTranslationHistory; // Used for counting frames.
     private int                 frameCountTranslationHistory;   // Used for reseting frame counter.
+    private double              alpha;                          // Interpolation factor between the previous and current simulation step.
     
     // @formatter:off
     
@@ -110,10 +111,25 @@ public class SystemRenderer extends ECSSystem
         
         // Initialize components.
         
-        this.transform  = new ComponentTransform ();
-        this.geometry   = new ComponentGeometry ();        
-        this.sprite     = new ComponentResourceSprite ();
-        this.projection = new ComponentProjection2D ();
+        this.transform  = null;
+        this.geometry   = null;
+        this.sprite     = null;
+        this.projection = null;
+        
+        // Create a live query of renderable entities.
+        // - The renderer must clear the screen and swap buffers every frame, even when there is nothing to draw, so it does not declare a required
+        //   signature through requireComponents. That way the engine never skips it.
+        
+        this.query = owner.createQuery ( ComponentTransform.class, ComponentGeometry.class, ComponentResourceSprite.class, ComponentProjection2D.class );
+        
+        // Declare component access, for the parallel scheduler. The renderer records each entity's translation history, so it writes transforms.
+        
+        writesComponents ( ComponentTransform.class );
+        readsComponents  ( ComponentGeometry.class, ComponentResourceSprite.class, ComponentProjection2D.class );
+        
+        // The renderer presents one frame per game loop iteration, independent of the simulation time step.
+        
+        setRenderSystem ( true );
                 
         // Initialize application and game engine parameters.
         
@@ -141,6 +157,7 @@ public class SystemRenderer extends ECSSystem
         this.viewPortMin  = null;                                          
         this.viewPortMax  = null;
         this.screenSize   = null;
+        this.alpha        = 1.0;
         
         // Frame Counters
         
@@ -186,26 +203,57 @@ public class SystemRenderer extends ECSSystem
             this.screenSize = new double[] { this.application.getScreenWidth (), this.application.getScreenHeight () }; 
             renderGrid ();
             
-            // Iterate through all entities, filtering by those that contain the specific set of components, that this system is intended to work with.
-            
-            for ( ECSEntity entity : engine.getEntities ().values () )
-            {   
-                if ( entity.hasComponents ( transform, geometry, sprite, projection ) )
-                {   
-                    // Render entity geometry.
-                    
-                    renderGeometry ( entity );
+            if ( engine.isArchetypeStorageEnabled () )
+            {
+                // Iterate through the chunks of all archetypes that contain the components this system is intended to work with.
+                
+                for ( ECSArchetype archetype : engine.getArchetypeStorage ().query ( this.query.getSignature () ) )
+                {
+                    int transformColumn  = archetype.getColumnIndex ( ComponentTransform.class );
+                    int geometryColumn   = archetype.getColumnIndex ( ComponentGeometry.class );
+                    int spriteColumn     = archetype.getColumnIndex ( ComponentResourceSprite.class );
+                    int projectionColumn = archetype.getColumnIndex ( ComponentProjection2D.class );
                     
-                    // Update frame counters.
+                    for ( ECSArchetypeChunk chunk : archetype.getChunks () )
+                    {
+                        ECSComponent[] transforms  = chunk.getColumn ( transformColumn );
+                        ECSComponent[] geometries  = chunk.getColumn ( geometryColumn );
+                        ECSComponent[] sprites     = chunk.getColumn ( spriteColumn );
+                        ECSComponent[] projections = chunk.getColumn ( projectionColumn );
+                        int            count       = chunk.getCount ();
+                        
+                        for ( int row = 0; row < count; row++ )
+                        {
+                            this.transform  = ( ComponentTransform )      transforms  [ row ];
+                            this.geometry   = ( ComponentGeometry )       geometries  [ row ];
+                            this.sprite     = ( ComponentResourceSprite ) sprites     [ row ];
+                            this.projection = ( ComponentProjection2D )   projections [ row ];
+                            
+                            renderEntity ();
+                        }
+                    }
+                }
+            }
+            else
+            {
+                // Iterate through the entities that contain the specific set of components, that this system is intended to work with.
+                
+                int count = this.query.size ();
+                
+                for ( int i = 0; i < count; i++ )
+                {   
+                    ECSEntity entity = this.query.get ( i );
                     
-                    if ( this.frameCounterTranslationHistory >= this.frameCountTranslationHistory ) this.frameCounterTranslationHistory = 0;                    
-                    else ++this.frameCounterTranslationHistory;
+                    // Retrieve the entity's components.
                     
-                    // Console logger.
+                    this.transform  = ( ComponentTransform )      entity.getComponent ( Constants.COMPONENT_TRANSFORM );
+                    this.geometry   = ( ComponentGeometry )       entity.getComponent ( Constants.COMPONENT_GEOMETRY );
+                    this.sprite     = ( ComponentResourceSprite ) entity.getComponent ( Constants.COMPONENT_RESOURCE_SPRITE );
+                    this.projection = ( ComponentProjection2D )   entity.getComponent ( Constants.COMPONENT_PROJECTION_2D );
                     
-                    logger.log ();
-                }
-            } 
+                    renderEntity ();
+                } 
+            }
             
             // Swap the double buffers.
                     
@@ -217,6 +265,61 @@ public class SystemRenderer extends ECSSystem
         }
     }
     
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Description:
+    // - Override implementation of ECSSystem.render.
+    //
+    // Arguments:
+    //
+    // - t
+    //   Game loop tick time.
+    //
+    // - alpha
+    //   Interpolation factor. Entities are drawn at this fraction of the way from their previous translation to their current translation.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @Override
+    public void render ( long t, double alpha )
+    {
+        this.alpha = alpha;
+        
+        update ( t );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // renderEntity 
+    //
+    // Description:
+    //
+    // - Render the entity whose components are currently loaded into the system's component fields.
+    //
+    // Preconditions:
+    //
+    // - transform, geometry, sprite and projection must reference the components of the entity we would like to render.
+    //
+    // Postconditions:
+    //
+    // - The entity has been rendered, and the translation history frame counter has been advanced.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private void renderEntity ()
+    {
+        // Render entity geometry.
+        
+        renderGeometry ();
+        
+        // Update frame counters.
+        
+        if ( this.frameCounterTranslationHistory >= this.frameCountTranslationHistory ) this.frameCounterTranslationHistory = 0;                    
+        else ++this.frameCounterTranslationHistory;
+        
+        // Console logger.
+        
+        logger.log ();
+    }
+    
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // renderGeometry 
     //
@@ -226,8 +329,7 @@ public class SystemRenderer extends ECSSystem
     //
     // Arguments:
     //
-    // - entity
-    //   The ECS entity that we would like to render.
+    // - None. The entity's components are read from the system's component fields.
     //
     // Return Value:
     //
@@ -243,15 +345,8 @@ public class SystemRenderer extends ECSSystem
     //
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     
-    private void renderGeometry ( ECSEntity entity )
+    private void renderGeometry ()
     {
-        // Retrieve the entity's components.
-        
-        this.transform      = ( ComponentTransform )      entity.getComponent ( Constants.COMPONENT_TRANSFORM );
-        this.geometry       = ( ComponentGeometry )       entity.getComponent ( Constants.COMPONENT_GEOMETRY );
-        this.sprite         = ( ComponentResourceSprite ) entity.getComponent ( Constants.COMPONENT_RESOURCE_SPRITE );
-        this.projection     = ( ComponentProjection2D )   entity.getComponent ( Constants.COMPONENT_PROJECTION_2D );
-        
         // Retrieve projection and rendering data.
         
         this.window         = projection.window;                                                            // Get the window boundaries for the current projection.
@@ -259,13 +354,33 @@ public class SystemRenderer extends ECSSystem
         this.scale          = projection.scale;                                                             // Get the scaling vector.
         this.viewPort       = projection.viewPort;                                                          // Get the view port vector.        
         this.layer          = projection.layer;                                                             // Get the projection layer. Used as acceleration z-buffer.        
-        this.viewPortMin    = new double [] { viewPort [ XMIN ], viewPort [ YMIN ] };                       // Get the view ports minimum boundary vector.                                          
-        this.viewPortMax    = new double [] { viewPort [ XMAX ], viewPort [ YMAX ] };                       // Get the view ports maximum boundary vector.
-        this.screenSize     = GMath.subVector ( viewPortMax, viewPortMin );                                 // Set screen size equal to the component's view port size.
         
-        // Calculate aspect ratio.
+        // Recalculate the projection's derived values, only if its view port or aspect differ from the values they were derived from.
+        // Static projections, i.e. almost all of them, are calculated once, the first time they are rendered.
+        
+        double[] derivedViewPort = projection.derivedViewPort;
+        double[] derivedAspect   = projection.derivedAspect;
+        double[] aspect          = projection.aspect;
         
-        this.aspectRatio = projection.aspect[Y] / projection.aspect[X];
+        if
+        (
+            ( viewPort [ XMIN ] != derivedViewPort [ XMIN ] ) || ( viewPort [ YMIN ] != derivedViewPort [ YMIN ] ) ||
+            ( viewPort [ XMAX ] != derivedViewPort [ XMAX ] ) || ( viewPort [ YMAX ] != derivedViewPort [ YMAX ] ) ||
+            ( aspect   [ X    ] != derivedAspect   [ X    ] ) || ( aspect   [ Y    ] != derivedAspect   [ Y    ] )
+        )
+        {
+            this.viewPortMin = new double [] { viewPort [ XMIN ], viewPort [ YMIN ] };                      // Get the view ports minimum boundary vector.                                          
+            this.viewPortMax = new double [] { viewPort [ XMAX ], viewPort [ YMAX ] };                      // Get the view ports maximum boundary vector.
+            
+            projection.screenSize  = GMath.subVector ( viewPortMax, viewPortMin );                          // Set screen size equal to the component's view port size.
+            projection.aspectRatio = aspect[Y] / aspect[X];                                                 // Calculate aspect ratio.
+            
+            System.arraycopy ( viewPort, 0, derivedViewPort, 0, derivedViewPort.length );                   // Remember the values the derived values were calculated from.
+            System.arraycopy ( aspect,   0, derivedAspect,   0, derivedAspect.length   );
+        }
+        
+        this.screenSize  = projection.screenSize;
+        this.aspectRatio = projection.aspectRatio;
                 
         // Retrieve the entity's geometry.
         
@@ -305,6 +420,33 @@ public class SystemRenderer extends ECSSystem
         }   
     }
     
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // interpolateTranslation
+    //
+    // Description:
+    //
+    // - Blend the current entity's previous and current translation, by the interpolation factor alpha.
+    // - With a fixed simulation time step, this lets entities move smoothly at any frame rate.
+    //
+    // Return Value:
+    //
+    // - previousTranslation + alpha * ( translation - previousTranslation ).
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private Vector2D interpolateTranslation ()
+    {
+        Vector2D current  = transform.translation;
+        Vector2D previous = transform.previousTranslation;
+        
+        if ( this.alpha >= 1.0 )
+        {
+            return new Vector2D ( current );
+        }
+        
+        return previous.add ( current.subtract ( previous ).scale ( this.alpha ) );
+    }
+    
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // renderGeometryCircle
     //
@@ -343,7 +485,7 @@ public class SystemRenderer extends ECSSystem
         // Retrieve transformation parameters
                 
         Vector2D o  = new Vector2D ( transform.origin      );   // o = origin (Center of rotation).
-        Vector2D d  = new Vector2D ( transform.translation );   // d = displacement (linear translation).
+        Vector2D d  = interpolateTranslation ();                // d = displacement (linear translation).
         double   a  = transform.rotation[2];                    // a = angular displacement. 
         Vector2D s  = new Vector2D ( transform.scale       );   // s = scale.
         Vector2D p  = new Vector2D ( 0.0, 0.0 );                // Calculated position.
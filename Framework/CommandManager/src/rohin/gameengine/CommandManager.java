@@ -37,12 +37,16 @@ public class CommandManager
     private Queue <ICommand> commandQueue;
     private Boolean          loggingEnabled;
     private ConsoleLogger    logger;
+    private ICommandRecorder recorder;          // Receives every command before it is executed. Null if commands are not being recorded.
  
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // 
     // ACCESSORS and MUTATORS
     //
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    
+    public ICommandRecorder getRecorder ()                            { return this.recorder;      }
+    public void             setRecorder ( ICommandRecorder recorder ) { this.recorder = recorder;  }
  
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // 
@@ -57,10 +61,27 @@ public class CommandManager
     // ---------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------
     
     public CommandManager ()
+    {
+        this ( true );
+    }
+    
+    // ---------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Constructor 2
+    //
+    // Arguments:
+    //
+    //     loggingEnabled
+    //     True to log every posted command to the console.
+    //
+    // ---------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public CommandManager ( Boolean loggingEnabled )
     {
         this.commandQueue   = new LinkedList < ICommand > ();
-        this.loggingEnabled = true;
+        this.loggingEnabled = loggingEnabled;
         this.logger         = new ConsoleLogger ( this, this.loggingEnabled );
+        this.recorder       = null;
     }
        
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -110,6 +131,8 @@ public class CommandManager
     //
     // Execute and dequeue all commands in the queue.
     //
+    // If a recorder is set, then each command is passed to the recorder immediately before it is executed.
+    //
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     
     public void flush ()
@@ -117,6 +140,12 @@ public class CommandManager
         while ( this.commandQueue.size () > 0 )
         {
             ICommand command = this.commandQueue.remove ();
+            
+            if ( this.recorder != null )
+            {
+                this.recorder.record ( command );
+            }
+            
             command.execute ();       
         }
     }
@@ -0,0 +1,14 @@
+package rohin.gameengine;
+
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+//
+// ICommandRecorder:
+//
+// Receives every command executed by a CommandManager, immediately before the command is executed. Used to record command streams, for replay.
+//
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+public interface ICommandRecorder
+{
+    public void record ( ICommand command );
+}
@@ -0,0 +1,237 @@
+package rohin.gameengine;
+
+import java.util.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSArchetype
+//
+// The set of all entities that share exactly the same set of component types.
+//
+// - Entities are packed into fixed capacity chunks. Only the last chunk may be partially filled.
+// - Removing an entity moves the last entity of the last chunk into the hole, so that iteration over the chunks is always linear and dense.
+// - An archetype holds at most one component per component type. Entities holding two components of the same type are rejected by
+//   ECSArchetypeStorage.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSArchetype
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int M_DEFAULT_CHUNK_CAPACITY = 256;    // Number of entities per chunk.
+
+    // Fields.
+
+    private ECSSignature                   signature;       // Component type indices present in this archetype.
+    private int[]                          types;           // Component type indices, in column order.
+    private int[]                          columnIndices;   // Lookup table. Component type index to column index, or -1 if the type is not present.
+    private List <ECSArchetypeChunk>       chunks;          // Entity chunks.
+    private int                            chunkCapacity;   // Number of entities per chunk.
+    private int                            entityCount;     // Total number of entities across all chunks.
+    private ECSComponent[]                 row;             // Scratch row. Used to gather an entity's components in column order.
+
+    // Accessors and mutators.
+
+    public ECSSignature             getSignature     () { return this.signature;     }
+    public List <ECSArchetypeChunk> getChunks        () { return this.chunks;        }
+    public int                      getColumnCount   () { return this.types.length;  }
+    public int                      getEntityCount   () { return this.entityCount;   }
+    public int                      getChunkCapacity () { return this.chunkCapacity; }
+
+    // Constructors.
+
+    public ECSArchetype ( ECSSignature signature )                    { initialize ( signature, M_DEFAULT_CHUNK_CAPACITY ); }
+    public ECSArchetype ( ECSSignature signature, int chunkCapacity ) { initialize ( signature, chunkCapacity            ); }
+
+    // Initialize.
+
+    private void initialize ( ECSSignature signature, int chunkCapacity )
+    {
+        this.signature     = new ECSSignature ( signature );
+        this.types         = new int [ signature.cardinality () ];
+        this.columnIndices = new int [ signature.length () ];
+        this.chunks        = new ArrayList <ECSArchetypeChunk> ();
+        this.chunkCapacity = chunkCapacity;
+        this.entityCount   = 0;
+        this.row           = new ECSComponent [ this.types.length ];
+
+        // Build the column lookup table. Columns are ordered by ascending component type index.
+
+        Arrays.fill ( this.columnIndices, -1 );
+
+        int column = 0;
+
+        for ( int type = signature.nextSetBit ( 0 ); type >= 0; type = signature.nextSetBit ( type + 1 ) )
+        {
+            this.types         [ column ] = type;
+            this.columnIndices [ type   ] = column;
+            ++column;
+        }
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getColumnIndex
+    //
+    // Return the column that stores components of the specified type, or -1 if the type is not part of this archetype.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int getColumnIndex ( Class <? extends ECSComponent> type )
+    {
+        return getColumnIndex ( ECSComponentType.getIndex ( type ) );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getColumnIndex
+    //
+    // Return the column that stores components with the specified type index, or -1 if the type is not part of this archetype.
+    // Systems that look up columns for every chunk should resolve their type indices once, and use this overload.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int getColumnIndex ( int typeIndex )
+    {
+        return ( typeIndex < this.columnIndices.length ) ? this.columnIndices [ typeIndex ] : -1;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // matches
+    //
+    // Returns true if this archetype contains every component type in the required signature.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean matches ( ECSSignature required )
+    {
+        return this.signature.containsAll ( required );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // add
+    //
+    // Description:
+    //
+    // - Store an entity and its components in the last chunk of the archetype, allocating a new chunk if the last chunk is full.
+    //
+    // Preconditions:
+    //
+    // - The entity's component set must match the signature of this archetype, with one component per type.
+    //
+    // Postconditions:
+    //
+    // - The entity's chunk and row have been updated to reference its new location.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void add ( ECSEntity entity )
+    {
+        // Gather the entity's components, in column order.
+
+        ECSComponent[]            components       = this.row;
+        IntHashMap <ECSComponent> entityComponents = entity.getComponents ();
+
+        for ( int i = 0; i < entityComponents.size (); i++ )
+        {
+            ECSComponent component = entityComponents.valueAt ( i );
+
+            components [ this.columnIndices [ component.getTypeIndex () ] ] = component;
+        }
+
+        // Find a chunk with a free row.
+
+        ECSArchetypeChunk chunk = null;
+
+        if ( !this.chunks.isEmpty () )
+        {
+            chunk = this.chunks.get ( this.chunks.size () - 1 );
+        }
+
+        if ( ( chunk == null ) || chunk.isFull () )
+        {
+            chunk = new ECSArchetypeChunk ( this, this.types.length, this.chunkCapacity );
+            this.chunks.add ( chunk );
+        }
+
+        // Store the entity.
+
+        entity.archetypeChunk = chunk;
+        entity.archetypeRow   = chunk.add ( entity, components );
+
+        ++this.entityCount;
+
+        // Release the scratch row's references.
+
+        Arrays.fill ( components, null );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // set
+    //
+    // Description:
+    //
+    // - Overwrite the components of an entity already stored in this archetype, in place. Used when a component has been replaced by another of
+    //   the same type, so that the entity's component set is unchanged.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void set ( ECSEntity entity )
+    {
+        IntHashMap <ECSComponent> entityComponents = entity.getComponents ();
+
+        for ( int i = 0; i < entityComponents.size (); i++ )
+        {
+            ECSComponent component = entityComponents.valueAt ( i );
+
+            entity.archetypeChunk.setComponent ( this.columnIndices [ component.getTypeIndex () ], entity.archetypeRow, component );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // remove
+    //
+    // Description:
+    //
+    // - Remove an entity from the archetype, by moving the last entity of the last chunk into the row the entity occupied.
+    //
+    // Postconditions:
+    //
+    // - The moved entity's location has been updated.
+    // - The removed entity no longer references a chunk.
+    // - Empty trailing chunks are released.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void remove ( ECSEntity entity )
+    {
+        ECSArchetypeChunk chunk     = entity.archetypeChunk;
+        int               row       = entity.archetypeRow;
+        ECSArchetypeChunk lastChunk = this.chunks.get ( this.chunks.size () - 1 );
+        int               lastRow   = lastChunk.getCount () - 1;
+
+        // Fill the hole with the last entity of the archetype.
+
+        if ( ( chunk != lastChunk ) || ( row != lastRow ) )
+        {
+            chunk.set ( row, lastChunk, lastRow );
+
+            ECSEntity moved = chunk.getEntity ( row );
+
+            moved.archetypeChunk = chunk;
+            moved.archetypeRow   = row;
+        }
+
+        lastChunk.removeLast ();
+
+        if ( lastChunk.isEmpty () )
+        {
+            this.chunks.remove ( this.chunks.size () - 1 );
+        }
+
+        // Detach the removed entity.
+
+        entity.archetypeChunk = null;
+        entity.archetypeRow   = -1;
+
+        --this.entityCount;
+    }
+}
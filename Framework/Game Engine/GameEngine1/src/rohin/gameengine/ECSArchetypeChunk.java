@@ -0,0 +1,132 @@
+package rohin.gameengine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSArchetypeChunk
+//
+// Fixed capacity block of entities that all share the same archetype.
+//
+// - Components are stored column wise. i.e. One contiguous array per component type, indexed by row.
+// - Rows 0 to count-1 are always occupied. Rows are kept dense by the owning archetype, using swap-remove deletion.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSArchetypeChunk
+{
+    // @formatter:off
+
+    // Fields.
+
+    private ECSArchetype     archetype;     // The archetype this chunk belongs to.
+    private ECSEntity[]      entities;      // Entity stored in each row.
+    private ECSComponent[][] columns;       // Component columns. columns [ column ][ row ].
+    private int              count;         // Number of occupied rows.
+
+    // Accessors and mutators.
+
+    public ECSArchetype   getArchetype ()             { return this.archetype;                      }
+    public int            getCount     ()             { return this.count;                          }
+    public int            getCapacity  ()             { return this.entities.length;                }
+    public Boolean        isFull       ()             { return this.count >= this.entities.length;  }
+    public Boolean        isEmpty      ()             { return this.count == 0;                     }
+    public ECSEntity      getEntity    ( int row )    { return this.entities [ row ];               }
+    public ECSComponent[] getColumn    ( int column ) { return this.columns [ column ];             }
+
+    // Constructors.
+
+    public ECSArchetypeChunk ( ECSArchetype archetype, int columnCount, int capacity )
+    {
+        this.archetype = archetype;
+        this.entities  = new ECSEntity [ capacity ];
+        this.columns   = new ECSComponent [ columnCount ][ capacity ];
+        this.count     = 0;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Get the components of a specific type, using the column index resolved through the archetype.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public ECSComponent[] getColumn ( Class <? extends ECSComponent> type )
+    {
+        int column = this.archetype.getColumnIndex ( type );
+
+        return ( column < 0 ) ? null : this.columns [ column ];
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // add
+    //
+    // Append an entity and its components to the end of the chunk.
+    //
+    // Preconditions:
+    //
+    // - The chunk must not be full.
+    // - components must be ordered by column, as defined by the owning archetype.
+    //
+    // Return Value:
+    //
+    // - The row the entity was stored in.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    int add ( ECSEntity entity, ECSComponent[] components )
+    {
+        int row = this.count;
+
+        this.entities [ row ] = entity;
+
+        for ( int column = 0; column < this.columns.length; column++ )
+        {
+            this.columns [ column ][ row ] = components [ column ];
+        }
+
+        ++this.count;
+
+        return row;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // set
+    //
+    // Overwrite a row with the entity and components from a row of another chunk of the same archetype.
+    // Used to fill holes left behind by removed entities.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void set ( int row, ECSArchetypeChunk source, int sourceRow )
+    {
+        this.entities [ row ] = source.entities [ sourceRow ];
+
+        for ( int column = 0; column < this.columns.length; column++ )
+        {
+            this.columns [ column ][ row ] = source.columns [ column ][ sourceRow ];
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // setComponent
+    //
+    // Overwrite the component of a single column and row.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void setComponent ( int column, int row, ECSComponent component )
+    {
+        this.columns [ column ][ row ] = component;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // removeLast
+    //
+    // Clear the last occupied row, so that the chunk does not keep removed entities and components reachable.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void removeLast ()
+    {
+        --this.count;
+
+        this.entities [ this.count ] = null;
+
+        for ( int column = 0; column < this.columns.length; column++ )
+        {
+            this.columns [ column ][ this.count ] = null;
+        }
+    }
+}
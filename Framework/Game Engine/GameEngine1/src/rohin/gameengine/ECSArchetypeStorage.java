@@ -0,0 +1,211 @@
+package rohin.gameengine;
+
+import java.util.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSArchetypeStorage
+//
+// Archetype based component storage for an ECSEngine.
+//
+// - Entities are grouped by component set into archetypes, and stored column wise in chunks.
+// - Queries return the live list of archetypes that match a required set of component types. Systems iterate the chunks of each archetype linearly.
+// - Query results are cached. When a new archetype is created, it is appended to every cached query it matches.
+// - Archetypes hold one component per component type. Entities that hold two components of the same type, under different keys, are rejected with
+//   an IllegalStateException.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSArchetypeStorage
+{
+    // @formatter:off
+
+    // Fields.
+
+    private Map  <ECSSignature, ECSArchetype>        archetypes;     // Archetypes, keyed by component signature.
+    private Map  <ECSSignature, List <ECSArchetype>> queries;        // Cached query results, keyed by required signature.
+    private int                                      chunkCapacity;  // Number of entities per chunk, for new archetypes.
+
+    // Accessors and mutators.
+
+    public Collection <ECSArchetype> getArchetypes () { return this.archetypes.values (); }
+
+    // Constructors.
+
+    public ECSArchetypeStorage ()                    { initialize ( ECSArchetype.M_DEFAULT_CHUNK_CAPACITY ); }
+    public ECSArchetypeStorage ( int chunkCapacity ) { initialize ( chunkCapacity                         ); }
+
+    // Initialize.
+
+    private void initialize ( int chunkCapacity )
+    {
+        this.archetypes    = new HashMap <ECSSignature, ECSArchetype> ();
+        this.queries       = new HashMap <ECSSignature, List <ECSArchetype>> ();
+        this.chunkCapacity = chunkCapacity;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // add
+    //
+    // Store an entity in the archetype matching its current component set.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void add ( ECSEntity entity )
+    {
+        checkComponentTypes ( entity );
+
+        getArchetype ( entity.getSignature () ).add ( entity );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // remove
+    //
+    // Remove an entity from whichever archetype it is currently stored in.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void remove ( ECSEntity entity )
+    {
+        if ( entity.archetypeChunk != null )
+        {
+            entity.archetypeChunk.getArchetype ().remove ( entity );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // update
+    //
+    // Description:
+    //
+    // - Move an entity to a new archetype, after a component has been added to, or removed from, the entity.
+    // - If the entity's component set is unchanged, e.g. a component was replaced by another of the same type, then the entity's row is
+    //   overwritten in place.
+    // - Otherwise, the entity is removed from its current archetype, and re-added to the archetype matching its new component set.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void update ( ECSEntity entity )
+    {
+        ECSArchetypeChunk chunk = entity.archetypeChunk;
+
+        if ( ( chunk != null ) && chunk.getArchetype ().getSignature ().equals ( entity.getSignature () ) )
+        {
+            checkComponentTypes ( entity );
+
+            chunk.getArchetype ().set ( entity );
+        }
+        else
+        {
+            remove ( entity );
+            add    ( entity );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // checkComponentTypes
+    //
+    // Throw an IllegalStateException if an entity holds more than one component of the same type, since its archetype row could only hold one of
+    // them.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void checkComponentTypes ( ECSEntity entity )
+    {
+        if ( entity.getComponents ().size () != entity.getSignature ().cardinality () )
+        {
+            throw new IllegalStateException ( "Entity " + entity.getId () + " holds more than one component of the same type, which archetype storage does not support." );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // clear
+    //
+    // Release all archetypes and cached queries.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void clear ()
+    {
+        for ( ECSArchetype archetype : this.archetypes.values () )
+        {
+            for ( ECSArchetypeChunk chunk : archetype.getChunks () )
+            {
+                for ( int row = 0; row < chunk.getCount (); row++ )
+                {
+                    ECSEntity entity = chunk.getEntity ( row );
+
+                    entity.archetypeChunk = null;
+                    entity.archetypeRow   = -1;
+                }
+            }
+        }
+
+        this.archetypes.clear ();
+        this.queries.clear ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // query
+    //
+    // Description:
+    //
+    // - Retrieve all archetypes that contain at least the required component types.
+    //
+    // Arguments:
+    //
+    // - required
+    //   Required component signature. See ECSSignature.of.
+    //
+    // Return Value:
+    //
+    // - A live list of matching archetypes. The list is maintained by the storage, and must not be modified by the caller.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public List <ECSArchetype> query ( ECSSignature required )
+    {
+        List <ECSArchetype> result = this.queries.get ( required );
+
+        if ( result == null )
+        {
+            result = new ArrayList <ECSArchetype> ();
+
+            for ( ECSArchetype archetype : this.archetypes.values () )
+            {
+                if ( archetype.matches ( required ) )
+                {
+                    result.add ( archetype );
+                }
+            }
+
+            this.queries.put ( new ECSSignature ( required ), result );
+        }
+
+        return result;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getArchetype
+    //
+    // Retrieve the archetype for a component signature, creating it, and registering it with all matching cached queries, if it does not exist yet.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private ECSArchetype getArchetype ( ECSSignature signature )
+    {
+        ECSArchetype archetype = this.archetypes.get ( signature );
+
+        if ( archetype == null )
+        {
+            archetype = new ECSArchetype ( signature, this.chunkCapacity );
+
+            this.archetypes.put ( archetype.getSignature (), archetype );
+
+            for ( Map.Entry <ECSSignature, List <ECSArchetype>> query : this.queries.entrySet () )
+            {
+                if ( archetype.matches ( query.getKey () ) )
+                {
+                    query.getValue ().add ( archetype );
+                }
+            }
+        }
+
+        return archetype;
+    }
+}
@@ -0,0 +1,149 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSCommandBuffer
+//
+// Records structural changes to an engine's entities, for playback at a defined point in the frame.
+//
+// - Adding or removing entities or components changes the queries and archetype chunks that systems iterate over. Systems therefore record such
+//   changes into the engine's command buffer during their update, instead of applying them directly.
+// - The engine plays the buffer back after every system update pass, i.e. once per frame with a variable time step, and once per simulation step
+//   with a fixed time step. Changes recorded during a pass are visible to all systems in the next pass.
+// - Commands are played back in the order they were recorded. Commands recorded by concurrent systems are played back in the order the recording
+//   threads acquired the buffer.
+//
+// Notes:
+//
+// - Recording is synchronized, so systems updated concurrently by the parallel scheduler, and ECSParallelSystem workers, may share the buffer.
+// - Commands are stored in parallel arrays, so recording does not allocate memory, except to grow the arrays.
+// - Spawned entities receive their ID on playback. Keep a reference to the entity, rather than its ID, until then.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSCommandBuffer
+{
+    // @formatter:off
+
+    // Constants - Command types.
+
+    public static final int M_COMMAND_ADD_ENTITY       = 0;     // ECSEngine.addEntity       ( key, entity ).
+    public static final int M_COMMAND_SPAWN_ENTITY     = 1;     // ECSEngine.spawnEntity     ( entity ).
+    public static final int M_COMMAND_REMOVE_ENTITY    = 2;     // ECSEngine.removeEntity    ( key ).
+    public static final int M_COMMAND_ADD_COMPONENT    = 3;     // ECSEntity.addComponent    ( key, component ).
+    public static final int M_COMMAND_REMOVE_COMPONENT = 4;     // ECSEntity.removeComponent ( key ).
+
+    // Constants.
+
+    public static final int M_DEFAULT_CAPACITY = 256;           // Initial number of commands the buffer can hold.
+
+    // Fields - Commands, stored as parallel arrays.
+
+    private int[]          types;           // Command type.
+    private int[]          keys;            // Entity key, or component key.
+    private ECSEntity[]    entities;        // Entity to add, or entity whose components change.
+    private ECSComponent[] components;      // Component to add.
+    private int            count;           // Number of recorded commands.
+
+    // Accessors and mutators.
+
+    public synchronized int     size    () { return this.count;      }
+    public synchronized Boolean isEmpty () { return this.count == 0; }
+
+    // Constructors.
+
+    public ECSCommandBuffer ()
+    {
+        this.types      = new int          [ M_DEFAULT_CAPACITY ];
+        this.keys       = new int          [ M_DEFAULT_CAPACITY ];
+        this.entities   = new ECSEntity    [ M_DEFAULT_CAPACITY ];
+        this.components = new ECSComponent [ M_DEFAULT_CAPACITY ];
+        this.count      = 0;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Record commands.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void addEntity       ( int key, ECSEntity entity                         ) { record ( M_COMMAND_ADD_ENTITY,       key, entity, null      ); }
+    public void spawnEntity     ( ECSEntity entity                                  ) { record ( M_COMMAND_SPAWN_ENTITY,     0,   entity, null      ); }
+    public void removeEntity    ( int key                                           ) { record ( M_COMMAND_REMOVE_ENTITY,    key, null,   null      ); }
+    public void addComponent    ( ECSEntity entity, int key, ECSComponent component ) { record ( M_COMMAND_ADD_COMPONENT,    key, entity, component ); }
+    public void removeComponent ( ECSEntity entity, int key                         ) { record ( M_COMMAND_REMOVE_COMPONENT, key, entity, null      ); }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // playback
+    //
+    // Description:
+    //
+    // - Apply all recorded commands to the specified engine, in order, and clear the buffer.
+    //
+    // Postconditions:
+    //
+    // - Commands recorded during playback, e.g. by a component constructor, are played back in the same call.
+    // - Removing an entity that has already been removed, or whose spawned ID is stale, has no effect.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized void playback ( ECSEngine engine )
+    {
+        for ( int i = 0; i < this.count; i++ )
+        {
+            int       key    = this.keys     [ i ];
+            ECSEntity entity = this.entities [ i ];
+
+            switch ( this.types [ i ] )
+            {
+                case M_COMMAND_ADD_ENTITY:       engine.addEntity       ( key, entity );                 break;
+                case M_COMMAND_SPAWN_ENTITY:     engine.spawnEntity     ( entity );                      break;
+                case M_COMMAND_REMOVE_ENTITY:    engine.removeEntity    ( key );                         break;
+                case M_COMMAND_ADD_COMPONENT:    entity.addComponent    ( key, this.components [ i ] );  break;
+                case M_COMMAND_REMOVE_COMPONENT: entity.removeComponent ( key );                         break;
+            }
+        }
+
+        clear ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // clear
+    //
+    // Discard all recorded commands, and release the references they hold.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized void clear ()
+    {
+        Arrays.fill ( this.entities,   0, this.count, null );
+        Arrays.fill ( this.components, 0, this.count, null );
+
+        this.count = 0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // record
+    //
+    // Append a command to the buffer, doubling the capacity of the arrays if they are full.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private synchronized void record ( int type, int key, ECSEntity entity, ECSComponent component )
+    {
+        if ( this.count >= this.types.length )
+        {
+            int capacity = this.types.length * 2;
+
+            this.types      = Arrays.copyOf ( this.types,      capacity );
+            this.keys       = Arrays.copyOf ( this.keys,       capacity );
+            this.entities   = Arrays.copyOf ( this.entities,   capacity );
+            this.components = Arrays.copyOf ( this.components, capacity );
+        }
+
+        this.types      [ this.count ] = type;
+        this.keys       [ this.count ] = key;
+        this.entities   [ this.count ] = entity;
+        this.components [ this.count ] = component;
+
+        ++this.count;
+    }
+}
@@ -0,0 +1,268 @@
+package rohin.gameengine;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSCommandRecorder
+//
+// Records every command executed by an engine's command manager, together with the simulation tick it was executed on, to an append only file.
+// The file is played back by ECSCommandReplay.
+//
+// - Commands are recorded as they are flushed from the command queue, so the recorded tick is the number of simulation steps that had been run
+//   when the command took effect. See ECSEngine.getTick.
+// - Only commands that implement IRecordableCommand are recorded. Other commands are counted, and skipped.
+// - Records are staged in memory, and appended to the file whenever the simulation tick changes, whenever the stage is full, and when the recorder
+//   is flushed or closed. So if the process ends without closing the recorder, at most the records of the last tick are lost.
+// - The recorder is synchronized, so that it may be closed from another thread, e.g. a shutdown hook, while its engine is running. Commands
+//   executed after the recorder has been closed are not recorded.
+//
+// Format (version 1):
+//
+//   Header:             M_RECORD_HEADER,  magic, format version, start tick
+//   Class definition:   M_RECORD_CLASS,   class index, class name
+//   Command:            M_RECORD_COMMAND, tick, class index, payload length, payload
+//
+// - A class is defined by a class definition record the first time a command of the class is recorded. Appending to an existing file starts a new
+//   header, so that class indices are never shared between recording sessions.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSCommandRecorder implements ICommandRecorder
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int  M_MAGIC           = 0x45435352;     // "ECSR".
+    public static final int  M_FORMAT_VERSION  = 1;              // Record file format version.
+    public static final byte M_RECORD_HEADER   = 0;              // Record type of a header.
+    public static final byte M_RECORD_CLASS    = 1;              // Record type of a class definition.
+    public static final byte M_RECORD_COMMAND  = 2;              // Record type of a command.
+    public static final int  M_STAGE_CAPACITY  = 64 * 1024;      // Number of bytes staged in memory before they are appended to the file.
+
+    // Fields.
+
+    private ECSEngine                engine;          // Engine whose commands are recorded.
+    private FileOutputStream         output;          // Record file, opened for appending.
+    private FileChannel              channel;         // Channel of the record file.
+    private ECSSnapshotBuffer        stage;           // Records that have not been appended to the file yet.
+    private Map <Class <?>, Integer> classes;         // Class index of each command class defined so far.
+    private long                     recordCount;     // Number of commands recorded.
+    private long                     skippedCount;    // Number of commands skipped, because they are not recordable.
+    private long                     stagedTick;      // Simulation tick of the most recently staged command.
+    private Boolean                  closed;          // True once the recorder has been closed.
+
+    // Accessors and mutators.
+
+    public ECSEngine getEngine       () { return this.engine;       }
+    public long      getRecordCount  () { return this.recordCount;  }
+    public long      getSkippedCount () { return this.skippedCount; }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Constructor
+    //
+    // Description:
+    //
+    // - Open a record file for appending, and write a header, with the engine's current simulation tick as the start tick.
+    //
+    // Arguments:
+    //
+    // - engine
+    //   The engine whose commands are recorded. The recorder does not attach itself. See start.
+    //
+    // - file
+    //   The record file. Created if it does not exist.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public ECSCommandRecorder ( ECSEngine engine, File file ) throws IOException
+    {
+        this.engine       = engine;
+        this.output       = new FileOutputStream ( file, true );
+        this.channel      = this.output.getChannel ();
+        this.stage        = new ECSSnapshotBuffer ( M_STAGE_CAPACITY );
+        this.classes      = new HashMap <Class <?>, Integer> ();
+        this.recordCount  = 0;
+        this.skippedCount = 0;
+        this.stagedTick   = engine.getTick ();
+        this.closed       = false;
+
+        this.stage.writeByte ( M_RECORD_HEADER );
+        this.stage.writeInt  ( M_MAGIC );
+        this.stage.writeInt  ( M_FORMAT_VERSION );
+        this.stage.writeLong ( engine.getTick () );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // start, stop
+    //
+    // Attach the recorder to, or detach it from, the engine's command manager.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void start ()
+    {
+        this.engine.getCommandManager ().setRecorder ( this );
+    }
+
+    public void stop ()
+    {
+        CommandManager commandManager = this.engine.getCommandManager ();
+
+        if ( commandManager.getRecorder () == this )
+        {
+            commandManager.setRecorder ( null );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: record
+    //
+    // Description:
+    //
+    // - Stage a command record, with the engine's current simulation tick. The records of previous ticks are appended to the file first.
+    //
+    // Postconditions:
+    //
+    // - Throws IllegalStateException if the staged records could not be appended to the file.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public synchronized void record ( ICommand command )
+    {
+        if ( this.closed )
+        {
+            return;
+        }
+
+        if ( !( command instanceof IRecordableCommand ) )
+        {
+            ++this.skippedCount;
+            return;
+        }
+
+        // Append the records of previous ticks to the file, once the tick has changed.
+
+        long tick = this.engine.getTick ();
+
+        if ( tick != this.stagedTick )
+        {
+            flushStage ();
+
+            this.stagedTick = tick;
+        }
+
+        // Define the command class, the first time it is seen.
+
+        Class <?> type  = command.getClass ();
+        Integer   index = this.classes.get ( type );
+
+        if ( index == null )
+        {
+            index = this.classes.size ();
+
+            this.classes.put ( type, index );
+
+            this.stage.writeByte   ( M_RECORD_CLASS );
+            this.stage.writeInt    ( index );
+            this.stage.writeString ( type.getName () );
+        }
+
+        // Command, with its payload prefixed by its length.
+
+        this.stage.writeByte ( M_RECORD_COMMAND );
+        this.stage.writeLong ( tick );
+        this.stage.writeInt  ( index );
+
+        int lengthOffset = this.stage.position ();
+
+        this.stage.writeInt ( 0 );
+
+        ( ( IRecordableCommand ) command ).writeRecord ( this.stage );
+
+        this.stage.writeInt ( lengthOffset, this.stage.position () - lengthOffset - 4 );
+
+        ++this.recordCount;
+
+        // Append the stage to the file, once it is full.
+
+        if ( this.stage.position () >= M_STAGE_CAPACITY )
+        {
+            flushStage ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // flushStage
+    //
+    // Append all staged records to the file, from record. Throws IllegalStateException if they could not be appended.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void flushStage ()
+    {
+        try
+        {
+            flush ();
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException ( "Unable to append to the command record file.", e );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // flush
+    //
+    // Append all staged records to the file.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized void flush () throws IOException
+    {
+        if ( this.closed )
+        {
+            return;
+        }
+
+        this.stage.flip ();
+
+        ByteBuffer bytes = this.stage.getByteBuffer ();
+
+        while ( bytes.hasRemaining () )
+        {
+            this.channel.write ( bytes );
+        }
+
+        this.stage.clear ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // close
+    //
+    // Detach the recorder from the engine, append all staged records to the file, and close the file. Closing a closed recorder has no effect.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized void close () throws IOException
+    {
+        if ( this.closed )
+        {
+            return;
+        }
+
+        stop ();
+
+        try
+        {
+            flush ();
+        }
+        finally
+        {
+            this.closed = true;
+
+            this.output.close ();
+        }
+    }
+}
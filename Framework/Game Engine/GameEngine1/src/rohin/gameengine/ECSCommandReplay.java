@@ -0,0 +1,342 @@
+package rohin.gameengine;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSCommandReplay
+//
+// Plays back a command record file written by ECSCommandRecorder.
+//
+// - Each recorded command is recreated, and posted to the command manager of the replay engine, immediately before the simulation tick it was
+//   recorded on. The engine executes it when it next flushes its command queue, at the same point in the simulation as the original.
+// - Recorded ticks are relative to the start tick of the recording. They are mapped to the replay engine's ticks, relative to the engine's tick
+//   when the first command is posted. To reproduce a recorded session, restore the engine from a snapshot taken when the recording started. See
+//   ECSSnapshot.
+// - replay drives an ECSHeadlessEngine at maximum speed, until every recorded command has been executed.
+// - The record file is memory mapped.
+//
+// Notes:
+//
+// - Commands of classes that can not be loaded are skipped, and counted.
+// - A record file may contain several appended recording sessions. The class definitions of each session start again at its header, but the ticks
+//   of all sessions are mapped relative to the start tick of the first.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSCommandReplay
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final long M_END = -1;    // Next tick value, once every recorded command has been posted.
+
+    // Fields.
+
+    private ECSSnapshotBuffer buffer;           // Record file contents.
+    private List <Class <?>>  classes;          // Command class of each class index, in the current session. Null if the class can not be loaded.
+    private int               sessionCount;     // Number of session headers read.
+    private Boolean           started;          // True once the tick offset has been set.
+    private long              startTick;        // Start tick of the first recording session.
+    private long              tickOffset;       // Replay engine tick, minus recorded tick.
+    private long              nextTick;         // Recorded tick of the next command, or M_END.
+    private int               nextClass;        // Class index of the next command.
+    private int               nextLength;       // Payload length of the next command.
+    private long              postedCount;      // Number of commands posted.
+    private long              skippedCount;     // Number of commands skipped, because their class could not be loaded.
+
+    // Accessors and mutators.
+
+    public long    getPostedCount  () { return this.postedCount;       }
+    public long    getSkippedCount () { return this.skippedCount;      }
+    public Boolean hasNext         () { return this.nextTick != M_END; }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Constructors
+    //
+    // Description:
+    //
+    // - Open a command record, from a record file, or from a buffer holding the contents of a record file.
+    //
+    // Postconditions:
+    //
+    // - Throws IllegalArgumentException if the record does not start with a valid header.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public ECSCommandReplay ( File file ) throws IOException
+    {
+        RandomAccessFile input = new RandomAccessFile ( file, "r" );
+
+        try
+        {
+            MappedByteBuffer mapped = input.getChannel ().map ( FileChannel.MapMode.READ_ONLY, 0, input.length () );
+
+            initialize ( new ECSSnapshotBuffer ( mapped ) );
+        }
+        finally
+        {
+            input.close ();
+        }
+    }
+
+    public ECSCommandReplay ( ECSSnapshotBuffer buffer )
+    {
+        initialize ( buffer );
+    }
+
+    // Initialize object.
+
+    private void initialize ( ECSSnapshotBuffer buffer )
+    {
+        this.buffer       = buffer;
+        this.classes      = new ArrayList <Class <?>> ();
+        this.postedCount  = 0;
+        this.skippedCount = 0;
+
+        if ( !this.buffer.hasRemaining () || ( this.buffer.getByteBuffer ().get ( 0 ) != ECSCommandRecorder.M_RECORD_HEADER ) )
+        {
+            throw new IllegalArgumentException ( "Buffer does not contain an ECS command record." );
+        }
+
+        rewind ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // rewind
+    //
+    // Move back to the first recorded command, so that the record can be replayed again, e.g. into a freshly restored engine.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void rewind ()
+    {
+        this.buffer.rewind ();
+        this.classes.clear ();
+
+        this.sessionCount = 0;
+        this.started      = false;
+        this.startTick    = 0;
+        this.tickOffset   = 0;
+
+        advance ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getNextTick
+    //
+    // Return the replay engine tick on which the next command will be executed, or M_END if every command has been posted.
+    // Until post is first called, the recorded tick is returned.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public long getNextTick ()
+    {
+        return ( this.nextTick == M_END ) ? M_END : this.nextTick + this.tickOffset;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // post
+    //
+    // Description:
+    //
+    // - Post every recorded command that is due on or before the engine's current tick to the engine's command manager.
+    //
+    // Arguments:
+    //
+    // - engine
+    //   The replay engine. The first call maps the start of the recording to the engine's current tick.
+    //
+    // Return Value:
+    //
+    // - The number of commands posted.
+    //
+    // Postconditions:
+    //
+    // - Throws IllegalStateException if a command cannot be constructed.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int post ( ECSEngine engine )
+    {
+        if ( !this.started )
+        {
+            this.started    = true;
+            this.tickOffset = engine.getTick () - this.startTick;
+        }
+
+        CommandManager commandManager = engine.getCommandManager ();
+        int            count          = 0;
+
+        while ( ( this.nextTick != M_END ) && ( this.nextTick + this.tickOffset <= engine.getTick () ) )
+        {
+            int       end  = this.buffer.position () + this.nextLength;
+            Class <?> type = this.classes.get ( this.nextClass );
+
+            if ( type == null )
+            {
+                ++this.skippedCount;
+            }
+            else
+            {
+                IRecordableCommand command = newCommand ( type );
+
+                command.readRecord ( engine, this.buffer );
+
+                commandManager.postCommand ( command );
+
+                ++this.postedCount;
+                ++count;
+            }
+
+            this.buffer.position ( end );
+
+            advance ();
+        }
+
+        return count;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // replay
+    //
+    // Description:
+    //
+    // - Step a headless engine as fast as possible, posting the recorded commands before the ticks they were recorded on, until every recorded
+    //   command has been executed.
+    //
+    // Return Value:
+    //
+    // - The number of ticks run.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public long replay ( ECSHeadlessEngine engine )
+    {
+        long ticks = 0;
+
+        while ( hasNext () )
+        {
+            post ( engine );
+
+            engine.step ();
+
+            ++ticks;
+        }
+
+        return ticks;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // advance
+    //
+    // Read records up to and including the header of the next command. Headers and class definitions are applied on the way.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void advance ()
+    {
+        this.nextTick = M_END;
+
+        while ( this.buffer.hasRemaining () )
+        {
+            byte recordType = this.buffer.readByte ();
+
+            if ( recordType == ECSCommandRecorder.M_RECORD_HEADER )
+            {
+                readHeader ();
+            }
+            else if ( recordType == ECSCommandRecorder.M_RECORD_CLASS )
+            {
+                int    index = this.buffer.readInt ();
+                String name  = this.buffer.readString ();
+
+                while ( this.classes.size () <= index )
+                {
+                    this.classes.add ( null );
+                }
+
+                this.classes.set ( index, loadClass ( name ) );
+            }
+            else if ( recordType == ECSCommandRecorder.M_RECORD_COMMAND )
+            {
+                this.nextTick   = this.buffer.readLong ();
+                this.nextClass  = this.buffer.readInt ();
+                this.nextLength = this.buffer.readInt ();
+                return;
+            }
+            else
+            {
+                throw new IllegalArgumentException ( "Unknown ECS command record type " + recordType + "." );
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // readHeader
+    //
+    // Validate a session header, and start a new class table. The start tick of the first session is kept, for the tick mapping.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void readHeader ()
+    {
+        if ( this.buffer.readInt () != ECSCommandRecorder.M_MAGIC )
+        {
+            throw new IllegalArgumentException ( "Buffer does not contain an ECS command record." );
+        }
+
+        int  formatVersion = this.buffer.readInt ();
+        long startTick     = this.buffer.readLong ();
+
+        if ( formatVersion > ECSCommandRecorder.M_FORMAT_VERSION )
+        {
+            throw new IllegalArgumentException ( "Unsupported ECS command record format version " + formatVersion + "." );
+        }
+
+        if ( ++this.sessionCount == 1 )
+        {
+            this.startTick = startTick;
+        }
+
+        this.classes.clear ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // loadClass
+    //
+    // Load a recordable command class by name, or return null if the class can not be loaded.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static Class <?> loadClass ( String name )
+    {
+        try
+        {
+            Class <?> type = Class.forName ( name );
+
+            return IRecordableCommand.class.isAssignableFrom ( type ) ? type : null;
+        }
+        catch ( ClassNotFoundException e )
+        {
+            return null;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // newCommand
+    //
+    // Create a command of the specified class, through its no argument constructor.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static IRecordableCommand newCommand ( Class <?> type )
+    {
+        try
+        {
+            return ( IRecordableCommand ) type.getConstructor ().newInstance ();
+        }
+        catch ( ReflectiveOperationException | ClassCastException e )
+        {
+            throw new IllegalStateException ( "Unable to create a command of class " + type.getName () + ".", e );
+        }
+    }
+}
@@ -2,7 +2,7 @@ package rohin.gameengine;
 
 // ECSComponent should be extended to implement a specific data object. 
 
-public class ECSComponent extends ECSObject
+public class ECSComponent extends ECSObject implements IPoolable
 {
     // @formatter:off
     
@@ -11,6 +11,16 @@ public class ECSComponent extends ECSObject
     private static final Integer M_DEFAULT_ID     = 0;
     private static final String  M_DEFAULT_NAME   = "COMPONENT";
     private static final Integer M_DEFAULT_FAMILY = 0;
+    
+    // Fields.
+    
+    private int  typeIndex;     // Dense component type index, assigned by ECSComponentType.
+    long         changeTick;    // Engine change tick at which the component was last added to an engine, or marked as changed.
+    
+    // Accessors and mutators.
+    
+    public int  getTypeIndex  () { return this.typeIndex;  }
+    public long getChangeTick () { return this.changeTick; }
    
     // Constructors
     
@@ -32,7 +42,51 @@ public class ECSComponent extends ECSObject
         this.name   = name;
         this.family = family;
         this.owner  = owner;
+        
+        // Resolve the type index once, so that signature checks never need to consult the type registry.
+        
+        this.typeIndex = ECSComponentType.getIndex ( this.getClass () );
+        
+        // The component has not been added to an engine yet.
+        
+        this.changeTick = 0;
     }
     
     // @formatter:on
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // reset
+    //
+    // Called when the component is released to an ECSPool. Components with state should override this method, to restore the values assigned by
+    // their no argument constructor, reusing their existing fields.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @Override
+    public void reset ()
+    {
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Snapshot serialization. See ECSSnapshot.
+    //
+    // - Components with state should override all three methods. The default implementation writes nothing, so that a restored component keeps the
+    //   values assigned by its no argument constructor.
+    // - getSnapshotVersion identifies the layout written by writeSnapshot. Increase it whenever the layout changes, and keep readSnapshot able to
+    //   read every older version still in use.
+    // - readSnapshot must read exactly what writeSnapshot wrote. It should read into the component's existing fields where possible, so that
+    //   restoring a snapshot into a live world does not allocate memory.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public int getSnapshotVersion ()
+    {
+        return 0;
+    }
+    
+    public void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+    }
+    
+    public void readSnapshot ( ECSSnapshotBuffer buffer, int version )
+    {
+    }
 }
@@ -0,0 +1,99 @@
+package rohin.gameengine;
+
+import java.util.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSComponentType
+//
+// Registry of component types.
+//
+// - Each ECSComponent subclass is assigned a dense, zero based type index, the first time it is seen by the registry.
+// - Type indices are used as bit positions in component signatures (see ECSSignature), and by the archetype storage to order component columns.
+// - Type indices are only stable for the life time of the JVM. They should never be persisted.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public final class ECSComponentType
+{
+    // @formatter:off
+
+    // Constants.
+
+    private static final int M_DEFAULT_TYPE_CAPACITY = 64;     // Number of component types before the registry needs to be resized.
+
+    // Fields.
+
+    private static final Map  <Class <? extends ECSComponent>, Integer> typeIndices = new HashMap   <Class <? extends ECSComponent>, Integer> ( M_DEFAULT_TYPE_CAPACITY );
+    private static final List <Class <? extends ECSComponent>>          types       = new ArrayList <Class <? extends ECSComponent>>          ( M_DEFAULT_TYPE_CAPACITY );
+
+    // Constructors.
+
+    private ECSComponentType () { }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getIndex
+    //
+    // Description:
+    //
+    // - Retrieve the type index of a component class, registering the class if it has not been seen before.
+    //
+    // Arguments:
+    //
+    // - type
+    //   The component class we would like the type index of.
+    //
+    // Return Value:
+    //
+    // - The dense type index of the component class.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static synchronized int getIndex ( Class <? extends ECSComponent> type )
+    {
+        Integer index = typeIndices.get ( type );
+
+        if ( index == null )
+        {
+            index = types.size ();
+
+            typeIndices.put ( type, index );
+            types.add ( type );
+        }
+
+        return index;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getIndex
+    //
+    // Retrieve the type index of a component instance. The index is cached by the component when it is constructed.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static int getIndex ( ECSComponent component )
+    {
+        return component.getTypeIndex ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getType
+    //
+    // Retrieve the component class registered against a type index.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static synchronized Class <? extends ECSComponent> getType ( int index )
+    {
+        return types.get ( index );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getCount
+    //
+    // Number of component types registered so far.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static synchronized int getCount ()
+    {
+        return types.size ();
+    }
+}
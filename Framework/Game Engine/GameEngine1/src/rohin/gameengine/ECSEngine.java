@@ -2,6 +2,7 @@
 package rohin.gameengine;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 // /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 //
@@ -19,34 +20,73 @@ public abstract class ECSEngine extends ECSObject
     
     // Constants
     
-    public static final Boolean M_GAME_LOOP_DEFAULT_TARGET_ENABLED   = true;
-    public static final double  M_GAME_LOOP_DEFAULT_FPS_TARGET       = 90;
-    public static final int     M_GAME_LOOP_DEFAULT_LOOP_DELAY_FIXED = 1000;
-    public static final int     M_GAME_LOOP_DEFAULT_LOOP_DELAY_MIN   = 5;
-    public static final int     M_DEFAULT_SYSTEM_HASH_MAP_SIZE       = 16;      // Number of systems before the hash map needs to be resized.
-    public static final int     M_DEFAULT_ENTITY_HASH_MAP_SIZE       = 1024;    // Number of entities before the hash map needs to be resized.
+    public static final Boolean M_GAME_LOOP_DEFAULT_TARGET_ENABLED     = true;
+    public static final double  M_GAME_LOOP_DEFAULT_FPS_TARGET         = 90;
+    public static final int     M_GAME_LOOP_DEFAULT_LOOP_DELAY_FIXED   = 1000;
+    public static final int     M_GAME_LOOP_DEFAULT_LOOP_DELAY_MIN     = 5;
+    public static final Boolean M_GAME_LOOP_DEFAULT_FIXED_STEP_ENABLED = false;      // Fixed time step simulation switch.
+    public static final int     M_GAME_LOOP_DEFAULT_FIXED_STEP         = 10;         // Fixed simulation time step, measured in ms.
+    public static final int     M_GAME_LOOP_DEFAULT_FIXED_STEP_MAX     = 5;          // Maximum number of simulation steps per frame.
+    public static final long    M_NANOSECONDS_PER_MILLISECOND          = 1000000L;
+    public static final int     M_DEFAULT_SYSTEM_HASH_MAP_SIZE         = 16;         // Number of systems before the hash map needs to be resized.
+    public static final int     M_DEFAULT_ENTITY_HASH_MAP_SIZE         = 1024;       // Number of entities before the hash map needs to be resized.
+    public static final Boolean M_DEFAULT_ARCHETYPE_STORAGE_ENABLED    = false;      // Archetype storage switch.
+    public static final Boolean M_DEFAULT_SPARSE_SET_STORAGE_ENABLED   = false;      // Sparse set storage switch.
+    public static final Boolean M_DEFAULT_PARALLEL_SCHEDULER_ENABLED   = false;      // Parallel system scheduler switch.
     
     
     // Fields.
     
     // Game engine parameters.
 
-    private HashMap <Integer, ECSSystem> systems;           // List of game entities.
-    private HashMap <Integer, ECSEntity> entities;          // List of game systems.    
+    private IntHashMap <ECSSystem>       systems;           // List of game systems.
+    private IntHashMap <ECSEntity>       entities;          // List of game entities.    
+    private ECSEntityAllocator           entityAllocator;   // Generational ID allocator, for spawned entities.
+    private ECSCommandBuffer             commandBuffer;     // Structural changes recorded by systems, played back after each system update pass.
     private CommandManager               commandManager;    // Command invocation manager.
     private ResourceManager              resourceManager;   // Resource cache manager.
     private Boolean                      loggingEnabled;    // logging switch.
     private ConsoleLogger                logger;            // Console logger.
     private String                       resourcePath;      // Disk location for all game assets. e.g. Images, sounds, vector models, etc.
     
+    // Component storage.
+    
+    private ECSArchetypeStorage          archetypeStorage;          // Archetype (chunked, column wise) component storage.
+    private Boolean                      archetypeStorageEnabled;   // Set to true to maintain archetype storage, alongside the entity map.
+    private ECSSparseSetStorage          sparseSetStorage;          // Sparse set (one pool per component type) component storage.
+    private Boolean                      sparseSetStorageEnabled;   // Set to true to maintain sparse set storage, alongside the entity map.
+    private List <ECSQuery>              queries;                   // Live entity queries, maintained incrementally.
+    private AtomicLong                   changeTick;                // Change detection clock. Advanced for every system update, and every change mark.
+    long                                 tick;                      // Number of simulation steps run. Commands are recorded against it. See ECSCommandRecorder.
+    
+    // Object pools.
+    
+    private ECSPool <ECSEntity>              entityPool;        // Recycled entities.
+    private HashMap <Class <?>, ECSPool <?>> componentPools;    // Recycled components, by component class.
+    
+    // System scheduling.
+    
+    private ECSScheduler                 scheduler;                 // Parallel system scheduler.
+    private Boolean                      parallelSchedulerEnabled;  // Set to true to run non-conflicting systems concurrently.
+    
     // Game loop management.
     
-    private Boolean                     loopRunning;        // Loop state. Set to true to run the game loop. Set to false to exit the game loop.
+    private volatile Boolean            loopRunning;        // Loop state. Set to true to run the game loop. Set to false, from any thread, to exit the game loop.
     private int                         loopDelayFixed;     // Game loop, frame rate regulator. Fixed delay, measured in ms.
     private int                         loopDelayVariable;  // Game loop, frame rate regulator. Dynamic delay, that adjusts to maintain target FPS.    
     private int                         loopDelayMin;       // Minimum loop iteration delay.
     private double                      fpsTarget;          // Target Frames Per Second.
     private Boolean                     fpsTargetEnabled;   // Choose whether to use a fixed loop delay, or a target FPS.
+    private ECSFramePacer               framePacer;         // High resolution frame rate regulator. Used when a target FPS is set.
+    private ECSProfiler                 profiler;           // Frame and system timing instrumentation.
+    
+    // Fixed time step simulation.
+    
+    private Boolean                     fixedStepEnabled;   // Set to true to advance simulation systems in fixed time steps, decoupled from the frame rate.
+    private int                         fixedStep;          // Fixed simulation time step, measured in ms.
+    private int                         fixedStepMax;       // Maximum number of simulation steps per frame. Prevents a slow frame from causing ever slower frames.
+    private long                        accumulator;        // Simulation time not yet consumed by a fixed time step, measured in ns.
+    private double                      interpolationAlpha; // Fraction of a fixed time step, that the rendered frame lies beyond the last simulation step.
     
     // Game loop monitoring
     
@@ -55,27 +95,49 @@ public abstract class ECSEngine extends ECSObject
     
     // Accessors and mutators.
 
-    public HashMap <Integer, ECSSystem> getSystems         () { return this.systems;          }
-    public HashMap <Integer, ECSEntity> getEntities        () { return this.entities;         }    
-    public Boolean                      isloggingEnabled   () { return this.loggingEnabled;   }
-    public Boolean                      isLoopRunning      () { return this.loopRunning;      }
-    public Boolean                      isFPSTargetEnabled () { return this.fpsTargetEnabled; }    
-    public int                          getLoopDelayFixed  () { return this.loopDelayFixed;   }
-    public int                          getLoopDelayMin    () { return this.loopDelayMin;     }
-    public double                       getFPSTarget       () { return this.fpsTarget;        }        
-    public CommandManager               getCommandManager  () { return this.commandManager;   }
-    public String                       getResourcePath    () { return this.resourcePath;     }
-    public ResourceManager              getResourceManager () { return this.resourceManager;  }    
-    
-    public void setCommandManager   ( CommandManager  commandManager   ) { this.commandManager   = commandManager;   }
-    public void setloggingEnabled   ( Boolean         loggingEnabled   ) { this.loggingEnabled   = loggingEnabled;   }
-    public void setLoopRunning      ( Boolean         loopRunning      ) { this.loopRunning      = loopRunning;      }
-    public void setLoopDelayFixed   ( int             loopDelayFixed   ) { this.loopDelayFixed   = loopDelayFixed;   }
-    public void setLoopDelayMin     ( int             loopDelayMin     ) { this.loopDelayMin     = loopDelayMin;     }
-    public void setFPSTargetEnabled ( Boolean         fpsTargetEnabled ) { this.fpsTargetEnabled = fpsTargetEnabled; }
-    public void setFPSTarget        ( double          fpsTarget        ) { this.fpsTarget        = fpsTarget;        }
-    public void setResourcePath     ( String          resourcePath     ) { this.resourcePath     = resourcePath;     }
-    public void setResourceManager  ( ResourceManager resourceManager  ) { this.resourceManager  = resourceManager;  }
+    public IntHashMap <ECSSystem>       getSystems                 () { return this.systems;                  }
+    public IntHashMap <ECSEntity>       getEntities                () { return this.entities;                 }
+    public ECSEntityAllocator           getEntityAllocator         () { return this.entityAllocator;          }
+    public ECSCommandBuffer             getCommandBuffer           () { return this.commandBuffer;            }
+    public ECSPool <ECSEntity>          getEntityPool              () { return this.entityPool;               }
+    public Boolean                      isloggingEnabled           () { return this.loggingEnabled;           }
+    public Boolean                      isLoopRunning              () { return this.loopRunning;              }
+    public Boolean                      isFPSTargetEnabled         () { return this.fpsTargetEnabled;         }
+    public int                          getLoopDelayFixed          () { return this.loopDelayFixed;           }
+    public int                          getLoopDelayMin            () { return this.loopDelayMin;             }
+    public double                       getFPSTarget               () { return this.fpsTarget;                }
+    public CommandManager               getCommandManager          () { return this.commandManager;           }
+    public String                       getResourcePath            () { return this.resourcePath;             }
+    public ResourceManager              getResourceManager         () { return this.resourceManager;          }
+    public ECSArchetypeStorage          getArchetypeStorage        () { return this.archetypeStorage;         }
+    public Boolean                      isArchetypeStorageEnabled  () { return this.archetypeStorageEnabled;  }
+    public ECSSparseSetStorage          getSparseSetStorage        () { return this.sparseSetStorage;         }
+    public Boolean                      isSparseSetStorageEnabled  () { return this.sparseSetStorageEnabled;  }
+    public long                         getChangeTick              () { return this.changeTick.get ();        }
+    public long                         getTick                    () { return this.tick;                     }
+    public ECSScheduler                 getScheduler               () { return this.scheduler;                }
+    public Boolean                      isParallelSchedulerEnabled () { return this.parallelSchedulerEnabled; }
+    public Boolean                      isFixedStepEnabled         () { return this.fixedStepEnabled;         }
+    public ECSFramePacer                getFramePacer              () { return this.framePacer;               }
+    public ECSProfiler                  getProfiler                () { return this.profiler;                 }
+    public double                       getFPS                     () { return this.fps;                      }
+    public long                         getLoopIterationTime       () { return this.loopIterationTime;        }
+    public int                          getFixedStep               () { return this.fixedStep;                }
+    public int                          getFixedStepMax            () { return this.fixedStepMax;             }
+    public double                       getInterpolationAlpha      () { return this.interpolationAlpha;       }
+    
+    public void setCommandManager           ( CommandManager  commandManager           ) { this.commandManager           = commandManager;           }
+    public void setLoopRunning              ( Boolean         loopRunning              ) { this.loopRunning              = loopRunning;              }
+    public void setLoopDelayFixed           ( int             loopDelayFixed           ) { this.loopDelayFixed           = loopDelayFixed;           }
+    public void setLoopDelayMin             ( int             loopDelayMin             ) { this.loopDelayMin             = loopDelayMin;             }
+    public void setFPSTargetEnabled         ( Boolean         fpsTargetEnabled         ) { this.fpsTargetEnabled         = fpsTargetEnabled;         }
+    public void setFPSTarget                ( double          fpsTarget                ) { this.fpsTarget                = fpsTarget;                }
+    public void setResourcePath             ( String          resourcePath             ) { this.resourcePath             = resourcePath;             }
+    public void setResourceManager          ( ResourceManager resourceManager          ) { this.resourceManager          = resourceManager;          }
+    public void setParallelSchedulerEnabled ( Boolean         parallelSchedulerEnabled ) { this.parallelSchedulerEnabled = parallelSchedulerEnabled; }
+    public void setFixedStepEnabled         ( Boolean         fixedStepEnabled         ) { this.fixedStepEnabled         = fixedStepEnabled;         }
+    public void setFixedStep                ( int             fixedStep                ) { this.fixedStep                = fixedStep;                }
+    public void setFixedStepMax             ( int             fixedStepMax             ) { this.fixedStepMax             = fixedStepMax;             }
     
     // Abstract methods.
     
@@ -93,13 +155,35 @@ public abstract class ECSEngine extends ECSObject
         // Initialize game engine parameters.
         
         this.owner           = owner;
-        this.systems         = new HashMap <Integer, ECSSystem> ( M_DEFAULT_SYSTEM_HASH_MAP_SIZE );
-        this.entities        = new HashMap <Integer, ECSEntity> ( M_DEFAULT_ENTITY_HASH_MAP_SIZE );
+        this.systems         = new IntHashMap <ECSSystem> ( M_DEFAULT_SYSTEM_HASH_MAP_SIZE );
+        this.entities        = new IntHashMap <ECSEntity> ( M_DEFAULT_ENTITY_HASH_MAP_SIZE );
+        this.entityAllocator = new ECSEntityAllocator ();
+        this.commandBuffer   = new ECSCommandBuffer ();
         this.commandManager  = new CommandManager ();
         this.resourceManager = new ResourceManager ();
         this.loggingEnabled  = true;
         this.logger          = new ConsoleLogger ( this, this.loggingEnabled );
         
+        // Initialize component storage.
+        
+        this.archetypeStorage        = new ECSArchetypeStorage ();
+        this.archetypeStorageEnabled = M_DEFAULT_ARCHETYPE_STORAGE_ENABLED;
+        this.sparseSetStorage        = new ECSSparseSetStorage ();
+        this.sparseSetStorageEnabled = M_DEFAULT_SPARSE_SET_STORAGE_ENABLED;
+        this.queries                 = new ArrayList <ECSQuery> ();
+        this.changeTick              = new AtomicLong ( 0 );
+        this.tick                    = 0;
+        
+        // Initialize object pools.
+        
+        this.entityPool     = new ECSPool <ECSEntity> ( ECSEntity.class );
+        this.componentPools = new HashMap <Class <?>, ECSPool <?>> ();
+        
+        // Initialize system scheduling.
+        
+        this.scheduler                = new ECSScheduler ( this );
+        this.parallelSchedulerEnabled = M_DEFAULT_PARALLEL_SCHEDULER_ENABLED;
+        
         // Initialize game loop parameters.
         
         this.loopRunning       = true;
@@ -108,6 +192,16 @@ public abstract class ECSEngine extends ECSObject
         this.loopDelayFixed    = M_GAME_LOOP_DEFAULT_LOOP_DELAY_FIXED;       
         this.loopDelayMin      = M_GAME_LOOP_DEFAULT_LOOP_DELAY_MIN;
         this.loopDelayVariable = 0;        
+        this.framePacer        = new ECSFramePacer ();
+        this.profiler          = new ECSProfiler ();
+        
+        // Initialize fixed time step simulation.
+        
+        this.fixedStepEnabled   = M_GAME_LOOP_DEFAULT_FIXED_STEP_ENABLED;
+        this.fixedStep          = M_GAME_LOOP_DEFAULT_FIXED_STEP;
+        this.fixedStepMax       = M_GAME_LOOP_DEFAULT_FIXED_STEP_MAX;
+        this.accumulator        = 0;
+        this.interpolationAlpha = 1.0;
         
         // Initialize loop monitoring points.
                 
@@ -121,60 +215,755 @@ public abstract class ECSEngine extends ECSObject
 
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // Game loop.
+    //
+    // - Variable time step: Every system is updated once per frame, with t equal to the duration of the previous frame.
+    // - Fixed time step:    Simulation systems are updated zero or more times per frame, with t equal to the fixed time step, until the simulation
+    //                       has caught up with real time. Render systems are then updated once, with the interpolation alpha of the remaining time.
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
 
     public void run ()
     {
         this.logger.log ();
         
-        long start = 0;
-        long stop  = 0;
-        long t     = 0;
+        long previous = System.nanoTime ();
+        long start    = 0;
+        long elapsed  = 0;
+        long mark     = 0;
+        long t        = 0;
 
         this.loopRunning = true;
+        this.accumulator = 0;
+        
+        this.framePacer.reset ();
 
         while ( this.loopRunning )
         {
-            start = System.currentTimeMillis ();                // Start the clock.
+            start    = System.nanoTime ();                      // Start the clock.
+            elapsed  = start - previous;                        // Calculate the lap time of the previous iteration.
+            previous = start;
+            t        = elapsed / M_NANOSECONDS_PER_MILLISECOND;
+            
+            updateLoopMonitor ( elapsed );                      // Update the measured FPS, and record the previous frame time.
             
             this.commandManager.flush ();                       // Flush and execute commands in the command queue.
             
-            for ( ECSSystem system : this.systems.values () )   // Loop through all game systems.
+            mark = this.profiler.recordFlush ( start );
+            
+            if ( this.fixedStepEnabled )
             {
-                system.update ( t );                            // Call Update on each of them. 
+                stepSimulation ( elapsed );                     // Advance the simulation in fixed time steps.
+                updateSystems  ( t, this.interpolationAlpha, ECSScheduler.M_MODE_RENDER );
+            }
+            else
+            {
+                updateSystems ( t, 1.0, ECSScheduler.M_MODE_ALL );
+                
+                ++this.tick;
             }
             
-            regulateFrameRate ();                               // Give the CPU some time to do other things other than spin this loop.
-
-            stop = System.currentTimeMillis ();                 // Stop the clock.
-            t    = stop - start;                                // Calculate the lap time for this iteration.
+            mark = this.profiler.recordUpdate ( mark );
+            
+            regulateFrameRate ( start );                        // Give the CPU some time to do other things other than spin this loop.
+            
+            mark = this.profiler.recordSleep ( mark );
+            
+            this.profiler.endFrame ( mark );                    // Dump the profiler report, once every report period.
+        }
+        
+        this.scheduler.shutdown ();                             // Release the scheduler's worker threads.
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Step simulation.
+    //
+    // Description:
+    //
+    // - Add the real time that elapsed during the last frame to the accumulator, and update the simulation systems once for every whole fixed time
+    //   step in the accumulator.
+    //
+    // Arguments:
+    //
+    // - elapsed
+    //   Real time elapsed during the last frame, measured in ns.
+    //
+    // Postconditions:
+    //
+    // - The accumulator holds less than one fixed time step.
+    // - The interpolation alpha has been updated to the fraction of a time step left in the accumulator.
+    // - If the frame took longer than fixedStepMax time steps, then the excess time is dropped, and the simulation runs slower than real time.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    protected void stepSimulation ( long elapsed )
+    {
+        long step     = Math.max ( 1, this.fixedStep    ) * M_NANOSECONDS_PER_MILLISECOND;
+        long stepsMax = Math.max ( 1, this.fixedStepMax );
+        
+        this.accumulator += Math.min ( elapsed, step * stepsMax );
+        
+        while ( this.accumulator >= step )
+        {
+            updateSystems ( step / M_NANOSECONDS_PER_MILLISECOND, 1.0, ECSScheduler.M_MODE_SIMULATION );
+            
+            this.accumulator -= step;
+            
+            ++this.tick;
         }
+        
+        this.interpolationAlpha = ( double ) this.accumulator / ( double ) step;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Update systems.
+    //
+    // Description:
+    //
+    // - If the parallel scheduler is enabled, then systems that do not conflict with each other are updated concurrently. See ECSScheduler.
+    // - Otherwise, systems are updated one after the other, on the game loop thread, in system key order.
+    // - Once all systems have been updated, the command buffer is played back. This is the only point in the frame at which structural changes
+    //   recorded by systems are applied, so systems never see entities or components being added or removed while they iterate.
+    //
+    // Arguments:
+    //
+    // - t
+    //   Game loop tick time, measured in ms.
+    //
+    // - alpha
+    //   Interpolation factor, passed to render systems.
+    //
+    // - mode
+    //   Selects the systems to update. One of ECSScheduler.M_MODE_ALL, M_MODE_SIMULATION or M_MODE_RENDER.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    protected void updateSystems ( long t, double alpha, int mode )
+    {
+        if ( this.parallelSchedulerEnabled )
+        {
+            this.scheduler.update ( t, alpha, mode );
+        }
+        else
+        {
+            for ( ECSSystem system : this.scheduler.getOrderedSystems () )  // Loop through all game systems, in system key order.
+            {
+                updateSystem ( system, t, alpha, mode );                    // Call Update on each of them. 
+            }
+        }
+        
+        this.commandBuffer.playback ( this );                   // Apply structural changes recorded during the update.
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // updateSystem
+    //
+    // Description:
+    //
+    // - Update a single system, if it is selected by the mode. Called by updateSystems, and by the scheduler's worker threads.
+    // - Render systems are always rendered, so that they present a frame even when there is nothing to draw.
+    // - Other systems are skipped if they have no matching entities.
+    // - If the profiler is enabled, the system's update time is recorded.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    void updateSystem ( ECSSystem system, long t, double alpha, int mode )
+    {
+        Boolean render   = system.isRenderSystem ();
+        Boolean selected = ( mode == ECSScheduler.M_MODE_ALL ) || ( render == ( mode == ECSScheduler.M_MODE_RENDER ) );
+        
+        if ( !selected || ( !render && !system.hasWork () ) )
+        {
+            return;
+        }
+        
+        Boolean profiling = this.profiler.isEnabled ();
+        long    start     = profiling ? System.nanoTime () : 0;
+        
+        system.beginUpdate ( this.changeTick.incrementAndGet () );
+        
+        if ( render )
+        {
+            system.render ( t, alpha );
+        }
+        else
+        {
+            system.update ( t );
+        }
+        
+        if ( profiling )
+        {
+            this.profiler.recordSystem ( system, System.nanoTime () - start );
+        }
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // updateLoopMonitor
+    //
+    // Description:
+    //
+    // - Update the game loop monitoring fields, from the duration of the previous game loop iteration.
+    //
+    // Arguments:
+    //
+    // - elapsed
+    //   Duration of the previous game loop iteration, measured in ns.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private void updateLoopMonitor ( long elapsed )
+    {
+        if ( elapsed > 0 )
+        {
+            this.loopIterationTime = elapsed / M_NANOSECONDS_PER_MILLISECOND;
+            this.fps               = 1.0e9 / elapsed;
+            
+            this.profiler.recordFrame ( elapsed );
+        }
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Logging switch.
+    //
+    // - The console logger is rebuilt, since it keeps its own copy of the switch.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public void setloggingEnabled ( Boolean loggingEnabled )
+    {
+        this.loggingEnabled = loggingEnabled;
+        this.logger         = new ConsoleLogger ( this, loggingEnabled );
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // Add system.
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     
-    public void addSystem ( Integer key, ECSSystem system )
+    public void addSystem ( int key, ECSSystem system )
     {
         this.systems.put ( key, system );
+        this.scheduler.invalidate ();
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Remove system.
+    //
+    // - Queries created by the system are kept, since queries are shared between all systems with the same signature.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public ECSSystem removeSystem ( int key )
+    {
+        ECSSystem system = this.systems.remove ( key );
+        
+        if ( system != null )
+        {
+            this.scheduler.invalidate ();
+        }
+        
+        return system;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // detachRenderSystems
+    //
+    // Description:
+    //
+    // - Remove all render systems from the engine, leaving only the simulation systems. Used to run a simulation headless, e.g. on a server.
+    //
+    // Return Value:
+    //
+    // - The removed render systems, by key, so that they may be added back to the engine with addSystem.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public IntHashMap <ECSSystem> detachRenderSystems ()
+    {
+        IntHashMap <ECSSystem> detached = new IntHashMap <ECSSystem> ();
+        
+        for ( int i = 0; i < this.systems.size (); i++ )
+        {
+            if ( this.systems.valueAt ( i ).isRenderSystem () )
+            {
+                detached.put ( this.systems.keyAt ( i ), this.systems.valueAt ( i ) );
+            }
+        }
+        
+        for ( int i = 0; i < detached.size (); i++ )
+        {
+            removeSystem ( detached.keyAt ( i ) );
+        }
+        
+        return detached;
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // Add entity.
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
         
-    public void addEntity ( Integer key, ECSEntity entity )
+    public void addEntity ( int key, ECSEntity entity )
+    {
+        checkEntity ( entity );
+        
+        ECSEntity previous = this.entities.put ( key, entity );
+        
+        if ( previous != null )
+        {
+            detachEntity ( previous );
+        }
+        
+        attachEntity ( entity );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Remove entity.
+    //
+    // - Entities that were spawned with spawnEntity are destroyed, as if by destroyEntity.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+        
+    public ECSEntity removeEntity ( int key )
+    {
+        if ( ECSEntityAllocator.isAllocatedId ( key ) )
+        {
+            return destroyEntity ( key );
+        }
+        
+        ECSEntity entity = this.entities.remove ( key );
+        
+        if ( entity != null )
+        {
+            detachEntity ( entity );
+        }
+        
+        return entity;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // spawnEntity
+    //
+    // Description:
+    //
+    // - Add an entity to the engine, under a new generational ID from the entity allocator. Use spawnEntity instead of addEntity, for entities
+    //   that are created and destroyed at a high rate, e.g. bullets and particles.
+    //
+    // Return Value:
+    //
+    // - The entity's new ID. The entity's getId and getAllocatedId return the same value, until the entity is destroyed.
+    //
+    // Postconditions:
+    //
+    // - The entity is not added to the entity map. It is found through getEntity, queries, or the entity allocator's dense array.
+    // - The ID remains valid until the entity is destroyed. After that, getEntity and isEntityAlive report the ID as stale, even once the
+    //   allocator has reused the ID's slot for another entity.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public int spawnEntity ( ECSEntity entity )
+    {
+        checkEntity ( entity );
+        
+        int id = this.entityAllocator.allocate ( entity );
+        
+        attachEntity ( entity );
+        
+        return id;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // respawnEntity
+    //
+    // Add an entity to the engine under a specific generational ID. Used by ECSSnapshot, to restore spawned entities under their original IDs.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    void respawnEntity ( ECSEntity entity, int id )
     {
-        this.entities.put ( key, entity );
+        checkEntity ( entity );
+        
+        this.entityAllocator.allocate ( entity, id );
+        
+        attachEntity ( entity );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // destroyEntity
+    //
+    // Description:
+    //
+    // - Remove a spawned entity from the engine, and release its ID.
+    // - If the entity was acquired with acquireEntity, then its components are released to their component pools, and the entity is released to
+    //   the entity pool.
+    //
+    // Return Value:
+    //
+    // - The entity, or null if the ID is stale. A pooled entity has already been reset, and must not be used again.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public ECSEntity destroyEntity ( int id )
+    {
+        ECSEntity entity = this.entityAllocator.release ( id );
+        
+        if ( entity != null )
+        {
+            detachEntity ( entity );
+            
+            if ( entity.pooled )
+            {
+                recycleEntity ( entity );
+            }
+        }
+        
+        return entity;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // isEntityAlive
+    //
+    // Returns true if the ID refers to an entity in the engine, or false if the entity has been removed, or the ID is stale.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public Boolean isEntityAlive ( int id )
+    {
+        return getEntity ( id ) != null;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // acquireEntity
+    //
+    // Description:
+    //
+    // - Returns an empty entity from the entity pool. Add components to it, preferably acquired with acquireComponent, and add it to the engine
+    //   with spawnEntity.
+    // - When the entity is destroyed with destroyEntity, it is recycled, along with its components. Spawning and destroying pooled entities
+    //   therefore allocates no new entity or component objects, once the pools have warmed up.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public ECSEntity acquireEntity ()
+    {
+        ECSEntity entity = this.entityPool.acquire ();
+        
+        entity.owner  = this;
+        entity.pooled = true;
+        
+        return entity;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // acquireComponent
+    //
+    // Returns a component of the specified class from its component pool, in the state of a newly constructed component.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public <T extends ECSComponent> T acquireComponent ( Class <T> type )
+    {
+        return getComponentPool ( type ).acquire ();
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getComponentPool
+    //
+    // Returns the pool of the specified component class, creating it if it does not exist yet. e.g. to prefill it, or to change its maximum size.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @SuppressWarnings ( "unchecked" )
+    public <T extends ECSComponent> ECSPool <T> getComponentPool ( Class <T> type )
+    {
+        ECSPool <T> pool = ( ECSPool <T> ) this.componentPools.get ( type );
+        
+        if ( pool == null )
+        {
+            pool = new ECSPool <T> ( type );
+            
+            this.componentPools.put ( type, pool );
+        }
+        
+        return pool;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // recycleEntity
+    //
+    // Release a pooled entity's components to their component pools, and then the entity to the entity pool.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @SuppressWarnings ( "unchecked" )
+    private void recycleEntity ( ECSEntity entity )
+    {
+        IntHashMap <ECSComponent> components = entity.getComponents ();
+        
+        for ( int i = 0; i < components.size (); i++ )
+        {
+            ECSComponent component = components.valueAt ( i );
+            
+            getComponentPool ( ( Class <ECSComponent> ) component.getClass () ).release ( component );
+        }
+        
+        this.entityPool.release ( entity );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Archetype storage switch.
+    //
+    // - Enabling archetype storage builds archetypes for all entities already added to the engine.
+    // - Enabling archetype storage fails with an IllegalStateException, and leaves it disabled, if an entity holds two components of the same type.
+    // - Disabling archetype storage releases all archetypes.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public void setArchetypeStorageEnabled ( Boolean archetypeStorageEnabled )
+    {
+        if ( archetypeStorageEnabled && !this.archetypeStorageEnabled )
+        {
+            // Check every entity first, so that a rejected entity leaves archetype storage disabled and empty.
+            
+            for ( ECSEntity entity : this.entities.values () )
+            {
+                this.archetypeStorage.checkComponentTypes ( entity );
+            }
+            
+            for ( int i = 0; i < this.entityAllocator.size (); i++ )
+            {
+                this.archetypeStorage.checkComponentTypes ( this.entityAllocator.getDense ( i ) );
+            }
+            
+            for ( ECSEntity entity : this.entities.values () )
+            {
+                this.archetypeStorage.add ( entity );
+            }
+            
+            for ( int i = 0; i < this.entityAllocator.size (); i++ )
+            {
+                this.archetypeStorage.add ( this.entityAllocator.getDense ( i ) );
+            }
+        }
+        else if ( !archetypeStorageEnabled && this.archetypeStorageEnabled )
+        {
+            this.archetypeStorage.clear ();
+        }
+        
+        this.archetypeStorageEnabled = archetypeStorageEnabled;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Sparse set storage switch.
+    //
+    // - Enabling sparse set storage stores the components of all entities already added to the engine, in their component pools.
+    // - Disabling sparse set storage empties all component pools.
+    // - Sparse set storage may be enabled alongside archetype storage. ECSParallelSystem prefers archetype storage, if both are enabled.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public void setSparseSetStorageEnabled ( Boolean sparseSetStorageEnabled )
+    {
+        if ( sparseSetStorageEnabled && !this.sparseSetStorageEnabled )
+        {
+            for ( ECSEntity entity : this.entities.values () )
+            {
+                this.sparseSetStorage.add ( entity );
+            }
+            
+            for ( int i = 0; i < this.entityAllocator.size (); i++ )
+            {
+                this.sparseSetStorage.add ( this.entityAllocator.getDense ( i ) );
+            }
+        }
+        else if ( !sparseSetStorageEnabled && this.sparseSetStorageEnabled )
+        {
+            this.sparseSetStorage.clear ();
+        }
+        
+        this.sparseSetStorageEnabled = sparseSetStorageEnabled;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // markChanged
+    //
+    // Description:
+    //
+    // - Mark a component as changed, from outside of a system update. e.g. from a command, or an input handler.
+    // - Systems should use ECSSystem.markChanged instead, so that they do not see their own changes.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public void markChanged ( ECSComponent component )
+    {
+        component.changeTick = this.changeTick.incrementAndGet ();
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Update entity storage.
+    //
+    // Called by ECSEntity, whenever a component is added to or removed from a registered entity.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    void updateEntityStorage ( ECSEntity entity, ECSComponent removed, ECSComponent added )
+    {
+        if ( this.archetypeStorageEnabled )
+        {
+            this.archetypeStorage.update ( entity );
+        }
+        
+        if ( this.sparseSetStorageEnabled )
+        {
+            this.sparseSetStorage.update ( entity, removed, added );
+        }
+        
+        for ( ECSQuery query : this.queries )
+        {
+            query.update ( entity );
+        }
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Check entity.
+    //
+    // Reject an entity that the engine's component storage cannot hold, before it is added. See ECSArchetypeStorage.checkComponentTypes.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private void checkEntity ( ECSEntity entity )
+    {
+        if ( this.archetypeStorageEnabled )
+        {
+            this.archetypeStorage.checkComponentTypes ( entity );
+        }
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Attach entity.
+    //
+    // Register an entity with the engine's component storage.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private void attachEntity ( ECSEntity entity )
+    {
+        entity.engine = this;
+        
+        // Mark the entity's components as changed, so that systems tracking changes pick up the new entity.
+        
+        IntHashMap <ECSComponent> components = entity.getComponents ();
+        long                      tick       = this.changeTick.incrementAndGet ();
+        
+        for ( int i = 0; i < components.size (); i++ )
+        {
+            components.valueAt ( i ).changeTick = tick;
+        }
+        
+        if ( this.archetypeStorageEnabled )
+        {
+            this.archetypeStorage.add ( entity );
+        }
+        
+        if ( this.sparseSetStorageEnabled )
+        {
+            this.sparseSetStorage.add ( entity );
+        }
+        
+        for ( ECSQuery query : this.queries )
+        {
+            query.update ( entity );
+        }
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Detach entity.
+    //
+    // Release an entity from the engine's component storage.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private void detachEntity ( ECSEntity entity )
+    {
+        if ( this.archetypeStorageEnabled )
+        {
+            this.archetypeStorage.remove ( entity );
+        }
+        
+        if ( this.sparseSetStorageEnabled )
+        {
+            this.sparseSetStorage.remove ( entity );
+        }
+        
+        for ( ECSQuery query : this.queries )
+        {
+            query.remove ( entity );
+        }
+        
+        entity.engine = null;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // createQuery
+    //
+    // Description:
+    //
+    // - Create a live query, that tracks all entities containing the specified component types.
+    // - If a query with the same component types already exists, then the existing query is shared.
+    //
+    // Arguments:
+    //
+    // - types
+    //   Variable argument list, specifying the component types an entity must contain, in order to match the query.
+    //
+    // Return Value:
+    //
+    // - A query, populated with all matching entities already added to the engine.
+    //
+    // Postconditions:
+    //
+    // - The query will be kept up to date by the engine, for as long as the engine exists.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @SafeVarargs
+    public final ECSQuery createQuery ( Class <? extends ECSComponent>... types )
+    {
+        return createQuery ( ECSSignature.of ( types ) );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // createQuery
+    //
+    // Create a live query from a required component signature. See createQuery ( Class... ).
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public ECSQuery createQuery ( ECSSignature signature )
+    {
+        // Share an existing query, if one has already been created for the same component types.
+        
+        for ( ECSQuery query : this.queries )
+        {
+            if ( query.getSignature ().equals ( signature ) )
+            {
+                return query;
+            }
+        }
+        
+        // Create and populate a new query.
+        
+        ECSQuery query = new ECSQuery ( signature );
+        
+        for ( ECSEntity entity : this.entities.values () )
+        {
+            query.update ( entity );
+        }
+        
+        for ( int i = 0; i < this.entityAllocator.size (); i++ )
+        {
+            query.update ( this.entityAllocator.getDense ( i ) );
+        }
+        
+        this.queries.add ( query );
+        
+        return query;
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // ECS entity.
+    //
+    // - Spawned entities are looked up through the entity allocator. Returns null if the ID is stale.
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     
     public ECSEntity getEntity ( int entityID)
     {
+        if ( ECSEntityAllocator.isAllocatedId ( entityID ) )
+        {
+            return this.entityAllocator.get ( entityID );
+        }
+        
         return this.entities.get ( entityID );
     }
     
@@ -187,28 +976,34 @@ public abstract class ECSEngine extends ECSObject
     // The target frame rate is specified internally through, fpsTarget.    
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
 
-    private void regulateFrameRate ()
+    private void regulateFrameRate ( long frameStart )
     {
         if ( this.fpsTargetEnabled )
         {
             // Calculate dynamic period loop delay.
             //
-            // - If we are spinning faster than the target FPS, then delay the loop for the remaining time, until target FPS is reached..
-            // - If we are spinning slower than the target FPS, then just force the minimum delay.
+            // - If we are spinning faster than the target FPS, then delay the loop for the remaining time, until target FPS is reached.
+            //   The frame pacer sleeps for most of the remaining time, and spin-yields the last fraction of a ms, to hit the frame deadline precisely.
+            // - If we are spinning slower than the target FPS, then just yield the CPU, and start the next frame straight away.
+            // - If no target FPS has been set, then force the minimum delay.
             //
             //   Note:
-            //   We don't allow a minimum delay of zero, for risk of the game loop hogging the the CPU and potentially hanging the main application thread.                                   
+            //   The pacer never spins without giving up the CPU, for risk of the game loop hogging the the CPU and potentially hanging the main
+            //   application thread.
 
             if ( this.fpsTarget > 0.0 )
             {
-                this.loopDelayVariable = ( int ) ( 1000.0 / this.fpsTarget );
+                long period    = ( long ) ( 1.0e9 / this.fpsTarget );
+                long remaining = this.framePacer.pace ( frameStart, period );
+                
+                this.loopDelayVariable = ( int ) ( Math.max ( 0, remaining ) / M_NANOSECONDS_PER_MILLISECOND );
             }
             else
             {
                 this.loopDelayVariable = this.loopDelayMin;
+                
+                delay ( this.loopDelayVariable );
             }
-
-            delay ( this.loopDelayVariable );             
         }
         else
         {
@@ -260,65 +1055,64 @@ public abstract class ECSEngine extends ECSObject
         final String LABEL_SYSTEMS     = "Systems"   + LABEL_TERMINATOR;
         final String LABEL_ENTITIES    = "Entities"  + LABEL_TERMINATOR;
         
-        String gameObjects = new String();
+        StringBuilder gameObjects = new StringBuilder ( EMPTY );
         
         // List header and title.
         
-        gameObjects =  EMPTY;
-        gameObjects += NEW_LINE + NEW_LINE;
-        gameObjects += INDENT + LABEL_GAME_ENGINE + this.getClass ().getSimpleName ();
-        gameObjects += NEW_LINE + NEW_LINE;
-        gameObjects += INDENT + BULLET1 + LABEL_SYSTEMS;
-        gameObjects += NEW_LINE;
+        gameObjects.append ( NEW_LINE ).append ( NEW_LINE );
+        gameObjects.append ( INDENT ).append ( LABEL_GAME_ENGINE ).append ( this.getClass ().getSimpleName () );
+        gameObjects.append ( NEW_LINE ).append ( NEW_LINE );
+        gameObjects.append ( INDENT ).append ( BULLET1 ).append ( LABEL_SYSTEMS );
+        gameObjects.append ( NEW_LINE );
         
         // List systems.
         
         for ( ECSSystem system : this.systems.values () )
         {
-            gameObjects += INDENT + INDENT + BULLET2 + system.getClass ().getSimpleName ();
-            gameObjects += NEW_LINE;
+            gameObjects.append ( INDENT ).append ( INDENT ).append ( BULLET2 ).append ( system.getClass ().getSimpleName () );
+            gameObjects.append ( NEW_LINE );
         }
         
         // List Entities and their components.
         
-        gameObjects += NEW_LINE;        
-        gameObjects += INDENT + BULLET1 + LABEL_ENTITIES;
-        gameObjects += NEW_LINE;
+        gameObjects.append ( NEW_LINE );        
+        gameObjects.append ( INDENT ).append ( BULLET1 ).append ( LABEL_ENTITIES );
+        gameObjects.append ( NEW_LINE );
         
         for ( ECSEntity entity : this.entities.values () )
         {            
             int componentCount = entity.getComponents ().size ();
             
-            gameObjects += INDENT + INDENT + BULLET2 + entity.getClass ().getSimpleName ();
+            gameObjects.append ( INDENT ).append ( INDENT ).append ( BULLET2 ).append ( entity.getClass ().getSimpleName () );
             
             if ( componentCount > 0)
             {
                 // List components.
                 
                 int i = 0;
-                gameObjects += PARENTHESUS_OPEN;
+                gameObjects.append ( PARENTHESUS_OPEN );
                 
                 for ( ECSComponent component : entity.getComponents ().values () )
                 {
-                    gameObjects += component.getClass ().getSimpleName ();
+                    gameObjects.append ( component.getClass ().getSimpleName () );
                     
                     if ( i < componentCount - 1 )
                     {
-                        gameObjects += DELIMITER;           // If there are still more components, add a delimiter, and continue.
+                        gameObjects.append ( DELIMITER );           // If there are still more components, add a delimiter, and continue.
                     }
                     else
                     {
-                        gameObjects += PARENTHESUS_CLOSE;   // If there are no more components to show, then close the parentheses, and exit the loop.
+                        gameObjects.append ( PARENTHESUS_CLOSE );   // If there are no more components to show, then close the parentheses, and exit the loop.
                     }
                     ++i;
                 }
             }
-            gameObjects += NEW_LINE;
+            gameObjects.append ( NEW_LINE );
         }
         
         // Return our nicely formatted string.
         
-        return gameObjects;
+        return gameObjects.toString ();
     }
 }
 
@@ -0,0 +1,358 @@
+package rohin.gameengine;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSEngineHost
+//
+// Runs many headless engines concurrently on one shared worker pool, e.g. one engine per match, or per room, on a game server.
+//
+// Scheduling:
+//
+// - The host runs in rounds. Every round ticks each hosted engine exactly once, concurrently, and completes when all of them have been ticked.
+//   No engine can run ahead of the others, so every engine receives the same share of simulation ticks, however expensive its neighbours are.
+// - Each engine's tick runs on one worker at a time, so an engine's own state is never touched by two threads at once, unless the engine uses its
+//   parallel scheduler. Engines with the parallel scheduler enabled run their systems on the same shared pool. See ECSScheduler.setPool.
+// - Rounds are either run on demand, with step and runTicks, or continuously, with run, at the tick rate, or as fast as possible if the tick rate
+//   is zero.
+//
+// Isolation:
+//
+// - Each engine keeps its own entities, systems, command manager and resource manager.
+// - An engine whose tick throws an exception is removed from the host, and the exception is kept (see getFailure). The other engines carry on.
+// - An engine whose game loop is stopped, e.g. by a command that calls setLoopRunning ( false ), is removed from the host once its tick completes.
+//   Removed engines are released from the shared pool, and may be run on their own again.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSEngineHost
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int    M_DEFAULT_PARALLELISM = 0;      // Number of worker threads. Zero selects the number of available processors.
+    public static final double M_DEFAULT_TICK_RATE   = 0.0;    // Rounds per second, when running continuously. Zero runs rounds as fast as possible.
+
+    // Fields.
+
+    private ForkJoinPool                                 pool;          // Worker pool, shared by all hosted engines.
+    private volatile TickTask[]                          tasks;         // Tick task of each hosted engine. Replaced, never modified, when engines change.
+    private ConcurrentMap <ECSHeadlessEngine, Exception> failures;      // Exception thrown by each engine that failed.
+    private ECSFramePacer                                framePacer;    // Paces rounds to the tick rate.
+    private double                                       tickRate;      // Rounds per second, when running continuously.
+    private volatile Boolean                             running;       // True while run is running rounds.
+    private long                                         roundCount;    // Number of rounds run.
+
+    // Accessors and mutators.
+
+    public ForkJoinPool getPool       () { return this.pool;         }
+    public double       getTickRate   () { return this.tickRate;     }
+    public Boolean      isRunning     () { return this.running;      }
+    public long         getRoundCount () { return this.roundCount;   }
+    public int          size          () { return this.tasks.length; }
+
+    public void setTickRate ( double tickRate ) { this.tickRate = Math.max ( 0.0, tickRate ); }
+
+    // Constructors.
+
+    public ECSEngineHost ()                  { initialize ( M_DEFAULT_PARALLELISM ); }
+    public ECSEngineHost ( int parallelism ) { initialize ( parallelism );           }
+
+    // Initialize.
+
+    private void initialize ( int parallelism )
+    {
+        int threads = ( parallelism > 0 ) ? parallelism : Runtime.getRuntime ().availableProcessors ();
+
+        this.pool       = new ForkJoinPool ( threads );
+        this.tasks      = new TickTask [ 0 ];
+        this.failures   = new ConcurrentHashMap <ECSHeadlessEngine, Exception> ();
+        this.framePacer = new ECSFramePacer ();
+        this.tickRate   = M_DEFAULT_TICK_RATE;
+        this.running    = false;
+        this.roundCount = 0;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // add
+    //
+    // Description:
+    //
+    // - Host an engine. The engine is ticked from the next round onwards.
+    //
+    // Postconditions:
+    //
+    // - The engine's scheduler uses the host's shared pool.
+    // - The engine's game loop is flagged as running.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized void add ( ECSHeadlessEngine engine )
+    {
+        for ( TickTask task : this.tasks )
+        {
+            if ( task.engine == engine )
+            {
+                return;
+            }
+        }
+
+        engine.getScheduler ().setPool ( this.pool );
+        engine.setLoopRunning ( true );
+
+        TickTask[] tasks = Arrays.copyOf ( this.tasks, this.tasks.length + 1 );
+
+        tasks [ tasks.length - 1 ] = new TickTask ( engine );
+
+        this.tasks = tasks;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // remove
+    //
+    // Description:
+    //
+    // - Stop hosting an engine. An engine that is being ticked finishes its current tick.
+    //
+    // Return Value:
+    //
+    // - True if the engine was hosted.
+    //
+    // Postconditions:
+    //
+    // - The engine's scheduler no longer uses the host's shared pool.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized Boolean remove ( ECSHeadlessEngine engine )
+    {
+        List <TickTask> tasks   = new ArrayList <TickTask> ( Arrays.asList ( this.tasks ) );
+        Boolean         removed = false;
+
+        for ( Iterator <TickTask> i = tasks.iterator (); i.hasNext (); )
+        {
+            if ( i.next ().engine == engine )
+            {
+                i.remove ();
+
+                removed = true;
+            }
+        }
+
+        if ( removed )
+        {
+            this.tasks = tasks.toArray ( new TickTask [ tasks.size () ] );
+
+            engine.getScheduler ().setPool ( null );
+        }
+
+        return removed;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getEngines
+    //
+    // Return the hosted engines.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public List <ECSHeadlessEngine> getEngines ()
+    {
+        TickTask[]               tasks   = this.tasks;
+        List <ECSHeadlessEngine> engines = new ArrayList <ECSHeadlessEngine> ( tasks.length );
+
+        for ( TickTask task : tasks )
+        {
+            engines.add ( task.engine );
+        }
+
+        return engines;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getFailure
+    //
+    // Return the exception that an engine's tick threw, when the engine was removed from the host, or null if the engine has not failed.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Exception getFailure ( ECSHeadlessEngine engine )
+    {
+        return this.failures.get ( engine );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // step
+    //
+    // Description:
+    //
+    // - Run a single round. Every hosted engine is ticked once, concurrently.
+    //
+    // Postconditions:
+    //
+    // - Every engine that was hosted when the round started has completed its tick, or has been removed from the host.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void step ()
+    {
+        TickTask[] tasks = this.tasks;
+
+        if ( tasks.length == 0 )
+        {
+            return;
+        }
+
+        for ( TickTask task : tasks )
+        {
+            task.reinitialize ();
+        }
+
+        this.pool.invoke ( new RoundTask ( tasks ) );
+
+        ++this.roundCount;
+
+        // Release engines that failed, or stopped, during the round.
+
+        for ( TickTask task : tasks )
+        {
+            if ( ( task.failure != null ) || !task.engine.isLoopRunning () )
+            {
+                remove ( task.engine );
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // runTicks
+    //
+    // Run the specified number of rounds, as fast as possible, or until no engines are left.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void runTicks ( long ticks )
+    {
+        for ( long i = 0; ( i < ticks ) && ( this.tasks.length > 0 ); i++ )
+        {
+            step ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // run
+    //
+    // Run rounds on the calling thread, at the tick rate, until stop is called, or no engines are left.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void run ()
+    {
+        long start = 0;
+
+        this.running = true;
+
+        this.framePacer.reset ();
+
+        while ( this.running && ( this.tasks.length > 0 ) )
+        {
+            start = System.nanoTime ();
+
+            step ();
+
+            if ( this.tickRate > 0.0 )
+            {
+                this.framePacer.pace ( start, ( long ) ( 1.0e9 / this.tickRate ) );
+            }
+        }
+
+        this.running = false;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // stop
+    //
+    // Ask run to return, once the current round has completed. May be called from any thread.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void stop ()
+    {
+        this.running = false;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // shutdown
+    //
+    // Remove all engines, and release the shared pool's worker threads. The host can not be used afterwards.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void shutdown ()
+    {
+        stop ();
+
+        for ( TickTask task : this.tasks )
+        {
+            remove ( task.engine );
+        }
+
+        this.pool.shutdown ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // RoundTask
+    //
+    // Fork-join task that ticks every engine of a round, and waits for all of them.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static class RoundTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final TickTask[] tasks;
+
+        RoundTask ( TickTask[] tasks )
+        {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute ()
+        {
+            invokeAll ( this.tasks );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // TickTask
+    //
+    // Fork-join task that ticks a single engine. Reused every round. An exception thrown by the tick is kept, rather than rethrown, so that it does
+    // not fail the round.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private class TickTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final ECSHeadlessEngine engine;
+        private Exception               failure;
+
+        TickTask ( ECSHeadlessEngine engine )
+        {
+            this.engine  = engine;
+            this.failure = null;
+        }
+
+        @Override
+        protected void compute ()
+        {
+            try
+            {
+                this.engine.step ();
+            }
+            catch ( Exception e )
+            {
+                this.failure = e;
+
+                failures.put ( this.engine, e );
+            }
+        }
+    }
+}
@@ -2,7 +2,7 @@ package rohin.gameengine;
 
 import java.util.*;
 
-public class ECSEntity extends ECSObject
+public class ECSEntity extends ECSObject implements IPoolable
 {    
     // @formatter:off
     
@@ -16,13 +16,25 @@ public class ECSEntity extends ECSObject
     
     // Fields.
                 
-    private HashMap <Integer, ECSComponent> components;
+    private IntHashMap <ECSComponent>       components;
+    private ECSSignature                    signature;          // Component types present in the component list.
     private Boolean                         enabled;
+    
+    // Fields - Engine storage. Maintained by the engine that this entity has been added to.
+    
+    ECSEngine                               engine;             // Engine this entity is registered with, or null.
+    int                                     allocatedId;        // Generational ID assigned by the entity allocator, or 0 if the entity was not spawned.
+    ECSArchetypeChunk                       archetypeChunk;     // Archetype chunk this entity is stored in, or null if archetype storage is disabled.
+    int                                     archetypeRow;       // Row of this entity in its archetype chunk.
+    int                                     sparseSetSlot;      // Slot of this entity in the sparse set pools, or -1 if sparse set storage is disabled.
+    Boolean                                 pooled;             // True if this entity was acquired from the engine's entity pool.
         
     // Accessors and mutators.
     
-    public HashMap <Integer, ECSComponent> getComponents () { return this.components; }
-    public Boolean                         isEnabled     () { return this.enabled;    }
+    public IntHashMap <ECSComponent> getComponents  () { return this.components;  }
+    public ECSSignature              getSignature   () { return this.signature;   }
+    public Boolean                   isEnabled      () { return this.enabled;     }
+    public int                       getAllocatedId () { return this.allocatedId; }
     
     public void setEnabled ( Boolean enabled ) { this.enabled = enabled; }
     
@@ -47,19 +59,142 @@ public class ECSEntity extends ECSObject
         this.owner      = owner;
         this.id         = id;
         this.name       = name;                
-        this.components = new HashMap <Integer, ECSComponent> ( M_DEFAULT_HASH_MAP_SIZE );
+        this.components = new IntHashMap <ECSComponent> ( M_DEFAULT_HASH_MAP_SIZE );
+        this.signature  = new ECSSignature ();
         this.enabled    = M_DEFAULT_ENABLED;   
+        
+        // Initialize engine storage.
+        
+        this.engine         = null;
+        this.allocatedId    = 0;
+        this.archetypeChunk = null;
+        this.archetypeRow   = -1;
+        this.sparseSetSlot  = -1;
+        this.pooled         = false;
     }
     
     // @formatter:on
     
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: getId
+    //
+    // Spawned entities keep their generational ID in a primitive field, so that spawning does not box a new Integer for every entity. Their boxed id
+    // field is left unchanged.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @Override
+    public long getId ()
+    {
+        return ( this.allocatedId != 0 ) ? this.allocatedId : super.getId ();
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: toString
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @Override
+    public String toString ()
+    {
+        return ( this.allocatedId != 0 ) ? "[" + this.family + "." + this.allocatedId + "] " + this.name : super.toString ();
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: reset
+    //
+    // Restore the entity to its newly constructed state, so that it can be reused by an ECSPool. The component map is cleared rather than replaced.
+    // The components themselves are not reset. The engine releases them to their own pools, before releasing the entity.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @Override
+    public void reset ()
+    {
+        this.id      = M_DEFAULT_ID;
+        this.name    = M_DEFAULT_NAME;
+        this.enabled = M_DEFAULT_ENABLED;
+        
+        this.components.clear ();
+        this.signature.clear ();
+    }
+    
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     // Adds a components to the component list.
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     
-    public void addComponent ( Integer key, ECSComponent component )
+    public void addComponent ( int key, ECSComponent component )
     {   
-        this.components.put ( key, component );
+        // Archetype storage holds one component per type. Reject a second component of a type already held under a different key, before the
+        // entity is modified.
+        
+        if ( ( this.engine != null ) && this.engine.isArchetypeStorageEnabled () && this.signature.get ( component.getTypeIndex () ) )
+        {
+            ECSComponent replaced = this.components.get ( key );
+            
+            if ( ( replaced == null ) || ( replaced.getTypeIndex () != component.getTypeIndex () ) )
+            {
+                throw new IllegalStateException ( "Entity " + getId () + " already holds a component of type " + component.getClass ().getSimpleName () + ", which archetype storage does not support." );
+            }
+        }
+        
+        ECSComponent previous = this.components.put ( key, component );
+        
+        // Update the component signature.
+        // - If a component of a different type was replaced, then that type may no longer be present, so rebuild the signature from scratch.
+        
+        if ( ( previous != null ) && ( previous.getTypeIndex () != component.getTypeIndex () ) )
+        {
+            updateSignature ();
+        }
+        else
+        {
+            this.signature.set ( component.getTypeIndex () );
+        }
+        
+        // Let the engine move this entity to the archetype that matches its new component set, and mark the new component as changed.
+        
+        if ( this.engine != null )
+        {
+            this.engine.markChanged ( component );
+            this.engine.updateEntityStorage ( this, previous, component );
+        }
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Removes a component from the component list.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public ECSComponent removeComponent ( int key )
+    {   
+        ECSComponent component = this.components.remove ( key );
+        
+        // Another component of the same type may still be present under a different key, so rebuild the signature from scratch.
+        
+        if ( component != null )
+        {
+            updateSignature ();
+        }
+        
+        // Let the engine move this entity to the archetype that matches its new component set.
+        
+        if ( ( component != null ) && ( this.engine != null ) )
+        {
+            this.engine.updateEntityStorage ( this, component, null );
+        }
+        
+        return component;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Rebuild the component signature from the component list.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private void updateSignature ()
+    {
+        this.signature.clear ();
+        
+        for ( int i = 0; i < this.components.size (); i++ )
+        {
+            this.signature.set ( this.components.valueAt ( i ).getTypeIndex () );
+        }
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -95,36 +230,28 @@ public class ECSEntity extends ECSObject
 
     public Boolean hasComponents ( ECSComponent... systemComponents )    
     {   
-        Collection <ECSComponent> entityComponents = this.components.values ();
-        int                       componentCount   = 0;
-        
-        try
-        {        
-            // for: Iterate through all components passed in through the variable argument list.
-            //   for: Iterate through all components in this entity.
-            //     if else: Compare each component from this entity, with each component passed in through the variable argument list.
-            //              - If we find a match, then increment the component count.
-            //              - Else just ignore this component. 
-
-            for ( ECSComponent systemComponent : systemComponents )
-            {
-                for ( ECSComponent entityComponent : entityComponents )
-                {   
-                    if ( entityComponent.getClass () == systemComponent.getClass () )
-                    {                        
-                        componentCount++;
-                    }
-                }
-            }        
-        }
-        catch ( Exception e )
+        // Each component type is a single bit test against the entity signature. No component list iteration is required.
+        
+        for ( ECSComponent systemComponent : systemComponents )
         {
-            TextFormat.printFormattedException ( e, true );
+            if ( !this.signature.get ( systemComponent.getTypeIndex () ) )
+            {
+                return false;
+            }
         }
         
-        // If we have matched all input components with components from the entity, then return true.
-        // Else, if we never collected enough components, then return false.
-        
-        return ( componentCount == systemComponents.length ) ? true : false;
+        return true;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // hasComponents
+    //
+    // Query whether or not an entity has every component type in a required signature.
+    // Systems should build their required signature once, so that this check reduces to a single AND and compare per signature word.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean hasComponents ( ECSSignature required )    
+    {   
+        return this.signature.containsAll ( required );
     }     
 }
@@ -0,0 +1,417 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSEntityAllocator
+//
+// Generational entity ID allocator, for entities that are spawned and destroyed at a high rate, e.g. bullets and particles.
+//
+// - Each allocated entity occupies a slot. Its ID packs the slot index into the low 20 bits, and the slot's generation into the 11 bits above
+//   them:
+//
+//     [ 0 | generation (11 bits) | index (20 bits) ]
+//
+// - Releasing an entity increments the generation of its slot, and appends the slot to a FIFO free list. IDs issued before the release no longer
+//   match the slot's generation, so stale handles are detected rather than resolving to whichever entity reuses the slot.
+// - Generations start at 1, so that every allocated ID is at least 2^20. Allocated IDs therefore never collide with the small, caller chosen IDs
+//   used by ECSEngine.addEntity, provided those stay below 2^20.
+// - Live entities are also kept in a dense array, for cache friendly iteration. Releasing an entity moves the last dense entity into its place.
+// - Allocate, release and get are O(1), and do not allocate memory, except to grow the arrays. The ID is stored in the entity's primitive
+//   allocatedId field, rather than its boxed id field, since allocated IDs are too large for the Integer cache.
+//
+// Notes:
+//
+// - writeSnapshot and readSnapshot save and restore the slots, generations and free list, so that a restored world keeps its IDs, and issues the
+//   same IDs as the captured world. See ECSSnapshot.
+// - Generations wrap from 2047 back to 1. Because slots are reused in FIFO order, a stale handle can only be mistaken for a live one after its
+//   slot has been reused 2047 times.
+// - The allocator is not synchronized.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSEntityAllocator
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int M_INDEX_BITS       = 20;                                // Number of ID bits used for the slot index.
+    public static final int M_GENERATION_BITS  = 11;                                // Number of ID bits used for the slot generation.
+    public static final int M_INDEX_MASK       = ( 1 << M_INDEX_BITS ) - 1;         // Mask of the slot index bits.
+    public static final int M_GENERATION_MASK  = ( 1 << M_GENERATION_BITS ) - 1;    // Mask of the generation bits, once shifted down.
+    public static final int M_CAPACITY_MAX     = 1 << M_INDEX_BITS;                 // Maximum number of slots.
+    public static final int M_DEFAULT_CAPACITY = 1024;                              // Initial number of slots.
+
+    // Fields - Slots, indexed by slot index.
+
+    private ECSEntity[] entities;       // Entity occupying each slot, or null if the slot is free.
+    private int[]       generations;    // Current generation of each slot.
+    private int[]       densePositions; // Position of each slot's entity in the dense array.
+    private int         slotCount;      // Number of slots ever used.
+
+    // Fields - Free list. Circular FIFO queue of free slot indices.
+
+    private int[]       freeSlots;      // Free slot indices.
+    private int         freeHead;       // Position of the next slot to reuse.
+    private int         freeCount;      // Number of free slots.
+
+    // Fields - Dense array of live entities.
+
+    private ECSEntity[] dense;          // Live entities, packed from position 0.
+    private int[]       denseSlots;     // Slot index of each dense entity.
+    private int         count;          // Number of live entities.
+
+    // Accessors and mutators.
+
+    public int       size     ()               { return this.count;              }
+    public Boolean   isEmpty  ()               { return this.count == 0;         }
+    public ECSEntity getDense ( int position ) { return this.dense [ position ]; }
+
+    // ID packing.
+
+    public static int     pack          ( int index, int generation ) { return ( generation << M_INDEX_BITS ) | index;      }
+    public static int     getIndex      ( int id )                    { return id & M_INDEX_MASK;                           }
+    public static int     getGeneration ( int id )                    { return ( id >>> M_INDEX_BITS ) & M_GENERATION_MASK; }
+    public static Boolean isAllocatedId ( int id )                    { return ( id > 0 ) && ( getGeneration ( id ) != 0 ); }
+
+    // Constructors.
+
+    public ECSEntityAllocator ()               { initialize ( M_DEFAULT_CAPACITY ); }
+    public ECSEntityAllocator ( int capacity ) { initialize ( capacity );           }
+
+    // Initialize
+
+    private void initialize ( int capacity )
+    {
+        capacity = Math.max ( 1, Math.min ( capacity, M_CAPACITY_MAX ) );
+
+        this.entities       = new ECSEntity [ capacity ];
+        this.generations    = new int       [ capacity ];
+        this.densePositions = new int       [ capacity ];
+        this.slotCount      = 0;
+        this.freeSlots      = new int       [ capacity ];
+        this.freeHead       = 0;
+        this.freeCount      = 0;
+        this.dense          = new ECSEntity [ capacity ];
+        this.denseSlots     = new int       [ capacity ];
+        this.count          = 0;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // allocate
+    //
+    // Description:
+    //
+    // - Assign a generational ID to an entity, and add it to the dense array.
+    //
+    // Return Value:
+    //
+    // - The entity's new ID. The entity's allocatedId field is set to the same value.
+    //
+    // Preconditions:
+    //
+    // - The entity must not already be allocated.
+    //
+    // Postconditions:
+    //
+    // - Throws IllegalStateException if all 2^20 slots are in use.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int allocate ( ECSEntity entity )
+    {
+        int index;
+
+        if ( this.freeCount > 0 )
+        {
+            // Reuse the slot that has been free the longest.
+
+            index = this.freeSlots [ this.freeHead ];
+
+            this.freeHead = ( this.freeHead + 1 ) % this.freeSlots.length;
+            --this.freeCount;
+        }
+        else
+        {
+            if ( this.slotCount >= M_CAPACITY_MAX )
+            {
+                throw new IllegalStateException ( "Entity allocator is full. " + M_CAPACITY_MAX + " entities are in use." );
+            }
+
+            if ( this.slotCount >= this.entities.length )
+            {
+                grow ();
+            }
+
+            index = this.slotCount++;
+
+            this.generations [ index ] = 1;
+        }
+
+        int id = pack ( index, this.generations [ index ] );
+
+        entity.allocatedId = id;
+
+        this.entities       [ index ]      = entity;
+        this.densePositions [ index ]      = this.count;
+        this.dense          [ this.count ] = entity;
+        this.denseSlots     [ this.count ] = index;
+
+        ++this.count;
+
+        return id;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // allocate
+    //
+    // Description:
+    //
+    // - Assign a specific ID to an entity, and add it to the dense array. Used to restore the entities of a snapshot under their original IDs.
+    //
+    // Preconditions:
+    //
+    // - The ID's slot must be free, and must not be in the free list. The slot's generation must match the ID. readSnapshot leaves the slots of
+    //   the snapshot's entities in this state.
+    //
+    // Postconditions:
+    //
+    // - Throws IllegalStateException if the slot is not in the expected state.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void allocate ( ECSEntity entity, int id )
+    {
+        int index = getIndex ( id );
+
+        if ( ( id < 0 ) || ( index >= this.slotCount ) || ( this.entities [ index ] != null ) || ( this.generations [ index ] != getGeneration ( id ) ) )
+        {
+            throw new IllegalStateException ( "Entity ID " + id + " cannot be allocated, since its slot is in use, or belongs to another generation." );
+        }
+
+        entity.allocatedId = id;
+
+        this.entities       [ index ]      = entity;
+        this.densePositions [ index ]      = this.count;
+        this.dense          [ this.count ] = entity;
+        this.denseSlots     [ this.count ] = index;
+
+        ++this.count;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // release
+    //
+    // Description:
+    //
+    // - Free the slot of the entity with the specified ID, invalidating the ID.
+    //
+    // Return Value:
+    //
+    // - The released entity, or null if the ID is stale or was never allocated.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public ECSEntity release ( int id )
+    {
+        ECSEntity entity = get ( id );
+
+        if ( entity == null )
+        {
+            return null;
+        }
+
+        int index    = getIndex ( id );
+        int position = this.densePositions [ index ];
+        int last     = --this.count;
+
+        // Move the last dense entity into the released entity's position.
+
+        this.dense      [ position ] = this.dense      [ last ];
+        this.denseSlots [ position ] = this.denseSlots [ last ];
+        this.dense      [ last ]     = null;
+
+        this.densePositions [ this.denseSlots [ position ] ] = position;
+
+        // Invalidate the ID, and queue the slot for reuse.
+
+        int generation = this.generations [ index ] + 1;
+
+        this.generations [ index ] = ( generation > M_GENERATION_MASK ) ? 1 : generation;
+        this.entities    [ index ] = null;
+
+        entity.allocatedId = 0;
+
+        this.freeSlots [ ( this.freeHead + this.freeCount ) % this.freeSlots.length ] = index;
+
+        ++this.freeCount;
+
+        return entity;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // get
+    //
+    // Retrieve the entity with the specified ID, or null if the ID is stale or was never allocated.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public ECSEntity get ( int id )
+    {
+        int index = getIndex ( id );
+
+        if ( ( id < 0 ) || ( index >= this.slotCount ) || ( this.generations [ index ] != getGeneration ( id ) ) )
+        {
+            return null;
+        }
+
+        return this.entities [ index ];
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // isAlive
+    //
+    // Returns true if the ID refers to a live entity, or false if the ID is stale or was never allocated.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean isAlive ( int id )
+    {
+        return get ( id ) != null;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // move
+    //
+    // Move a live entity to the specified position of the dense array, swapping it with the entity at that position.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void move ( ECSEntity entity, int position )
+    {
+        int index = getIndex ( entity.allocatedId );
+        int from  = this.densePositions [ index ];
+        int slot  = this.denseSlots     [ position ];
+
+        this.dense      [ from ]     = this.dense [ position ];
+        this.denseSlots [ from ]     = slot;
+        this.dense      [ position ] = entity;
+        this.denseSlots [ position ] = index;
+
+        this.densePositions [ slot ]  = from;
+        this.densePositions [ index ] = position;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // writeSnapshot
+    //
+    // Write the slot count, the generation of every slot, and the free list in reuse order.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void writeSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        buffer.writeInt ( this.slotCount );
+
+        for ( int i = 0; i < this.slotCount; i++ )
+        {
+            buffer.writeInt ( this.generations [ i ] );
+        }
+
+        buffer.writeInt ( this.freeCount );
+
+        for ( int i = 0; i < this.freeCount; i++ )
+        {
+            buffer.writeInt ( this.freeSlots [ ( this.freeHead + i ) % this.freeSlots.length ] );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // readSnapshot
+    //
+    // Description:
+    //
+    // - Restore the slot count, generations and free list written by writeSnapshot.
+    //
+    // Preconditions:
+    //
+    // - Every live entity must be one of the snapshot's entities, under the same ID. Live entities are kept.
+    //
+    // Postconditions:
+    //
+    // - The slots of snapshot entities that are not live are left free, at the generation of the snapshot entity's ID, and out of the free list.
+    //   Their entities are added with allocate ( entity, id ).
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void readSnapshot ( ECSSnapshotBuffer buffer )
+    {
+        int slotCount = buffer.readInt ();
+
+        if ( ( slotCount < 0 ) || ( slotCount > M_CAPACITY_MAX ) )
+        {
+            throw new IllegalArgumentException ( "Invalid entity allocator slot count " + slotCount + "." );
+        }
+
+        while ( this.entities.length < slotCount )
+        {
+            grow ();
+        }
+
+        for ( int i = 0; i < slotCount; i++ )
+        {
+            this.generations [ i ] = buffer.readInt ();
+        }
+
+        for ( int i = slotCount; i < this.slotCount; i++ )
+        {
+            this.generations [ i ] = 0;
+        }
+
+        this.slotCount = slotCount;
+        this.freeCount = buffer.readInt ();
+        this.freeHead  = 0;
+
+        for ( int i = 0; i < this.freeCount; i++ )
+        {
+            this.freeSlots [ i ] = buffer.readInt ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // clear
+    //
+    // Release all entities. Generations are kept, so that IDs issued before the clear remain stale.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void clear ()
+    {
+        while ( this.count > 0 )
+        {
+            release ( this.dense [ this.count - 1 ].allocatedId );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // grow
+    //
+    // Double the capacity of the slot, free list and dense arrays. The free list is unwrapped into the start of its new array.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void grow ()
+    {
+        int   capacity  = Math.min ( this.entities.length * 2, M_CAPACITY_MAX );
+        int[] freeSlots = new int [ capacity ];
+
+        for ( int i = 0; i < this.freeCount; i++ )
+        {
+            freeSlots [ i ] = this.freeSlots [ ( this.freeHead + i ) % this.freeSlots.length ];
+        }
+
+        this.entities       = Arrays.copyOf ( this.entities,       capacity );
+        this.generations    = Arrays.copyOf ( this.generations,    capacity );
+        this.densePositions = Arrays.copyOf ( this.densePositions, capacity );
+        this.dense          = Arrays.copyOf ( this.dense,          capacity );
+        this.denseSlots     = Arrays.copyOf ( this.denseSlots,     capacity );
+        this.freeSlots      = freeSlots;
+        this.freeHead       = 0;
+    }
+}
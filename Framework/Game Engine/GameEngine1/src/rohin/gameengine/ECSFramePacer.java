@@ -0,0 +1,249 @@
+package rohin.gameengine;
+
+import java.util.concurrent.locks.LockSupport;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSFramePacer
+//
+// High resolution frame rate regulator.
+//
+// - Frames are paced against an absolute deadline, measured with System.nanoTime. Each deadline is one frame period after the previous deadline,
+//   so that timing errors in one frame are corrected in the next frame, instead of accumulating.
+// - The bulk of the remaining frame budget is slept with LockSupport.parkNanos. The last part of the budget is spent spinning on Thread.yield,
+//   which wakes up far more precisely than any OS sleep.
+// - The spin margin adapts to the platform. The pacer measures how far each park overshoots the requested period, and stops parking early by that
+//   amount, plus the minimum spin threshold.
+// - If a frame falls more than one whole period behind its deadline, the missed frames are dropped, and pacing restarts from the current time.
+// - Spinning can be disabled, in which case the pacer parks right up to the deadline. Frames end slightly late, by the park overshoot, but the
+//   thread never runs while it waits. Used for loops on virtual threads, where a parked thread releases its carrier thread, but a spinning one
+//   does not. See ECSLoopHost.
+//
+// Statistics:
+//
+// - The pacer records the period of every paced frame, i.e. the time between the end of one frame and the end of the next. The mean, standard
+//   deviation (jitter), minimum and maximum frame periods are available through the accessors, measured in ns.
+// - The pacer also accumulates the busy time of every paced frame, i.e. the time between the start of the frame and the call to pace. The busy
+//   time may be read from any thread.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSFramePacer
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final long   M_DEFAULT_SPIN_THRESHOLD = 1000000L;    // Minimum time to spin before a deadline, measured in ns.
+    public static final double M_OVERSHOOT_WEIGHT       = 0.125;       // Weight of the latest sample in the park overshoot moving average.
+
+    // Fields.
+
+    private long                spinThreshold;      // Minimum time to spin before a deadline, measured in ns.
+    private Boolean             spinEnabled;        // False to park right up to the deadline, without spinning.
+    private double              overshoot;          // Moving average of the time by which parkNanos overshoots the requested period, measured in ns.
+    private long                deadline;           // Time at which the current frame ends, measured in ns.
+    private Boolean             running;            // False until the first frame has been paced, or after a reset.
+
+    // Fields - Statistics.
+
+    private long                frameCount;         // Number of frame periods recorded.
+    private long                frameTime;          // Period of the most recent frame, measured in ns.
+    private long                frameTimeMin;       // Shortest frame period, measured in ns.
+    private long                frameTimeMax;       // Longest frame period, measured in ns.
+    private double              frameTimeMean;      // Mean frame period, measured in ns.
+    private double              frameTimeM2;        // Sum of squared differences from the mean. Used to compute the jitter.
+    private long                frameTimeTarget;    // Most recently requested frame period, measured in ns.
+    private long                frameEnd;           // Time at which the previous frame ended, measured in ns.
+    private volatile long       busyTime;           // Total busy time of all paced frames, measured in ns.
+
+    // Accessors and mutators.
+
+    public long    getSpinThreshold   () { return this.spinThreshold;   }
+    public Boolean isSpinEnabled      () { return this.spinEnabled;     }
+    public double  getOvershoot       () { return this.overshoot;       }
+    public long    getFrameCount      () { return this.frameCount;      }
+    public long    getFrameTime       () { return this.frameTime;       }
+    public long    getFrameTimeMin    () { return this.frameTimeMin;    }
+    public long    getFrameTimeMax    () { return this.frameTimeMax;    }
+    public double  getFrameTimeMean   () { return this.frameTimeMean;   }
+    public long    getFrameTimeTarget () { return this.frameTimeTarget; }
+    public long    getBusyTime        () { return this.busyTime;        }
+
+    public void setSpinThreshold ( long    spinThreshold ) { this.spinThreshold = Math.max ( 0, spinThreshold ); }
+    public void setSpinEnabled   ( Boolean spinEnabled   ) { this.spinEnabled   = spinEnabled;                  }
+
+    // Constructors.
+
+    public ECSFramePacer ()                     { initialize ( M_DEFAULT_SPIN_THRESHOLD ); }
+    public ECSFramePacer ( long spinThreshold ) { initialize ( spinThreshold );            }
+
+    // Initialize.
+
+    private void initialize ( long spinThreshold )
+    {
+        this.spinThreshold = Math.max ( 0, spinThreshold );
+        this.spinEnabled   = true;
+        this.overshoot     = 0.0;
+        this.busyTime      = 0;
+
+        reset ();
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // reset
+    //
+    // Restart pacing from the next frame, and clear the frame statistics. The park overshoot estimate is kept, since it describes the platform, and
+    // the busy time is kept, since it may be sampled by another thread.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void reset ()
+    {
+        this.deadline        = 0;
+        this.running         = false;
+        this.frameCount      = 0;
+        this.frameTime       = 0;
+        this.frameTimeMin    = Long.MAX_VALUE;
+        this.frameTimeMax    = 0;
+        this.frameTimeMean   = 0.0;
+        this.frameTimeM2     = 0.0;
+        this.frameTimeTarget = 0;
+        this.frameEnd        = 0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // pace
+    //
+    // Description:
+    //
+    // - Wait until the end of the current frame.
+    //
+    // Arguments:
+    //
+    // - frameStart
+    //   The time at which the current frame started, measured in ns. Only used to place the first deadline.
+    //
+    // - period
+    //   Target frame period, measured in ns. e.g. 1e9 / fpsTarget.
+    //
+    // Return Value:
+    //
+    // - The time that was left in the frame budget, before waiting, measured in ns. Negative if the frame ran over budget.
+    //
+    // Postconditions:
+    //
+    // - The current time is at, or just past, the frame deadline.
+    // - The frame period has been added to the statistics.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public long pace ( long frameStart, long period )
+    {
+        if ( !this.running )
+        {
+            this.deadline = frameStart;
+            this.running  = true;
+        }
+
+        this.deadline += period;
+
+        long now       = System.nanoTime ();
+        long remaining = this.deadline - now;
+
+        this.busyTime += now - frameStart;
+
+        if ( remaining > 0 )
+        {
+            waitUntil ( this.deadline );
+        }
+        else
+        {
+            // Over budget. Give up the CPU briefly, and drop any whole frames that were missed, so that we don't race to catch up.
+
+            Thread.yield ();
+
+            if ( -remaining > period )
+            {
+                this.deadline = now;
+            }
+        }
+
+        recordFrame ( System.nanoTime (), period );
+
+        return remaining;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getFrameTimeJitter
+    //
+    // Standard deviation of the frame period, measured in ns.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public double getFrameTimeJitter ()
+    {
+        return ( this.frameCount > 1 ) ? Math.sqrt ( this.frameTimeM2 / ( this.frameCount - 1 ) ) : 0.0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // waitUntil
+    //
+    // Description:
+    //
+    // - Park until shortly before the deadline, then spin until the deadline. If spinning is disabled, then park until the deadline.
+    // - Each park is measured, and the overshoot moving average is updated, so that later frames stop parking early enough.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void waitUntil ( long deadline )
+    {
+        long parkEnd = this.spinEnabled ? deadline - this.spinThreshold - ( long ) this.overshoot : deadline;
+        long now     = System.nanoTime ();
+
+        while ( parkEnd - now > 0 )
+        {
+            long request = parkEnd - now;
+
+            LockSupport.parkNanos ( request );
+
+            long actual = System.nanoTime () - now;
+
+            if ( actual >= request )
+            {
+                this.overshoot += ( ( actual - request ) - this.overshoot ) * M_OVERSHOOT_WEIGHT;
+            }
+
+            now = System.nanoTime ();
+        }
+
+        while ( deadline - System.nanoTime () > 0 )
+        {
+            Thread.yield ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // recordFrame
+    //
+    // Add the period since the previous frame ended to the statistics. Uses Welford's method, so that the variance is stable over long runs.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void recordFrame ( long now, long period )
+    {
+        if ( this.frameEnd != 0 )
+        {
+            long   frameTime = now - this.frameEnd;
+            double delta     = frameTime - this.frameTimeMean;
+
+            ++this.frameCount;
+
+            this.frameTimeMean += delta / this.frameCount;
+            this.frameTimeM2   += delta * ( frameTime - this.frameTimeMean );
+            this.frameTime      = frameTime;
+            this.frameTimeMin   = Math.min ( this.frameTimeMin, frameTime );
+            this.frameTimeMax   = Math.max ( this.frameTimeMax, frameTime );
+        }
+
+        this.frameTimeTarget = period;
+        this.frameEnd        = now;
+    }
+}
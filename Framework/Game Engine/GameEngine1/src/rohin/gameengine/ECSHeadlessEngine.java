@@ -0,0 +1,141 @@
+package rohin.gameengine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSHeadlessEngine
+//
+// Game engine without a display, for running simulations on servers, batch replays, tests and benchmarks.
+//
+// - The engine does not depend on AWT or Swing. There is no double buffer, so swapBuffer does nothing.
+// - Each tick flushes the command queue, and then updates the simulation systems once, with t equal to the fixed time step. Render systems are never
+//   updated, so they may be left attached, or removed with detachRenderSystems.
+// - Ticks are either run on demand, with step and runTicks, or continuously, with run. run paces ticks to the FPS target through the frame pacer,
+//   if the FPS target is enabled, and otherwise runs them as fast as possible.
+// - Logging, including the logging of posted commands, and the FPS target are disabled by default.
+//
+// Notes:
+//
+// - Simulation time advances by exactly one fixed time step per tick, regardless of real time, so that a simulation run headless produces the same
+//   results as the same simulation run with the fixed time step game loop.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSHeadlessEngine extends ECSEngine
+{
+    // @formatter:off
+
+    // Constructors.
+
+    public ECSHeadlessEngine ()                  { super ();        initialize (); }
+    public ECSHeadlessEngine ( ECSEngine owner ) { super ( owner ); initialize (); }
+
+    // Initialize
+
+    private void initialize ()
+    {
+        setloggingEnabled   ( false );
+        setFPSTargetEnabled ( false );
+        setLoopDelayFixed   ( 0 );
+        setCommandManager   ( new CommandManager ( false ) );
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: swapBuffer
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected void swapBuffer ()
+    {
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: Game loop.
+    //
+    // - Run ticks until the loop is stopped, e.g. by a command that calls setLoopRunning ( false ).
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void run ()
+    {
+        long start = 0;
+
+        setLoopRunning ( true );
+
+        getFramePacer ().reset ();
+
+        while ( isLoopRunning () )
+        {
+            start = System.nanoTime ();
+
+            step ();
+
+            if ( isFPSTargetEnabled () && getFPSTarget () > 0 )
+            {
+                getFramePacer ().pace ( start, ( long ) ( 1.0e9 / getFPSTarget () ) );
+            }
+        }
+
+        shutdown ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // runTicks
+    //
+    // Run the specified number of ticks, as fast as possible, on the calling thread.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void runTicks ( long ticks )
+    {
+        for ( long i = 0; i < ticks; i++ )
+        {
+            step ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // step
+    //
+    // Description:
+    //
+    // - Run a single simulation tick.
+    //
+    // Postconditions:
+    //
+    // - All queued commands have been executed.
+    // - Every simulation system with matching entities has been updated once, with t equal to the fixed time step.
+    // - The tick counter has been incremented.
+    // - If the profiler is enabled, the tick has been recorded as a frame.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void step ()
+    {
+        ECSProfiler profiler = getProfiler ();
+        long        start    = profiler.isEnabled () ? System.nanoTime () : 0;
+        long        mark     = 0;
+
+        getCommandManager ().flush ();
+
+        mark = profiler.recordFlush ( start );
+
+        updateSystems ( getFixedStep (), 1.0, ECSScheduler.M_MODE_SIMULATION );
+
+        mark = profiler.recordUpdate ( mark );
+
+        profiler.recordFrame ( mark - start );
+        profiler.endFrame    ( mark );
+
+        ++this.tick;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // shutdown
+    //
+    // Release the scheduler's worker threads. The engine may still be stepped afterwards, in which case the threads are recreated as needed.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void shutdown ()
+    {
+        getScheduler ().shutdown ();
+    }
+}
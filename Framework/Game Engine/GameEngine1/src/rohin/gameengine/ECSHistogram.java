@@ -0,0 +1,179 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSHistogram
+//
+// Fixed memory histogram of durations, measured in ns. Used by ECSProfiler.
+//
+// - Values are counted in log-linear buckets. Each power of two is split into 32 linear sub-buckets, so that every recorded value is reproduced
+//   to within about 3% of its true value, from 1 ns up to the largest positive long.
+// - Recording a value is a few bit operations and an array increment. No memory is allocated after construction.
+// - Percentiles are reported as the highest value in the bucket holding the percentile, capped at the maximum recorded value.
+//
+// Notes:
+//
+// - The histogram is not synchronized. Each histogram should only be recorded to by one thread at a time.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSHistogram
+{
+    // @formatter:off
+
+    // Constants.
+
+    private static final int M_SUB_BUCKET_BITS  = 5;                                                  // log2 of the number of sub-buckets per power of two.
+    private static final int M_SUB_BUCKET_COUNT = 1 << M_SUB_BUCKET_BITS;                             // Number of sub-buckets per power of two.
+    private static final int M_BUCKET_COUNT     = ( 64 - M_SUB_BUCKET_BITS ) * M_SUB_BUCKET_COUNT;    // Number of buckets needed to cover every positive long.
+
+    // Fields.
+
+    private long[] counts;     // Number of values recorded in each bucket.
+    private long   count;      // Total number of values recorded.
+    private long   total;      // Sum of all recorded values.
+    private long   min;        // Smallest recorded value.
+    private long   max;        // Largest recorded value.
+
+    // Accessors and mutators.
+
+    public long   getCount () { return this.count;                                                    }
+    public long   getTotal () { return this.total;                                                    }
+    public long   getMin   () { return ( this.count > 0 ) ? this.min : 0;                             }
+    public long   getMax   () { return this.max;                                                      }
+    public double getMean  () { return ( this.count > 0 ) ? ( double ) this.total / this.count : 0.0; }
+
+    // Constructors.
+
+    public ECSHistogram ()
+    {
+        this.counts = new long [ M_BUCKET_COUNT ];
+
+        reset ();
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // reset
+    //
+    // Remove all recorded values.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void reset ()
+    {
+        Arrays.fill ( this.counts, 0L );
+
+        this.count = 0;
+        this.total = 0;
+        this.min   = Long.MAX_VALUE;
+        this.max   = 0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // record
+    //
+    // Add a value to the histogram. Negative values are recorded as zero.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void record ( long value )
+    {
+        if ( value < 0 )
+        {
+            value = 0;
+        }
+
+        ++this.counts [ bucketIndex ( value ) ];
+        ++this.count;
+
+        this.total += value;
+
+        if ( value < this.min ) this.min = value;
+        if ( value > this.max ) this.max = value;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getPercentile
+    //
+    // Description:
+    //
+    // - Returns the value below which the specified percentage of recorded values fall.
+    //
+    // Arguments:
+    //
+    // - percentile
+    //   Percentage, in the range 0 to 100. e.g. 50 for the median, or 99 for the 99th percentile.
+    //
+    // Return Value:
+    //
+    // - The highest value in the bucket that holds the percentile, capped at the maximum recorded value. Zero if the histogram is empty.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public long getPercentile ( double percentile )
+    {
+        if ( this.count == 0 )
+        {
+            return 0;
+        }
+
+        long target     = Math.max ( 1, ( long ) Math.ceil ( percentile / 100.0 * this.count ) );
+        long cumulative = 0;
+
+        for ( int i = 0; i < M_BUCKET_COUNT; i++ )
+        {
+            cumulative += this.counts [ i ];
+
+            if ( cumulative >= target )
+            {
+                return Math.min ( this.max, bucketLimit ( i ) );
+            }
+        }
+
+        return this.max;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // bucketIndex
+    //
+    // Description:
+    //
+    // - Values below 32 each have their own bucket.
+    // - Larger values are bucketed by the position of their highest set bit, and then by the 5 bits that follow it.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static int bucketIndex ( long value )
+    {
+        if ( value < M_SUB_BUCKET_COUNT )
+        {
+            return ( int ) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros ( value );
+        int shift    = exponent - M_SUB_BUCKET_BITS;
+        int sub      = ( int ) ( value >>> shift ) & ( M_SUB_BUCKET_COUNT - 1 );
+
+        return ( shift + 1 ) * M_SUB_BUCKET_COUNT + sub;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // bucketLimit
+    //
+    // The highest value that is counted in the specified bucket. The inverse of bucketIndex.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static long bucketLimit ( int index )
+    {
+        if ( index < M_SUB_BUCKET_COUNT )
+        {
+            return index;
+        }
+
+        int  shift = index / M_SUB_BUCKET_COUNT - 1;
+        long sub   = index % M_SUB_BUCKET_COUNT;
+        long limit = ( ( M_SUB_BUCKET_COUNT + sub + 1 ) << shift ) - 1;
+
+        return ( limit < 0 ) ? Long.MAX_VALUE : limit;
+    }
+}
@@ -0,0 +1,348 @@
+package rohin.gameengine;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSLoopHost
+//
+// Runs the game loops of many engines, each on its own thread, e.g. one low tick rate simulation per match on a game server.
+//
+// - Each engine's run method is called on a new thread, and paces itself, through its frame pacer, or its fixed loop delay, as it would on the
+//   main thread.
+// - By default, the loops run on virtual threads. A virtual thread that parks, or sleeps, between frames releases its carrier thread, so thousands of
+//   paced loops share a handful of platform threads. Frame pacer spinning is disabled for engines hosted on virtual threads, so that waiting loops
+//   never occupy a carrier thread.
+// - Virtual threads are created through reflection, so the framework still builds and runs on JVMs without them. On those JVMs, and when platform
+//   threads are requested, each loop gets its own platform thread.
+// - Unlike ECSEngineHost, engines are not ticked in lockstep. Each loop runs at its own tick rate.
+//
+// Statistics:
+//
+// - Carrier utilisation is the busy time of all hosted loops, divided by the wall time and the number of carrier threads. For virtual threads, the
+//   carrier threads are those of the JVM's virtual thread scheduler. For platform threads, the carriers are the available processors.
+// - Busy time is measured by each engine's frame pacer, so it only covers loops paced to an FPS target.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSLoopHost
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final String M_THREAD_NAME          = "ECSLoop-";                                     // Prefix of loop thread names.
+    public static final String M_CARRIER_PARALLELISM  = "jdk.virtualThreadScheduler.parallelism";       // System property holding the carrier count.
+    public static final long   M_STOP_POLL_PERIOD     = 100;                                            // Time between stop requests, measured in ms.
+
+    // Virtual thread builder methods, or null if the JVM does not support virtual threads.
+
+    private static final Method M_OF_VIRTUAL;
+    private static final Method M_UNSTARTED;
+
+    static
+    {
+        Method ofVirtual = null;
+        Method unstarted = null;
+
+        try
+        {
+            ofVirtual = Thread.class.getMethod ( "ofVirtual" );
+            unstarted = Class.forName ( "java.lang.Thread$Builder" ).getMethod ( "unstarted", Runnable.class );
+        }
+        catch ( ReflectiveOperationException e )
+        {
+            ofVirtual = null;
+            unstarted = null;
+        }
+
+        M_OF_VIRTUAL = ofVirtual;
+        M_UNSTARTED  = unstarted;
+    }
+
+    // Fields.
+
+    private Boolean                              virtual;         // True if loops run on virtual threads.
+    private Map <ECSEngine, Thread>              threads;         // Loop thread of each hosted engine.
+    private ConcurrentMap <ECSEngine, Throwable> failures;        // Exception thrown by each loop that failed.
+    private int                                  threadCount;     // Number of loop threads started.
+    private long                                 markTime;        // Start of the statistics period, measured in ns.
+    private long                                 markBusyTime;    // Busy time of the hosted loops at the start of the statistics period, in ns.
+
+    // Accessors and mutators.
+
+    public Boolean isVirtual () { return this.virtual; }
+
+    // Constructors.
+
+    public ECSLoopHost ()                  { initialize ( true    ); }
+    public ECSLoopHost ( Boolean virtual ) { initialize ( virtual ); }
+
+    // Initialize.
+
+    private void initialize ( Boolean virtual )
+    {
+        this.virtual     = virtual && isVirtualThreadSupported ();
+        this.threads     = new LinkedHashMap <ECSEngine, Thread> ();
+        this.failures    = new ConcurrentHashMap <ECSEngine, Throwable> ();
+        this.threadCount = 0;
+
+        resetStatistics ();
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // isVirtualThreadSupported
+    //
+    // Return true if the JVM supports virtual threads.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static Boolean isVirtualThreadSupported ()
+    {
+        return M_OF_VIRTUAL != null;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // start
+    //
+    // Description:
+    //
+    // - Start an engine's game loop on a new thread.
+    //
+    // Postconditions:
+    //
+    // - Throws IllegalStateException if the engine is already hosted, or if a virtual thread can not be created.
+    // - If the loop throws an exception, the loop ends, and the exception is kept. See getFailure.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized void start ( final ECSEngine engine )
+    {
+        if ( this.threads.containsKey ( engine ) )
+        {
+            throw new IllegalStateException ( "Engine is already hosted." );
+        }
+
+        Runnable loop = new Runnable ()
+        {
+            @Override
+            public void run ()
+            {
+                try
+                {
+                    engine.run ();
+                }
+                catch ( RuntimeException | Error e )
+                {
+                    failures.put ( engine, e );
+                }
+            }
+        };
+
+        if ( this.virtual )
+        {
+            engine.getFramePacer ().setSpinEnabled ( false );
+        }
+
+        Thread thread = newThread ( loop );
+
+        thread.setName ( M_THREAD_NAME + ( this.threadCount++ ) );
+        thread.start ();
+
+        this.threads.put ( engine, thread );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // stop
+    //
+    // Description:
+    //
+    // - Stop an engine's game loop, and wait for its thread to finish.
+    //
+    // Return Value:
+    //
+    // - True if the engine was hosted.
+    //
+    // Postconditions:
+    //
+    // - The engine is no longer hosted.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean stop ( ECSEngine engine ) throws InterruptedException
+    {
+        Thread thread = null;
+
+        synchronized ( this )
+        {
+            thread = this.threads.remove ( engine );
+        }
+
+        if ( thread == null )
+        {
+            return false;
+        }
+
+        // The loop sets its running flag when it starts, so keep asking it to stop until its thread has finished.
+
+        while ( thread.isAlive () )
+        {
+            engine.setLoopRunning ( false );
+
+            thread.join ( M_STOP_POLL_PERIOD );
+        }
+
+        return true;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // stopAll
+    //
+    // Stop every hosted loop, and wait for all loop threads to finish. All loops are asked to stop before the first one is waited for.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void stopAll () throws InterruptedException
+    {
+        List <ECSEngine> engines = getEngines ();
+
+        for ( ECSEngine engine : engines )
+        {
+            engine.setLoopRunning ( false );
+        }
+
+        for ( ECSEngine engine : engines )
+        {
+            stop ( engine );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getEngines
+    //
+    // Return the hosted engines, including engines whose loops have ended, but have not been stopped.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized List <ECSEngine> getEngines ()
+    {
+        return new ArrayList <ECSEngine> ( this.threads.keySet () );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getLiveCount
+    //
+    // Return the number of hosted loops that are still running.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized int getLiveCount ()
+    {
+        int count = 0;
+
+        for ( Thread thread : this.threads.values () )
+        {
+            if ( thread.isAlive () )
+            {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getFailure
+    //
+    // Return the exception that ended an engine's loop, or null if the loop has not failed.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Throwable getFailure ( ECSEngine engine )
+    {
+        return this.failures.get ( engine );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getCarrierCount
+    //
+    // Return the number of threads that the loops share. The parallelism of the virtual thread scheduler, or the number of available processors.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int getCarrierCount ()
+    {
+        int processors = Runtime.getRuntime ().availableProcessors ();
+
+        return this.virtual ? Integer.getInteger ( M_CARRIER_PARALLELISM, processors ) : processors;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getBusyTime
+    //
+    // Return the total busy time of the hosted loops, measured in ns.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized long getBusyTime ()
+    {
+        long busyTime = 0;
+
+        for ( ECSEngine engine : this.threads.keySet () )
+        {
+            busyTime += engine.getFramePacer ().getBusyTime ();
+        }
+
+        return busyTime;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getCarrierUtilisation
+    //
+    // Description:
+    //
+    // - Return the fraction of the carrier threads' time that was spent running frames, since the statistics were reset.
+    //
+    // Return Value:
+    //
+    // - A value from 0.0 to 1.0, or more if the loops were starved of carrier threads.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public double getCarrierUtilisation ()
+    {
+        long elapsed = System.nanoTime () - this.markTime;
+
+        return ( elapsed > 0 ) ? ( double ) ( getBusyTime () - this.markBusyTime ) / ( ( double ) elapsed * getCarrierCount () ) : 0.0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // resetStatistics
+    //
+    // Start a new carrier utilisation measurement period.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void resetStatistics ()
+    {
+        this.markBusyTime = getBusyTime ();
+        this.markTime     = System.nanoTime ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // newThread
+    //
+    // Create an unstarted loop thread. A virtual thread if the host uses virtual threads, otherwise a platform thread.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private Thread newThread ( Runnable loop )
+    {
+        if ( !this.virtual )
+        {
+            return new Thread ( loop );
+        }
+
+        try
+        {
+            return ( Thread ) M_UNSTARTED.invoke ( M_OF_VIRTUAL.invoke ( null ), loop );
+        }
+        catch ( ReflectiveOperationException e )
+        {
+            throw new IllegalStateException ( "Unable to create a virtual thread.", e );
+        }
+    }
+}
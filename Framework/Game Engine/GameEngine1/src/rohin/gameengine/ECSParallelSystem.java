@@ -0,0 +1,326 @@
+package rohin.gameengine;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSParallelSystem
+//
+// Base class for systems that process their matching entities concurrently.
+//
+// - The entities matching the system's required signature (see ECSSystem.requireComponents) are partitioned into contiguous ranges, and the
+//   ranges are processed by fork-join workers. The worker pool is shared with the engine's scheduler.
+// - If archetype storage is enabled, the matching archetype chunks are partitioned instead of the query entity list, and each chunk is always
+//   processed as a whole by a single worker.
+// - Otherwise, if sparse set storage is enabled, the smallest component pool of the required types is partitioned. Entities of the pool that do
+//   not contain all required types are skipped.
+// - Worlds with fewer than two minimum sized chunks worth of entities are processed on the calling thread, without any task overhead.
+//
+// Per entity isolation:
+//
+// - Every matching entity is passed to exactly one call of updateEntity per frame, on exactly one thread.
+// - Child classes must only modify the components of the entity being updated, and must not modify shared fields of the system from updateEntity
+//   or updateChunk. Working variables should be local variables.
+// - Structural changes (adding or removing entities or components) must not be made during the update.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public abstract class ECSParallelSystem extends ECSSystem
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int M_DEFAULT_MINIMUM_CHUNK_SIZE = 256;    // Minimum number of entities processed by a single task.
+    public static final int M_TASKS_PER_THREAD           = 4;      // Number of tasks to create per worker thread, to balance uneven workloads.
+
+    // Fields.
+
+    private int                       minimumChunkSize;   // Minimum number of entities processed by a single task.
+    private List <ECSArchetypeChunk>  chunks;             // Matching archetype chunks for the current frame. Only used with archetype storage.
+    private int[]                     chunkOffsets;       // chunkOffsets [ i ] = Number of entities in chunks 0 to i-1. Used to balance chunk ranges.
+    private int                       chunkCount;         // Number of matching archetype chunks for the current frame.
+    private ECSSparseSet              sparseSet;          // Smallest required component pool for the current frame. Only used with sparse set storage.
+    private int                       taskSize;           // Number of entities per task, for the current frame.
+    private long                      t;                  // Game loop tick time for the current frame.
+
+    // Accessors and mutators.
+
+    public int  getMinimumChunkSize ()                       { return this.minimumChunkSize;                             }
+    public void setMinimumChunkSize ( int minimumChunkSize ) { this.minimumChunkSize = Math.max ( 1, minimumChunkSize ); }
+
+    // Abstract methods.
+
+    protected abstract void updateEntity ( ECSEntity entity, long t );    // Override in child class, to update a single matching entity.
+
+    // Constructors.
+
+    public ECSParallelSystem ()                                           { super ();                  initialize (); }
+    public ECSParallelSystem ( ECSEngine owner )                          { super ( owner );           initialize (); }
+    public ECSParallelSystem ( Integer id, ECSEngine owner )              { super ( id, owner );       initialize (); }
+    public ECSParallelSystem ( Integer id, String name, ECSEngine owner ) { super ( id, name, owner ); initialize (); }
+
+    // Initialize.
+
+    private void initialize ()
+    {
+        this.minimumChunkSize = M_DEFAULT_MINIMUM_CHUNK_SIZE;
+        this.chunks           = new ArrayList <ECSArchetypeChunk> ();
+        this.chunkOffsets     = new int [ 1 ];
+        this.chunkCount       = 0;
+        this.sparseSet        = null;
+        this.taskSize         = 0;
+        this.t                = 0;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // update
+    //
+    // Description:
+    //
+    // - Override implementation of ECSSystem.update. Partition the matching entities, and update them on the engine's worker pool.
+    //
+    // Arguments:
+    //
+    // - t
+    //   Game loop tick time.
+    //
+    // Preconditions:
+    //
+    // - The child class must have declared its required signature, through requireComponents.
+    //
+    // Postconditions:
+    //
+    // - updateEntity has been called exactly once for every matching entity.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void update ( long t )
+    {
+        ECSEngine    engine = ( ECSEngine ) this.owner;
+        ForkJoinPool pool   = engine.getScheduler ().getPool ();
+        int          count  = 0;
+        int          items  = 0;
+
+        this.t = t;
+
+        // Gather the work for this frame.
+
+        if ( engine.isArchetypeStorageEnabled () )
+        {
+            gatherChunks ( engine.getArchetypeStorage ().query ( this.signature ) );
+
+            count = this.chunkOffsets [ this.chunkCount ];
+            items = this.chunkCount;
+        }
+        else if ( engine.isSparseSetStorageEnabled () )
+        {
+            this.chunkCount = -1;
+            this.sparseSet  = engine.getSparseSetStorage ().getSmallestSet ( this.signature );
+
+            count = ( this.sparseSet == null ) ? 0 : this.sparseSet.size ();
+            items = count;
+        }
+        else
+        {
+            this.chunkCount = -1;
+
+            count = this.query.size ();
+            items = count;
+        }
+
+        // Small worlds are processed on the calling thread.
+        // Larger worlds are split into a few tasks per worker thread, but never into tasks smaller than the minimum chunk size.
+
+        this.taskSize = Math.max ( this.minimumChunkSize, count / ( pool.getParallelism () * M_TASKS_PER_THREAD ) );
+
+        try
+        {
+            if ( ( count < 2 * this.minimumChunkSize ) || ( pool.getParallelism () < 2 ) )
+            {
+                updateItems ( 0, items );
+            }
+            else
+            {
+                PartitionTask task = new PartitionTask ( 0, items );
+
+                if ( ForkJoinTask.inForkJoinPool () )
+                {
+                    task.invoke ();
+                }
+                else
+                {
+                    pool.invoke ( task );
+                }
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            if ( engine.getScheduler ().isPoolShared () )
+            {
+                throw e;                                                // Isolate the failure to this engine. See ECSEngineHost.
+            }
+
+            TextFormat.printFormattedException ( e, true );
+        }
+        finally
+        {
+            this.chunks.clear ();
+
+            this.sparseSet = null;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // updateChunk
+    //
+    // Description:
+    //
+    // - Update every entity stored in an archetype chunk. Only called when archetype storage is enabled.
+    // - The default implementation calls updateEntity for each row. Child classes may override this method, to read component columns directly.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    protected void updateChunk ( ECSArchetypeChunk chunk, long t )
+    {
+        int count = chunk.getCount ();
+
+        for ( int row = 0; row < count; row++ )
+        {
+            updateEntity ( chunk.getEntity ( row ), t );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // updateSparseSet
+    //
+    // Description:
+    //
+    // - Update the entities at a range of positions in a component pool. Only called when sparse set storage is enabled, and archetype storage is
+    //   disabled.
+    // - The pool is the smallest of the system's required component pools. Entities that do not contain every required type must be skipped.
+    // - The default implementation calls updateEntity for each matching entity. Child classes may override this method, to look up components
+    //   through the component pools directly.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    protected void updateSparseSet ( ECSSparseSet set, int from, int to, long t )
+    {
+        for ( int position = from; position < to; position++ )
+        {
+            ECSEntity entity = set.getEntity ( position );
+
+            if ( entity.hasComponents ( this.signature ) )
+            {
+                updateEntity ( entity, t );
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // gatherChunks
+    //
+    // Collect the chunks of all matching archetypes into a flat list, and compute the running entity count at the start of each chunk.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void gatherChunks ( List <ECSArchetype> archetypes )
+    {
+        this.chunks.clear ();
+
+        for ( ECSArchetype archetype : archetypes )
+        {
+            this.chunks.addAll ( archetype.getChunks () );
+        }
+
+        this.chunkCount = this.chunks.size ();
+
+        if ( this.chunkOffsets.length < this.chunkCount + 1 )
+        {
+            this.chunkOffsets = new int [ 2 * this.chunkCount + 1 ];
+        }
+
+        this.chunkOffsets [ 0 ] = 0;
+
+        for ( int i = 0; i < this.chunkCount; i++ )
+        {
+            this.chunkOffsets [ i + 1 ] = this.chunkOffsets [ i ] + this.chunks.get ( i ).getCount ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // updateItems
+    //
+    // Update a contiguous range of work items. Work items are chunks, if archetype storage is enabled, positions in the smallest required component
+    // pool, if sparse set storage is enabled, or query entities otherwise.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void updateItems ( int from, int to )
+    {
+        if ( this.chunkCount >= 0 )
+        {
+            for ( int i = from; i < to; i++ )
+            {
+                updateChunk ( this.chunks.get ( i ), this.t );
+            }
+        }
+        else if ( this.sparseSet != null )
+        {
+            updateSparseSet ( this.sparseSet, from, to, this.t );
+        }
+        else
+        {
+            for ( int i = from; i < to; i++ )
+            {
+                updateEntity ( this.query.get ( i ), this.t );
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // entityCount
+    //
+    // Number of entities in a range of work items.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private int entityCount ( int from, int to )
+    {
+        return ( this.chunkCount >= 0 ) ? this.chunkOffsets [ to ] - this.chunkOffsets [ from ] : to - from;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // PartitionTask
+    //
+    // Fork-join task that recursively halves a range of work items, until each range holds no more than one task's worth of entities.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private class PartitionTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        PartitionTask ( int from, int to )
+        {
+            this.from = from;
+            this.to   = to;
+        }
+
+        @Override
+        protected void compute ()
+        {
+            if ( ( this.to - this.from < 2 ) || ( entityCount ( this.from, this.to ) <= taskSize ) )
+            {
+                updateItems ( this.from, this.to );
+            }
+            else
+            {
+                int middle = ( this.from + this.to ) >>> 1;
+
+                invokeAll ( new PartitionTask ( this.from, middle ), new PartitionTask ( middle, this.to ) );
+            }
+        }
+    }
+}
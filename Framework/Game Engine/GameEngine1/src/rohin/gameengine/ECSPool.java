@@ -0,0 +1,164 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSPool
+//
+// Free list of recycled instances of a single class, used to avoid garbage from short lived entities and components.
+//
+// - acquire returns a recycled instance if one is available, or creates a new instance through the class's public no argument constructor.
+// - release resets an instance, and keeps it for reuse. Once the pool holds its maximum number of free instances, further released instances are
+//   left to the garbage collector.
+//
+// Notes:
+//
+// - The pool is not synchronized. Acquire and release instances from the game loop thread, or through the engine's command buffer.
+// - An instance must not be used after it has been released, since it may already have been handed out again.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSPool <T extends IPoolable>
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int M_DEFAULT_CAPACITY     = 64;        // Initial size of the free list.
+    public static final int M_DEFAULT_MAXIMUM_SIZE = 65536;     // Maximum number of free instances kept by the pool.
+
+    // Fields.
+
+    private Class <T> type;         // Class of the pooled instances.
+    private Object[]  free;         // Free instances, used as a stack.
+    private int       count;        // Number of free instances.
+    private int       maximumSize;  // Maximum number of free instances kept by the pool.
+    private long      created;      // Number of instances created by the pool.
+    private long      reused;       // Number of instances handed out from the free list.
+
+    // Accessors and mutators.
+
+    public Class <T> getType        () { return this.type;        }
+    public int       size           () { return this.count;       }
+    public int       getMaximumSize () { return this.maximumSize; }
+    public long      getCreated     () { return this.created;     }
+    public long      getReused      () { return this.reused;      }
+
+    public void setMaximumSize ( int maximumSize ) { this.maximumSize = maximumSize; }
+
+    // Constructors.
+
+    public ECSPool ( Class <T> type )
+    {
+        this.type        = type;
+        this.free        = new Object [ M_DEFAULT_CAPACITY ];
+        this.count       = 0;
+        this.maximumSize = M_DEFAULT_MAXIMUM_SIZE;
+        this.created     = 0;
+        this.reused      = 0;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // acquire
+    //
+    // Description:
+    //
+    // - Returns a recycled instance, or a new instance if the pool is empty.
+    //
+    // Postconditions:
+    //
+    // - Throws IllegalStateException if a new instance is needed, and the class has no accessible no argument constructor.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public T acquire ()
+    {
+        if ( this.count > 0 )
+        {
+            T instance = this.type.cast ( this.free [ --this.count ] );
+
+            this.free [ this.count ] = null;
+
+            ++this.reused;
+
+            return instance;
+        }
+
+        return create ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // release
+    //
+    // Reset an instance, and return it to the pool. Returns false if the pool is full, in which case the instance is discarded.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean release ( T instance )
+    {
+        if ( this.count >= this.maximumSize )
+        {
+            return false;
+        }
+
+        instance.reset ();
+
+        if ( this.count >= this.free.length )
+        {
+            this.free = Arrays.copyOf ( this.free, Math.min ( this.free.length * 2, Math.max ( this.maximumSize, 1 ) ) );
+        }
+
+        this.free [ this.count++ ] = instance;
+
+        return true;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // prefill
+    //
+    // Create instances until the pool holds the specified number of free instances, so that they are not created during the game loop.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void prefill ( int size )
+    {
+        size = Math.min ( size, this.maximumSize );
+
+        while ( this.count < size )
+        {
+            release ( create () );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // clear
+    //
+    // Discard all free instances.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void clear ()
+    {
+        Arrays.fill ( this.free, 0, this.count, null );
+
+        this.count = 0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // create
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private T create ()
+    {
+        try
+        {
+            T instance = this.type.getDeclaredConstructor ().newInstance ();
+
+            ++this.created;
+
+            return instance;
+        }
+        catch ( ReflectiveOperationException e )
+        {
+            throw new IllegalStateException ( "Unable to create a pooled instance of " + this.type.getName () + ".", e );
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package rohin.gameengine;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSProfiler
+//
+// Frame and system timing instrumentation for an ECSEngine.
+//
+// - When enabled, the engine records how long each part of every frame takes:
+//
+//   - Frame:  Total game loop iteration time.
+//   - Flush:  Command queue flush time.
+//   - Update: Time spent updating and rendering systems.
+//   - Sleep:  Time spent in the frame rate regulator.
+//
+//   The update time of each individual system is recorded as well, on whichever thread updated the system.
+//
+// - Timings are recorded into ECSHistograms, and may be queried at any time, for p50, p99, max, etc.
+// - Every report period, a summary table is dumped through a ConsoleLogger, and the histograms are reset. The histograms therefore always describe
+//   the current report period. Set the report period to zero to disable the dump, in which case the histograms accumulate until reset is called.
+//
+// Notes:
+//
+// - Each histogram is recorded to by only one thread at a time, since each system is updated by only one thread at a time.
+// - Reading a histogram while the game loop is running, from another thread, returns approximate results.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSProfiler
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final Boolean M_DEFAULT_ENABLED       = false;    // Profiler switch.
+    public static final int     M_DEFAULT_REPORT_PERIOD = 5000;     // Time between reports, measured in ms.
+    public static final double  M_NANOSECONDS_PER_MS    = 1.0e6;    // Used to convert recorded values to ms for reporting.
+
+    // Fields.
+
+    private Boolean                                     enabled;        // Set to true to record timings.
+    private int                                         reportPeriod;   // Time between reports, measured in ms. Zero disables reporting.
+    private long                                        reportStart;    // Time at which the current report period started, measured in ns.
+    private ConsoleLogger                               logger;         // Console logger, used to dump reports.
+
+    // Fields - Histograms.
+
+    private ECSHistogram                                frameTimes;     // Total game loop iteration times.
+    private ECSHistogram                                flushTimes;     // Command queue flush times.
+    private ECSHistogram                                updateTimes;    // System update times, for all systems combined.
+    private ECSHistogram                                sleepTimes;     // Frame rate regulator times.
+    private ConcurrentHashMap <ECSSystem, ECSHistogram> systemTimes;    // Update times of each system.
+
+    // Accessors and mutators.
+
+    public Boolean                       isEnabled       () { return this.enabled;                                     }
+    public int                           getReportPeriod () { return this.reportPeriod;                                }
+    public ECSHistogram                  getFrameTimes   () { return this.frameTimes;                                  }
+    public ECSHistogram                  getFlushTimes   () { return this.flushTimes;                                  }
+    public ECSHistogram                  getUpdateTimes  () { return this.updateTimes;                                 }
+    public ECSHistogram                  getSleepTimes   () { return this.sleepTimes;                                  }
+    public Map <ECSSystem, ECSHistogram> getSystemTimes  () { return Collections.unmodifiableMap ( this.systemTimes ); }
+
+    public void setEnabled      ( Boolean enabled      ) { this.enabled      = enabled;      }
+    public void setReportPeriod ( int     reportPeriod ) { this.reportPeriod = reportPeriod; }
+
+    // Constructors.
+
+    public ECSProfiler ()
+    {
+        this.enabled      = M_DEFAULT_ENABLED;
+        this.reportPeriod = M_DEFAULT_REPORT_PERIOD;
+        this.reportStart  = 0;
+        this.logger       = new ConsoleLogger ( this, true );
+        this.frameTimes   = new ECSHistogram ();
+        this.flushTimes   = new ECSHistogram ();
+        this.updateTimes  = new ECSHistogram ();
+        this.sleepTimes   = new ECSHistogram ();
+        this.systemTimes  = new ConcurrentHashMap <ECSSystem, ECSHistogram> ();
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Record frame sections.
+    //
+    // - Each method records the time elapsed since the specified start time, and returns the current time, so that consecutive sections can be
+    //   timed with a single call to System.nanoTime each.
+    // - If the profiler is disabled, nothing is recorded, and the start time is returned unchanged.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public long recordFlush  ( long start ) { return record ( this.flushTimes,  start ); }
+    public long recordUpdate ( long start ) { return record ( this.updateTimes, start ); }
+    public long recordSleep  ( long start ) { return record ( this.sleepTimes,  start ); }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // recordFrame
+    //
+    // Record the total duration of a game loop iteration, measured in ns.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void recordFrame ( long duration )
+    {
+        if ( this.enabled )
+        {
+            this.frameTimes.record ( duration );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // recordSystem
+    //
+    // Record the duration of a single system update, measured in ns. May be called from any thread.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void recordSystem ( ECSSystem system, long duration )
+    {
+        getSystemTimes ( system ).record ( duration );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getSystemTimes
+    //
+    // Retrieve the update time histogram of a system, creating it if the system has not been recorded yet.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public ECSHistogram getSystemTimes ( ECSSystem system )
+    {
+        ECSHistogram histogram = this.systemTimes.get ( system );
+
+        if ( histogram == null )
+        {
+            ECSHistogram created = new ECSHistogram ();
+
+            histogram = this.systemTimes.putIfAbsent ( system, created );
+
+            if ( histogram == null )
+            {
+                histogram = created;
+            }
+        }
+
+        return histogram;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // endFrame
+    //
+    // Description:
+    //
+    // - Called by the engine at the end of every frame. Dumps a report and resets the histograms, once every report period.
+    //
+    // Arguments:
+    //
+    // - now
+    //   The current time, measured in ns.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void endFrame ( long now )
+    {
+        if ( !this.enabled || this.reportPeriod <= 0 )
+        {
+            return;
+        }
+
+        if ( this.reportStart == 0 )
+        {
+            this.reportStart = now;
+        }
+        else if ( now - this.reportStart >= this.reportPeriod * ( long ) M_NANOSECONDS_PER_MS )
+        {
+            for ( String line : report ().split ( "\n" ) )
+            {
+                this.logger.log ( line );
+            }
+
+            reset ();
+
+            this.reportStart = now;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // reset
+    //
+    // Clear all histograms.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void reset ()
+    {
+        this.frameTimes.reset ();
+        this.flushTimes.reset ();
+        this.updateTimes.reset ();
+        this.sleepTimes.reset ();
+
+        for ( ECSHistogram histogram : this.systemTimes.values () )
+        {
+            histogram.reset ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // report
+    //
+    // Description:
+    //
+    // - Format a table of the current histograms, with one row per frame section and one row per system.
+    // - Durations are reported in ms.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public String report ()
+    {
+        StringBuilder text = new StringBuilder ();
+
+        text.append ( String.format ( "%-24s %8s %9s %9s %9s %9s\n", "Section", "Count", "p50 ms", "p99 ms", "Max ms", "Mean ms" ) );
+
+        appendRow ( text, "Frame",  this.frameTimes  );
+        appendRow ( text, "Flush",  this.flushTimes  );
+        appendRow ( text, "Update", this.updateTimes );
+        appendRow ( text, "Sleep",  this.sleepTimes  );
+
+        for ( ECSSystem system : new TreeMap <String, ECSSystem> ( systemsByName () ).values () )
+        {
+            appendRow ( text, "  " + system.getName (), this.systemTimes.get ( system ) );
+        }
+
+        return text.toString ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Report helpers.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void appendRow ( StringBuilder text, String section, ECSHistogram histogram )
+    {
+        text.append
+        (
+            String.format
+            (
+                "%-24s %8d %9.3f %9.3f %9.3f %9.3f\n",
+                section,
+                histogram.getCount (),
+                histogram.getPercentile ( 50.0 ) / M_NANOSECONDS_PER_MS,
+                histogram.getPercentile ( 99.0 ) / M_NANOSECONDS_PER_MS,
+                histogram.getMax ()              / M_NANOSECONDS_PER_MS,
+                histogram.getMean ()             / M_NANOSECONDS_PER_MS
+            )
+        );
+    }
+
+    private Map <String, ECSSystem> systemsByName ()
+    {
+        Map <String, ECSSystem> systems = new HashMap <String, ECSSystem> ();
+
+        for ( ECSSystem system : this.systemTimes.keySet () )
+        {
+            systems.put ( system.getName () + "#" + System.identityHashCode ( system ), system );
+        }
+
+        return systems;
+    }
+
+    private long record ( ECSHistogram histogram, long start )
+    {
+        if ( !this.enabled )
+        {
+            return start;
+        }
+
+        long now = System.nanoTime ();
+
+        histogram.record ( now - start );
+
+        return now;
+    }
+}
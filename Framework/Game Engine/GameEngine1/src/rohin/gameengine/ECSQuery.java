@@ -0,0 +1,151 @@
+package rohin.gameengine;
+
+import java.util.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSQuery
+//
+// Live list of the entities that contain a required set of component types.
+//
+// - Queries are created through ECSEngine.createQuery, and are kept up to date incrementally by the engine, whenever an entity is added or removed,
+//   or a component is added to or removed from an entity.
+// - Systems should create their queries once, and iterate the query every frame, using size and get. No component matching is performed during
+//   iteration, and no iterator is allocated.
+// - The entity list is unordered. Removal swaps the last entity into the hole left behind by the removed entity.
+// - The version changes whenever the entity list, or the component set of a listed entity, may have changed. Systems that cache per entity data,
+//   such as component references, can compare versions to tell when their cache must be rebuilt.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSQuery
+{
+    // @formatter:off
+
+    // Constants.
+
+    private static final int M_DEFAULT_ENTITY_LIST_SIZE = 64;  // Number of entities before the entity list needs to be resized.
+
+    // Fields.
+
+    private ECSSignature              signature;     // Required component types.
+    private List <ECSEntity>          entities;      // Matching entities.
+    private List <ECSEntity>          entityView;    // Read only view of the matching entities.
+    private Map  <ECSEntity, Integer> indices;       // Position of each matching entity in the entity list.
+    private int                       version;       // Incremented whenever the entity list, or a listed entity's components, may have changed.
+
+    // Accessors and mutators.
+
+    public ECSSignature     getSignature ()            { return this.signature;              }
+    public List <ECSEntity> getEntities  ()            { return this.entityView;             }
+    public int              size         ()            { return this.entities.size ();       }
+    public Boolean          isEmpty      ()            { return this.entities.isEmpty ();    }
+    public ECSEntity        get          ( int index ) { return this.entities.get ( index ); }
+    public int              getVersion   ()            { return this.version;                }
+
+    // Constructors.
+
+    ECSQuery ( ECSSignature signature )
+    {
+        this.signature  = new ECSSignature ( signature );
+        this.entities   = new ArrayList       <ECSEntity>          ( M_DEFAULT_ENTITY_LIST_SIZE );
+        this.entityView = Collections.unmodifiableList ( this.entities );
+        this.indices    = new IdentityHashMap <ECSEntity, Integer> ( M_DEFAULT_ENTITY_LIST_SIZE );
+        this.version    = 0;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // contains
+    //
+    // Returns true if the entity is currently part of the query result.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean contains ( ECSEntity entity )
+    {
+        return this.indices.containsKey ( entity );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // matches
+    //
+    // Returns true if the entity contains every component type required by this query.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean matches ( ECSEntity entity )
+    {
+        return entity.getSignature ().containsAll ( this.signature );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // update
+    //
+    // Description:
+    //
+    // - Add or remove an entity, after the entity has been added to the engine, or its component set has changed.
+    //
+    // Postconditions:
+    //
+    // - The entity is part of the query result, if and only if it matches the query signature.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void update ( ECSEntity entity )
+    {
+        Boolean matches  = matches  ( entity );
+        Boolean contains = contains ( entity );
+
+        if ( matches || contains )
+        {
+            ++this.version;
+        }
+
+        if ( matches && !contains )
+        {
+            this.indices.put ( entity, this.entities.size () );
+            this.entities.add ( entity );
+        }
+        else if ( !matches && contains )
+        {
+            remove ( entity );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // remove
+    //
+    // Remove an entity from the query result, by moving the last entity in the list into the removed entity's position.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void remove ( ECSEntity entity )
+    {
+        Integer index = this.indices.remove ( entity );
+
+        if ( index != null )
+        {
+            ++this.version;
+
+            int       lastIndex = this.entities.size () - 1;
+            ECSEntity last      = this.entities.remove ( lastIndex );
+
+            if ( index != lastIndex )
+            {
+                this.entities.set ( index, last );
+                this.indices.put  ( last, index );
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // clear
+    //
+    // Remove all entities from the query result.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void clear ()
+    {
+        this.entities.clear ();
+        this.indices.clear ();
+
+        ++this.version;
+    }
+}
@@ -0,0 +1,446 @@
+package rohin.gameengine;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSScheduler
+//
+// Parallel system scheduler for an ECSEngine.
+//
+// - Systems are ordered by their system key. This is the order in which conflicting systems always run, regardless of thread timing.
+// - A dependency graph is built from the component access declared by each system (see ECSSystem.readsComponents and ECSSystem.writesComponents).
+//   A system depends on every lower keyed system that it conflicts with. Systems that have not declared their component access conflict with all
+//   other systems, and therefore run exclusively.
+// - Each frame, every system is started on a fork-join pool as soon as all of the systems it depends on have completed.
+//   Systems with no matching entities (see ECSSystem.hasWork) complete immediately, without being updated.
+// - The dependency graph is rebuilt lazily, whenever the engine's system list changes.
+// - By default, each scheduler owns its worker pool. Engines hosted by an ECSEngineHost share the host's pool instead (see setPool), and block on it
+//   in a way that lets the pool add a compensating worker, so that a frame waiting for its systems never starves the other engines.
+//
+// Notes:
+//
+// - Structural changes (adding or removing entities or components) are not thread safe. Systems must record them into the engine's command buffer,
+//   which the engine plays back once all systems have completed. See ECSCommandBuffer.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSScheduler
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int M_DEFAULT_PARALLELISM = 0;      // Number of worker threads. Zero selects the number of available processors.
+    public static final int M_MODE_ALL            = 0;      // Update all systems.
+    public static final int M_MODE_SIMULATION     = 1;      // Update simulation systems only.
+    public static final int M_MODE_RENDER         = 2;      // Update render systems only.
+
+    // Fields.
+
+    private ECSEngine           engine;             // The engine whose systems are scheduled.
+    private ForkJoinPool        pool;               // Worker pool. Created on first use, unless a shared pool has been set.
+    private Boolean             poolShared;         // True if the pool is shared with other engines, and is not owned by the scheduler.
+    private int                 parallelism;        // Number of worker threads, or zero for the number of available processors.
+    private Boolean             graphValid;         // False if the dependency graph needs to be rebuilt before the next frame.
+
+    // Fields - Dependency graph.
+
+    private ECSSystem[]         systems;            // Systems, ordered by system key.
+    private int[][]             dependents;         // dependents [ i ] lists the systems that may only start once system i has completed.
+    private int[]               dependencyCounts;   // Number of systems each system depends on.
+
+    // Fields - Frame state.
+
+    private AtomicIntegerArray  pending;            // Number of outstanding dependencies of each system, for the current frame.
+    private CountDownLatch      remaining;          // Number of systems that have not yet completed in the current frame.
+    private long                t;                  // Game loop tick time for the current frame.
+    private double              alpha;              // Render interpolation factor for the current frame.
+    private int                 mode;               // Which systems are updated in the current frame. See M_MODE_*.
+    private volatile Exception  failure;            // First exception thrown by a system in the current frame, when the pool is shared.
+
+    // Accessors and mutators.
+
+    public int     getParallelism () { return this.parallelism; }
+    public Boolean isPoolShared   () { return this.poolShared;  }
+
+    // Constructors.
+
+    public ECSScheduler ( ECSEngine engine )                  { initialize ( engine, M_DEFAULT_PARALLELISM ); }
+    public ECSScheduler ( ECSEngine engine, int parallelism ) { initialize ( engine, parallelism           ); }
+
+    // Initialize.
+
+    private void initialize ( ECSEngine engine, int parallelism )
+    {
+        this.engine           = engine;
+        this.pool             = null;
+        this.poolShared       = false;
+        this.parallelism      = parallelism;
+        this.graphValid       = false;
+        this.systems          = new ECSSystem [ 0 ];
+        this.dependents       = new int [ 0 ][];
+        this.dependencyCounts = new int [ 0 ];
+        this.pending          = null;
+        this.remaining        = null;
+        this.t                = 0;
+        this.alpha            = 1.0;
+        this.mode             = M_MODE_ALL;
+        this.failure          = null;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // invalidate
+    //
+    // Flag the dependency graph for rebuilding. Called by the engine whenever a system is added or removed.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void invalidate ()
+    {
+        this.graphValid = false;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // setParallelism
+    //
+    // Set the number of worker threads. The current worker pool, if any, is shut down, and a new pool is created on the next frame.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void setParallelism ( int parallelism )
+    {
+        if ( parallelism != this.parallelism )
+        {
+            shutdown ();
+
+            this.parallelism = parallelism;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // setPool
+    //
+    // Description:
+    //
+    // - Use a worker pool that is shared with other engines, e.g. the pool of an ECSEngineHost, instead of a pool owned by the scheduler.
+    //
+    // Arguments:
+    //
+    // - pool
+    //   The shared pool, or null to return to an owned pool, which is created on the next frame.
+    //
+    // Postconditions:
+    //
+    // - The scheduler's owned pool, if any, has been shut down. A shared pool is never shut down by the scheduler.
+    // - setParallelism has no effect while a shared pool is set.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized void setPool ( ForkJoinPool pool )
+    {
+        shutdown ();
+
+        this.pool       = pool;
+        this.poolShared = ( pool != null );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Run one frame, or part of a frame.
+    //
+    // - update:           Update all systems. Render systems are rendered with an interpolation factor of 1.
+    // - updateSimulation: Update simulation systems only. Used to advance the simulation by one fixed time step.
+    // - updateRender:     Render render systems only, with the specified interpolation factor.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void update           ( long t )               { update ( t, 1.0,   M_MODE_ALL        ); }
+    public void updateSimulation ( long t )               { update ( t, 1.0,   M_MODE_SIMULATION ); }
+    public void updateRender     ( long t, double alpha ) { update ( t, alpha, M_MODE_RENDER     ); }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // update
+    //
+    // Description:
+    //
+    // - Update every selected system that has work, running non-conflicting systems concurrently.
+    //
+    // Arguments:
+    //
+    // - t
+    //   Game loop tick time, passed to each system's update or render method.
+    //
+    // - alpha
+    //   Interpolation factor, passed to each render system's render method.
+    //
+    // - mode
+    //   Selects which systems are updated. See M_MODE_*. Systems that are not selected complete immediately.
+    //
+    // Postconditions:
+    //
+    // - All selected systems have completed their update.
+    // - If the pool is shared, then an exception thrown by a system is rethrown, once the frame has completed, wrapped in an IllegalStateException.
+    //   Otherwise the application is shut down, as it would be if the system had failed on the game loop thread.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void update ( long t, double alpha, int mode )
+    {
+        rebuildGraph ();
+
+        int systemCount = this.systems.length;
+
+        if ( systemCount == 0 )
+        {
+            return;
+        }
+
+        ForkJoinPool pool = getPool ();
+
+        // Reset the frame state.
+
+        this.t         = t;
+        this.alpha     = alpha;
+        this.mode      = mode;
+        this.remaining = new CountDownLatch ( systemCount );
+        this.failure   = null;
+
+        for ( int i = 0; i < systemCount; i++ )
+        {
+            this.pending.set ( i, this.dependencyCounts [ i ] );
+        }
+
+        // Start all systems that have no dependencies. The remaining systems are started by the last system they depend on.
+
+        for ( int i = 0; i < systemCount; i++ )
+        {
+            if ( this.dependencyCounts [ i ] == 0 )
+            {
+                pool.execute ( new SystemTask ( i ) );
+            }
+        }
+
+        // Wait for the frame to complete. A frame updated on a worker of a shared pool blocks through the pool, so that the pool can compensate.
+
+        try
+        {
+            if ( ForkJoinTask.inForkJoinPool () )
+            {
+                ForkJoinPool.managedBlock ( new LatchBlocker ( this.remaining ) );
+            }
+            else
+            {
+                this.remaining.await ();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread ().interrupt ();
+        }
+
+        if ( this.failure != null )
+        {
+            throw new IllegalStateException ( "System update failed.", this.failure );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getPool
+    //
+    // Description:
+    //
+    // - Retrieve the scheduler's worker pool, creating it if it does not exist yet.
+    // - The pool is shared with systems that split their own work across worker threads (see ECSParallelSystem), so that system level and entity
+    //   level parallelism never oversubscribe the CPU.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized ForkJoinPool getPool ()
+    {
+        if ( this.pool == null )
+        {
+            int threads = ( this.parallelism > 0 ) ? this.parallelism : Runtime.getRuntime ().availableProcessors ();
+
+            this.pool = new ForkJoinPool ( threads );
+        }
+
+        return this.pool;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // shutdown
+    //
+    // Release the worker threads. A new pool is created automatically, if the scheduler is used again. A shared pool is left running.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public synchronized void shutdown ()
+    {
+        if ( ( this.pool != null ) && !this.poolShared )
+        {
+            this.pool.shutdown ();
+            this.pool = null;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getOrderedSystems
+    //
+    // Returns the engine's systems, ordered by system key. Used by the engine's sequential update loop, so that systems are updated in the same
+    // order, with or without the parallel scheduler.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    ECSSystem[] getOrderedSystems ()
+    {
+        rebuildGraph ();
+
+        return this.systems;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // rebuildGraph
+    //
+    // Description:
+    //
+    // - Order the engine's systems by key, and rebuild the dependency graph, if the system list has changed since the last frame.
+    //
+    // Postconditions:
+    //
+    // - For every pair of conflicting systems, the higher keyed system depends on the lower keyed system.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void rebuildGraph ()
+    {
+        if ( this.graphValid )
+        {
+            return;
+        }
+
+        IntHashMap <ECSSystem> engineSystems = this.engine.getSystems ();
+        int[]                  keys          = engineSystems.keys ();
+
+        Arrays.sort ( keys );
+
+        int                   systemCount = keys.length;
+        List <List <Integer>> edges       = new ArrayList <List <Integer>> ( systemCount );
+
+        this.systems          = new ECSSystem [ systemCount ];
+        this.dependents       = new int [ systemCount ][];
+        this.dependencyCounts = new int [ systemCount ];
+        this.pending          = new AtomicIntegerArray ( systemCount );
+
+        for ( int i = 0; i < systemCount; i++ )
+        {
+            edges.add ( new ArrayList <Integer> () );
+
+            this.systems [ i ] = engineSystems.get ( keys [ i ] );
+        }
+
+        for ( int i = 0; i < systemCount; i++ )
+        {
+            for ( int j = i + 1; j < systemCount; j++ )
+            {
+                if ( this.systems [ i ].conflictsWith ( this.systems [ j ] ) )
+                {
+                    edges.get ( i ).add ( j );
+                    ++this.dependencyCounts [ j ];
+                }
+            }
+        }
+
+        for ( int i = 0; i < systemCount; i++ )
+        {
+            List <Integer> edge = edges.get ( i );
+
+            this.dependents [ i ] = new int [ edge.size () ];
+
+            for ( int k = 0; k < edge.size (); k++ )
+            {
+                this.dependents [ i ][ k ] = edge.get ( k );
+            }
+        }
+
+        this.graphValid = true;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // SystemTask
+    //
+    // Fork-join task that updates a single system, and then starts every dependent system whose dependencies have all completed.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private class SystemTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+
+        SystemTask ( int index )
+        {
+            this.index = index;
+        }
+
+        @Override
+        protected void compute ()
+        {
+            try
+            {
+                engine.updateSystem ( systems [ this.index ], t, alpha, mode );
+            }
+            catch ( Exception e )
+            {
+                if ( poolShared )
+                {
+                    failure = e;                                        // Isolate the failure to this engine. See ECSEngineHost.
+                }
+                else
+                {
+                    TextFormat.printFormattedException ( e, true );
+                }
+            }
+            finally
+            {
+                // Release dependent systems, even if this system failed, so that the frame always completes.
+
+                for ( int dependent : dependents [ this.index ] )
+                {
+                    if ( pending.decrementAndGet ( dependent ) == 0 )
+                    {
+                        new SystemTask ( dependent ).fork ();
+                    }
+                }
+
+                remaining.countDown ();
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // LatchBlocker
+    //
+    // Managed blocker that waits for a countdown latch. See ForkJoinPool.managedBlock.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static class LatchBlocker implements ForkJoinPool.ManagedBlocker
+    {
+        private final CountDownLatch latch;
+
+        LatchBlocker ( CountDownLatch latch )
+        {
+            this.latch = latch;
+        }
+
+        @Override
+        public boolean block () throws InterruptedException
+        {
+            this.latch.await ();
+
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable ()
+        {
+            return this.latch.getCount () == 0;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSSignature
+//
+// Bit mask of component type indices.
+//
+// - Bit n is set if the component type with type index n (see ECSComponentType) is present.
+// - The first 64 component types fit into a single long, so for most games a component presence check is a single AND and compare.
+// - The mask grows automatically, to accommodate type indices of 64 and above.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public final class ECSSignature
+{
+    // @formatter:off
+
+    // Constants.
+
+    private static final int M_WORD_SIZE          = 64;     // Number of bits per word.
+    private static final int M_WORD_SHIFT         = 6;      // log2 ( M_WORD_SIZE ).
+    private static final int M_DEFAULT_WORD_COUNT = 1;      // Number of words allocated for a new signature.
+
+    // Fields.
+
+    private long[] words;      // Bit mask words. Bit n is stored in words [ n / 64 ], at bit position n % 64.
+
+    // Constructors.
+
+    public ECSSignature ()                         { this.words = new long [ M_DEFAULT_WORD_COUNT ];                        }
+    public ECSSignature ( ECSSignature signature ) { this.words = Arrays.copyOf ( signature.words, signature.words.length ); }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // of
+    //
+    // Build a signature from a list of component types. Signatures should be built once, and reused every frame.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @SafeVarargs
+    public static ECSSignature of ( Class <? extends ECSComponent>... types )
+    {
+        ECSSignature signature = new ECSSignature ();
+
+        for ( Class <? extends ECSComponent> type : types )
+        {
+            signature.set ( ECSComponentType.getIndex ( type ) );
+        }
+
+        return signature;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Set, clear and test individual component type bits.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void set ( int typeIndex )
+    {
+        int word = typeIndex >>> M_WORD_SHIFT;
+
+        if ( word >= this.words.length )
+        {
+            this.words = Arrays.copyOf ( this.words, word + 1 );
+        }
+
+        this.words [ word ] |= 1L << typeIndex;
+    }
+
+    public void clear ( int typeIndex )
+    {
+        int word = typeIndex >>> M_WORD_SHIFT;
+
+        if ( word < this.words.length )
+        {
+            this.words [ word ] &= ~( 1L << typeIndex );
+        }
+    }
+
+    public void clear ()
+    {
+        Arrays.fill ( this.words, 0L );
+    }
+
+    public boolean get ( int typeIndex )
+    {
+        int word = typeIndex >>> M_WORD_SHIFT;
+
+        return ( word < this.words.length ) && ( ( this.words [ word ] & ( 1L << typeIndex ) ) != 0L );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // containsAll
+    //
+    // Description:
+    //
+    // - Returns true if every component type in the required signature is also present in this signature.
+    // - This is the component presence check used by entities, queries and archetypes.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public boolean containsAll ( ECSSignature required )
+    {
+        long[] a = this.words;
+        long[] r = required.words;
+
+        for ( int i = 0; i < r.length; i++ )
+        {
+            long word = ( i < a.length ) ? a [ i ] : 0L;
+
+            if ( ( word & r [ i ] ) != r [ i ] )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // intersects
+    //
+    // Returns true if this signature and the other signature have at least one component type in common.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public boolean intersects ( ECSSignature other )
+    {
+        long[] a = this.words;
+        long[] b = other.words;
+        int    n = Math.min ( a.length, b.length );
+
+        for ( int i = 0; i < n; i++ )
+        {
+            if ( ( a [ i ] & b [ i ] ) != 0L )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // or
+    //
+    // Add every component type in the other signature to this signature.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void or ( ECSSignature other )
+    {
+        if ( other.words.length > this.words.length )
+        {
+            this.words = Arrays.copyOf ( this.words, other.words.length );
+        }
+
+        for ( int i = 0; i < other.words.length; i++ )
+        {
+            this.words [ i ] |= other.words [ i ];
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // isEmpty
+    //
+    // Returns true if no component type bits are set.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public boolean isEmpty ()
+    {
+        for ( long word : this.words )
+        {
+            if ( word != 0L )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // cardinality
+    //
+    // Number of component types in the signature.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int cardinality ()
+    {
+        int count = 0;
+
+        for ( long word : this.words )
+        {
+            count += Long.bitCount ( word );
+        }
+
+        return count;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // length
+    //
+    // One plus the highest type index in the signature, or zero if the signature is empty.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int length ()
+    {
+        for ( int i = this.words.length - 1; i >= 0; i-- )
+        {
+            if ( this.words [ i ] != 0L )
+            {
+                return i * M_WORD_SIZE + M_WORD_SIZE - Long.numberOfLeadingZeros ( this.words [ i ] );
+            }
+        }
+
+        return 0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // nextSetBit
+    //
+    // Returns the first type index in the signature that is greater than or equal to fromIndex, or -1 if there is none.
+    //
+    // Example:
+    //
+    //     for ( int type = signature.nextSetBit ( 0 ); type >= 0; type = signature.nextSetBit ( type + 1 ) ) { ... }
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int nextSetBit ( int fromIndex )
+    {
+        int word = fromIndex >>> M_WORD_SHIFT;
+
+        if ( word >= this.words.length )
+        {
+            return -1;
+        }
+
+        long bits = this.words [ word ] & ( -1L << fromIndex );
+
+        while ( true )
+        {
+            if ( bits != 0L )
+            {
+                return word * M_WORD_SIZE + Long.numberOfTrailingZeros ( bits );
+            }
+
+            if ( ++word >= this.words.length )
+            {
+                return -1;
+            }
+
+            bits = this.words [ word ];
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Override: equals, hashCode and toString.
+    //
+    // Trailing zero words are ignored, so that signatures with the same component types are equal, regardless of how many words they have allocated.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean equals ( Object object )
+    {
+        if ( !( object instanceof ECSSignature ) )
+        {
+            return false;
+        }
+
+        long[] a = this.words;
+        long[] b = ( ( ECSSignature ) object ).words;
+        int    n = Math.max ( a.length, b.length );
+
+        for ( int i = 0; i < n; i++ )
+        {
+            long wordA = ( i < a.length ) ? a [ i ] : 0L;
+            long wordB = ( i < b.length ) ? b [ i ] : 0L;
+
+            if ( wordA != wordB )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode ()
+    {
+        long hash = 1234;
+
+        for ( int i = this.words.length - 1; i >= 0; i-- )
+        {
+            hash ^= this.words [ i ] * ( i + 1 );
+        }
+
+        return ( int ) ( ( hash >> 32 ) ^ hash );
+    }
+
+    @Override
+    public String toString ()
+    {
+        StringBuilder text = new StringBuilder ( "{" );
+
+        for ( int type = nextSetBit ( 0 ); type >= 0; type = nextSetBit ( type + 1 ) )
+        {
+            if ( text.length () > 1 )
+            {
+                text.append ( ", " );
+            }
+
+            text.append ( ECSComponentType.getType ( type ).getSimpleName () );
+        }
+
+        return text.append ( "}" ).toString ();
+    }
+}
@@ -0,0 +1,721 @@
+package rohin.gameengine;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSSnapshot
+//
+// Binary snapshots of the entity and component state of an ECSEngine. Used for save games, instant level restarts, and rollback.
+//
+// - capture writes every entity of an engine, and every component of those entities, to an ECSSnapshotBuffer.
+// - restore makes the engine's entities match a snapshot. Entities and components that already exist, under the same keys and with the same
+//   component classes, are overwritten in place. Missing ones are created, and surplus ones are removed. Restoring a snapshot of the same world,
+//   e.g. for rollback, therefore allocates almost no memory.
+// - save and load write a snapshot to, and read a snapshot from, a memory mapped file.
+// - Systems, resources and engine settings are not part of a snapshot.
+//
+// Format (version 2):
+//
+//   Header:     magic, format version, class table offset, entity count
+//   Allocator:  slot count, generation per slot, free slot count, free slots in reuse order
+//   Entities:   flags, key, id, family, class index, name, enabled, component count, components
+//   Components: key, class index, payload length, payload
+//   Class table at the class table offset: class count, then ( class name, schema version ) per class
+//
+// - Each component class has its own schema, written and read by the component itself, and identified by a schema version. See
+//   ECSComponent.getSnapshotVersion.
+// - Payloads are length prefixed, so that components of classes that cannot be loaded are skipped, rather than corrupting the rest of the restore.
+//
+// Notes:
+//
+// - Entities spawned through ECSEngine.spawnEntity keep their IDs. Live ones are overwritten in place, like entities added under a key, and the
+//   entity allocator's slots, generations and free list are restored, so that entities spawned after a rollback receive the same IDs as those
+//   spawned after the capture.
+// - Version 1 snapshots do not include the allocator. Their spawned entities are destroyed, and spawned again under new IDs.
+// - Components and entities are created through their no argument constructor. Entity classes without one are restored as plain ECSEntity
+//   objects.
+// - restore must not be called while systems are being updated.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public final class ECSSnapshot
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int M_MAGIC          = 0x45435353;     // "ECSS".
+    public static final int M_FORMAT_VERSION = 2;              // Snapshot format version.
+    public static final int M_FLAG_SPAWNED   = 1;              // Entity flag. The entity was spawned through ECSEngine.spawnEntity.
+
+    // Constructors.
+
+    private ECSSnapshot () { }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // capture
+    //
+    // Description:
+    //
+    // - Write a snapshot of an engine's entities to a buffer.
+    //
+    // Arguments:
+    //
+    // - engine
+    //   The engine to capture.
+    //
+    // - buffer
+    //   The buffer to write to. The buffer is cleared first, so that a rollback buffer can be reused every frame.
+    //
+    // Return Value:
+    //
+    // - buffer, flipped, so that it is ready to be restored or saved.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static ECSSnapshotBuffer capture ( ECSEngine engine, ECSSnapshotBuffer buffer )
+    {
+        IntHashMap <ECSEntity>    entities  = engine.getEntities ();
+        ECSEntityAllocator        allocator = engine.getEntityAllocator ();
+        Map <Class <?>, Integer>  indices   = new HashMap <Class <?>, Integer> ();
+        List <Class <?>>          classes   = new ArrayList <Class <?>> ();
+        List <Integer>            versions  = new ArrayList <Integer> ();
+
+        buffer.clear ();
+
+        // Header. The class table offset is filled in once the class table has been written.
+
+        buffer.writeInt ( M_MAGIC );
+        buffer.writeInt ( M_FORMAT_VERSION );
+
+        int classTableOffset = buffer.position ();
+
+        buffer.writeInt ( 0 );
+        buffer.writeInt ( entities.size () + allocator.size () );
+
+        // Allocator.
+
+        allocator.writeSnapshot ( buffer );
+
+        // Entities.
+
+        for ( int i = 0; i < entities.size (); i++ )
+        {
+            captureEntity ( buffer, 0, entities.keyAt ( i ), entities.valueAt ( i ), indices, classes, versions );
+        }
+
+        for ( int i = 0; i < allocator.size (); i++ )
+        {
+            ECSEntity entity = allocator.getDense ( i );
+
+            captureEntity ( buffer, M_FLAG_SPAWNED, entity.allocatedId, entity, indices, classes, versions );
+        }
+
+        // Class table.
+
+        buffer.writeInt ( classTableOffset, buffer.position () );
+        buffer.writeInt ( classes.size () );
+
+        for ( int i = 0; i < classes.size (); i++ )
+        {
+            buffer.writeString ( classes.get ( i ).getName () );
+            buffer.writeInt    ( versions.get ( i ) );
+        }
+
+        buffer.flip ();
+
+        return buffer;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // capture
+    //
+    // Write a snapshot of an engine's entities to a new buffer.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static ECSSnapshotBuffer capture ( ECSEngine engine )
+    {
+        return capture ( engine, new ECSSnapshotBuffer () );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // restore
+    //
+    // Description:
+    //
+    // - Make an engine's entities and components match a snapshot.
+    //
+    // Arguments:
+    //
+    // - engine
+    //   The engine to restore into. Usually the engine the snapshot was captured from, or a freshly constructed engine of the same game.
+    //
+    // - buffer
+    //   The snapshot, read from the start of the buffer. The buffer may be restored from any number of times.
+    //
+    // Postconditions:
+    //
+    // - Throws IllegalArgumentException if the buffer does not contain a snapshot, or contains a snapshot of a newer format version.
+    // - Throws IllegalStateException if a component cannot be constructed.
+    // - Restored and overwritten components are marked as changed. See ECSSystem.isChanged.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static void restore ( ECSEngine engine, ECSSnapshotBuffer buffer )
+    {
+        buffer.rewind ();
+
+        // Header.
+
+        if ( buffer.readInt () != M_MAGIC )
+        {
+            throw new IllegalArgumentException ( "Buffer does not contain an ECS snapshot." );
+        }
+
+        int formatVersion = buffer.readInt ();
+
+        if ( formatVersion > M_FORMAT_VERSION )
+        {
+            throw new IllegalArgumentException ( "Unsupported ECS snapshot format version " + formatVersion + "." );
+        }
+
+        int     classTableOffset = buffer.readInt ();
+        int     entityCount      = buffer.readInt ();
+        int     allocatorOffset  = buffer.position ();
+        Boolean keepIds          = ( formatVersion >= 2 );
+
+        if ( keepIds )
+        {
+            skipAllocator ( buffer );
+        }
+
+        int entityOffset = buffer.position ();
+
+        // Class table. Classes that cannot be loaded are left null, and their components are skipped.
+
+        buffer.position ( classTableOffset );
+
+        int        classCount = buffer.readInt ();
+        Class<?>[] classes    = new Class <?> [ classCount ];
+        int[]      versions   = new int       [ classCount ];
+
+        for ( int i = 0; i < classCount; i++ )
+        {
+            String name = buffer.readString ();
+
+            versions [ i ] = buffer.readInt ();
+
+            try
+            {
+                classes [ i ] = Class.forName ( name );
+            }
+            catch ( ClassNotFoundException e )
+            {
+                classes [ i ] = null;
+            }
+        }
+
+        // Spawned entities. Without the allocator, spawned entities cannot keep their IDs, so they are destroyed, and spawned again.
+
+        ECSEntityAllocator allocator = engine.getEntityAllocator ();
+
+        if ( keepIds )
+        {
+            restoreAllocator ( engine, buffer, allocatorOffset, entityOffset, entityCount );
+        }
+        else
+        {
+            while ( allocator.size () > 0 )
+            {
+                engine.destroyEntity ( allocator.getDense ( allocator.size () - 1 ).allocatedId );
+            }
+        }
+
+        // Entities.
+
+        IntHashMap <ECSEntity> entities      = engine.getEntities ();
+        int                    restoredCount = 0;
+        int                    spawnedCount  = 0;
+
+        buffer.position ( entityOffset );
+
+        for ( int i = 0; i < entityCount; i++ )
+        {
+            int       flags      = buffer.readInt ();
+            int       key        = buffer.readInt ();
+            int       id         = buffer.readInt ();
+            int       family     = buffer.readInt ();
+            int       classIndex = buffer.readInt ();
+            Boolean   spawned    = ( flags & M_FLAG_SPAWNED ) != 0;
+            ECSEntity entity     = spawned ? ( keepIds ? allocator.get ( id ) : null ) : entities.get ( key );
+            String    name       = buffer.readString ( ( entity == null ) ? null : entity.name );
+            Boolean   enabled    = buffer.readBoolean ();
+            Boolean   attach     = ( entity == null );
+
+            if ( attach )
+            {
+                entity = newEntity ( classes [ classIndex ] );
+            }
+
+            // Only assign IDs that differ, so that overwriting an entity in place does not box them again. Spawned entities receive their ID from the
+            // entity allocator instead.
+
+            if ( !spawned && ( ( entity.id == null ) || ( entity.id != id ) ) ) entity.id = id;
+            if ( ( entity.family == null ) || ( entity.family != family ) ) entity.family = family;
+
+            entity.name = name;
+
+            entity.setEnabled ( enabled );
+
+            restoreComponents ( engine, buffer, entity, classes, versions );
+
+            if ( spawned && keepIds )
+            {
+                if ( attach )
+                {
+                    engine.respawnEntity ( entity, id );
+                }
+
+                // Keep the dense array in snapshot order, so that spawned entities are iterated in the same order as when they were captured.
+
+                allocator.move ( entity, spawnedCount++ );
+            }
+            else if ( spawned )
+            {
+                engine.spawnEntity ( entity );
+            }
+            else
+            {
+                ++restoredCount;
+
+                if ( attach )
+                {
+                    engine.addEntity ( key, entity );
+                }
+            }
+        }
+
+        // Every entity of the snapshot is now registered, so the engine has surplus entities only if it has more than were restored.
+
+        if ( entities.size () != restoredCount )
+        {
+            removeSurplusEntities ( engine, buffer, entityOffset, entityCount );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // save
+    //
+    // Description:
+    //
+    // - Capture a snapshot of an engine, and write it to a file, through a memory mapped buffer. An existing file is replaced.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static void save ( ECSEngine engine, File file ) throws IOException
+    {
+        ECSSnapshotBuffer snapshot = capture ( engine );
+        RandomAccessFile  output   = new RandomAccessFile ( file, "rw" );
+
+        try
+        {
+            output.setLength ( 0 );
+
+            MappedByteBuffer mapped = output.getChannel ().map ( FileChannel.MapMode.READ_WRITE, 0, snapshot.remaining () );
+
+            mapped.put   ( snapshot.getByteBuffer () );
+            mapped.force ();
+        }
+        finally
+        {
+            output.close ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // load
+    //
+    // Description:
+    //
+    // - Restore an engine from a snapshot file written by save. The file is memory mapped, so large worlds are read directly from the page cache,
+    //   without first being copied into a heap buffer.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static void load ( ECSEngine engine, File file ) throws IOException
+    {
+        RandomAccessFile input = new RandomAccessFile ( file, "r" );
+
+        try
+        {
+            MappedByteBuffer mapped = input.getChannel ().map ( FileChannel.MapMode.READ_ONLY, 0, input.length () );
+
+            restore ( engine, new ECSSnapshotBuffer ( mapped ) );
+        }
+        finally
+        {
+            input.close ();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // captureEntity
+    //
+    // Write an entity and its components. Classes are added to the class table the first time they are seen.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static void captureEntity
+    (
+        ECSSnapshotBuffer        buffer,
+        int                      flags,
+        int                      key,
+        ECSEntity                entity,
+        Map <Class <?>, Integer> indices,
+        List <Class <?>>         classes,
+        List <Integer>           versions
+    )
+    {
+        IntHashMap <ECSComponent> components = entity.getComponents ();
+
+        buffer.writeInt     ( flags );
+        buffer.writeInt     ( key );
+        buffer.writeInt     ( ( int ) entity.getId () );
+        buffer.writeInt     ( ( entity.family == null ) ? 0 : entity.family );
+        buffer.writeInt     ( getClassIndex ( entity.getClass (), 0, indices, classes, versions ) );
+        buffer.writeString  ( entity.name );
+        buffer.writeBoolean ( entity.isEnabled () );
+        buffer.writeInt     ( components.size () );
+
+        for ( int i = 0; i < components.size (); i++ )
+        {
+            ECSComponent component = components.valueAt ( i );
+
+            buffer.writeInt ( components.keyAt ( i ) );
+            buffer.writeInt ( getClassIndex ( component.getClass (), component.getSnapshotVersion (), indices, classes, versions ) );
+
+            // Payload, prefixed with its length.
+
+            int lengthOffset = buffer.position ();
+
+            buffer.writeInt ( 0 );
+
+            component.writeSnapshot ( buffer );
+
+            buffer.writeInt ( lengthOffset, buffer.position () - lengthOffset - 4 );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // restoreComponents
+    //
+    // Description:
+    //
+    // - Read an entity's components, overwriting existing components of the same class under the same key, and creating the rest.
+    // - Components under keys that are not part of the snapshot are removed.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static void restoreComponents ( ECSEngine engine, ECSSnapshotBuffer buffer, ECSEntity entity, Class<?>[] classes, int[] versions )
+    {
+        int                       count         = buffer.readInt ();
+        int                       start         = buffer.position ();
+        int                       restoredCount = 0;
+        IntHashMap <ECSComponent> existing      = entity.getComponents ();
+
+        for ( int i = 0; i < count; i++ )
+        {
+            int      key        = buffer.readInt ();
+            int      classIndex = buffer.readInt ();
+            int      length     = buffer.readInt ();
+            int      end        = buffer.position () + length;
+            Class<?> type       = classes [ classIndex ];
+
+            if ( type == null )
+            {
+                buffer.position ( end );
+                continue;
+            }
+
+            ECSComponent component = existing.get ( key );
+
+            if ( ( component != null ) && ( component.getClass () == type ) )
+            {
+                component.readSnapshot ( buffer, versions [ classIndex ] );
+
+                engine.markChanged ( component );
+            }
+            else
+            {
+                component = newComponent ( type );
+
+                component.readSnapshot ( buffer, versions [ classIndex ] );
+
+                entity.addComponent ( key, component );
+            }
+
+            ++restoredCount;
+
+            buffer.position ( end );
+        }
+
+        // Every loadable component of the snapshot is now attached, so the entity has surplus components only if it has more than were restored.
+
+        if ( existing.size () != restoredCount )
+        {
+            removeSurplusComponents ( buffer, entity, start, count, classes );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // removeSurplusEntities
+    //
+    // Description:
+    //
+    // - Remove the entities that are not part of a snapshot, by scanning the snapshot's entity keys a second time.
+    // - Only called when the engine holds entities that were not restored, so restoring a snapshot of an unchanged world does not allocate.
+    //
+    // Postconditions:
+    //
+    // - The buffer position is restored.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static void removeSurplusEntities ( ECSEngine engine, ECSSnapshotBuffer buffer, int entityOffset, int entityCount )
+    {
+        IntHashMap <Boolean> keys     = new IntHashMap <Boolean> ( entityCount );
+        int                  position = buffer.position ();
+
+        buffer.position ( entityOffset );
+
+        for ( int i = 0; i < entityCount; i++ )
+        {
+            int flags = buffer.readInt ();
+            int key   = buffer.readInt ();
+
+            if ( ( flags & M_FLAG_SPAWNED ) == 0 )
+            {
+                keys.put ( key, true );
+            }
+
+            buffer.readInt ();                  // Id.
+
+            skipEntity ( buffer );
+        }
+
+        buffer.position ( position );
+
+        for ( int key : engine.getEntities ().keys () )
+        {
+            if ( !keys.containsKey ( key ) )
+            {
+                engine.removeEntity ( key );
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // restoreAllocator
+    //
+    // Description:
+    //
+    // - Destroy the live spawned entities that are not part of a snapshot, under the same ID, and restore the entity allocator's slots,
+    //   generations and free list.
+    // - The spawned entities that are kept are moved to the front of the allocator's dense array, ready to be overwritten in place.
+    //
+    // Postconditions:
+    //
+    // - The slots of the snapshot's spawned entities that are not live are free, at the generation of their IDs. See
+    //   ECSEntityAllocator.readSnapshot.
+    // - The buffer position is left at the end of the allocator.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static void restoreAllocator ( ECSEngine engine, ECSSnapshotBuffer buffer, int allocatorOffset, int entityOffset, int entityCount )
+    {
+        ECSEntityAllocator allocator = engine.getEntityAllocator ();
+        int                keptCount = 0;
+
+        buffer.position ( entityOffset );
+
+        for ( int i = 0; i < entityCount; i++ )
+        {
+            int flags = buffer.readInt ();
+
+            buffer.readInt ();                  // Key.
+
+            int id = buffer.readInt ();
+
+            if ( ( flags & M_FLAG_SPAWNED ) != 0 )
+            {
+                ECSEntity entity = allocator.get ( id );
+
+                if ( entity != null )
+                {
+                    allocator.move ( entity, keptCount++ );
+                }
+            }
+
+            skipEntity ( buffer );
+        }
+
+        while ( allocator.size () > keptCount )
+        {
+            engine.destroyEntity ( allocator.getDense ( allocator.size () - 1 ).allocatedId );
+        }
+
+        buffer.position ( allocatorOffset );
+
+        allocator.readSnapshot ( buffer );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // skipAllocator
+    //
+    // Skip the entity allocator: slot count, generations, free slot count, and free slots.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static void skipAllocator ( ECSSnapshotBuffer buffer )
+    {
+        int slotCount = buffer.readInt ();
+
+        buffer.position ( buffer.position () + slotCount * 4 );
+
+        int freeCount = buffer.readInt ();
+
+        buffer.position ( buffer.position () + freeCount * 4 );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // skipEntity
+    //
+    // Skip the rest of an entity, once its flags, key and id have been read: family, class index, name, enabled, and components.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static void skipEntity ( ECSSnapshotBuffer buffer )
+    {
+        buffer.position ( buffer.position () + 8 );
+        buffer.skipString ();
+        buffer.readBoolean ();
+
+        int componentCount = buffer.readInt ();
+
+        for ( int i = 0; i < componentCount; i++ )
+        {
+            buffer.position ( buffer.position () + 8 );
+            buffer.position ( buffer.readInt () + buffer.position () );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // removeSurplusComponents
+    //
+    // Description:
+    //
+    // - Remove the components of an entity that are not part of its snapshot, by scanning the entity's snapshot component keys a second time.
+    // - Components of classes that could not be loaded are not part of the snapshot, as far as the entity is concerned.
+    //
+    // Postconditions:
+    //
+    // - The buffer position is restored.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static void removeSurplusComponents ( ECSSnapshotBuffer buffer, ECSEntity entity, int start, int count, Class<?>[] classes )
+    {
+        IntHashMap <Boolean> keys     = new IntHashMap <Boolean> ( count );
+        int                  position = buffer.position ();
+
+        buffer.position ( start );
+
+        for ( int i = 0; i < count; i++ )
+        {
+            int key        = buffer.readInt ();
+            int classIndex = buffer.readInt ();
+            int length     = buffer.readInt ();
+
+            if ( classes [ classIndex ] != null )
+            {
+                keys.put ( key, true );
+            }
+
+            buffer.position ( buffer.position () + length );
+        }
+
+        buffer.position ( position );
+
+        for ( int key : entity.getComponents ().keys () )
+        {
+            if ( !keys.containsKey ( key ) )
+            {
+                entity.removeComponent ( key );
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getClassIndex
+    //
+    // Return the class table index of a class, adding the class to the table if it has not been seen before.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static int getClassIndex ( Class <?> type, int version, Map <Class <?>, Integer> indices, List <Class <?>> classes, List <Integer> versions )
+    {
+        Integer index = indices.get ( type );
+
+        if ( index == null )
+        {
+            index = classes.size ();
+
+            indices.put  ( type, index );
+            classes.add  ( type );
+            versions.add ( version );
+        }
+
+        return index;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // newEntity
+    //
+    // Create an entity of the specified class, through its no argument constructor, or a plain ECSEntity if that is not possible.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static ECSEntity newEntity ( Class <?> type )
+    {
+        if ( ( type != null ) && ECSEntity.class.isAssignableFrom ( type ) )
+        {
+            try
+            {
+                return ( ECSEntity ) type.getConstructor ().newInstance ();
+            }
+            catch ( ReflectiveOperationException e )
+            {
+                // Fall through, and restore the entity as a plain ECSEntity.
+            }
+        }
+
+        return new ECSEntity ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // newComponent
+    //
+    // Create a component of the specified class, through its no argument constructor.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static ECSComponent newComponent ( Class <?> type )
+    {
+        try
+        {
+            return ( ECSComponent ) type.getConstructor ().newInstance ();
+        }
+        catch ( ReflectiveOperationException | ClassCastException e )
+        {
+            throw new IllegalStateException ( "Unable to create a component of class " + type.getName () + ".", e );
+        }
+    }
+}
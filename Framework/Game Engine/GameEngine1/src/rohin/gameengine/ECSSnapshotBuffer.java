@@ -0,0 +1,278 @@
+package rohin.gameengine;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSSnapshotBuffer
+//
+// Binary buffer that world snapshots are written to and read from. See ECSSnapshot.
+//
+// - Wraps a java.nio.ByteBuffer. A buffer created with the no argument constructor is backed by a heap array, which doubles in size whenever a
+//   write would overflow it. A buffer created around an existing ByteBuffer, e.g. a memory mapped file, has a fixed capacity.
+// - Values are stored in big endian byte order, without padding. Strings are stored as UTF-8, prefixed with their length in bytes.
+// - Writes append at the current position. Reads consume from the current position. Call flip after writing, to read back what was written.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSSnapshotBuffer
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int     M_DEFAULT_CAPACITY = 64 * 1024;                     // Initial capacity of a growable buffer, measured in bytes.
+    public static final Charset M_CHARSET          = Charset.forName ( "UTF-8" );   // String encoding.
+
+    // Fields.
+
+    private ByteBuffer buffer;      // Underlying byte buffer.
+    private Boolean    growable;    // True if the buffer may be replaced with a larger one, when it is full.
+
+    // Accessors and mutators.
+
+    public ByteBuffer getByteBuffer () { return this.buffer;                 }
+    public int        position      () { return this.buffer.position ();     }
+    public int        remaining     () { return this.buffer.remaining ();    }
+    public Boolean    hasRemaining  () { return this.buffer.hasRemaining (); }
+
+    // Constructors.
+
+    public ECSSnapshotBuffer ()                    { this.buffer = ByteBuffer.allocate ( M_DEFAULT_CAPACITY ); this.growable = true;  }
+    public ECSSnapshotBuffer ( int capacity )      { this.buffer = ByteBuffer.allocate ( capacity );           this.growable = true;  }
+    public ECSSnapshotBuffer ( ByteBuffer buffer ) { this.buffer = buffer;                                     this.growable = false; }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Buffer positioning.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void clear    ()                { this.buffer.clear ();              }
+    public void flip     ()                { this.buffer.flip ();               }
+    public void rewind   ()                { this.buffer.rewind ();             }
+    public void position ( int position )  { this.buffer.position ( position ); }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Primitive writes.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void writeByte    ( byte    value ) { ensureCapacity ( 1 ); this.buffer.put       ( value );                       }
+    public void writeInt     ( int     value ) { ensureCapacity ( 4 ); this.buffer.putInt    ( value );                       }
+    public void writeLong    ( long    value ) { ensureCapacity ( 8 ); this.buffer.putLong   ( value );                       }
+    public void writeDouble  ( double  value ) { ensureCapacity ( 8 ); this.buffer.putDouble ( value );                       }
+    public void writeBoolean ( Boolean value ) { ensureCapacity ( 1 ); this.buffer.put       ( ( byte ) ( value ? 1 : 0 ) );  }
+
+    // Overwrite an int at an absolute position, without moving the current position. Used to fill in lengths and offsets once they are known.
+
+    public void writeInt ( int position, int value ) { this.buffer.putInt ( position, value ); }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Primitive reads.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public byte    readByte    () { return this.buffer.get ();         }
+    public int     readInt     () { return this.buffer.getInt ();      }
+    public long    readLong    () { return this.buffer.getLong ();     }
+    public double  readDouble  () { return this.buffer.getDouble ();   }
+    public Boolean readBoolean () { return this.buffer.get () != 0;    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // writeString
+    //
+    // Write a string as a byte count, followed by its UTF-8 bytes. A null string is written as a byte count of -1.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void writeString ( String value )
+    {
+        if ( value == null )
+        {
+            writeInt ( -1 );
+            return;
+        }
+
+        byte[] bytes = value.getBytes ( M_CHARSET );
+
+        writeInt ( bytes.length );
+        ensureCapacity ( bytes.length );
+
+        this.buffer.put ( bytes );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // readString
+    //
+    // Read a string written by writeString.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public String readString ()
+    {
+        return readString ( null );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // readString
+    //
+    // Description:
+    //
+    // - Read a string written by writeString, reusing an existing string if the stored string is equal to it.
+    //
+    // Arguments:
+    //
+    // - current
+    //   The string currently held by the object being restored. May be null.
+    //
+    // Return Value:
+    //
+    // - current, if the stored string is equal to it. Otherwise a new string.
+    //
+    // Notes:
+    //
+    // - Only ASCII strings are compared in place, which covers names and class names. Other strings are always decoded into a new string.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public String readString ( String current )
+    {
+        int length = readInt ();
+
+        if ( length < 0 )
+        {
+            return null;
+        }
+
+        if ( ( current != null ) && ( current.length () == length ) && matches ( current ) )
+        {
+            this.buffer.position ( this.buffer.position () + length );
+
+            return current;
+        }
+
+        byte[] bytes = new byte [ length ];
+
+        this.buffer.get ( bytes );
+
+        return new String ( bytes, M_CHARSET );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // skipString
+    //
+    // Skip a string written by writeString, without decoding it.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void skipString ()
+    {
+        int length = readInt ();
+
+        if ( length > 0 )
+        {
+            this.buffer.position ( this.buffer.position () + length );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // writeDoubles
+    //
+    // Write a double array as an element count, followed by its elements.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void writeDoubles ( double[] values )
+    {
+        writeInt ( values.length );
+        ensureCapacity ( 8 * values.length );
+
+        for ( double value : values )
+        {
+            this.buffer.putDouble ( value );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // readDoubles
+    //
+    // Description:
+    //
+    // - Read a double array written by writeDoubles.
+    //
+    // Arguments:
+    //
+    // - target
+    //   Array to read the elements into, if it has the same length as the stored array. May be null.
+    //
+    // Return Value:
+    //
+    // - target, if the lengths match. Otherwise a new array.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public double[] readDoubles ( double[] target )
+    {
+        int length = readInt ();
+
+        if ( ( target == null ) || ( target.length != length ) )
+        {
+            target = new double [ length ];
+        }
+
+        for ( int i = 0; i < length; i++ )
+        {
+            target [ i ] = this.buffer.getDouble ();
+        }
+
+        return target;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // Vector writes and reads. Vectors are read into an existing vector, so that restoring a snapshot in place does not allocate.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void writeVector ( Vector2D value )  { writeDouble ( value.getX () ); writeDouble ( value.getY () );  }
+    public void readVector  ( Vector2D target ) { target.setVector ( readDouble (), readDouble () );             }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // matches
+    //
+    // Returns true if the ASCII string is equal to the bytes at the current position. The position is not moved.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private Boolean matches ( String value )
+    {
+        int position = this.buffer.position ();
+
+        for ( int i = 0; i < value.length (); i++ )
+        {
+            char c = value.charAt ( i );
+
+            if ( ( c >= 0x80 ) || ( this.buffer.get ( position + i ) != ( byte ) c ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // ensureCapacity
+    //
+    // Make room for a number of bytes at the current position, by replacing a growable buffer with a larger copy.
+    // Throws java.nio.BufferOverflowException if the buffer is not growable, and is full.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void ensureCapacity ( int bytes )
+    {
+        if ( !this.growable || ( this.buffer.remaining () >= bytes ) )
+        {
+            return;
+        }
+
+        int        capacity = Math.max ( 2 * this.buffer.capacity (), this.buffer.position () + bytes );
+        ByteBuffer larger   = ByteBuffer.allocate ( capacity );
+
+        this.buffer.flip ();
+
+        larger.put ( this.buffer );
+
+        this.buffer = larger;
+    }
+}
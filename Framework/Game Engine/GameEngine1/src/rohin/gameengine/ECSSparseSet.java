@@ -0,0 +1,205 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSSparseSet
+//
+// Component pool for a single component type, stored as a sparse set.
+//
+// - The components of the type, and the entities that own them, are packed into two parallel dense arrays, from position 0 to size - 1.
+//   Systems iterate the dense arrays linearly.
+// - A sparse array maps each entity's sparse set slot (see ECSSparseSetStorage) to the position of its component in the dense arrays.
+// - Adding a component appends it to the dense arrays. Removing a component moves the last component into its position (swap-remove).
+//   Both are O(1), and neither moves the entity's other components, unlike an archetype move.
+// - The dense order is not stable. Removing a component changes the position of the last component in the pool.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSSparseSet
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int M_DEFAULT_CAPACITY = 64;    // Initial number of components the pool can hold.
+    public static final int M_ABSENT           = -1;    // Sparse array value of an entity that has no component in this pool.
+
+    // Fields.
+
+    private int            typeIndex;       // Component type index of the pool.
+    private ECSComponent[] components;      // Dense components.
+    private ECSEntity[]    entities;        // Dense entities. entities [ i ] owns components [ i ].
+    private int[]          sparse;          // Sparse array. Entity sparse set slot to dense position, or M_ABSENT.
+    private int            count;           // Number of components in the pool.
+
+    // Accessors and mutators.
+
+    public int          getTypeIndex ()               { return this.typeIndex;                }
+    public int          size         ()               { return this.count;                    }
+    public Boolean      isEmpty      ()               { return this.count == 0;               }
+    public ECSEntity    getEntity    ( int position ) { return this.entities   [ position ];  }
+    public ECSComponent getComponent ( int position ) { return this.components [ position ];  }
+
+    // Constructors.
+
+    public ECSSparseSet ( int typeIndex )
+    {
+        this.typeIndex  = typeIndex;
+        this.components = new ECSComponent [ M_DEFAULT_CAPACITY ];
+        this.entities   = new ECSEntity    [ M_DEFAULT_CAPACITY ];
+        this.sparse     = new int          [ M_DEFAULT_CAPACITY ];
+        this.count      = 0;
+
+        Arrays.fill ( this.sparse, M_ABSENT );
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // indexOf
+    //
+    // Return the dense position of an entity's component, or M_ABSENT if the entity has no component in this pool.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int indexOf ( ECSEntity entity )
+    {
+        int slot = entity.sparseSetSlot;
+
+        return ( ( slot >= 0 ) && ( slot < this.sparse.length ) ) ? this.sparse [ slot ] : M_ABSENT;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // contains
+    //
+    // Returns true if the entity has a component in this pool.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean contains ( ECSEntity entity )
+    {
+        return indexOf ( entity ) != M_ABSENT;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // get
+    //
+    // Retrieve an entity's component from this pool, or null if the entity has no component in this pool.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public ECSComponent get ( ECSEntity entity )
+    {
+        int position = indexOf ( entity );
+
+        return ( position == M_ABSENT ) ? null : this.components [ position ];
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // put
+    //
+    // Description:
+    //
+    // - Store an entity's component in the pool. If the entity already has a component in the pool, then the component is replaced in place.
+    //
+    // Preconditions:
+    //
+    // - The entity must have been assigned a sparse set slot, by ECSSparseSetStorage.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void put ( ECSEntity entity, ECSComponent component )
+    {
+        int position = indexOf ( entity );
+
+        if ( position != M_ABSENT )
+        {
+            this.components [ position ] = component;
+            return;
+        }
+
+        // Grow the arrays, if required.
+
+        int slot = entity.sparseSetSlot;
+
+        if ( slot >= this.sparse.length )
+        {
+            int length = this.sparse.length;
+
+            this.sparse = Arrays.copyOf ( this.sparse, Math.max ( 2 * length, slot + 1 ) );
+
+            Arrays.fill ( this.sparse, length, this.sparse.length, M_ABSENT );
+        }
+
+        if ( this.count >= this.components.length )
+        {
+            int capacity = 2 * this.components.length;
+
+            this.components = Arrays.copyOf ( this.components, capacity );
+            this.entities   = Arrays.copyOf ( this.entities,   capacity );
+        }
+
+        // Append the component to the dense arrays.
+
+        this.components [ this.count ] = component;
+        this.entities   [ this.count ] = entity;
+        this.sparse     [ slot ]       = this.count;
+
+        ++this.count;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // remove
+    //
+    // Description:
+    //
+    // - Remove an entity's component from the pool, by moving the last component of the pool into its position.
+    //
+    // Return Value:
+    //
+    // - The removed component, or null if the entity had no component in this pool.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    ECSComponent remove ( ECSEntity entity )
+    {
+        int position = indexOf ( entity );
+
+        if ( position == M_ABSENT )
+        {
+            return null;
+        }
+
+        ECSComponent component = this.components [ position ];
+        int          last      = --this.count;
+
+        // Fill the hole with the last component of the pool.
+
+        if ( position != last )
+        {
+            ECSEntity moved = this.entities [ last ];
+
+            this.components [ position ]            = this.components [ last ];
+            this.entities   [ position ]            = moved;
+            this.sparse     [ moved.sparseSetSlot ] = position;
+        }
+
+        this.components [ last ]                 = null;
+        this.entities   [ last ]                 = null;
+        this.sparse     [ entity.sparseSetSlot ] = M_ABSENT;
+
+        return component;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // clear
+    //
+    // Remove all components from the pool. The arrays keep their capacity.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void clear ()
+    {
+        Arrays.fill ( this.components, 0, this.count, null );
+        Arrays.fill ( this.entities,   0, this.count, null );
+        Arrays.fill ( this.sparse,     M_ABSENT );
+
+        this.count = 0;
+    }
+}
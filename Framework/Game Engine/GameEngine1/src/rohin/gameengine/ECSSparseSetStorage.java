@@ -0,0 +1,282 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// ECSSparseSetStorage
+//
+// Sparse set based component storage for an ECSEngine. An alternative to archetype storage.
+//
+// - Each component type has its own pool (see ECSSparseSet), indexed by component type index.
+// - Each stored entity is assigned a small, dense sparse set slot, that indexes the sparse arrays of all pools. Slots are recycled when entities
+//   are removed, so the sparse arrays stay proportional to the number of live entities, independent of the entity IDs in use.
+// - Adding or removing a component only touches the pool of that component type. The entity's other components stay where they are, which
+//   makes frequent component churn, e.g. ComponentPhysics being added and removed, much cheaper than moving the entity between archetypes.
+//
+// Joins:
+//
+// - Systems that require several component types iterate the smallest of the required pools (see getSmallestSet), and skip entities that do not
+//   contain the other required types. Components of the other types are looked up through their pools in O(1).
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public class ECSSparseSetStorage
+{
+    // @formatter:off
+
+    // Constants.
+
+    public static final int M_DEFAULT_TYPE_CAPACITY = 16;      // Number of component types before the pool array needs to be resized.
+    public static final int M_DEFAULT_SLOT_CAPACITY = 1024;    // Number of recycled slots before the free slot stack needs to be resized.
+
+    // Fields.
+
+    private ECSSparseSet[] sets;            // Component pools, indexed by component type index. Null if no component of the type has been stored.
+    private int            slotCount;       // Number of sparse set slots ever assigned.
+    private int[]          freeSlots;       // Stack of recycled sparse set slots.
+    private int            freeCount;       // Number of recycled sparse set slots.
+
+    // Accessors and mutators.
+
+    public ECSSparseSet getSet ( Class <? extends ECSComponent> type ) { return getSet ( ECSComponentType.getIndex ( type ) );                          }
+    public ECSSparseSet getSet ( int typeIndex )                       { return ( typeIndex < this.sets.length ) ? this.sets [ typeIndex ] : null; }
+
+    // Constructors.
+
+    public ECSSparseSetStorage ()
+    {
+        this.sets      = new ECSSparseSet [ M_DEFAULT_TYPE_CAPACITY ];
+        this.slotCount = 0;
+        this.freeSlots = new int [ M_DEFAULT_SLOT_CAPACITY ];
+        this.freeCount = 0;
+    }
+
+    // @formatter:on
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // add
+    //
+    // Assign a sparse set slot to an entity, and store each of its components in the pool of the component's type.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void add ( ECSEntity entity )
+    {
+        if ( entity.sparseSetSlot < 0 )
+        {
+            entity.sparseSetSlot = ( this.freeCount > 0 ) ? this.freeSlots [ --this.freeCount ] : this.slotCount++;
+        }
+
+        IntHashMap <ECSComponent> components = entity.getComponents ();
+
+        for ( int i = 0; i < components.size (); i++ )
+        {
+            ECSComponent component = components.valueAt ( i );
+
+            getOrCreateSet ( component.getTypeIndex () ).put ( entity, component );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // remove
+    //
+    // Remove an entity's components from all pools, and recycle its sparse set slot.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void remove ( ECSEntity entity )
+    {
+        if ( entity.sparseSetSlot < 0 )
+        {
+            return;
+        }
+
+        for ( ECSSparseSet set : this.sets )
+        {
+            if ( set != null )
+            {
+                set.remove ( entity );
+            }
+        }
+
+        if ( this.freeCount >= this.freeSlots.length )
+        {
+            this.freeSlots = Arrays.copyOf ( this.freeSlots, 2 * this.freeSlots.length );
+        }
+
+        this.freeSlots [ this.freeCount++ ] = entity.sparseSetSlot;
+
+        entity.sparseSetSlot = -1;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // update
+    //
+    // Description:
+    //
+    // - Bring the pools up to date, after a component has been added to, replaced in, or removed from, an entity.
+    // - Only the pools of the removed and added component types are modified. The entity keeps its sparse set slot.
+    // - A pool holds one component per entity. If the entity holds more than one component of an affected type, under different keys, then all of
+    //   the entity's pools are rescanned instead.
+    //
+    // Arguments:
+    //
+    // - entity
+    //   The entity, with its component map and signature already updated.
+    //
+    // - removed
+    //   The component that was removed or replaced, or null.
+    //
+    // - added
+    //   The component that was added, or null.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void update ( ECSEntity entity, ECSComponent removed, ECSComponent added )
+    {
+        ECSSignature signature = entity.getSignature ();
+
+        // Another component of the removed type may still be held under a different key, or the entity may hold duplicate types.
+
+        Boolean removedType = ( removed != null ) && ( ( added == null ) || ( removed.getTypeIndex () != added.getTypeIndex () ) );
+
+        if ( ( removedType && signature.get ( removed.getTypeIndex () ) ) || ( entity.getComponents ().size () != signature.cardinality () ) )
+        {
+            rescan ( entity );
+            return;
+        }
+
+        if ( removedType )
+        {
+            ECSSparseSet set = getSet ( removed.getTypeIndex () );
+
+            if ( set != null )
+            {
+                set.remove ( entity );
+            }
+        }
+
+        if ( added != null )
+        {
+            getOrCreateSet ( added.getTypeIndex () ).put ( entity, added );
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // rescan
+    //
+    // Bring every pool up to date with an entity's components. Used for entities that hold more than one component of a type.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void rescan ( ECSEntity entity )
+    {
+        ECSSignature signature = entity.getSignature ();
+
+        // Remove components whose type is no longer present.
+
+        for ( ECSSparseSet set : this.sets )
+        {
+            if ( ( set != null ) && !signature.get ( set.getTypeIndex () ) )
+            {
+                set.remove ( entity );
+            }
+        }
+
+        // Add new components, and replace components that changed.
+
+        add ( entity );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // clear
+    //
+    // Remove all entities from all pools, and release their sparse set slots. The pools are kept, for reuse.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void clear ()
+    {
+        for ( ECSSparseSet set : this.sets )
+        {
+            if ( set != null )
+            {
+                for ( int i = 0; i < set.size (); i++ )
+                {
+                    set.getEntity ( i ).sparseSetSlot = -1;
+                }
+            }
+        }
+
+        for ( ECSSparseSet set : this.sets )
+        {
+            if ( set != null )
+            {
+                set.clear ();
+            }
+        }
+
+        this.slotCount = 0;
+        this.freeCount = 0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getSmallestSet
+    //
+    // Description:
+    //
+    // - Retrieve the smallest pool of the required component types. Used to drive multi pool joins.
+    //
+    // Arguments:
+    //
+    // - required
+    //   Required component signature. See ECSSignature.of.
+    //
+    // Return Value:
+    //
+    // - The required pool with the fewest components, or null if any required type has no pool yet, in which case no entity can match.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public ECSSparseSet getSmallestSet ( ECSSignature required )
+    {
+        ECSSparseSet smallest = null;
+
+        for ( int type = required.nextSetBit ( 0 ); type >= 0; type = required.nextSetBit ( type + 1 ) )
+        {
+            ECSSparseSet set = getSet ( type );
+
+            if ( set == null )
+            {
+                return null;
+            }
+
+            if ( ( smallest == null ) || ( set.size () < smallest.size () ) )
+            {
+                smallest = set;
+            }
+        }
+
+        return smallest;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getOrCreateSet
+    //
+    // Retrieve the pool of a component type, creating it if it does not exist yet.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private ECSSparseSet getOrCreateSet ( int typeIndex )
+    {
+        if ( typeIndex >= this.sets.length )
+        {
+            this.sets = Arrays.copyOf ( this.sets, Math.max ( 2 * this.sets.length, typeIndex + 1 ) );
+        }
+
+        ECSSparseSet set = this.sets [ typeIndex ];
+
+        if ( set == null )
+        {
+            set = new ECSSparseSet ( typeIndex );
+
+            this.sets [ typeIndex ] = set;
+        }
+
+        return set;
+    }
+}
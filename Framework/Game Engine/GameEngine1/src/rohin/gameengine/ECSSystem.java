@@ -1,5 +1,7 @@
 package rohin.gameengine;
 
+import java.util.List;
+
 public abstract class ECSSystem extends ECSObject
 {
     // @formatter:off
@@ -13,13 +15,27 @@ public abstract class ECSSystem extends ECSObject
     
     // Fields.
     
-    protected Boolean enabled;
+    protected Boolean      enabled;
+    protected Boolean      renderSystem;    // True if this system presents frames, rather than advancing the simulation.
+    protected ECSSignature signature;       // Component types an entity must contain to be processed by this system, or null if not declared.
+    protected ECSQuery     query;           // Live list of entities matching the required signature, or null if not declared.
+    protected ECSSignature reads;           // Component types read by this system, or null if component access has not been declared.
+    protected ECSSignature writes;          // Component types written by this system, or null if component access has not been declared.
+    private   long         changeTick;      // Engine change tick at the start of the current update.
+    private   long         lastChangeTick;  // Engine change tick at the start of the previous update.
         
     // Accessors and mutators.
     
-    public Boolean isEnabled () { return this.enabled; }
+    public Boolean      isEnabled      () { return this.enabled;      }
+    public Boolean      isRenderSystem () { return this.renderSystem; }
+    public ECSSignature getSignature   () { return this.signature;    }
+    public ECSQuery     getQuery       () { return this.query;        }
+    public ECSSignature getReads       () { return this.reads;        }
+    public ECSSignature getWrites      () { return this.writes;       }
+    public long         getChangeTick  () { return this.changeTick;   }
     
-    public void setEnabled ( Boolean enabled ) { this.enabled = enabled; }
+    public void setEnabled      ( Boolean enabled      ) { this.enabled      = enabled;      }
+    public void setRenderSystem ( Boolean renderSystem ) { this.renderSystem = renderSystem; }
     
     // Abstract method decelerations.
     
@@ -41,11 +57,268 @@ public abstract class ECSSystem extends ECSObject
     
     private void initialize ( Integer id, String name, ECSEngine owner )
     {
-        this.owner   = owner;
-        this.id      = id;
-        this.name    = name;                
-        this.enabled = M_DEFAULT_ENABLED;
+        this.owner        = owner;
+        this.id           = id;
+        this.name         = name;
+        this.enabled      = M_DEFAULT_ENABLED;
+        this.renderSystem = false;
+        this.signature    = null;
+        this.query        = null;
+        this.reads        = null;
+        this.writes       = null;
+        
+        // Initialize change detection. Every component added to an engine counts as changed, on the system's first update.
+        
+        this.changeTick     = 0;
+        this.lastChangeTick = 0;
     }
     
     // @formatter:on
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // render
+    //
+    // Description:
+    //
+    // - Called by the engine instead of update, for render systems (see isRenderSystem). Render systems are updated once per frame, after the
+    //   simulation systems have been stepped.
+    // - The default implementation ignores alpha, and calls update.
+    //
+    // Arguments:
+    //
+    // - t
+    //   Game loop tick time. i.e. Time elapsed during the last frame.
+    //
+    // - alpha
+    //   Interpolation factor, in the range [0,1]. The fraction of a fixed time step that has elapsed since the last simulation step.
+    //   Render systems should draw entities at previous + alpha * ( current - previous ). Always 1 if the fixed time step is disabled.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public void render ( long t, double alpha )
+    {
+        update ( t );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // requireComponents
+    //
+    // Description:
+    //
+    // - Declare the component types this system operates on. Should be called once, from the constructor of the child class.
+    // - The system's query is created through the owning engine, and will be kept up to date by the engine.
+    // - The engine skips the update of any system that has declared a required signature, but has no matching entities.
+    //
+    // Arguments:
+    //
+    // - types
+    //   Variable argument list, specifying the component types an entity must contain, in order to be processed by this system.
+    //
+    // Preconditions:
+    //
+    // - The system must have been constructed with an owning engine.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @SafeVarargs
+    protected final void requireComponents ( Class <? extends ECSComponent>... types )
+    {
+        this.signature = ECSSignature.of ( types );
+        this.query     = ( ( ECSEngine ) this.owner ).createQuery ( this.signature );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // hasWork
+    //
+    // Returns false if the system has declared a required signature, and no entities currently match it.
+    // Systems that have not declared a required signature through requireComponents are always considered to have work.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public Boolean hasWork ()
+    {
+        return ( this.signature == null ) || !this.query.isEmpty ();
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getCommandBuffer
+    //
+    // Returns the owning engine's command buffer. Systems should record entity and component additions and removals into the command buffer during
+    // update, rather than applying them directly. See ECSCommandBuffer.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    protected ECSCommandBuffer getCommandBuffer ()
+    {
+        return ( ( ECSEngine ) this.owner ).getCommandBuffer ();
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // beginUpdate
+    //
+    // Called by the engine before every update or render of this system, with a new engine change tick.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    void beginUpdate ( long changeTick )
+    {
+        this.lastChangeTick = this.changeTick;
+        this.changeTick     = changeTick;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // isChanged
+    //
+    // Description:
+    //
+    // - Returns true if a component has been added to the engine, or marked as changed, since the start of this system's previous update.
+    // - Changes this system made itself during its previous update are not reported. Changes made by other systems, or outside of any system
+    //   (see ECSEngine.markChanged), are reported exactly once.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    protected Boolean isChanged ( ECSComponent component )
+    {
+        return component.changeTick > this.lastChangeTick;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // markChanged
+    //
+    // Description:
+    //
+    // - Mark a component as changed by this system, so that other systems see it through isChanged.
+    // - Systems should mark every component they modify. Unmarked modifications are invisible to change detection.
+    // - Safe to call concurrently, for different components, e.g. from ECSParallelSystem.updateEntity.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    protected void markChanged ( ECSComponent component )
+    {
+        component.changeTick = this.changeTick;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // getChangedEntities
+    //
+    // Description:
+    //
+    // - Collect the entities of this system's query, whose component under the specified key has changed since this system's previous update.
+    //
+    // Arguments:
+    //
+    // - componentKey
+    //   Key of the component to test, e.g. the key the entity's transform component was added under.
+    //
+    // - changed
+    //   List to append the changed entities to. The list is not cleared first.
+    //
+    // Return Value:
+    //
+    // - The number of entities appended.
+    //
+    // Preconditions:
+    //
+    // - The system must have declared its required signature, through requireComponents, or created its query directly.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    protected int getChangedEntities ( int componentKey, List <ECSEntity> changed )
+    {
+        int count = 0;
+        
+        for ( int i = 0; i < this.query.size (); i++ )
+        {
+            ECSEntity    entity    = this.query.get ( i );
+            ECSComponent component = entity.getComponent ( componentKey );
+            
+            if ( ( component != null ) && isChanged ( component ) )
+            {
+                changed.add ( entity );
+                ++count;
+            }
+        }
+        
+        return count;
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // readsComponents
+    //
+    // Description:
+    //
+    // - Declare component types that this system reads, but never modifies. Should be called once, from the constructor of the child class.
+    // - Systems that only read the same component types may be run concurrently by the parallel scheduler (see ECSScheduler).
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @SafeVarargs
+    protected final void readsComponents ( Class <? extends ECSComponent>... types )
+    {
+        declareAccess ();
+        
+        this.reads.or ( ECSSignature.of ( types ) );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // writesComponents
+    //
+    // Description:
+    //
+    // - Declare component types that this system modifies. Should be called once, from the constructor of the child class.
+    // - Written component types are implicitly read as well.
+    // - The parallel scheduler never runs two systems concurrently, if either one writes a component type that the other one accesses.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    @SafeVarargs
+    protected final void writesComponents ( Class <? extends ECSComponent>... types )
+    {
+        ECSSignature signature = ECSSignature.of ( types );
+        
+        declareAccess ();
+        
+        this.reads.or  ( signature );
+        this.writes.or ( signature );
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // declareAccess
+    //
+    // Mark component access as declared, by allocating the read and write signatures.
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    private void declareAccess ()
+    {
+        if ( this.reads == null )
+        {
+            this.reads  = new ECSSignature ();
+            this.writes = new ECSSignature ();
+        }
+    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    // conflictsWith
+    //
+    // Description:
+    //
+    // - Returns true if this system and another system may not run concurrently.
+    //
+    // Return Value:
+    //
+    // - True if either system has not declared its component access. Systems with undeclared access are treated as exclusive, since they may
+    //   touch any component, or shared state outside of the ECS.
+    //
+    // - True if either system writes a component type that the other system reads or writes.
+    //
+    // - False otherwise.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public Boolean conflictsWith ( ECSSystem other )
+    {
+        if ( ( this.reads == null ) || ( other.reads == null ) )
+        {
+            return true;
+        }
+        
+        return this.writes.intersects ( other.reads ) || other.writes.intersects ( this.reads );
+    }
 }
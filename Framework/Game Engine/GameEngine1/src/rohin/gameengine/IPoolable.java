@@ -0,0 +1,15 @@
+package rohin.gameengine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// IPoolable
+//
+// Implemented by objects that can be recycled through an ECSPool.
+//
+// - reset is called when an object is released to its pool. It should restore the object to the state of a newly constructed instance, reusing
+//   the object's existing fields and collections, rather than allocating new ones.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public interface IPoolable
+{
+    public void reset ();
+}
@@ -0,0 +1,16 @@
+package rohin.gameengine;
+
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+// IRecordableCommand
+//
+// A command that can be recorded by an ECSCommandRecorder, and recreated by an ECSCommandReplay.
+//
+// - writeRecord writes the command's arguments. References to the engine, and to entities, are not written. Entities are identified by key.
+// - readRecord restores the arguments into a command created through its public no argument constructor, and binds it to the replay engine.
+// ------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+public interface IRecordableCommand extends ICommand
+{
+    public void writeRecord ( ECSSnapshotBuffer buffer );
+    public void readRecord  ( ECSEngine engine, ECSSnapshotBuffer buffer );
+}
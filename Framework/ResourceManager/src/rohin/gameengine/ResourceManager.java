@@ -34,7 +34,7 @@ public class ResourceManager
     //
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
  
-    private Map <Integer, Resource> resources;
+    private IntHashMap <Resource> resources;
     
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // 
@@ -69,7 +69,7 @@ public class ResourceManager
     
     private void initialize ()
     {   
-        this.resources = new HashMap <Integer, Resource> ();
+        this.resources = new IntHashMap <Resource> ();
     }
     
     // ---------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -0,0 +1,1013 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+//
+// DynamicAABBTree:
+//
+// Dynamic bounding volume tree of axis aligned bounding boxes (AABBs). Used as a collision detection broad phase, and for area and ray queries.
+//
+// - Each box is held by a leaf of a binary tree. Each internal node holds the union of the boxes of its children. Queries descend only into the
+//   nodes whose boxes they touch, so they visit O(log n) nodes for small query areas, whatever the mix of box sizes.
+// - Boxes are inserted with insert, which returns a proxy, i.e. the ID of the box's leaf. The proxy stays valid until the box is removed, and is
+//   used to move and remove the box. Each proxy carries an int of user data, e.g. the index of the shape the box bounds, which may be changed
+//   with setData.
+// - Leaves hold fat boxes, i.e. the inserted box, enlarged by a margin on every side. move only updates the tree when the new box leaves its fat
+//   box, so small movements cost no more than a comparison.
+// - New leaves are placed next to the sibling that least increases the total perimeter of the tree. After each insertion and removal, the nodes on
+//   the path to the root are rebalanced with AVL tree rotations, so that the height of the tree stays O(log n), whatever the insertion order.
+// - rebuild rebuilds the tree from all of its leaves at once, which gives a faster tree to query than inserting them one at a time.
+// - Query results and pairs are read back by index, with getResult, getPairA and getPairB.
+// - The tree does not allocate memory, except to grow its arrays.
+//
+// Notes:
+//
+// - Queries and pairs test fat boxes, so they may report boxes that do not quite overlap. Callers should test the exact shapes.
+// - The margin should be about the distance a typical box moves in a few updates.
+// - The tree is not synchronized.
+//
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+public class DynamicAABBTree
+{
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // CONSTANTS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public  static final int    M_NULL             = -1;       // Null node, or proxy.
+    public  static final double M_DEFAULT_MARGIN   = 0.01;     // Default fat box margin.
+    public  static final int    M_DEFAULT_CAPACITY = 64;       // Initial number of nodes the tree can hold before it grows.
+    private static final int    M_FREE             = -1;       // Height of a free node.
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // FIELDS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // Nodes. A leaf holds a proxy's fat box, and an internal node holds the union of its children's boxes. Free nodes are linked through parent.
+
+    private double   margin;        // Fat box margin.
+    private int      root;          // Root node, or M_NULL if the tree is empty.
+    private int      nodeCount;     // Number of nodes ever allocated since the tree was last cleared. Free nodes are reused first.
+    private int      freeList;      // First free node, or M_NULL.
+    private int      proxyCount;    // Number of leaves.
+    private double[] minX;          // Node bounds.
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[]    parent;        // Parent node, or the next free node.
+    private int[]    child1;        // Child nodes, or M_NULL for a leaf.
+    private int[]    child2;
+    private int[]    height;        // Leaf = 0, internal node = 1 + height of its taller child, free node = M_FREE.
+    private int[]    data;          // User data of each leaf.
+
+    // Traversal stack, and the leaves of a rebuild.
+
+    private int[]    stack;
+    private int[]    leaves;
+
+    // Query results and pairs.
+
+    private int      resultCount;   // Number of proxies found by the last query.
+    private int[]    results;       // Proxies found by the last query.
+    private int      pairCount;     // Number of pairs found by the last call to findPairs.
+    private int[]    pairA;         // Lower proxy of each pair.
+    private int[]    pairB;         // Higher proxy of each pair.
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // ACCESSORS and MUTATORS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public int    size           ()              { return this.proxyCount;                                    }
+    public int    getHeight      ()              { return ( this.root == M_NULL ) ? 0 : this.height [ this.root ]; }
+    public double getMargin      ()              { return this.margin;                                        }
+    public int    getData        ( int proxy )   { return this.data [ proxy ];                                }
+    public double getFatMinX     ( int proxy )   { return this.minX [ proxy ];                                }
+    public double getFatMinY     ( int proxy )   { return this.minY [ proxy ];                                }
+    public double getFatMaxX     ( int proxy )   { return this.maxX [ proxy ];                                }
+    public double getFatMaxY     ( int proxy )   { return this.maxY [ proxy ];                                }
+    public int    getResultCount ()              { return this.resultCount;                                   }
+    public int    getResult      ( int result )  { return this.results [ result ];                            }
+    public int    getPairCount   ()              { return this.pairCount;                                     }
+    public int    getPairA       ( int pair )    { return this.pairA [ pair ];                                }
+    public int    getPairB       ( int pair )    { return this.pairB [ pair ];                                }
+
+    public void setMargin ( double margin )         { this.margin = Math.max ( 0.0, margin ); }
+    public void setData   ( int proxy, int data )   { this.data [ proxy ] = data;             }
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // METHODS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Constructor/s
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public DynamicAABBTree ()                { initialize ( M_DEFAULT_MARGIN ); }
+    public DynamicAABBTree ( double margin ) { initialize ( margin );           }
+
+    private void initialize ( double margin )
+    {
+        setMargin ( margin );
+
+        this.stack       = new int [ M_DEFAULT_CAPACITY ];
+        this.leaves      = new int [ M_DEFAULT_CAPACITY ];
+        this.resultCount = 0;
+        this.results     = new int [ M_DEFAULT_CAPACITY ];
+        this.pairCount   = 0;
+        this.pairA       = new int [ M_DEFAULT_CAPACITY ];
+        this.pairB       = new int [ M_DEFAULT_CAPACITY ];
+
+        growNodes ( M_DEFAULT_CAPACITY );
+        clear ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Remove every proxy. Proxies are numbered from 0 again, once the tree has been cleared.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void clear ()
+    {
+        this.root        = M_NULL;
+        this.nodeCount   = 0;
+        this.freeList    = M_NULL;
+        this.proxyCount  = 0;
+        this.resultCount = 0;
+        this.pairCount   = 0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // insert
+    //
+    // Description:
+    //
+    // - Insert a box, enlarged by the margin, and return its proxy.
+    //
+    // Arguments:
+    //
+    // - minX, minY, maxX, maxY
+    //   Box bounds.
+    //
+    // - data
+    //   User data, returned by getData.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int insert ( double minX, double minY, double maxX, double maxY, int data )
+    {
+        int proxy = allocateNode ();
+
+        setBounds ( proxy, minX - this.margin, minY - this.margin, maxX + this.margin, maxY + this.margin );
+
+        this.data   [ proxy ] = data;
+        this.height [ proxy ] = 0;
+
+        insertLeaf ( proxy );
+
+        this.proxyCount++;
+
+        return proxy;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Remove a proxy. The proxy must not be used again, since its ID may be reused by a later insertion.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void remove ( int proxy )
+    {
+        if ( !isLeaf ( proxy ) )
+        {
+            throw new IllegalArgumentException ( "Proxy " + proxy + " is not in the tree." );
+        }
+
+        removeLeaf ( proxy );
+        freeNode   ( proxy );
+
+        this.proxyCount--;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // move
+    //
+    // Description:
+    //
+    // - Move a proxy to a new box. If the new box is still inside the proxy's fat box, the tree is left as it is. Otherwise, the proxy is removed,
+    //   and inserted again, with a new fat box around the new box.
+    //
+    // Return Value:
+    //
+    // - True if the proxy was inserted again, or false if the tree was left as it is.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Boolean move ( int proxy, double minX, double minY, double maxX, double maxY )
+    {
+        if ( !isLeaf ( proxy ) )
+        {
+            throw new IllegalArgumentException ( "Proxy " + proxy + " is not in the tree." );
+        }
+
+        if (    ( this.minX [ proxy ] <= minX ) && ( this.minY [ proxy ] <= minY )
+             && ( this.maxX [ proxy ] >= maxX ) && ( this.maxY [ proxy ] >= maxY ) )
+        {
+            return false;
+        }
+
+        removeLeaf ( proxy );
+        setBounds  ( proxy, minX - this.margin, minY - this.margin, maxX + this.margin, maxY + this.margin );
+        insertLeaf ( proxy );
+
+        return true;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // rebuild
+    //
+    // Description:
+    //
+    // - Rebuild the tree from its leaves, top down. Each node splits its leaves at the median of their centers, along the longer axis of the
+    //   centers' bounds. Proxies, and their fat boxes, are kept.
+    // - Incremental insertion builds a tree in the order the boxes arrive, which may be much slower to query than a tree built with all of the boxes
+    //   known. Call rebuild after inserting many boxes at once, e.g. when loading a level. Later moves and insertions keep the tree balanced.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void rebuild ()
+    {
+        if ( this.proxyCount < 3 )
+        {
+            return;
+        }
+
+        if ( this.proxyCount > this.leaves.length )
+        {
+            this.leaves = new int [ Math.max ( this.proxyCount, this.leaves.length * 2 ) ];
+        }
+
+        // Collect the leaves, and free the internal nodes.
+
+        int count = 0;
+
+        for ( int node = 0; node < this.nodeCount; node++ )
+        {
+            if ( this.height [ node ] == 0 )
+            {
+                this.leaves [ count++ ] = node;
+            }
+            else if ( this.height [ node ] > 0 )
+            {
+                freeNode ( node );
+            }
+        }
+
+        this.root                 = build ( 0, count );
+        this.parent [ this.root ] = M_NULL;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // queryArea
+    //
+    // Description:
+    //
+    // - Find the proxies whose fat boxes overlap, or touch, an area.
+    //
+    // Return Value:
+    //
+    // - The number of proxies found. See getResult.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int queryArea ( double minX, double minY, double maxX, double maxY )
+    {
+        int top = 0;
+
+        this.resultCount = 0;
+
+        if ( this.root != M_NULL )
+        {
+            this.stack [ top++ ] = this.root;
+        }
+
+        while ( top > 0 )
+        {
+            int node = this.stack [ --top ];
+
+            if (    ( this.minX [ node ] <= maxX ) && ( minX <= this.maxX [ node ] )
+                 && ( this.minY [ node ] <= maxY ) && ( minY <= this.maxY [ node ] ) )
+            {
+                if ( this.height [ node ] == 0 )
+                {
+                    addResult ( node );
+                }
+                else
+                {
+                    top = push ( top, this.child1 [ node ], this.child2 [ node ] );
+                }
+            }
+        }
+
+        return this.resultCount;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // queryRay
+    //
+    // Description:
+    //
+    // - Find the proxies whose fat boxes are crossed by a line segment, from (x0, y0) to (x1, y1).
+    // - Nodes are tested with the slab method. Proxies are reported in tree order, not in order along the segment.
+    //
+    // Return Value:
+    //
+    // - The number of proxies found. See getResult.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int queryRay ( double x0, double y0, double x1, double y1 )
+    {
+        double dx  = x1 - x0;
+        double dy  = y1 - y0;
+        int    top = 0;
+
+        this.resultCount = 0;
+
+        if ( this.root != M_NULL )
+        {
+            this.stack [ top++ ] = this.root;
+        }
+
+        while ( top > 0 )
+        {
+            int node = this.stack [ --top ];
+
+            if ( crossesSegment ( node, x0, y0, dx, dy ) )
+            {
+                if ( this.height [ node ] == 0 )
+                {
+                    addResult ( node );
+                }
+                else
+                {
+                    top = push ( top, this.child1 [ node ], this.child2 [ node ] );
+                }
+            }
+        }
+
+        return this.resultCount;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // findPairs
+    //
+    // Description:
+    //
+    // - Find every pair of proxies whose fat boxes overlap, or touch. Each pair is reported exactly once, lower proxy first.
+    // - The tree is traversed against itself, from the root down, a pair of subtrees at a time. A pair of subtrees is only descended into if their
+    //   boxes overlap, so each subtree is descended into once per overlapping subtree, rather than once per leaf.
+    //
+    // Return Value:
+    //
+    // - The number of pairs. See getPairA and getPairB.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int findPairs ()
+    {
+        int top = 0;
+
+        this.pairCount = 0;
+
+        if ( this.root != M_NULL )
+        {
+            top = push ( top, this.root, this.root );
+        }
+
+        while ( top > 0 )
+        {
+            int b = this.stack [ --top ];
+            int a = this.stack [ --top ];
+
+            if ( a == b )
+            {
+                // Pairs within a subtree: those within each child, and those across the children.
+
+                if ( this.height [ a ] != 0 )
+                {
+                    int c1 = this.child1 [ a ];
+                    int c2 = this.child2 [ a ];
+
+                    top = push ( top, c1, c1 );
+                    top = push ( top, c2, c2 );
+                    top = push ( top, c1, c2 );
+                }
+            }
+            else if (    ( this.minX [ a ] <= this.maxX [ b ] ) && ( this.minX [ b ] <= this.maxX [ a ] )
+                      && ( this.minY [ a ] <= this.maxY [ b ] ) && ( this.minY [ b ] <= this.maxY [ a ] ) )
+            {
+                // Pairs across two subtrees. Descend into the taller one, or report the pair, once both are leaves.
+
+                if ( this.height [ a ] < this.height [ b ] )
+                {
+                    int swap = a;
+
+                    a = b;
+                    b = swap;
+                }
+
+                if ( this.height [ a ] != 0 )
+                {
+                    top = push ( top, this.child1 [ a ], b );
+                    top = push ( top, this.child2 [ a ], b );
+                }
+                else
+                {
+                    addPair ( Math.min ( a, b ), Math.max ( a, b ) );
+                }
+            }
+        }
+
+        return this.pairCount;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // insertLeaf
+    //
+    // Description:
+    //
+    // - Insert a leaf into the tree. The tree is descended from the root, towards the child whose box grows the least in perimeter, until a sibling
+    //   is found for which no child would be cheaper. The sibling and the leaf are then joined under a new parent node.
+    // - The cost of a candidate node is the perimeter of its union with the leaf, plus the growth in perimeter of every ancestor (the inheritance
+    //   cost). The perimeter is used, rather than the area, since it does not vanish for flat boxes, or points.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void insertLeaf ( int leaf )
+    {
+        if ( this.root == M_NULL )
+        {
+            this.root            = leaf;
+            this.parent [ leaf ] = M_NULL;
+
+            return;
+        }
+
+        double minX  = this.minX [ leaf ];
+        double minY  = this.minY [ leaf ];
+        double maxX  = this.maxX [ leaf ];
+        double maxY  = this.maxY [ leaf ];
+        int    index = this.root;
+
+        while ( this.height [ index ] != 0 )
+        {
+            int    c1          = this.child1 [ index ];
+            int    c2          = this.child2 [ index ];
+            double perimeter   = perimeter ( index );
+            double combined    = unionPerimeter ( index, minX, minY, maxX, maxY );
+            double cost        = 2.0 * combined;
+            double inheritance = 2.0 * ( combined - perimeter );
+            double cost1       = descendCost ( c1, minX, minY, maxX, maxY ) + inheritance;
+            double cost2       = descendCost ( c2, minX, minY, maxX, maxY ) + inheritance;
+
+            if ( ( cost < cost1 ) && ( cost < cost2 ) )
+            {
+                break;
+            }
+
+            index = ( cost1 < cost2 ) ? c1 : c2;
+        }
+
+        // Join the sibling and the leaf under a new parent.
+
+        int sibling   = index;
+        int oldParent = this.parent [ sibling ];
+        int newParent = allocateNode ();
+
+        setBounds
+        (
+            newParent,
+            Math.min ( minX, this.minX [ sibling ] ),
+            Math.min ( minY, this.minY [ sibling ] ),
+            Math.max ( maxX, this.maxX [ sibling ] ),
+            Math.max ( maxY, this.maxY [ sibling ] )
+        );
+
+        this.parent [ newParent ] = oldParent;
+        this.child1 [ newParent ] = sibling;
+        this.child2 [ newParent ] = leaf;
+        this.height [ newParent ] = this.height [ sibling ] + 1;
+        this.data   [ newParent ] = M_NULL;
+        this.parent [ sibling   ] = newParent;
+        this.parent [ leaf      ] = newParent;
+
+        if ( oldParent == M_NULL )
+        {
+            this.root = newParent;
+        }
+        else if ( this.child1 [ oldParent ] == sibling )
+        {
+            this.child1 [ oldParent ] = newParent;
+        }
+        else
+        {
+            this.child2 [ oldParent ] = newParent;
+        }
+
+        refit ( this.parent [ leaf ] );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // removeLeaf
+    //
+    // Remove a leaf from the tree. Its parent is freed, and replaced by the leaf's sibling. The leaf node itself is not freed.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void removeLeaf ( int leaf )
+    {
+        if ( leaf == this.root )
+        {
+            this.root = M_NULL;
+
+            return;
+        }
+
+        int oldParent   = this.parent [ leaf ];
+        int grandParent = this.parent [ oldParent ];
+        int sibling     = ( this.child1 [ oldParent ] == leaf ) ? this.child2 [ oldParent ] : this.child1 [ oldParent ];
+
+        this.parent [ sibling ] = grandParent;
+
+        if ( grandParent == M_NULL )
+        {
+            this.root = sibling;
+        }
+        else
+        {
+            if ( this.child1 [ grandParent ] == oldParent )
+            {
+                this.child1 [ grandParent ] = sibling;
+            }
+            else
+            {
+                this.child2 [ grandParent ] = sibling;
+            }
+        }
+
+        freeNode ( oldParent );
+        refit    ( grandParent );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Walk from a node to the root, rebalancing each node, and recomputing its height and bounds from its children.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void refit ( int node )
+    {
+        while ( node != M_NULL )
+        {
+            node = balance ( node );
+
+            int c1 = this.child1 [ node ];
+            int c2 = this.child2 [ node ];
+
+            this.height [ node ] = 1 + Math.max ( this.height [ c1 ], this.height [ c2 ] );
+
+            setUnion ( node, c1, c2 );
+
+            node = this.parent [ node ];
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // balance
+    //
+    // Description:
+    //
+    // - If the heights of the children of node A differ by more than one, rotate the taller child up, to take A's place. A becomes a child of the
+    //   rotated node, and takes the shorter of the rotated node's children. i.e. A single AVL tree rotation.
+    //
+    //           A                 C
+    //          / \               / \
+    //         B   C      →      A   F      (C taller than B, and G shorter than F.)
+    //            / \           / \
+    //           F   G         B   G
+    //
+    // Return Value:
+    //
+    // - The node that now holds A's place in the tree.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private int balance ( int a )
+    {
+        if ( this.height [ a ] < 2 )
+        {
+            return a;
+        }
+
+        int b       = this.child1 [ a ];
+        int c       = this.child2 [ a ];
+        int balance = this.height [ c ] - this.height [ b ];
+
+        if ( balance > 1 )
+        {
+            rotate ( a, c, false );
+
+            return c;
+        }
+
+        if ( balance < -1 )
+        {
+            rotate ( a, b, true );
+
+            return b;
+        }
+
+        return a;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Rotate child node up, to take the place of node a. The child is a's first child if first is true, otherwise a's second child.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void rotate ( int a, int child, Boolean first )
+    {
+        int other = first ? this.child2 [ a ] : this.child1 [ a ];     // A's other child, which stays with A.
+        int f     = this.child1 [ child ];
+        int g     = this.child2 [ child ];
+
+        // The child takes A's place.
+
+        this.child1 [ child ] = a;
+        this.parent [ child ] = this.parent [ a ];
+        this.parent [ a     ] = child;
+
+        int up = this.parent [ child ];
+
+        if ( up == M_NULL )
+        {
+            this.root = child;
+        }
+        else if ( this.child1 [ up ] == a )
+        {
+            this.child1 [ up ] = child;
+        }
+        else
+        {
+            this.child2 [ up ] = child;
+        }
+
+        // The child keeps its taller child, and A takes the shorter one, in place of the child.
+
+        int taller  = ( this.height [ f ] > this.height [ g ] ) ? f : g;
+        int shorter = ( taller == f ) ? g : f;
+
+        this.child2 [ child   ] = taller;
+        this.parent [ shorter ] = a;
+
+        if ( first )
+        {
+            this.child1 [ a ] = shorter;
+        }
+        else
+        {
+            this.child2 [ a ] = shorter;
+        }
+
+        setUnion ( a,     other, shorter );
+        setUnion ( child, a,     taller  );
+
+        this.height [ a     ] = 1 + Math.max ( this.height [ other ], this.height [ shorter ] );
+        this.height [ child ] = 1 + Math.max ( this.height [ a     ], this.height [ taller  ] );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Build a subtree over leaves from to to, exclusive, and return its root.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private int build ( int from, int to )
+    {
+        if ( to - from == 1 )
+        {
+            return this.leaves [ from ];
+        }
+
+        // Bounds of the leaves' centers. Centers are kept doubled, i.e. min + max, which splits the same way.
+
+        double loX = Double.POSITIVE_INFINITY;
+        double loY = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY;
+        double hiY = Double.NEGATIVE_INFINITY;
+
+        for ( int i = from; i < to; i++ )
+        {
+            int    leaf = this.leaves [ i ];
+            double x    = this.minX [ leaf ] + this.maxX [ leaf ];
+            double y    = this.minY [ leaf ] + this.maxY [ leaf ];
+
+            loX = Math.min ( loX, x );
+            loY = Math.min ( loY, y );
+            hiX = Math.max ( hiX, x );
+            hiY = Math.max ( hiY, y );
+        }
+
+        int mid = ( from + to ) >>> 1;
+
+        select ( from, to, mid, ( hiX - loX ) >= ( hiY - loY ) );
+
+        int node = allocateNode ();
+        int c1   = build ( from, mid );
+        int c2   = build ( mid,  to  );
+
+        this.child1 [ node ] = c1;
+        this.child2 [ node ] = c2;
+        this.parent [ c1   ] = node;
+        this.parent [ c2   ] = node;
+        this.height [ node ] = 1 + Math.max ( this.height [ c1 ], this.height [ c2 ] );
+        this.data   [ node ] = M_NULL;
+
+        setUnion ( node, c1, c2 );
+
+        return node;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Partially sort leaves from to to, exclusive, by their centers along x, or along y, so that leaf k is in sorted position, and no leaf before it
+    // is greater. i.e. Quickselect.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void select ( int from, int to, int k, Boolean alongX )
+    {
+        int[]    leaves = this.leaves;
+        double[] lo     = alongX ? this.minX : this.minY;
+        double[] hi     = alongX ? this.maxX : this.maxY;
+        int      left   = from;
+        int      right  = to - 1;
+
+        while ( left < right )
+        {
+            int    pivot = leaves [ ( left + right ) >>> 1 ];
+            double key   = lo [ pivot ] + hi [ pivot ];
+            int    i     = left;
+            int    j     = right;
+
+            while ( i <= j )
+            {
+                while ( lo [ leaves [ i ] ] + hi [ leaves [ i ] ] < key ) i++;
+                while ( lo [ leaves [ j ] ] + hi [ leaves [ j ] ] > key ) j--;
+
+                if ( i <= j )
+                {
+                    int swap = leaves [ i ];
+
+                    leaves [ i++ ] = leaves [ j ];
+                    leaves [ j-- ] = swap;
+                }
+            }
+
+            if      ( k <= j ) right = j;
+            else if ( k >= i ) left  = i;
+            else               break;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Cost of descending into a child, when inserting a box. For a leaf, the perimeter of the new parent. For an internal node, the growth of its
+    // perimeter, as a lower bound of the cost of any node below it.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private double descendCost ( int node, double minX, double minY, double maxX, double maxY )
+    {
+        double cost = unionPerimeter ( node, minX, minY, maxX, maxY );
+
+        return ( this.height [ node ] == 0 ) ? cost : cost - perimeter ( node );
+    }
+
+    private double perimeter ( int node )
+    {
+        return 2.0 * ( ( this.maxX [ node ] - this.minX [ node ] ) + ( this.maxY [ node ] - this.minY [ node ] ) );
+    }
+
+    private double unionPerimeter ( int node, double minX, double minY, double maxX, double maxY )
+    {
+        double w = Math.max ( maxX, this.maxX [ node ] ) - Math.min ( minX, this.minX [ node ] );
+        double h = Math.max ( maxY, this.maxY [ node ] ) - Math.min ( minY, this.minY [ node ] );
+
+        return 2.0 * ( w + h );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Slab test. Returns true if the segment from (x0, y0) to (x0 + dx, y0 + dy) crosses, or touches, the box of a node.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private boolean crossesSegment ( int node, double x0, double y0, double dx, double dy )
+    {
+        double t0 = 0.0;
+        double t1 = 1.0;
+
+        // X slab.
+
+        if ( dx == 0.0 )
+        {
+            if ( ( x0 < this.minX [ node ] ) || ( x0 > this.maxX [ node ] ) ) return false;
+        }
+        else
+        {
+            double ta = ( this.minX [ node ] - x0 ) / dx;
+            double tb = ( this.maxX [ node ] - x0 ) / dx;
+
+            t0 = Math.max ( t0, Math.min ( ta, tb ) );
+            t1 = Math.min ( t1, Math.max ( ta, tb ) );
+        }
+
+        // Y slab.
+
+        if ( dy == 0.0 )
+        {
+            if ( ( y0 < this.minY [ node ] ) || ( y0 > this.maxY [ node ] ) ) return false;
+        }
+        else
+        {
+            double ta = ( this.minY [ node ] - y0 ) / dy;
+            double tb = ( this.maxY [ node ] - y0 ) / dy;
+
+            t0 = Math.max ( t0, Math.min ( ta, tb ) );
+            t1 = Math.min ( t1, Math.max ( ta, tb ) );
+        }
+
+        return t0 <= t1;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Node bounds.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private boolean isLeaf ( int node )
+    {
+        return ( node >= 0 ) && ( node < this.nodeCount ) && ( this.height [ node ] == 0 );
+    }
+
+    private void setBounds ( int node, double minX, double minY, double maxX, double maxY )
+    {
+        this.minX [ node ] = minX;
+        this.minY [ node ] = minY;
+        this.maxX [ node ] = maxX;
+        this.maxY [ node ] = maxY;
+    }
+
+    private void setUnion ( int node, int a, int b )
+    {
+        setBounds
+        (
+            node,
+            Math.min ( this.minX [ a ], this.minX [ b ] ),
+            Math.min ( this.minY [ a ], this.minY [ b ] ),
+            Math.max ( this.maxX [ a ], this.maxX [ b ] ),
+            Math.max ( this.maxY [ a ], this.maxY [ b ] )
+        );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Node allocation. Free nodes are reused first, newest first.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private int allocateNode ()
+    {
+        int node = this.freeList;
+
+        if ( node != M_NULL )
+        {
+            this.freeList = this.parent [ node ];
+        }
+        else
+        {
+            if ( this.nodeCount == this.height.length )
+            {
+                growNodes ( this.nodeCount * 2 );
+            }
+
+            node = this.nodeCount++;
+        }
+
+        this.parent [ node ] = M_NULL;
+        this.child1 [ node ] = M_NULL;
+        this.child2 [ node ] = M_NULL;
+        this.height [ node ] = 0;
+
+        return node;
+    }
+
+    private void freeNode ( int node )
+    {
+        this.parent [ node ] = this.freeList;
+        this.height [ node ] = M_FREE;
+        this.freeList        = node;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Push two nodes onto the traversal stack, growing it as needed, and return the new stack depth.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private int push ( int top, int a, int b )
+    {
+        if ( top + 2 > this.stack.length )
+        {
+            this.stack = Arrays.copyOf ( this.stack, this.stack.length * 2 );
+        }
+
+        this.stack [ top     ] = a;
+        this.stack [ top + 1 ] = b;
+
+        return top + 2;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Append a query result, or a pair, growing the arrays as needed.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void addResult ( int proxy )
+    {
+        if ( this.resultCount == this.results.length )
+        {
+            this.results = Arrays.copyOf ( this.results, this.resultCount * 2 );
+        }
+
+        this.results [ this.resultCount++ ] = proxy;
+    }
+
+    private void addPair ( int a, int b )
+    {
+        if ( this.pairCount == this.pairA.length )
+        {
+            this.pairA = Arrays.copyOf ( this.pairA, this.pairCount * 2 );
+            this.pairB = Arrays.copyOf ( this.pairB, this.pairCount * 2 );
+        }
+
+        this.pairA [ this.pairCount ] = a;
+        this.pairB [ this.pairCount ] = b;
+
+        this.pairCount++;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Grow the node arrays to the specified capacity.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void growNodes ( int capacity )
+    {
+        this.minX   = ( this.minX   == null ) ? new double [ capacity ] : Arrays.copyOf ( this.minX,   capacity );
+        this.minY   = ( this.minY   == null ) ? new double [ capacity ] : Arrays.copyOf ( this.minY,   capacity );
+        this.maxX   = ( this.maxX   == null ) ? new double [ capacity ] : Arrays.copyOf ( this.maxX,   capacity );
+        this.maxY   = ( this.maxY   == null ) ? new double [ capacity ] : Arrays.copyOf ( this.maxY,   capacity );
+        this.parent = ( this.parent == null ) ? new int    [ capacity ] : Arrays.copyOf ( this.parent, capacity );
+        this.child1 = ( this.child1 == null ) ? new int    [ capacity ] : Arrays.copyOf ( this.child1, capacity );
+        this.child2 = ( this.child2 == null ) ? new int    [ capacity ] : Arrays.copyOf ( this.child2, capacity );
+        this.height = ( this.height == null ) ? new int    [ capacity ] : Arrays.copyOf ( this.height, capacity );
+        this.data   = ( this.data   == null ) ? new int    [ capacity ] : Arrays.copyOf ( this.data,   capacity );
+    }
+}
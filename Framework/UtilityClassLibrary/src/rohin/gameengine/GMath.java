@@ -7,6 +7,11 @@ package rohin.gameengine;
 //
 // A suite of various game related math functions.
 //
+// - The vector functions operate on a single vector, represented as an array, and return a new array.
+// - The batch functions operate on whole columns of vector elements, in structure of arrays (SoA) layout. e.g. The positions of n bodies are held in
+//   two arrays, xs and ys, rather than in n vector objects. Results are written in place, or into a destination column, and nothing is allocated.
+//   Each batch function is a single counted loop, with no branches or calls, which the JIT compiler can unroll and vectorize.
+//
 // Author:  Rohin Gosling
 // Version: 1.0
 // Since:   2009-05-10
@@ -352,6 +357,122 @@ public class GMath
     }
     
     
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Batch functions.
+    //
+    // Arguments:
+    //
+    //   dst
+    //   Destination column. May be the same array as a source column.
+    //
+    //   a, b, src
+    //   Source columns.
+    //
+    //   s
+    //   Scalar factor.
+    //
+    //   from, to
+    //   Range of elements to process. Element from is processed, element to is not. To process n elements, use from = 0 and to = n.
+    //
+    // Preconditions:
+    //
+    //   Every column holds at least to elements.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    // dst = a + b
+
+    public static void addColumns ( double[] dst, double[] a, double[] b, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dst[i] = a[i] + b[i];
+        }
+    }
+
+    // dst = a - b
+
+    public static void subColumns ( double[] dst, double[] a, double[] b, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dst[i] = a[i] - b[i];
+        }
+    }
+
+    // dst = a * s
+
+    public static void scaleColumn ( double[] dst, double[] a, double s, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dst[i] = a[i] * s;
+        }
+    }
+
+    // dst = a * b, element wise.
+
+    public static void hadamardColumns ( double[] dst, double[] a, double[] b, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dst[i] = a[i] * b[i];
+        }
+    }
+
+    // dst = dst + src * s
+
+    public static void addScaled ( double[] dst, double[] src, double s, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dst[i] += src[i] * s;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // addScaled
+    //
+    // Add a column of 2D vectors, scaled by s, to another column of 2D vectors, in place. e.g. Advance the positions of n bodies by their velocities,
+    // over a time step dt.
+    //
+    //   GMath.addScaled ( xs, ys, vxs, vys, dt, n );
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static void addScaled ( double[] xs, double[] ys, double[] vxs, double[] vys, double s, int n )
+    {
+        addScaled ( xs, ys, vxs, vys, s, 0, n );
+    }
+
+    public static void addScaled ( double[] xs, double[] ys, double[] vxs, double[] vys, double s, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            xs[i] += vxs[i] * s;
+            ys[i] += vys[i] * s;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // magnitudeSquaredColumns
+    //
+    // Squared magnitude of each vector in a column of 2D vectors. Compare against a squared limit, to avoid the square root.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static void magnitudeSquaredColumns ( double[] dst, double[] xs, double[] ys, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dst[i] = xs[i] * xs[i] + ys[i] * ys[i];
+        }
+    }
+    
+    
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // 
     // OVERRIDEBLE METHODS
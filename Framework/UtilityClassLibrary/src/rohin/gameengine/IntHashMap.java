@@ -0,0 +1,357 @@
+package rohin.gameengine;
+
+import java.util.*;
+
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+//
+// IntHashMap:
+//
+// Map from primitive int keys to objects. Used in place of HashMap <Integer, V>, to avoid boxing keys and allocating map entries.
+//
+// - Keys and values are stored in dense, parallel arrays. They can be iterated by position, from 0 to size () - 1, with keyAt and valueAt,
+//   without allocating an iterator.
+// - A separate open addressing hash table, with linear probing, maps each key to its position in the dense arrays.
+// - Entries are kept in insertion order, until an entry is removed. Removing an entry moves the last entry into its position.
+// - put, get and remove do not allocate memory, except to grow the arrays.
+//
+// Notes:
+//
+// - The map is not synchronized.
+// - The values view supports for-each loops and toArray, for compatibility with code written against HashMap. It allocates an iterator per loop.
+//
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+public class IntHashMap <V>
+{
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // CONSTANTS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public  static final int M_DEFAULT_CAPACITY = 16;   // Initial number of entries the map can hold before it grows.
+    private static final int M_EMPTY            = 0;    // Hash table slot value of an empty slot. Occupied slots hold dense position + 1.
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // FIELDS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private int[]          keys;        // Dense keys.
+    private Object[]       values;      // Dense values.
+    private int            size;        // Number of entries.
+    private int[]          table;       // Hash table. Each slot holds the dense position of an entry, plus one, or M_EMPTY.
+    private int            mask;        // Hash table length - 1. The length is always a power of two.
+    private Collection <V> valuesView;  // Values view, created on first use.
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // ACCESSORS and MUTATORS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public int     size        ()               { return this.size;                         }
+    public Boolean isEmpty     ()               { return this.size == 0;                    }
+    public int     keyAt       ( int position ) { return this.keys [ position ];            }
+    public V       valueAt     ( int position ) { return cast ( this.values [ position ] ); }
+    public Boolean containsKey ( int key )      { return find ( key ) >= 0;                 }
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // METHODS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Constructor/s
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public IntHashMap ()               { initialize ( M_DEFAULT_CAPACITY ); }
+    public IntHashMap ( int capacity ) { initialize ( capacity );           }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Initialize.
+    //
+    // - The hash table is kept at most half full, so it is sized to the next power of two of at least twice the capacity.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void initialize ( int capacity )
+    {
+        capacity = Math.max ( 1, capacity );
+
+        this.keys       = new int    [ capacity ];
+        this.values     = new Object [ capacity ];
+        this.size       = 0;
+        this.table      = new int    [ tableLength ( capacity ) ];
+        this.mask       = this.table.length - 1;
+        this.valuesView = null;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Get the value mapped to a key, or null if the key is not present.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public V get ( int key )
+    {
+        int slot = find ( key );
+
+        return ( slot < 0 ) ? null : cast ( this.values [ this.table [ slot ] - 1 ] );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Map a key to a value. Returns the value previously mapped to the key, or null.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public V put ( int key, V value )
+    {
+        int slot = find ( key );
+
+        if ( slot >= 0 )
+        {
+            int position = this.table [ slot ] - 1;
+            V   previous = cast ( this.values [ position ] );
+
+            this.values [ position ] = value;
+
+            return previous;
+        }
+
+        // Grow the dense arrays and the hash table, if required.
+
+        if ( this.size >= this.keys.length )
+        {
+            int capacity = this.keys.length * 2;
+
+            this.keys   = Arrays.copyOf ( this.keys,   capacity );
+            this.values = Arrays.copyOf ( this.values, capacity );
+        }
+
+        if ( this.table.length < tableLength ( this.size + 1 ) )
+        {
+            rehash ( tableLength ( this.keys.length ) );
+        }
+
+        // Append the entry to the dense arrays, and index it in the hash table.
+
+        this.keys   [ this.size ] = key;
+        this.values [ this.size ] = value;
+
+        this.table [ emptySlot ( key ) ] = ++this.size;
+
+        return null;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Remove a key. Returns the value that was mapped to the key, or null if the key was not present.
+    //
+    // - The last entry is moved into the removed entry's dense position, so that the dense arrays stay packed.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public V remove ( int key )
+    {
+        int slot = find ( key );
+
+        if ( slot < 0 )
+        {
+            return null;
+        }
+
+        int position = this.table [ slot ] - 1;
+        int last     = this.size - 1;
+        V   previous = cast ( this.values [ position ] );
+
+        deleteSlot ( slot );
+
+        if ( position != last )
+        {
+            int lastKey = this.keys [ last ];
+
+            this.table [ find ( lastKey ) ] = position + 1;
+
+            this.keys   [ position ] = lastKey;
+            this.values [ position ] = this.values [ last ];
+        }
+
+        this.values [ last ] = null;
+
+        --this.size;
+
+        return previous;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Remove all entries. The arrays keep their capacity.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void clear ()
+    {
+        Arrays.fill ( this.table,  M_EMPTY );
+        Arrays.fill ( this.values, 0, this.size, null );
+
+        this.size = 0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Returns a live view of the values, in dense order.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Collection <V> values ()
+    {
+        if ( this.valuesView == null )
+        {
+            this.valuesView = new AbstractCollection <V> ()
+            {
+                @Override
+                public int size ()
+                {
+                    return IntHashMap.this.size;
+                }
+
+                @Override
+                public Iterator <V> iterator ()
+                {
+                    return new Iterator <V> ()
+                    {
+                        private int position = 0;
+
+                        @Override public boolean hasNext () { return this.position < IntHashMap.this.size; }
+                        @Override public V       next    () { if ( !hasNext () ) throw new NoSuchElementException (); return valueAt ( this.position++ ); }
+                        @Override public void    remove  () { throw new UnsupportedOperationException (); }
+                    };
+                }
+            };
+        }
+
+        return this.valuesView;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Returns a copy of the keys, in dense order.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int[] keys ()
+    {
+        return Arrays.copyOf ( this.keys, this.size );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Hash table helpers.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    // Find the hash table slot of a key, or -1 if the key is not present.
+
+    private int find ( int key )
+    {
+        int slot = hash ( key ) & this.mask;
+
+        while ( this.table [ slot ] != M_EMPTY )
+        {
+            if ( this.keys [ this.table [ slot ] - 1 ] == key )
+            {
+                return slot;
+            }
+
+            slot = ( slot + 1 ) & this.mask;
+        }
+
+        return -1;
+    }
+
+    // Find the first empty slot in the probe sequence of a key.
+
+    private int emptySlot ( int key )
+    {
+        int slot = hash ( key ) & this.mask;
+
+        while ( this.table [ slot ] != M_EMPTY )
+        {
+            slot = ( slot + 1 ) & this.mask;
+        }
+
+        return slot;
+    }
+
+    // Empty a slot, and shift later entries of the same probe run back into it, so that no probe sequence is broken. Avoids tombstones.
+
+    private void deleteSlot ( int slot )
+    {
+        int next = slot;
+
+        while ( true )
+        {
+            next = ( next + 1 ) & this.mask;
+
+            if ( this.table [ next ] == M_EMPTY )
+            {
+                break;
+            }
+
+            // An entry may move back to the empty slot, only if its home slot does not lie cyclically between the empty slot and its current slot.
+
+            int home = hash ( this.keys [ this.table [ next ] - 1 ] ) & this.mask;
+
+            if ( ( ( next - home ) & this.mask ) >= ( ( next - slot ) & this.mask ) )
+            {
+                this.table [ slot ] = this.table [ next ];
+
+                slot = next;
+            }
+        }
+
+        this.table [ slot ] = M_EMPTY;
+    }
+
+    // Rebuild the hash table with a new length.
+
+    private void rehash ( int length )
+    {
+        this.table = new int [ length ];
+        this.mask  = length - 1;
+
+        for ( int position = 0; position < this.size; position++ )
+        {
+            this.table [ emptySlot ( this.keys [ position ] ) ] = position + 1;
+        }
+    }
+
+    // Smallest power of two hash table length, that keeps the specified number of entries at most half full.
+
+    private static int tableLength ( int capacity )
+    {
+        return Integer.highestOneBit ( Math.max ( 1, capacity * 2 - 1 ) ) << 1;
+    }
+
+    // Scramble the key bits, so that sequential keys spread over the table. Fibonacci hashing, folded to the low bits.
+
+    private static int hash ( int key )
+    {
+        int h = key * 0x9E3779B9;
+
+        return h ^ ( h >>> 16 );
+    }
+
+    @SuppressWarnings ( "unchecked" )
+    private V cast ( Object value )
+    {
+        return ( V ) value;
+    }
+}
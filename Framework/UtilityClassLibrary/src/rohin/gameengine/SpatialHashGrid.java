@@ -0,0 +1,437 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+//
+// SpatialHashGrid:
+//
+// Uniform grid spatial hash, used as a collision detection broad phase. Finds the pairs of axis aligned bounding boxes (AABBs) that overlap,
+// without testing every box against every other box.
+//
+// - Boxes are added with add, which returns the index of the box. findPairs then sorts the boxes into the cells of a uniform grid, and tests only
+//   boxes that share a cell. The overlapping pairs are read back by index, with getPairA and getPairB.
+// - The grid is rebuilt by every call to findPairs, so moving boxes are handled by clearing the grid and adding the boxes again.
+// - Grid cells are not stored. Each cell is hashed to a bucket of a table, and the boxes are sorted into the buckets with a counting sort, so the
+//   world may be unbounded, and memory use is proportional to the number of boxes, not to the area of the world.
+// - A box that spans several cells is added to each of them. A pair is only reported from the cell that contains the minimum corner of the
+//   intersection of both boxes, so each overlapping pair is reported exactly once.
+// - Pairs are reported with the lower box index first. For the same boxes, added in the same order, the pairs are reported in the same order.
+// - The grid does not allocate memory, except to grow its arrays.
+//
+// Notes:
+//
+// - The cell size should be about the size of a typical box. If it is much smaller, large boxes are added to many cells. If it is much larger,
+//   many boxes share each cell. With the default, automatic cell size, it is set to M_AUTOMATIC_CELL_FACTOR times the mean box extent, on every
+//   call to findPairs. If every box is a point, the cell size is chosen so that the points share about one cell each, if spread evenly.
+// - The grid is not synchronized.
+//
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+public class SpatialHashGrid
+{
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // CONSTANTS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public  static final double M_AUTOMATIC_CELL_SIZE   = 0.0;     // Cell size, that selects an automatic cell size.
+    public  static final double M_AUTOMATIC_CELL_FACTOR = 2.0;     // Automatic cell size, relative to the mean box extent.
+    public  static final int    M_DEFAULT_CAPACITY      = 64;      // Initial number of boxes the grid can hold before it grows.
+    private static final int    M_HASH_X                = 0x8da6b343;
+    private static final int    M_HASH_Y                = 0xd8163841;
+    private static final int    M_START_X               = 1;       // Entry flag. The cell is the first cell of the box along the X axis.
+    private static final int    M_START_Y               = 2;       // Entry flag. The cell is the first cell of the box along the Y axis.
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // FIELDS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // Boxes.
+
+    private double   cellSize;          // Requested cell size, or M_AUTOMATIC_CELL_SIZE.
+    private double   gridCellSize;      // Cell size of the grid, as built by the last call to findPairs.
+    private int      boxCount;          // Number of boxes.
+    private double[] minX;              // Box bounds.
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[]    cellMinX;          // Range of cells spanned by each box, inclusive.
+    private int[]    cellMinY;
+    private int[]    cellMaxX;
+    private int[]    cellMaxY;
+
+    // Buckets. Bucket b holds entries bucketStart [ b ] to bucketStart [ b + 1 ], exclusive.
+
+    private int[]    bucketStart;       // Start of each bucket, in the entry arrays.
+    private int[]    bucketFill;        // Next free entry of each bucket, while the buckets are filled.
+    // Each entry holds a copy of the bounds of its box, so that the entries of a bucket can be tested against each other without reading the box
+    // arrays out of order.
+
+    private int      entryCount;        // Number of entries, i.e. (box, cell) combinations.
+    private int[]    entryBox;          // Box of each entry.
+    private long[]   entryCell;         // Cell of each entry. X in the high 32 bits, Y in the low 32 bits.
+    private int[]    entryStart;        // Flags of each entry. M_START_X and M_START_Y.
+    private double[] entryMinX;         // Bounds of the box of each entry.
+    private double[] entryMinY;
+    private double[] entryMaxX;
+    private double[] entryMaxY;
+
+    // Pairs.
+
+    private int      pairCount;         // Number of overlapping pairs found by the last call to findPairs.
+    private int[]    pairA;             // Lower box index of each pair.
+    private int[]    pairB;             // Higher box index of each pair.
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // ACCESSORS and MUTATORS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public int    size            ()           { return this.boxCount;      }
+    public int    getPairCount    ()           { return this.pairCount;     }
+    public int    getPairA        ( int pair ) { return this.pairA [ pair ]; }
+    public int    getPairB        ( int pair ) { return this.pairB [ pair ]; }
+    public int    getEntryCount   ()           { return this.entryCount;    }
+    public double getCellSize     ()           { return this.cellSize;      }
+    public double getGridCellSize ()           { return this.gridCellSize;  }
+
+    public void setCellSize ( double cellSize ) { this.cellSize = Math.max ( M_AUTOMATIC_CELL_SIZE, cellSize ); }
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // METHODS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Constructor/s
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public SpatialHashGrid ()                  { initialize ( M_AUTOMATIC_CELL_SIZE ); }
+    public SpatialHashGrid ( double cellSize ) { initialize ( cellSize );              }
+
+    private void initialize ( double cellSize )
+    {
+        setCellSize ( cellSize );
+
+        this.gridCellSize = 0.0;
+        this.boxCount     = 0;
+        this.entryCount   = 0;
+        this.pairCount    = 0;
+        this.bucketStart  = new int [ 1 ];
+        this.bucketFill   = new int [ 0 ];
+
+        growEntries ( 0 );
+
+        this.pairA        = new int [ 0 ];
+        this.pairB        = new int [ 0 ];
+
+        growBoxes ( M_DEFAULT_CAPACITY );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Remove all boxes, and all pairs.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void clear ()
+    {
+        this.boxCount   = 0;
+        this.entryCount = 0;
+        this.pairCount  = 0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Add a box, and return its index. Boxes are indexed from 0, in the order they were added since the grid was last cleared.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int add ( double minX, double minY, double maxX, double maxY )
+    {
+        if ( this.boxCount == this.minX.length )
+        {
+            growBoxes ( this.boxCount * 2 );
+        }
+
+        int box = this.boxCount++;
+
+        this.minX [ box ] = minX;
+        this.minY [ box ] = minY;
+        this.maxX [ box ] = maxX;
+        this.maxY [ box ] = maxY;
+
+        return box;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // findPairs
+    //
+    // Description:
+    //
+    // - Build the grid from the boxes, and find every pair of overlapping boxes. Boxes that touch, i.e. share only an edge, overlap.
+    //
+    // Return Value:
+    //
+    // - The number of overlapping pairs. See getPairA and getPairB.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public int findPairs ()
+    {
+        this.pairCount = 0;
+
+        if ( this.boxCount < 2 )
+        {
+            return 0;
+        }
+
+        buildGrid ();
+
+        // Test the entries of each bucket against each other. Entries in the same bucket may belong to different cells, if their cells collide in the
+        // hash table, so the cells are compared first.
+        //
+        // A pair is reported from the cell that contains the minimum corner of the intersection of both boxes. Both boxes span that cell, and it is
+        // the first cell of at least one of the boxes along each axis.
+
+        int buckets = this.bucketStart.length - 1;
+
+        for ( int bucket = 0; bucket < buckets; bucket++ )
+        {
+            int end = this.bucketStart [ bucket + 1 ];
+
+            for ( int i = this.bucketStart [ bucket ]; i < end - 1; i++ )
+            {
+                long   cell  = this.entryCell  [ i ];
+                int    start = this.entryStart [ i ];
+                double minX  = this.entryMinX  [ i ];
+                double minY  = this.entryMinY  [ i ];
+                double maxX  = this.entryMaxX  [ i ];
+                double maxY  = this.entryMaxY  [ i ];
+
+                for ( int j = i + 1; j < end; j++ )
+                {
+                    if (    ( this.entryCell [ j ] == cell )
+                         && ( ( start | this.entryStart [ j ] ) == ( M_START_X | M_START_Y ) )
+                         && ( minX <= this.entryMaxX [ j ] ) && ( this.entryMinX [ j ] <= maxX )
+                         && ( minY <= this.entryMaxY [ j ] ) && ( this.entryMinY [ j ] <= maxY ) )
+                    {
+                        addPair ( this.entryBox [ i ], this.entryBox [ j ] );
+                    }
+                }
+            }
+        }
+
+        return this.pairCount;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Sort the boxes into the hash table buckets, by cell.
+    //
+    // - The entries of each bucket are in box order, since the boxes are added in box order.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void buildGrid ()
+    {
+        double size    = ( this.cellSize > M_AUTOMATIC_CELL_SIZE ) ? this.cellSize : automaticCellSize ();
+        double inverse = 1.0 / size;
+        int    entries = 0;
+
+        // Find the cells spanned by each box.
+
+        for ( int box = 0; box < this.boxCount; box++ )
+        {
+            this.cellMinX [ box ] = ( int ) Math.floor ( this.minX [ box ] * inverse );
+            this.cellMinY [ box ] = ( int ) Math.floor ( this.minY [ box ] * inverse );
+            this.cellMaxX [ box ] = ( int ) Math.floor ( this.maxX [ box ] * inverse );
+            this.cellMaxY [ box ] = ( int ) Math.floor ( this.maxY [ box ] * inverse );
+
+            entries += ( this.cellMaxX [ box ] - this.cellMinX [ box ] + 1 ) * ( this.cellMaxY [ box ] - this.cellMinY [ box ] + 1 );
+        }
+
+        // Size the table to a power of two of at least twice the number of entries, so that most buckets hold a single cell. The table is only
+        // grown, never shrunk.
+
+        if ( this.bucketFill.length < entries * 2 )
+        {
+            int length = Integer.highestOneBit ( entries * 2 - 1 ) << 1;
+
+            this.bucketStart = new int [ length + 1 ];
+            this.bucketFill  = new int [ length ];
+        }
+        else
+        {
+            Arrays.fill ( this.bucketStart, 0 );
+        }
+
+        int length = this.bucketFill.length;
+        int mask   = length - 1;
+
+        if ( this.entryBox.length < entries )
+        {
+            growEntries ( entries );
+        }
+
+        // Count the entries of each bucket, and convert the counts to bucket start positions.
+
+        for ( int box = 0; box < this.boxCount; box++ )
+        {
+            for ( int cy = this.cellMinY [ box ]; cy <= this.cellMaxY [ box ]; cy++ )
+            {
+                for ( int cx = this.cellMinX [ box ]; cx <= this.cellMaxX [ box ]; cx++ )
+                {
+                    this.bucketStart [ hash ( cx, cy, mask ) + 1 ]++;
+                }
+            }
+        }
+
+        for ( int bucket = 0; bucket < length; bucket++ )
+        {
+            this.bucketStart [ bucket + 1 ] += this.bucketStart [ bucket ];
+        }
+
+        System.arraycopy ( this.bucketStart, 0, this.bucketFill, 0, length );
+
+        // Fill the buckets.
+
+        for ( int box = 0; box < this.boxCount; box++ )
+        {
+            for ( int cy = this.cellMinY [ box ]; cy <= this.cellMaxY [ box ]; cy++ )
+            {
+                for ( int cx = this.cellMinX [ box ]; cx <= this.cellMaxX [ box ]; cx++ )
+                {
+                    int entry = this.bucketFill [ hash ( cx, cy, mask ) ]++;
+
+                    this.entryBox   [ entry ] = box;
+                    this.entryCell  [ entry ] = ( ( long ) cx << 32 ) | ( cy & 0xffffffffL );
+                    this.entryStart [ entry ] = ( ( cx == this.cellMinX [ box ] ) ? M_START_X : 0 ) | ( ( cy == this.cellMinY [ box ] ) ? M_START_Y : 0 );
+                    this.entryMinX  [ entry ] = this.minX [ box ];
+                    this.entryMinY  [ entry ] = this.minY [ box ];
+                    this.entryMaxX  [ entry ] = this.maxX [ box ];
+                    this.entryMaxY  [ entry ] = this.maxY [ box ];
+                }
+            }
+        }
+
+        this.entryCount   = entries;
+        this.gridCellSize = size;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Automatic cell size. M_AUTOMATIC_CELL_FACTOR times the mean of the larger extent of each box.
+    //
+    // If every box is a point, the larger extent of the area spanned by the points, divided by the square root of the number of points, so that
+    // evenly spread points share about one cell each. 1.0 if every point is the same.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private double automaticCellSize ()
+    {
+        double sum  = 0.0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        for ( int box = 0; box < this.boxCount; box++ )
+        {
+            sum += Math.max ( this.maxX [ box ] - this.minX [ box ], this.maxY [ box ] - this.minY [ box ] );
+
+            minX = Math.min ( minX, this.minX [ box ] );
+            minY = Math.min ( minY, this.minY [ box ] );
+            maxX = Math.max ( maxX, this.maxX [ box ] );
+            maxY = Math.max ( maxY, this.maxY [ box ] );
+        }
+
+        if ( sum > 0.0 )
+        {
+            return M_AUTOMATIC_CELL_FACTOR * sum / this.boxCount;
+        }
+
+        double extent = Math.max ( maxX - minX, maxY - minY );
+
+        return ( extent > 0.0 ) ? extent / Math.sqrt ( this.boxCount ) : 1.0;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Hash a cell to a bucket.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static int hash ( int cx, int cy, int mask )
+    {
+        int h = ( cx * M_HASH_X ) ^ ( cy * M_HASH_Y );
+
+        return ( h ^ ( h >>> 16 ) ) & mask;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Append a pair, growing the pair arrays as needed.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void addPair ( int a, int b )
+    {
+        if ( this.pairCount == this.pairA.length )
+        {
+            int capacity = Math.max ( M_DEFAULT_CAPACITY, this.pairCount * 2 );
+
+            this.pairA = Arrays.copyOf ( this.pairA, capacity );
+            this.pairB = Arrays.copyOf ( this.pairB, capacity );
+        }
+
+        this.pairA [ this.pairCount ] = a;
+        this.pairB [ this.pairCount ] = b;
+
+        this.pairCount++;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Grow the entry arrays to the specified capacity. Entry contents are not kept, since they are rebuilt by every call to findPairs.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void growEntries ( int capacity )
+    {
+        this.entryBox   = new int    [ capacity ];
+        this.entryCell  = new long   [ capacity ];
+        this.entryStart = new int    [ capacity ];
+        this.entryMinX  = new double [ capacity ];
+        this.entryMinY  = new double [ capacity ];
+        this.entryMaxX  = new double [ capacity ];
+        this.entryMaxY  = new double [ capacity ];
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Grow the box arrays to the specified capacity.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void growBoxes ( int capacity )
+    {
+        this.minX     = ( this.minX == null ) ? new double [ capacity ] : Arrays.copyOf ( this.minX,     capacity );
+        this.minY     = ( this.minY == null ) ? new double [ capacity ] : Arrays.copyOf ( this.minY,     capacity );
+        this.maxX     = ( this.maxX == null ) ? new double [ capacity ] : Arrays.copyOf ( this.maxX,     capacity );
+        this.maxY     = ( this.maxY == null ) ? new double [ capacity ] : Arrays.copyOf ( this.maxY,     capacity );
+        this.cellMinX = new int [ capacity ];
+        this.cellMinY = new int [ capacity ];
+        this.cellMaxX = new int [ capacity ];
+        this.cellMaxY = new int [ capacity ];
+    }
+}
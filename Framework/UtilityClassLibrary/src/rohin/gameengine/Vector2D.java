@@ -6,6 +6,11 @@ package rohin.gameengine;
 //
 // 2D vector object.
 //
+// - The value returning operations (add, subtract, multiply, divide, norm, scale) return a new vector, and leave this vector unchanged.
+// - Each operation also has an in place variant, which stores the result in this vector, and an into variant, which stores the result in a
+//   destination vector. Both return the vector holding the result, and allocate nothing. The destination may be this vector, or the argument.
+// - Hot loops that need temporary vectors can borrow them from Vector2DScratch, instead of allocating them.
+//
 // Author:  Rohin Gosling
 // Version: 1.0
 // Since:   2009-05-10
@@ -29,7 +34,8 @@ public class Vector2D
     //
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     
-    private double[] v;    
+    private double x;
+    private double y;
  
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // 
@@ -37,15 +43,15 @@ public class Vector2D
     //
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     
-    public double   getX      () { return this.v[X]; }
-    public double   getY      () { return this.v[Y]; }
-    public double[] getVector () { return this.v;    }    
+    public double   getX      () { return this.x;                          }
+    public double   getY      () { return this.y;                          }
+    public double[] getVector () { return new double[] { this.x, this.y }; }    // Returns a copy. Changes to the array do not affect the vector.
     
-    public void setX      ( double x )           { this.v[X] = x;                                }
-    public void setY      ( double y )           { this.v[Y] = y;                                }
-    public void setVector ( double x, double y ) { this.v[X] = x;         this.v[Y] = y;         }
-    public void setVector ( double[] v )         { this.v[X] = v[X];      this.v[Y] = v[Y];      }
-    public void setVector ( Vector2D v )         { this.v[X] = v.getX (); this.v[Y] = v.getY (); }
+    public void setX      ( double x )           { this.x = x;                   }
+    public void setY      ( double y )           { this.y = y;                   }
+    public void setVector ( double x, double y ) { this.x = x;    this.y = y;    }
+    public void setVector ( double[] v )         { this.x = v[X]; this.y = v[Y]; }
+    public void setVector ( Vector2D v )         { this.x = v.x;  this.y = v.y;  }
      
     // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // 
@@ -62,7 +68,7 @@ public class Vector2D
     public Vector2D ()                     { initialize ( 0.0,       0.0       ); }
     public Vector2D ( double x, double y ) { initialize ( x,         y         ); }
     public Vector2D ( double[] v )         { initialize ( v[X],      v[Y]      ); }
-    public Vector2D ( Vector2D v )         { initialize ( v.getX (), v.getY () ); }
+    public Vector2D ( Vector2D v )         { initialize ( v.x,       v.y       ); }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     //
@@ -72,7 +78,8 @@ public class Vector2D
     
     public void initialize ( double x, double y)
     {
-        v = new double[] { x, y };        
+        this.x = x;
+        this.y = y;
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -83,7 +90,7 @@ public class Vector2D
     
     public Vector2D add ( Vector2D v )
     {
-        return new Vector2D ( this.v[X] + v.getX (), this.v[Y] + v.getY () );        
+        return new Vector2D ( this.x + v.x, this.y + v.y );
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -94,7 +101,7 @@ public class Vector2D
     
     public Vector2D subtract ( Vector2D v )
     {
-        return new Vector2D ( this.v[X] - v.getX (), this.v[Y] - v.getY () );        
+        return new Vector2D ( this.x - v.x, this.y - v.y );
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -109,7 +116,7 @@ public class Vector2D
     
     public Vector2D multiply ( Vector2D v )
     {
-        return new Vector2D ( this.v[X] * v.getX (), this.v[Y] * v.getY () );        
+        return new Vector2D ( this.x * v.x, this.y * v.y );
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -123,7 +130,7 @@ public class Vector2D
     
     public Vector2D divide ( Vector2D v )
     {
-        return new Vector2D ( this.v[X] / v.getX (), this.v[Y] / v.getY () );        
+        return new Vector2D ( this.x / v.x, this.y / v.y );
     }
     
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -136,8 +143,8 @@ public class Vector2D
     {
         // Retrieve vector.
         
-        double x = this.v[X];
-        double y = this.v[Y];
+        double x = this.x;
+        double y = this.y;
         
         // Calculate magnitude.
         
@@ -154,8 +161,8 @@ public class Vector2D
     {      
         // Retrieve vector.
         
-        double x  = this.v[X];
-        double y  = this.v[Y];
+        double x  = this.x;
+        double y  = this.y;
         
         // Calculate the magnitude of the vector.
         
@@ -190,8 +197,8 @@ public class Vector2D
     {   
         // Retrieve vector.
         
-        double x  = this.v[X];
-        double y  = this.v[Y];
+        double x  = this.x;
+        double y  = this.y;
         
         // Scale vector by s.
         
@@ -203,6 +210,83 @@ public class Vector2D
         return new Vector2D ( Sx, Sy );
     }
     
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // In place operations.
+    //
+    // - Store the result of the operation in this vector, and return this vector.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public Vector2D addInPlace      ( Vector2D v ) { return addInto      ( v, this ); }
+    public Vector2D subtractInPlace ( Vector2D v ) { return subtractInto ( v, this ); }
+    public Vector2D multiplyInPlace ( Vector2D v ) { return multiplyInto ( v, this ); }
+    public Vector2D divideInPlace   ( Vector2D v ) { return divideInto   ( v, this ); }
+    public Vector2D scaleInPlace    ( double s )   { return scaleInto    ( s, this ); }
+    public Vector2D normInPlace     ()             { return normInto     ( this );    }
+    
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Into operations.
+    //
+    // - Store the result of the operation in the destination vector, and return the destination vector. This vector is left unchanged, unless it is
+    //   also the destination.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    
+    public Vector2D addInto ( Vector2D v, Vector2D dst )
+    {
+        dst.setVector ( this.x + v.x, this.y + v.y );
+        
+        return dst;
+    }
+    
+    public Vector2D subtractInto ( Vector2D v, Vector2D dst )
+    {
+        dst.setVector ( this.x - v.x, this.y - v.y );
+        
+        return dst;
+    }
+    
+    public Vector2D multiplyInto ( Vector2D v, Vector2D dst )
+    {
+        dst.setVector ( this.x * v.x, this.y * v.y );
+        
+        return dst;
+    }
+    
+    public Vector2D divideInto ( Vector2D v, Vector2D dst )
+    {
+        dst.setVector ( this.x / v.x, this.y / v.y );
+        
+        return dst;
+    }
+    
+    public Vector2D scaleInto ( double s, Vector2D dst )
+    {
+        dst.setVector ( this.x * s, this.y * s );
+        
+        return dst;
+    }
+    
+    public Vector2D normInto ( Vector2D dst )
+    {
+        double m = Math.sqrt ( this.x*this.x + this.y*this.y );
+        
+        // If the magnitude of the vector is zero, then the normalized vector shall just remain as the zero vector (0,0).
+        
+        if ( m > 0 )
+        {
+            dst.setVector ( this.x / m, this.y / m );
+        }
+        else
+        {
+            dst.setVector ( 0.0, 0.0 );
+        }
+        
+        return dst;
+    }
+    
     // --------------------------------------------------------------------------------------------------------------------------------------------------------
     //
     // Dot product.
@@ -213,10 +297,10 @@ public class Vector2D
     {
         // Retrieve vectors A and B.
         
-        double Ax = this.v[X];
-        double Ay = this.v[Y];
-        double Bx = v.getX ();
-        double By = v.getY ();
+        double Ax = this.x;
+        double Ay = this.y;
+        double Bx = v.x;
+        double By = v.y;
         
         // Calculate the dot product.
         
@@ -243,10 +327,10 @@ public class Vector2D
     {
         // Retrieve vectors A and B.
         
-        double Ax = this.v[X];
-        double Ay = this.v[Y];
-        double Bx = v.getX ();
-        double By = v.getY ();
+        double Ax = this.x;
+        double Ay = this.y;
+        double Bx = v.x;
+        double By = v.y;
         
         // Calculate the difference between vectors A and B.
         
@@ -0,0 +1,169 @@
+package rohin.gameengine;
+
+import java.util.Arrays;
+
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+//
+// Vector2DScratch:
+//
+// Per thread stack of temporary vectors, for hot loops that would otherwise allocate a new Vector2D for every intermediate result.
+//
+// - Each thread has its own scratch stack, returned by get. Vectors are never shared between threads, so the stack needs no locking.
+// - Vectors are borrowed with take, and returned in bulk by releasing back to a mark, i.e. the stack depth before the vectors were borrowed.
+//
+//       Vector2DScratch scratch = Vector2DScratch.get ();
+//       int             mark    = scratch.mark ();
+//       Vector2D        a       = scratch.take ();
+//       ...
+//       scratch.release ( mark );
+//
+// - A borrowed vector holds whatever its previous borrower left in it. It must be set before it is read, and must not be used after it is released.
+// - The stack grows as needed, and is never shrunk, so a loop that borrows the same number of vectors on every iteration allocates nothing after
+//   its first iteration.
+//
+// ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+public class Vector2DScratch
+{
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // CONSTANTS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final int M_INITIAL_CAPACITY = 16;     // Number of vectors preallocated for each thread.
+
+    // Scratch stack of each thread.
+
+    private static final ThreadLocal <Vector2DScratch> M_SCRATCH = new ThreadLocal <Vector2DScratch> ()
+    {
+        @Override
+        protected Vector2DScratch initialValue ()
+        {
+            return new Vector2DScratch ();
+        }
+    };
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // FIELDS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Vector2D[] vectors;     // Scratch vectors. Those below the top are borrowed.
+    private int        top;         // Number of borrowed vectors.
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // ACCESSORS and MUTATORS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public int mark     () { return this.top;            }
+    public int capacity () { return this.vectors.length; }
+
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // METHODS
+    //
+    // ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Constructor/s
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private Vector2DScratch ()
+    {
+        this.vectors = new Vector2D [ 0 ];
+        this.top     = 0;
+
+        grow ( M_INITIAL_CAPACITY );
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Return the calling thread's scratch stack.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public static Vector2DScratch get ()
+    {
+        return M_SCRATCH.get ();
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Borrow a vector. The vector's contents are undefined.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Vector2D take ()
+    {
+        if ( this.top == this.vectors.length )
+        {
+            grow ( this.vectors.length * 2 );
+        }
+
+        return this.vectors [ this.top++ ];
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Borrow a vector, set to the specified value.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public Vector2D take ( double x, double y )
+    {
+        Vector2D v = take ();
+
+        v.setVector ( x, y );
+
+        return v;
+    }
+
+    public Vector2D take ( Vector2D value )
+    {
+        Vector2D v = take ();
+
+        v.setVector ( value );
+
+        return v;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Return every vector borrowed since the mark was taken.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void release ( int mark )
+    {
+        if ( ( mark < 0 ) || ( mark > this.top ) )
+        {
+            throw new IllegalArgumentException ( "Scratch mark " + mark + " is out of range. Stack depth is " + this.top + "." );
+        }
+
+        this.top = mark;
+    }
+
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+    //
+    // Grow the stack to the specified capacity.
+    //
+    // --------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void grow ( int capacity )
+    {
+        int length = this.vectors.length;
+
+        this.vectors = Arrays.copyOf ( this.vectors, capacity );
+
+        for ( int i = length; i < capacity; i++ )
+        {
+            this.vectors [ i ] = new Vector2D ();
+        }
+    }
+}